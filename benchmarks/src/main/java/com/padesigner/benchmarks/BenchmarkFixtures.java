@@ -0,0 +1,125 @@
+package com.padesigner.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.Security;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+
+import com.itextpdf.kernel.font.PdfFontFactory;
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfName;
+import com.itextpdf.kernel.pdf.PdfPage;
+import com.itextpdf.kernel.pdf.PdfStream;
+import com.itextpdf.kernel.pdf.PdfWriter;
+import com.itextpdf.kernel.pdf.canvas.PdfCanvas;
+import com.itextpdf.io.font.constants.StandardFonts;
+import com.padesigner.crypto.KeyAlgorithm;
+import com.padesigner.crypto.RSAKeyManager;
+
+/**
+ * Synthetic inputs for the benchmarks: generated PDF documents and key
+ * directories in a temporary directory, so that no network access or sample
+ * files are needed. Random content uses a fixed seed, so every run measures
+ * the same documents.
+ */
+final class BenchmarkFixtures {
+
+    /**
+     * The PIN protecting generated private keys.
+     */
+    static final String PIN = "benchmark";
+
+    private static final long SEED = 42;
+
+    static {
+        Security.addProvider(new BouncyCastleProvider());
+    }
+
+    private BenchmarkFixtures() {
+    }
+
+    /**
+     * @return A new temporary directory for one benchmark trial.
+     * @throws IOException If the directory cannot be created.
+     */
+    static Path createWorkDirectory() throws IOException {
+        return Files.createTempDirectory("padesigner-bench");
+    }
+
+    /**
+     * Writes a PDF with text on every page and, optionally, an uncompressed
+     * binary payload that makes the file large without adding pages.
+     *
+     * @param file      The file to write.
+     * @param pages     The number of pages.
+     * @param payloadKb The payload size in KiB, or 0 for none.
+     * @return The file path.
+     * @throws IOException If the document cannot be written.
+     */
+    static String createPdf(Path file, int pages, int payloadKb) throws IOException {
+        Random random = new Random(SEED);
+        try (PdfDocument document = new PdfDocument(new PdfWriter(file.toString()))) {
+            for (int i = 1; i <= pages; i++) {
+                PdfPage page = document.addNewPage();
+                PdfCanvas canvas = new PdfCanvas(page);
+                canvas.beginText()
+                        .setFontAndSize(PdfFontFactory.createFont(StandardFonts.HELVETICA), 12);
+                for (int line = 0; line < 40; line++) {
+                    canvas.setTextMatrix(50, 780 - line * 18)
+                            .showText("Page " + i + ", line " + line + ": " + Long.toHexString(random.nextLong()));
+                }
+                canvas.endText().release();
+            }
+            if (payloadKb > 0) {
+                byte[] payload = new byte[payloadKb * 1024];
+                random.nextBytes(payload);
+                PdfStream stream = new PdfStream(payload);
+                stream.setCompressionLevel(0);
+                stream.makeIndirect(document);
+                document.getCatalog().put(new PdfName("BenchmarkPayload"), stream);
+            }
+        }
+        return file.toString();
+    }
+
+    /**
+     * Generates a key pair and saves it like the key generator does: the public
+     * key and the encrypted private key with its certificate, all in one
+     * directory.
+     *
+     * @param directory    The key directory.
+     * @param keyAlgorithm The type of key.
+     * @param iterations   The PBKDF2 iteration count protecting the key.
+     * @return The directory path ending with a separator.
+     * @throws Exception If the keys cannot be generated or saved.
+     */
+    static String createKeyDirectory(Path directory, KeyAlgorithm keyAlgorithm, int iterations) throws Exception {
+        Files.createDirectories(directory);
+        String path = directory.toString() + File.separator;
+        RSAKeyManager.saveKeys(RSAKeyManager.generateKeyPair(keyAlgorithm), PIN, path, path, iterations);
+        return path;
+    }
+
+    /**
+     * Deletes a work directory and everything below it.
+     *
+     * @param directory The directory, or null.
+     * @throws IOException If a file cannot be deleted.
+     */
+    static void delete(Path directory) throws IOException {
+        if (directory == null) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+}
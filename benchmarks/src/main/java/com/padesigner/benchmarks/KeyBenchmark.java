@@ -0,0 +1,136 @@
+package com.padesigner.benchmarks;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.security.KeyPair;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.padesigner.crypto.AESUtil;
+import com.padesigner.crypto.KeyAlgorithm;
+import com.padesigner.crypto.RSAKeyManager;
+
+/**
+ * Key handling: unlocking the encrypted private key with the PIN, loading a
+ * public key and generating a new key pair.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class KeyBenchmark {
+
+    /**
+     * A key directory for the unlock and load benchmarks.
+     */
+    @State(Scope.Benchmark)
+    public static class KeyFiles {
+
+        @Param({ "rsa", "p256", "ed25519" })
+        public String keyAlgorithm;
+
+        @Param({ "100000", "600000" })
+        public int iterations;
+
+        private Path workDirectory;
+        private File privateKeyFile;
+        private File publicKeyFile;
+
+        /**
+         * Generates and saves the keys.
+         *
+         * @throws Exception If the keys cannot be created.
+         */
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            workDirectory = BenchmarkFixtures.createWorkDirectory();
+            String keyDirectory = BenchmarkFixtures.createKeyDirectory(workDirectory,
+                    KeyAlgorithm.fromName(keyAlgorithm), iterations);
+            privateKeyFile = new File(keyDirectory + RSAKeyManager.PRIVATE_KEY_FILE);
+            publicKeyFile = new File(keyDirectory + RSAKeyManager.PUBLIC_KEY_FILE);
+        }
+
+        /**
+         * Removes the generated files.
+         *
+         * @throws Exception If a file cannot be deleted.
+         */
+        @TearDown(Level.Trial)
+        public void tearDown() throws Exception {
+            BenchmarkFixtures.delete(workDirectory);
+        }
+    }
+
+    /**
+     * The type of key to generate.
+     */
+    @State(Scope.Benchmark)
+    public static class Generation {
+
+        @Param({ "rsa", "p256", "p384", "ed25519" })
+        public String keyAlgorithm;
+
+        private KeyAlgorithm algorithm;
+
+        /**
+         * Resolves the key type.
+         */
+        @Setup(Level.Trial)
+        public void setUp() {
+            algorithm = KeyAlgorithm.fromName(keyAlgorithm);
+        }
+    }
+
+    /**
+     * Derives the file key from the PIN and decrypts the private key. The
+     * cost is dominated by the PBKDF2 iteration count.
+     *
+     * @param keys The key files.
+     * @return The private key.
+     * @throws Exception If the key cannot be decrypted.
+     */
+    @Benchmark
+    public PrivateKey unlockPrivateKey(KeyFiles keys) throws Exception {
+        return AESUtil.decryptPrivateKey(keys.privateKeyFile, BenchmarkFixtures.PIN);
+    }
+
+    /**
+     * @param keys The key files.
+     * @return The public key.
+     * @throws Exception If the key cannot be read.
+     */
+    @Benchmark
+    public PublicKey loadPublicKey(KeyFiles keys) throws Exception {
+        return RSAKeyManager.loadPublicKey(keys.publicKeyFile);
+    }
+
+    /**
+     * Generates a key pair directly, bypassing the pre-generated pool, which
+     * is the cost {@code generateRSAKeyPair} pays for RSA.
+     *
+     * @param generation The type of key.
+     * @return The key pair.
+     * @throws Exception If generation fails.
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public KeyPair generateKeyPair(Generation generation) throws Exception {
+        return RSAKeyManager.generateKeyPair(generation.algorithm);
+    }
+}
@@ -0,0 +1,98 @@
+package com.padesigner.benchmarks;
+
+import java.io.FileOutputStream;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.itextpdf.kernel.pdf.PdfReader;
+import com.itextpdf.kernel.pdf.StampingProperties;
+import com.itextpdf.signatures.PdfSigner;
+import com.padesigner.crypto.KdfCalibrator;
+import com.padesigner.crypto.KeyAlgorithm;
+import com.padesigner.crypto.MyPdfSigner;
+import com.padesigner.crypto.RSAKeyManager;
+import com.padesigner.crypto.SigningContext;
+import com.padesigner.crypto.SigningContextCache;
+
+/**
+ * Signing a large document as an incremental update, as
+ * {@link MyPdfSigner#signPDF(String, SigningContext)} does, against
+ * rewriting the whole document with the same key, which is how documents were
+ * signed before append mode. The difference is the cost of re-serialising
+ * every object of the original.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class LargeDocumentBenchmark {
+
+    @Param({ "65536" })
+    public int payloadKb;
+
+    @Param({ "append", "rewrite" })
+    public String mode;
+
+    private Path workDirectory;
+    private String document;
+    private String rewrittenPath;
+    private SigningContext context;
+
+    /**
+     * Creates the document and unlocks an RSA key.
+     *
+     * @throws Exception If the fixtures cannot be created.
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        workDirectory = BenchmarkFixtures.createWorkDirectory();
+        document = BenchmarkFixtures.createPdf(workDirectory.resolve("document.pdf"), 1, payloadKb);
+        rewrittenPath = workDirectory.resolve("rewritten.pdf").toString();
+        String keyDirectory = BenchmarkFixtures.createKeyDirectory(workDirectory.resolve("key"),
+                KeyAlgorithm.RSA_4096, KdfCalibrator.MIN_ITERATIONS);
+        context = SigningContextCache.getShared().get(
+                RSAKeyManager.loadPrivateKey(keyDirectory, BenchmarkFixtures.PIN), keyDirectory);
+    }
+
+    /**
+     * Removes the generated files.
+     *
+     * @throws Exception If a file cannot be deleted.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        BenchmarkFixtures.delete(workDirectory);
+    }
+
+    /**
+     * @return The signed document path.
+     * @throws Exception If signing fails.
+     */
+    @Benchmark
+    public String sign() throws Exception {
+        if ("append".equals(mode)) {
+            return MyPdfSigner.signPDF(document, context);
+        }
+        PdfSigner signer = new PdfSigner(new PdfReader(document), new FileOutputStream(rewrittenPath), null,
+                new StampingProperties());
+        signer.signDetached(context.getDigest(), context.getSignature(), context.getCertificateChain(), null, null,
+                null, 0, PdfSigner.CryptoStandard.CADES);
+        return rewrittenPath;
+    }
+}
@@ -0,0 +1,86 @@
+package com.padesigner.benchmarks;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.padesigner.crypto.KdfCalibrator;
+import com.padesigner.crypto.KeyAlgorithm;
+import com.padesigner.crypto.MyPdfSigner;
+import com.padesigner.crypto.RSAKeyManager;
+import com.padesigner.crypto.SigningContext;
+import com.padesigner.crypto.SigningContextCache;
+
+/**
+ * Signing a document with an unlocked key, as done per document by the
+ * signer window, the batch signer and the daemon: read the PDF, reserve the
+ * signature, hash the byte ranges, sign and write the output.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SigningBenchmark {
+
+    @Param({ "1", "100" })
+    public int pages;
+
+    @Param({ "0", "4096" })
+    public int payloadKb;
+
+    @Param({ "rsa", "p256", "ed25519" })
+    public String keyAlgorithm;
+
+    private Path workDirectory;
+    private String document;
+    private SigningContext context;
+
+    /**
+     * Creates the document and unlocks the key.
+     *
+     * @throws Exception If the fixtures cannot be created.
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        workDirectory = BenchmarkFixtures.createWorkDirectory();
+        document = BenchmarkFixtures.createPdf(workDirectory.resolve("document.pdf"), pages, payloadKb);
+        String keyDirectory = BenchmarkFixtures.createKeyDirectory(workDirectory.resolve("key"),
+                KeyAlgorithm.fromName(keyAlgorithm), KdfCalibrator.MIN_ITERATIONS);
+        context = SigningContextCache.getShared().get(
+                RSAKeyManager.loadPrivateKey(keyDirectory, BenchmarkFixtures.PIN), keyDirectory);
+    }
+
+    /**
+     * Removes the generated files.
+     *
+     * @throws Exception If a file cannot be deleted.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        BenchmarkFixtures.delete(workDirectory);
+    }
+
+    /**
+     * @return The signed document path.
+     * @throws Exception If signing fails.
+     */
+    @Benchmark
+    public String sign() throws Exception {
+        return MyPdfSigner.signPDF(document, context);
+    }
+}
@@ -0,0 +1,91 @@
+package com.padesigner.benchmarks;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.security.PublicKey;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.padesigner.crypto.KdfCalibrator;
+import com.padesigner.crypto.KeyAlgorithm;
+import com.padesigner.crypto.MyPdfSigner;
+import com.padesigner.crypto.RSAKeyManager;
+import com.padesigner.crypto.SignatureVerifier;
+import com.padesigner.crypto.SigningContextCache;
+
+/**
+ * Verifying a signed document: parse the signature, hash the byte ranges and
+ * check the signature value.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VerificationBenchmark {
+
+    @Param({ "1", "100" })
+    public int pages;
+
+    @Param({ "0", "4096" })
+    public int payloadKb;
+
+    @Param({ "rsa", "p256", "ed25519" })
+    public String keyAlgorithm;
+
+    private Path workDirectory;
+    private String signedDocument;
+    private PublicKey publicKey;
+
+    /**
+     * Creates and signs the document.
+     *
+     * @throws Exception If the fixtures cannot be created.
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        workDirectory = BenchmarkFixtures.createWorkDirectory();
+        String document = BenchmarkFixtures.createPdf(workDirectory.resolve("document.pdf"), pages, payloadKb);
+        String keyDirectory = BenchmarkFixtures.createKeyDirectory(workDirectory.resolve("key"),
+                KeyAlgorithm.fromName(keyAlgorithm), KdfCalibrator.MIN_ITERATIONS);
+        publicKey = RSAKeyManager.loadPublicKey(new File(keyDirectory + RSAKeyManager.PUBLIC_KEY_FILE));
+        signedDocument = MyPdfSigner.signPDF(document, SigningContextCache.getShared().get(
+                RSAKeyManager.loadPrivateKey(keyDirectory, BenchmarkFixtures.PIN), keyDirectory));
+        if (!SignatureVerifier.verifySignature(signedDocument, publicKey)) {
+            throw new IllegalStateException("Benchmark document does not verify.");
+        }
+    }
+
+    /**
+     * Removes the generated files.
+     *
+     * @throws Exception If a file cannot be deleted.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        BenchmarkFixtures.delete(workDirectory);
+    }
+
+    /**
+     * @return The verification result.
+     * @throws Exception If the document cannot be read.
+     */
+    @Benchmark
+    public boolean verifySignature() throws Exception {
+        return SignatureVerifier.verifySignature(signedDocument, publicKey);
+    }
+}
@@ -0,0 +1,324 @@
+package com.padesigner;
+
+import static com.padesigner.CommandLineSupport.normalizeDirectory;
+import static com.padesigner.CommandLineSupport.readPin;
+import static com.padesigner.CommandLineSupport.requireValue;
+
+import com.padesigner.crypto.CryptoProviders;
+import com.padesigner.crypto.MerkleBatchSigner;
+import com.padesigner.crypto.MyPdfSigner;
+import com.padesigner.crypto.RSAKeyManager;
+import com.padesigner.crypto.SigningContext;
+import com.padesigner.crypto.SigningContextCache;
+import com.padesigner.metrics.Metrics;
+import com.padesigner.revocation.CachingCrlClient;
+import com.padesigner.revocation.CachingOcspClient;
+import com.padesigner.revocation.RevocationCache;
+import com.padesigner.timestamp.PooledTsaClient;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.PrivateKey;
+import java.security.Security;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+/**
+ * BatchSigner is a headless entry point for signing many PDF documents at once.
+ * It unlocks the private key a single time and signs every document found in a
+ * directory tree (or listed in a text file) on a fixed-size worker pool.
+ * <p>
+ * Usage:
+ *
+ * <pre>
+ * BatchSigner --usb &lt;key directory&gt; (--dir &lt;directory&gt; | --list &lt;file&gt;) [--threads &lt;n&gt;] [--merkle]
+ *     [--tsa &lt;url&gt;] [--ltv]
+ * </pre>
+ *
+ * With {@code --merkle} the whole batch is covered by a single private key
+ * operation, see {@link MerkleBatchSigner}. With {@code --tsa} every signature
+ * is timestamped by the given RFC 3161 authority; the workers share pooled
+ * connections to it, see {@link PooledTsaClient}. With {@code --ltv} the OCSP
+ * responses and CRLs for the certificate chain are embedded; they are fetched
+ * once and shared by the whole batch, see {@link RevocationCache}. The
+ * document digest and crypto providers chosen for the key by
+ * {@link CryptoProviders} are printed before signing starts.
+ *
+ * The PIN is read from the console, or from the {@code PADESIGNER_PIN}
+ * environment variable when no console is attached.
+ */
+public class BatchSigner {
+
+    static {
+        Security.addProvider(new BouncyCastleProvider());
+    }
+
+    /**
+     * Main method to run the batch signer.
+     *
+     * @param args Command line arguments, see the class documentation.
+     */
+    public static void main(String[] args) {
+        Metrics.exportFromEnvironment();
+        try {
+            System.exit(run(args));
+        } catch (IllegalArgumentException ex) {
+            System.err.println(ex.getMessage());
+            printUsage();
+            System.exit(2);
+        } catch (Exception ex) {
+            System.err.println("Batch signing failed: " + ex.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Parses the arguments, unlocks the key and signs all selected documents.
+     *
+     * @param args Command line arguments.
+     * @return The process exit code: 0 if every document was signed, 1 otherwise.
+     * @throws Exception If the key cannot be unlocked or the input cannot be read.
+     */
+    private static int run(String[] args) throws Exception {
+        String usbPath = null;
+        String directory = null;
+        String listFile = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean merkle = false;
+        String tsaUrl = null;
+        boolean ltv = false;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--usb" -> usbPath = requireValue(args, ++i);
+                case "--dir" -> directory = requireValue(args, ++i);
+                case "--list" -> listFile = requireValue(args, ++i);
+                case "--threads" -> threads = Integer.parseInt(requireValue(args, ++i));
+                case "--merkle" -> merkle = true;
+                case "--tsa" -> tsaUrl = requireValue(args, ++i);
+                case "--ltv" -> ltv = true;
+                default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        if (usbPath == null) {
+            throw new IllegalArgumentException("Key directory not specified.");
+        }
+        if ((directory == null) == (listFile == null)) {
+            throw new IllegalArgumentException("Specify exactly one of --dir or --list.");
+        }
+        if (threads < 1) {
+            throw new IllegalArgumentException("Thread count must be positive.");
+        }
+        if (merkle && (tsaUrl != null || ltv)) {
+            throw new IllegalArgumentException("Timestamps and LTV data are not supported with --merkle.");
+        }
+
+        List<Path> documents = directory != null
+                ? PdfFileCollector.collectFromDirectory(Paths.get(directory), PdfFileCollector.UNSIGNED)
+                : PdfFileCollector.collectFromList(Paths.get(listFile));
+        if (documents.isEmpty()) {
+            System.out.println("No PDF documents found.");
+            return 0;
+        }
+
+        String keyDirectory = normalizeDirectory(usbPath);
+        PrivateKey privateKey = RSAKeyManager.loadPrivateKey(keyDirectory, readPin());
+        SigningContext context = SigningContextCache.getShared().get(privateKey, keyDirectory);
+        if (tsaUrl != null) {
+            context = context.withTsaClient(new PooledTsaClient(tsaUrl));
+        }
+        if (ltv) {
+            context = context.withRevocationClients(new CachingOcspClient(), new CachingCrlClient());
+        }
+        System.out.println("Crypto providers: " + context.getProviders());
+        return signAll(documents, context, threads, merkle);
+    }
+
+    /**
+     * Signs the given documents on a worker pool and prints per-file results
+     * followed by a throughput summary.
+     *
+     * @param documents The documents to sign.
+     * @param context   The signing context shared by all workers.
+     * @param threads   The number of worker threads.
+     * @param merkle    Whether to sign the batch with a single Merkle root
+     *                  signature.
+     * @return 0 if every document was signed, 1 otherwise.
+     * @throws Exception If the batch root cannot be signed or the calling thread
+     *                   is interrupted.
+     */
+    private static int signAll(List<Path> documents, SigningContext context, int threads, boolean merkle)
+            throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        long started = System.nanoTime();
+        try {
+            List<SigningResult> results = signAccepted(documents, context, pool, merkle);
+
+            int failed = 0;
+            long totalBytes = 0;
+            for (SigningResult result : results) {
+                System.out.println(result);
+                if (result.error() == null) {
+                    totalBytes += result.bytes();
+                } else {
+                    failed++;
+                }
+            }
+
+            printSummary(documents.size(), failed, totalBytes, System.nanoTime() - started, threads);
+            return failed == 0 ? 0 : 1;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Signs the unsigned PDF documents and reports every other entry as
+     * failed. Listed documents are not filtered when they are collected, and
+     * signing a file that is not a PDF or was already signed would at best
+     * fail and at worst produce a misleading output.
+     *
+     * @param documents The documents to sign.
+     * @param context   The signing context shared by all workers.
+     * @param pool      The worker pool.
+     * @param merkle    Whether to sign the batch with a single Merkle root
+     *                  signature.
+     * @return One result per document, in input order.
+     * @throws Exception If the batch root cannot be signed or the calling thread
+     *                   is interrupted.
+     */
+    private static List<SigningResult> signAccepted(List<Path> documents, SigningContext context,
+            ExecutorService pool, boolean merkle) throws Exception {
+        List<Path> accepted = documents.stream().filter(PdfFileCollector.UNSIGNED).collect(Collectors.toList());
+        Iterator<SigningResult> signed = accepted.isEmpty() ? Collections.emptyIterator()
+                : (merkle ? signMerkleBatch(accepted, context, pool) : signIndividually(accepted, context, pool))
+                        .iterator();
+        List<SigningResult> results = new ArrayList<>(documents.size());
+        for (Path document : documents) {
+            results.add(PdfFileCollector.UNSIGNED.test(document) ? signed.next()
+                    : new SigningResult(document, null, 0, -1, "Not an unsigned PDF document."));
+        }
+        return results;
+    }
+
+    /**
+     * Signs every document with its own signature.
+     *
+     * @param documents The documents to sign.
+     * @param context   The signing context shared by all workers.
+     * @param pool      The worker pool.
+     * @return One result per document, in input order.
+     * @throws InterruptedException If the calling thread is interrupted while
+     *                              waiting for results.
+     */
+    private static List<SigningResult> signIndividually(List<Path> documents, SigningContext context,
+            ExecutorService pool) throws InterruptedException {
+        List<Future<SigningResult>> futures = new ArrayList<>(documents.size());
+        for (Path document : documents) {
+            futures.add(pool.submit(() -> signOne(document, context)));
+        }
+        List<SigningResult> results = new ArrayList<>(documents.size());
+        for (Future<SigningResult> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (ExecutionException ex) {
+                throw new IllegalStateException(ex.getCause());
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Signs all documents with one Merkle root signature.
+     *
+     * @param documents The documents to sign.
+     * @param context   The signing context.
+     * @param pool      The worker pool used for PDF processing.
+     * @return One result per document, in input order.
+     * @throws Exception If the batch root cannot be signed.
+     */
+    private static List<SigningResult> signMerkleBatch(List<Path> documents, SigningContext context,
+            ExecutorService pool) throws Exception {
+        List<String> paths = documents.stream().map(Path::toString).collect(Collectors.toList());
+        List<SigningResult> results = new ArrayList<>(documents.size());
+        for (MerkleBatchSigner.Result result : MerkleBatchSigner.signBatch(paths, context, pool)) {
+            Path document = Paths.get(result.pdfFilePath());
+            results.add(result.error() == null
+                    ? new SigningResult(document, result.outputPath(), Files.size(document), -1, null)
+                    : new SigningResult(document, null, 0, -1, result.error().getMessage()));
+        }
+        return results;
+    }
+
+    /**
+     * Signs a single document and captures the outcome instead of throwing.
+     *
+     * @param document The document to sign.
+     * @param context  The signing context.
+     * @return The result of signing the document.
+     */
+    private static SigningResult signOne(Path document, SigningContext context) {
+        long started = System.nanoTime();
+        try {
+            long bytes = Files.size(document);
+            String outputPath = MyPdfSigner.signPDF(document.toString(), context);
+            return new SigningResult(document, outputPath, bytes, System.nanoTime() - started, null);
+        } catch (Exception ex) {
+            return new SigningResult(document, null, 0, System.nanoTime() - started, ex.getMessage());
+        }
+    }
+
+    /**
+     * Prints the number of processed documents and the overall throughput.
+     *
+     * @param total        The number of documents processed.
+     * @param failed       The number of documents that could not be signed.
+     * @param totalBytes   The combined size of the signed documents.
+     * @param elapsedNanos The wall-clock time of the whole batch.
+     * @param threads      The number of worker threads used.
+     */
+    private static void printSummary(int total, int failed, long totalBytes, long elapsedNanos, int threads) {
+        double seconds = elapsedNanos / 1_000_000_000.0;
+        System.out.printf("Signed %d of %d documents (%d failed) in %.2f s using %d threads%n",
+                total - failed, total, failed, seconds, threads);
+        System.out.printf("Throughput: %.1f documents/s, %.1f MB/s%n",
+                (total - failed) / seconds, totalBytes / (1024.0 * 1024.0) / seconds);
+    }
+
+    /**
+     * Prints the command line usage.
+     */
+    private static void printUsage() {
+        System.err.println("Usage: BatchSigner --usb <key directory> (--dir <directory> | --list <file>)"
+                + " [--threads <n>] [--merkle] [--tsa <url>] [--ltv]");
+    }
+
+    /**
+     * The outcome of signing one document.
+     *
+     * @param document     The source document.
+     * @param outputPath   The signed document, or null on failure.
+     * @param bytes        The size of the source document.
+     * @param elapsedNanos The time spent on this document, or -1 if unknown.
+     * @param error        The failure message, or null on success.
+     */
+    private record SigningResult(Path document, String outputPath, long bytes, long elapsedNanos, String error) {
+        @Override
+        public String toString() {
+            String timing = elapsedNanos < 0 ? "" : String.format(" (%d ms)", elapsedNanos / 1_000_000);
+            return error == null
+                    ? String.format("OK    %s -> %s%s", document, outputPath, timing)
+                    : String.format("FAIL  %s: %s%s", document, error, timing);
+        }
+    }
+}
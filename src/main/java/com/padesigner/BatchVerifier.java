@@ -0,0 +1,165 @@
+package com.padesigner;
+
+import static com.padesigner.CommandLineSupport.requireValue;
+
+import com.padesigner.crypto.BulkVerifier;
+import com.padesigner.crypto.PublicKeyRing;
+import com.padesigner.crypto.RSAKeyManager;
+import com.padesigner.crypto.VerificationCache;
+import com.padesigner.metrics.Metrics;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.Security;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * BatchVerifier is a headless entry point for re-verifying many signed PDF
+ * documents, e.g. during archive audits. Documents are verified on a bounded
+ * worker pool with a time budget per file. With {@code --cache}, results are
+ * remembered between runs and unchanged documents are not verified again.
+ * <p>
+ * Usage:
+ *
+ * <pre>
+ * BatchVerifier (--key &lt;public key&gt; | --keyring &lt;directory&gt;)
+ *     (--dir &lt;directory&gt; | --list &lt;file&gt;)
+ *     [--threads &lt;n&gt;] [--timeout &lt;seconds&gt;] [--cache &lt;file&gt;]
+ * </pre>
+ *
+ * With {@code --keyring}, every PEM public key or certificate below the given
+ * directory is trusted and each signature is matched to its signer's key.
+ */
+public class BatchVerifier {
+
+    static {
+        Security.addProvider(new BouncyCastleProvider());
+    }
+
+    /**
+     * Main method to run the batch verifier.
+     *
+     * @param args Command line arguments, see the class documentation.
+     */
+    public static void main(String[] args) {
+        Metrics.exportFromEnvironment();
+        try {
+            System.exit(run(args));
+        } catch (IllegalArgumentException ex) {
+            System.err.println(ex.getMessage());
+            printUsage();
+            System.exit(2);
+        } catch (Exception ex) {
+            System.err.println("Batch verification failed: " + ex.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Parses the arguments and verifies all selected documents.
+     *
+     * @param args Command line arguments.
+     * @return The process exit code: 0 if every signature is valid, 1 otherwise.
+     * @throws Exception If the public key or the input cannot be read.
+     */
+    private static int run(String[] args) throws Exception {
+        String keyFile = null;
+        String keyRingDirectory = null;
+        String directory = null;
+        String listFile = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        Duration timeout = BulkVerifier.DEFAULT_TIMEOUT;
+        String cacheFile = null;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--key" -> keyFile = requireValue(args, ++i);
+                case "--keyring" -> keyRingDirectory = requireValue(args, ++i);
+                case "--dir" -> directory = requireValue(args, ++i);
+                case "--list" -> listFile = requireValue(args, ++i);
+                case "--threads" -> threads = Integer.parseInt(requireValue(args, ++i));
+                case "--timeout" -> timeout = Duration.ofSeconds(Long.parseLong(requireValue(args, ++i)));
+                case "--cache" -> cacheFile = requireValue(args, ++i);
+                default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        if ((keyFile == null) == (keyRingDirectory == null)) {
+            throw new IllegalArgumentException("Specify exactly one of --key or --keyring.");
+        }
+        if ((directory == null) == (listFile == null)) {
+            throw new IllegalArgumentException("Specify exactly one of --dir or --list.");
+        }
+
+        PublicKeyRing keyRing = keyFile != null ? PublicKeyRing.of(RSAKeyManager.loadPublicKey(new File(keyFile)))
+                : PublicKeyRing.load(Paths.get(keyRingDirectory));
+        if (keyRing.size() == 0) {
+            throw new IllegalArgumentException("No public keys found in " + keyRingDirectory);
+        }
+        List<Path> documents = directory != null
+                ? PdfFileCollector.collectFromDirectory(Paths.get(directory), PdfFileCollector.ALL)
+                : PdfFileCollector.collectFromList(Paths.get(listFile));
+        if (documents.isEmpty()) {
+            System.out.println("No PDF documents found.");
+            return 0;
+        }
+
+        VerificationCache cache = cacheFile != null
+                ? VerificationCache.open(Paths.get(cacheFile), VerificationCache.DEFAULT_MAX_ENTRIES)
+                : null;
+        BulkVerifier verifier = new BulkVerifier(threads, timeout, cache);
+        BulkVerifier.Summary summary;
+        try {
+            summary = verifier.verifyAll(documents, keyRing, BatchVerifier::printResult);
+        } finally {
+            if (cache != null) {
+                cache.save();
+            }
+        }
+        printSummary(summary, threads);
+        return summary.valid() == summary.total() ? 0 : 1;
+    }
+
+    /**
+     * Prints the result of one document.
+     *
+     * @param result The verification result.
+     */
+    private static void printResult(BulkVerifier.Result result) {
+        long millis = result.elapsedNanos() / 1_000_000;
+        if (result.cached()) {
+            System.out.printf("%-8s %s (cached)%n", result.status(), result.document());
+        } else if (result.message() == null) {
+            System.out.printf("%-8s %s (%d ms)%n", result.status(), result.document(), millis);
+        } else {
+            System.out.printf("%-8s %s: %s (%d ms)%n", result.status(), result.document(), result.message(),
+                    millis);
+        }
+    }
+
+    /**
+     * Prints the counts per outcome and the overall throughput.
+     *
+     * @param summary The aggregated results.
+     * @param threads The number of worker threads used.
+     */
+    private static void printSummary(BulkVerifier.Summary summary, int threads) {
+        System.out.printf("Verified %d documents in %.2f s using %d threads: %d valid, %d invalid, %d errors,"
+                + " %d timed out%n", summary.total(), summary.seconds(), threads, summary.valid(), summary.invalid(),
+                summary.errors(), summary.timedOut());
+        System.out.printf("Throughput: %.1f documents/s, %.1f MB/s%n", summary.documentsPerSecond(),
+                summary.megabytesPerSecond());
+    }
+
+    /**
+     * Prints the command line usage.
+     */
+    private static void printUsage() {
+        System.err.println("Usage: BatchVerifier (--key <public key> | --keyring <directory>)"
+                + " (--dir <directory> | --list <file>)"
+                + " [--threads <n>] [--timeout <seconds>] [--cache <file>]");
+    }
+}
@@ -0,0 +1,59 @@
+package com.padesigner;
+
+import java.io.Console;
+import java.io.File;
+
+/**
+ * CommandLineSupport holds the argument and PIN handling shared by the
+ * headless entry points.
+ */
+public class CommandLineSupport {
+
+    private static final String PIN_ENVIRONMENT_VARIABLE = "PADESIGNER_PIN";
+
+    /**
+     * Reads the PIN from the console, falling back to the {@code PADESIGNER_PIN}
+     * environment variable when no console is available.
+     *
+     * @return The PIN.
+     */
+    public static String readPin() {
+        Console console = System.console();
+        if (console != null) {
+            char[] pin = console.readPassword("Enter PIN: ");
+            if (pin != null && pin.length > 0) {
+                return new String(pin);
+            }
+        }
+        String pin = System.getenv(PIN_ENVIRONMENT_VARIABLE);
+        if (pin == null || pin.isEmpty()) {
+            throw new IllegalArgumentException("PIN not provided.");
+        }
+        return pin;
+    }
+
+    /**
+     * Ensures a directory path ends with a separator, as expected by
+     * RSAKeyManager.
+     *
+     * @param path The directory path.
+     * @return The path with a trailing separator.
+     */
+    public static String normalizeDirectory(String path) {
+        return path.endsWith(File.separator) ? path : path + File.separator;
+    }
+
+    /**
+     * Returns the value following an option, failing if it is missing.
+     *
+     * @param args  Command line arguments.
+     * @param index The index of the expected value.
+     * @return The option value.
+     */
+    public static String requireValue(String[] args, int index) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException("Missing value for " + args[index - 1]);
+        }
+        return args[index];
+    }
+}
@@ -0,0 +1,214 @@
+package com.padesigner;
+
+import static com.padesigner.CommandLineSupport.normalizeDirectory;
+import static com.padesigner.CommandLineSupport.readPin;
+import static com.padesigner.CommandLineSupport.requireValue;
+
+import com.padesigner.crypto.CryptoProviders;
+import com.padesigner.crypto.KdfCalibrator;
+import com.padesigner.crypto.KeyAlgorithm;
+import com.padesigner.crypto.KeyPairPool;
+import com.padesigner.crypto.RSAKeyManager;
+import com.padesigner.metrics.Metrics;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.Security;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * KeyProvisioner is a headless entry point for preparing many signing tokens at
+ * once. It creates numbered key directories, each holding an encrypted private
+ * key, the signer certificate and the public key, with key pairs generated in
+ * parallel by a {@link KeyPairPool}.
+ * <p>
+ * Usage:
+ *
+ * <pre>
+ * KeyProvisioner --out &lt;directory&gt; --count &lt;n&gt; [--threads &lt;n&gt;] [--prefix &lt;name&gt;]
+ *                [--algorithm rsa|p256|p384|ed25519] [--unlock-ms &lt;n&gt;]
+ * </pre>
+ *
+ * Every directory is protected with the same PIN, read as by
+ * {@link BatchSigner}. RSA 4096 keys are generated unless another
+ * {@link KeyAlgorithm} is chosen. The key derivation cost is calibrated on
+ * this machine for the requested unlock time (default
+ * {@link KdfCalibrator#DEFAULT_TARGET}); the chosen iteration count and the
+ * measured unlock time are printed before the keys are written, followed by
+ * the document digest and crypto providers {@link CryptoProviders} chooses
+ * for the key type on this machine and the measurements behind the choice.
+ */
+public class KeyProvisioner {
+
+    static {
+        Security.addProvider(new BouncyCastleProvider());
+    }
+
+    private static final String DEFAULT_PREFIX = "key-";
+
+    /**
+     * Main method to run the key provisioner.
+     *
+     * @param args Command line arguments, see the class documentation.
+     */
+    public static void main(String[] args) {
+        Metrics.exportFromEnvironment();
+        try {
+            System.exit(run(args));
+        } catch (IllegalArgumentException ex) {
+            System.err.println(ex.getMessage());
+            printUsage();
+            System.exit(2);
+        } catch (Exception ex) {
+            System.err.println("Key provisioning failed: " + ex.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Parses the arguments and provisions the requested key directories.
+     *
+     * @param args Command line arguments.
+     * @return The process exit code: 0 if every directory was provisioned, 1
+     *         otherwise.
+     * @throws Exception If the output directory cannot be created.
+     */
+    private static int run(String[] args) throws Exception {
+        String outputDirectory = null;
+        int count = 0;
+        int threads = Runtime.getRuntime().availableProcessors();
+        String prefix = DEFAULT_PREFIX;
+        KeyAlgorithm keyAlgorithm = KeyAlgorithm.RSA_4096;
+        Duration unlockTime = KdfCalibrator.DEFAULT_TARGET;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--out" -> outputDirectory = requireValue(args, ++i);
+                case "--count" -> count = Integer.parseInt(requireValue(args, ++i));
+                case "--threads" -> threads = Integer.parseInt(requireValue(args, ++i));
+                case "--prefix" -> prefix = requireValue(args, ++i);
+                case "--algorithm" -> keyAlgorithm = KeyAlgorithm.fromName(requireValue(args, ++i));
+                case "--unlock-ms" -> unlockTime = Duration.ofMillis(Long.parseLong(requireValue(args, ++i)));
+                default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        if (outputDirectory == null) {
+            throw new IllegalArgumentException("Output directory not specified.");
+        }
+        if (count < 1) {
+            throw new IllegalArgumentException("Key count must be positive.");
+        }
+        if (threads < 1) {
+            throw new IllegalArgumentException("Thread count must be positive.");
+        }
+        if (unlockTime.isNegative() || unlockTime.isZero()) {
+            throw new IllegalArgumentException("Unlock time must be positive.");
+        }
+
+        String pin = readPin();
+        if (pin.length() < 4) {
+            throw new IllegalArgumentException("PIN is too short");
+        }
+
+        Path root = Paths.get(outputDirectory);
+        Files.createDirectories(root);
+        int width = String.valueOf(count).length();
+        List<Path> directories = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            Path directory = root.resolve(prefix + String.format("%0" + width + "d", i));
+            if (Files.exists(directory.resolve(RSAKeyManager.PRIVATE_KEY_FILE))) {
+                throw new IllegalArgumentException("Key directory already provisioned: " + directory);
+            }
+            directories.add(directory);
+        }
+
+        int iterations = KdfCalibrator.calibrate(unlockTime);
+        System.out.printf("Key derivation: PBKDF2-HMAC-SHA256, %d iterations, measured unlock time %d ms%n",
+                iterations, KdfCalibrator.measure(iterations).toMillis());
+        CryptoProviders.Selection providers = CryptoProviders.select(keyAlgorithm);
+        System.out.println("Crypto providers: " + providers);
+        for (CryptoProviders.Measurement measurement : providers.measurements()) {
+            System.out.println("    " + measurement);
+        }
+
+        return provisionAll(directories, pin, threads, keyAlgorithm, iterations);
+    }
+
+    /**
+     * Provisions the given directories. Key pairs are generated by a pool with
+     * one generator per thread while separate workers encrypt and write them.
+     *
+     * @param directories  The key directories to create.
+     * @param pin          The PIN protecting every private key.
+     * @param threads      The number of generator threads.
+     * @param keyAlgorithm The type of the generated keys.
+     * @param iterations   The PBKDF2 iteration count protecting every key.
+     * @return 0 if every directory was provisioned, 1 otherwise.
+     * @throws InterruptedException If the calling thread is interrupted.
+     */
+    private static int provisionAll(List<Path> directories, String pin, int threads, KeyAlgorithm keyAlgorithm,
+            int iterations) throws InterruptedException {
+        long started = System.nanoTime();
+        int failed = 0;
+        ExecutorService writers = Executors.newFixedThreadPool(threads);
+        try (KeyPairPool keyPairPool = new KeyPairPool(keyAlgorithm, threads, threads)) {
+            List<Future<String>> futures = new ArrayList<>(directories.size());
+            for (Path directory : directories) {
+                futures.add(writers.submit(() -> provisionOne(directory, pin, keyPairPool, iterations)));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    futures.get(i).get();
+                    System.out.println("OK    " + directories.get(i));
+                } catch (ExecutionException ex) {
+                    failed++;
+                    System.out.println("FAIL  " + directories.get(i) + ": " + ex.getCause().getMessage());
+                }
+            }
+        } finally {
+            writers.shutdownNow();
+        }
+
+        double seconds = (System.nanoTime() - started) / 1_000_000_000.0;
+        int total = directories.size();
+        System.out.printf("Provisioned %d of %d %s key directories (%d failed) in %.2f s using %d threads%n",
+                total - failed, total, keyAlgorithm, failed, seconds, threads);
+        System.out.printf("Throughput: %.2f keys/s%n", (total - failed) / seconds);
+        return failed == 0 ? 0 : 1;
+    }
+
+    /**
+     * Creates one key directory with a key pair taken from the pool.
+     *
+     * @param directory   The key directory.
+     * @param pin         The PIN protecting the private key.
+     * @param keyPairPool The source of key pairs.
+     * @param iterations  The PBKDF2 iteration count.
+     * @return The directory path.
+     * @throws Exception If the keys cannot be generated or saved.
+     */
+    private static String provisionOne(Path directory, String pin, KeyPairPool keyPairPool, int iterations)
+            throws Exception {
+        Files.createDirectories(directory);
+        String path = normalizeDirectory(directory.toString());
+        RSAKeyManager.saveKeys(keyPairPool.take(), pin, path, path, iterations);
+        return path;
+    }
+
+    /**
+     * Prints the command line usage.
+     */
+    private static void printUsage() {
+        System.err.println("Usage: KeyProvisioner --out <directory> --count <n> [--threads <n>] [--prefix <name>]"
+                + " [--algorithm rsa|p256|p384|ed25519] [--unlock-ms <n>]");
+    }
+}
@@ -1,5 +1,6 @@
 package com.padesigner;
 
+import com.padesigner.metrics.Metrics;
 import com.padesigner.ui.MainMenu;
 
 import javax.swing.*;
@@ -16,6 +17,7 @@ public class Main {
      * @param args Command line arguments (not used).
      */
     public static void main(String[] args) {
+        Metrics.exportFromEnvironment();
         SwingUtilities.invokeLater(MainMenu::new);
     }
 }
\ No newline at end of file
@@ -0,0 +1,76 @@
+package com.padesigner;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * PdfFileCollector gathers the documents processed by the headless batch tools,
+ * either by walking a directory tree or by reading a list file.
+ */
+public class PdfFileCollector {
+
+    /**
+     * Accepts PDF files that were not produced by a previous signing run.
+     */
+    public static final Predicate<Path> UNSIGNED = path -> isPdf(path)
+            && !path.toString().toLowerCase(Locale.ROOT).endsWith("_signed.pdf");
+
+    /**
+     * Accepts every PDF file.
+     */
+    public static final Predicate<Path> ALL = PdfFileCollector::isPdf;
+
+    /**
+     * Recursively collects the PDF files below the given directory.
+     *
+     * @param directory The root directory.
+     * @param filter    Selects the files to include.
+     * @return The PDF files found, in a stable order.
+     * @throws IOException If the directory cannot be walked.
+     */
+    public static List<Path> collectFromDirectory(Path directory, Predicate<Path> filter) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            throw new IllegalArgumentException("Directory not found: " + directory);
+        }
+        try (Stream<Path> paths = Files.walk(directory)) {
+            return paths.filter(Files::isRegularFile)
+                    .filter(filter)
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Reads document paths from a text file containing one path per line.
+     * Blank lines and lines starting with '#' are ignored. The listed paths are
+     * returned as they are; callers check them with {@link #UNSIGNED} or
+     * {@link #ALL} so that they can report the entries they reject.
+     *
+     * @param listFile The file listing the documents.
+     * @return The listed document paths.
+     * @throws IOException If the list file cannot be read.
+     */
+    public static List<Path> collectFromList(Path listFile) throws IOException {
+        try (Stream<String> lines = Files.lines(listFile)) {
+            return lines.map(String::trim)
+                    .filter(line -> !line.isEmpty() && !line.startsWith("#"))
+                    .map(Paths::get)
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * @param path A file path.
+     * @return true if the file name has a ".pdf" extension, in any case.
+     */
+    private static boolean isPdf(Path path) {
+        return path.toString().toLowerCase(Locale.ROOT).endsWith(".pdf");
+    }
+}
@@ -0,0 +1,241 @@
+package com.padesigner;
+
+import static com.padesigner.CommandLineSupport.normalizeDirectory;
+import static com.padesigner.CommandLineSupport.readPin;
+import static com.padesigner.CommandLineSupport.requireValue;
+
+import com.padesigner.crypto.PublicKeyRing;
+import com.padesigner.crypto.RSAKeyManager;
+import com.padesigner.crypto.SigningContext;
+import com.padesigner.crypto.SigningContextCache;
+import com.padesigner.daemon.HttpFrontend;
+import com.padesigner.daemon.SigningService;
+import com.padesigner.daemon.UnixSocketFrontend;
+import com.padesigner.metrics.Metrics;
+import com.padesigner.revocation.CachingCrlClient;
+import com.padesigner.revocation.CachingOcspClient;
+import com.padesigner.timestamp.PooledTsaClient;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.PrivateKey;
+import java.security.Security;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * SigningDaemon is a resident signing service for document pipelines. It
+ * unlocks the private key once at start-up and then signs and verifies
+ * documents on request, so each request costs only the signature itself
+ * instead of a JVM start and a key unlock.
+ * <p>
+ * Usage:
+ *
+ * <pre>
+ * SigningDaemon --usb &lt;key directory&gt; [--port &lt;n&gt;] [--socket &lt;path&gt;]
+ *     [--token-file &lt;path&gt;] [--threads &lt;n&gt;] [--queue &lt;n&gt;] [--timeout &lt;seconds&gt;]
+ *     [--root &lt;directory&gt;] [--keyring &lt;directory&gt;] [--tsa &lt;url&gt;] [--ltv]
+ * </pre>
+ *
+ * The service listens on loopback HTTP ({@code --port}, see
+ * {@link HttpFrontend}), on a Unix domain socket ({@code --socket}, see
+ * {@link UnixSocketFrontend}) or both; without either option it listens on
+ * the socket {@value #DEFAULT_SOCKET} in the private state directory
+ * {@code ~/.padesigner}, which is created readable by its owner only. HTTP
+ * clients must present the access token written at start-up to
+ * {@code --token-file}, by default {@value #DEFAULT_TOKEN_FILE} in the same
+ * directory. {@code --root} restricts requests to
+ * documents below a directory. Verify requests trust the signing key unless
+ * a keyring directory is given. With {@code --tsa} every signature is
+ * timestamped by the given RFC 3161 authority, see {@link PooledTsaClient}.
+ * With {@code --ltv} revocation data for the certificate chain is embedded,
+ * fetched through the shared revocation cache.
+ * The document digest and crypto providers chosen for the key by
+ * {@link com.padesigner.crypto.CryptoProviders} are printed at start-up.
+ * The PIN is read as by {@link BatchSigner}.
+ * The daemon runs until it is terminated.
+ */
+public class SigningDaemon {
+
+    static {
+        Security.addProvider(new BouncyCastleProvider());
+    }
+
+    /**
+     * The name of the socket used when no listener is configured.
+     */
+    public static final String DEFAULT_SOCKET = "daemon.sock";
+
+    /**
+     * The name of the file receiving the HTTP access token when no other is
+     * given.
+     */
+    public static final String DEFAULT_TOKEN_FILE = "daemon.token";
+
+    /**
+     * Main method to run the signing daemon.
+     *
+     * @param args Command line arguments, see the class documentation.
+     */
+    public static void main(String[] args) {
+        Metrics.exportFromEnvironment();
+        try {
+            run(args);
+        } catch (IllegalArgumentException ex) {
+            System.err.println(ex.getMessage());
+            printUsage();
+            System.exit(2);
+        } catch (Exception ex) {
+            System.err.println("Signing daemon failed: " + ex.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Parses the arguments, unlocks the key and serves requests until the
+     * process is terminated.
+     *
+     * @param args Command line arguments.
+     * @throws Exception If the key cannot be unlocked or a listener cannot be
+     *                   started.
+     */
+    private static void run(String[] args) throws Exception {
+        String usbPath = null;
+        Integer port = null;
+        String socketPath = null;
+        String tokenFile = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int queueCapacity = SigningService.DEFAULT_QUEUE_CAPACITY;
+        Duration timeout = SigningService.DEFAULT_REQUEST_TIMEOUT;
+        String root = null;
+        String keyRingDirectory = null;
+        String tsaUrl = null;
+        boolean ltv = false;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--usb" -> usbPath = requireValue(args, ++i);
+                case "--port" -> port = Integer.parseInt(requireValue(args, ++i));
+                case "--socket" -> socketPath = requireValue(args, ++i);
+                case "--token-file" -> tokenFile = requireValue(args, ++i);
+                case "--threads" -> threads = Integer.parseInt(requireValue(args, ++i));
+                case "--queue" -> queueCapacity = Integer.parseInt(requireValue(args, ++i));
+                case "--timeout" -> timeout = Duration.ofSeconds(Long.parseLong(requireValue(args, ++i)));
+                case "--root" -> root = requireValue(args, ++i);
+                case "--keyring" -> keyRingDirectory = requireValue(args, ++i);
+                case "--tsa" -> tsaUrl = requireValue(args, ++i);
+                case "--ltv" -> ltv = true;
+                default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        if (usbPath == null) {
+            throw new IllegalArgumentException("Key directory not specified.");
+        }
+        if (threads < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("Thread count and queue size must be positive.");
+        }
+        if (port == null && socketPath == null) {
+            socketPath = stateDirectory().resolve(DEFAULT_SOCKET).toString();
+        }
+        if (port != null && tokenFile == null) {
+            tokenFile = stateDirectory().resolve(DEFAULT_TOKEN_FILE).toString();
+        }
+
+        String keyDirectory = normalizeDirectory(usbPath);
+        PrivateKey privateKey = RSAKeyManager.loadPrivateKey(keyDirectory, readPin());
+        SigningContext context = SigningContextCache.getShared().get(privateKey, keyDirectory);
+        if (tsaUrl != null) {
+            context = context.withTsaClient(new PooledTsaClient(tsaUrl));
+        }
+        if (ltv) {
+            context = context.withRevocationClients(new CachingOcspClient(), new CachingCrlClient());
+        }
+        PublicKeyRing keyRing = keyRingDirectory != null ? PublicKeyRing.load(Paths.get(keyRingDirectory))
+                : PublicKeyRing.of(context.getPublicKey());
+
+        SigningService service = new SigningService(context, keyRing, root != null ? Paths.get(root) : null,
+                threads, queueCapacity, timeout);
+        HttpFrontend http = null;
+        UnixSocketFrontend socket = null;
+        try {
+            if (port != null) {
+                http = new HttpFrontend(service, port, Path.of(tokenFile));
+                System.out.println("Listening on http://127.0.0.1:" + http.getPort() + ", access token in "
+                        + tokenFile);
+            }
+            if (socketPath != null) {
+                socket = new UnixSocketFrontend(service, Path.of(socketPath));
+                System.out.println("Listening on " + socket.getSocketPath());
+            }
+        } catch (Exception ex) {
+            close(http, socket, service);
+            throw ex;
+        }
+        System.out.printf("Signing with a %s key using %d threads (queue %d), %s%n", context.getKeyAlgorithm(),
+                threads, queueCapacity, context.getProviders());
+
+        CountDownLatch stopped = new CountDownLatch(1);
+        HttpFrontend httpFrontend = http;
+        UnixSocketFrontend socketFrontend = socket;
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            close(httpFrontend, socketFrontend, service);
+            stopped.countDown();
+        }, "signing-daemon-shutdown"));
+        stopped.await();
+    }
+
+    /**
+     * Returns the directory holding the default socket and token file,
+     * creating it readable by its owner only if it does not exist.
+     *
+     * @return The directory.
+     * @throws IOException If the directory cannot be created.
+     */
+    private static Path stateDirectory() throws IOException {
+        Path directory = Paths.get(System.getProperty("user.home"), ".padesigner");
+        if (!Files.isDirectory(directory)) {
+            try {
+                Files.createDirectories(directory,
+                        PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+            } catch (UnsupportedOperationException e) {
+                Files.createDirectories(directory);
+            }
+        }
+        return directory;
+    }
+
+    /**
+     * Stops the listeners and then the service.
+     *
+     * @param http    The HTTP listener, or null.
+     * @param socket  The Unix socket listener, or null.
+     * @param service The service.
+     */
+    private static void close(HttpFrontend http, UnixSocketFrontend socket, SigningService service) {
+        if (http != null) {
+            http.close();
+        }
+        if (socket != null) {
+            try {
+                socket.close();
+            } catch (Exception ex) {
+                System.err.println("Error closing socket: " + ex.getMessage());
+            }
+        }
+        service.close();
+    }
+
+    /**
+     * Prints the command line usage.
+     */
+    private static void printUsage() {
+        System.err.println("Usage: SigningDaemon --usb <key directory> [--port <n>] [--socket <path>]"
+                + " [--token-file <path>] [--threads <n>] [--queue <n>] [--timeout <seconds>] [--root <directory>]"
+                + " [--keyring <directory>] [--tsa <url>] [--ltv]");
+    }
+}
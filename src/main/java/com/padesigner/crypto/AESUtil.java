@@ -1,69 +1,280 @@
 package com.padesigner.crypto;
 
+import javax.crypto.AEADBadTagException;
 import javax.crypto.Cipher;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.PBEKeySpec;
 import javax.crypto.spec.SecretKeySpec;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
-import java.security.KeyFactory;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
 import java.security.MessageDigest;
 import java.security.PrivateKey;
-import java.security.interfaces.RSAPrivateKey;
-import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+import org.bouncycastle.asn1.pkcs.PrivateKeyInfo;
+import org.bouncycastle.openssl.jcajce.JcaPEMKeyConverter;
+
+import com.padesigner.jfr.KeyUnlockEvent;
+import com.padesigner.metrics.PhaseTimer;
 
 /**
- * Utility class for AES encryption and decryption, and SHA-256 hashing.
- * This class provides methods to encrypt and decrypt private keys using AES,
- * generate SHA-256 hashes from PINs, and handle file I/O for these operations.
+ * Utility class for encrypting and decrypting private keys with a PIN.
+ * <p>
+ * Key files are written in a versioned format: a header naming the cipher,
+ * the key derivation function and its parameters, followed by the encrypted
+ * PKCS#8 key. The header layout (all integers big-endian) is
+ *
+ * <pre>
+ * "PADK" | version (1) | cipher (1) | kdf (1) | iterations (4) | salt length (1) | salt | IV length (1) | IV
+ * </pre>
+ *
+ * Version 1 uses PBKDF2-HMAC-SHA256 and AES-256-GCM; the header is
+ * authenticated as additional data, so it cannot be altered without failing
+ * decryption. The iteration count is chosen by {@link KdfCalibrator} so that
+ * unlocking takes a known time on the host that created the key.
+ * <p>
+ * Files without the header are legacy keys encrypted with AES/ECB under the
+ * SHA-256 hash of the PIN; they are still decrypted but never written.
+ * <p>
+ * Unlocking is timed per phase into the {@code padesigner_key_unlock_*_seconds}
+ * metrics: reading the file, deriving the key, decrypting and parsing. Each
+ * unlock also emits a {@link KeyUnlockEvent} for Flight Recorder.
  */
 public class AESUtil {
+
+    /**
+     * The current key file format version.
+     */
+    public static final int FORMAT_VERSION = 1;
+
+    private static final byte[] MAGIC = { 'P', 'A', 'D', 'K' };
+    private static final byte CIPHER_AES_256_GCM = 1;
+    private static final byte KDF_PBKDF2_HMAC_SHA256 = 1;
+    private static final int KEY_LENGTH_BITS = 256;
+    private static final int SALT_LENGTH = 16;
+    private static final int IV_LENGTH = 12;
+    private static final int TAG_LENGTH_BITS = 128;
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
     /**
-     * Encrypts a private key using AES and saves it to a file.
-     * The PIN is used to derive the AES encryption key via SHA-256 hashing.
+     * Encrypts a private key and saves it to a file, using the iteration count
+     * calibrated for this host (see {@link KdfCalibrator#getDefaultIterations()}).
      *
      * @param privateKey The private key to encrypt.
-     * @param pin        The PIN used to generate the AES key.
+     * @param pin        The PIN used to derive the AES key.
      * @param outputFile The file where the encrypted private key will be saved.
      * @throws Exception If an error occurs during encryption or file writing.
      */
     public static void encryptAndSavePrivateKey(PrivateKey privateKey, String pin, File outputFile) throws Exception {
-        byte[] key = sha256(pin);
-        byte[] encrypted = encryptWithAES(privateKey.getEncoded(), key);
-        writeFile(outputFile, encrypted);
+        encryptAndSavePrivateKey(privateKey, pin, outputFile, KdfCalibrator.getDefaultIterations());
     }
 
     /**
-     * Decrypts an RSA private key from a file using AES.
-     * The PIN is used to derive the AES decryption key via SHA-256 hashing.
+     * Encrypts a private key in the current key file format and saves it to a
+     * file.
+     *
+     * @param privateKey The private key to encrypt.
+     * @param pin        The PIN used to derive the AES key.
+     * @param outputFile The file where the encrypted private key will be saved.
+     * @param iterations The PBKDF2 iteration count.
+     * @throws Exception If an error occurs during encryption or file writing.
+     */
+    public static void encryptAndSavePrivateKey(PrivateKey privateKey, String pin, File outputFile, int iterations)
+            throws Exception {
+        if (iterations < 1) {
+            throw new IllegalArgumentException("Iteration count must be positive.");
+        }
+        byte[] salt = randomBytes(SALT_LENGTH);
+        byte[] iv = randomBytes(IV_LENGTH);
+        byte[] header = ByteBuffer.allocate(MAGIC.length + 9 + salt.length + iv.length)
+                .put(MAGIC)
+                .put((byte) FORMAT_VERSION)
+                .put(CIPHER_AES_256_GCM)
+                .put(KDF_PBKDF2_HMAC_SHA256)
+                .putInt(iterations)
+                .put((byte) salt.length).put(salt)
+                .put((byte) iv.length).put(iv)
+                .array();
+
+        byte[] key = deriveKey(pin, salt, iterations);
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key, "AES"), new GCMParameterSpec(TAG_LENGTH_BITS, iv));
+        cipher.updateAAD(header);
+        byte[] encrypted = cipher.doFinal(privateKey.getEncoded());
+        Arrays.fill(key, (byte) 0);
+
+        writeFile(outputFile, ByteBuffer.allocate(header.length + encrypted.length).put(header).put(encrypted)
+                .array());
+    }
+
+    /**
+     * Decrypts a private key from a file, in the current or the legacy format.
+     * The key type (RSA, EC or Ed25519) is taken from the decrypted PKCS#8
+     * structure.
      *
      * @param encryptedKeyFile The file containing the encrypted private key.
-     * @param pin              The PIN used to generate the AES key.
-     * @return The decrypted RSA private key.
+     * @param pin              The PIN used to derive the AES key.
+     * @return The decrypted private key.
      * @throws Exception If an error occurs during decryption, file reading, or if
      *                   the key data is invalid/empty.
      *                   Specifically, an IllegalArgumentException is thrown if the
      *                   encrypted key data is empty,
      *                   and a generic Exception can be thrown if decryption fails
-     *                   (e.g., due to an incorrect PIN).
+     *                   (e.g., due to an incorrect PIN) or the format version is
+     *                   not supported.
      */
-    public static RSAPrivateKey decryptPrivateKey(File encryptedKeyFile, String pin) throws Exception {
-        byte[] encryptedKey = readFile(encryptedKeyFile);
-        if (encryptedKey.length == 0) {
-            throw new IllegalArgumentException("Encrypted key data is empty.");
+    public static PrivateKey decryptPrivateKey(File encryptedKeyFile, String pin) throws Exception {
+        PhaseTimer phases = PhaseTimer.start("key_unlock");
+        KeyUnlockEvent event = new KeyUnlockEvent(encryptedKeyFile.getPath());
+        boolean unlocked = false;
+        try {
+            byte[] encryptedKey = readFile(encryptedKeyFile);
+            if (encryptedKey.length == 0) {
+                throw new IllegalArgumentException("Encrypted key data is empty.");
+            }
+            phases.mark("read");
+            if (event.isEnabled()) {
+                event.setKeyFile(encryptedKey.length, getIterations(encryptedKey));
+            }
+
+            byte[] decryptedKey;
+            if (isVersioned(encryptedKey)) {
+                decryptedKey = decryptVersioned(encryptedKey, pin, phases);
+            } else {
+                byte[] key = sha256(pin);
+                phases.mark("kdf");
+                decryptedKey = decryptWithAES(encryptedKey, key);
+                phases.mark("decrypt");
+            }
+            if (decryptedKey == null || decryptedKey.length == 0) {
+                throw new Exception("Failed to decrypt private key. Invalid PIN or corrupted data.");
+            }
+
+            PrivateKey privateKey = new JcaPEMKeyConverter().setProvider("BC")
+                    .getPrivateKey(PrivateKeyInfo.getInstance(decryptedKey));
+            phases.mark("parse");
+            event.setAlgorithm(privateKey.getAlgorithm());
+            unlocked = true;
+            return privateKey;
+        } catch (Exception e) {
+            event.setFailure(e);
+            throw e;
+        } finally {
+            phases.finish(unlocked);
+            event.finish(unlocked);
         }
+    }
 
-        byte[] key = sha256(pin);
-        byte[] decryptedKey = decryptWithAES(encryptedKey, key);
-        if (decryptedKey == null || decryptedKey.length == 0) {
-            throw new Exception("Failed to decrypt private key. Invalid PIN or corrupted data.");
+    /**
+     * Reads the PBKDF2 iteration count of a key file.
+     *
+     * @param encryptedKeyFile The key file.
+     * @return The iteration count, or 0 for a legacy key file.
+     * @throws Exception If the file cannot be read or its header is invalid.
+     */
+    public static int getIterations(File encryptedKeyFile) throws Exception {
+        return getIterations(readFile(encryptedKeyFile));
+    }
+
+    /**
+     * @param encryptedKey The key file content.
+     * @return The iteration count, or 0 for a legacy key file.
+     */
+    private static int getIterations(byte[] encryptedKey) {
+        return isVersioned(encryptedKey) && encryptedKey.length >= MAGIC.length + 7
+                ? ByteBuffer.wrap(encryptedKey, MAGIC.length + 3, 4).getInt()
+                : 0;
+    }
+
+    /**
+     * Derives the AES key from a PIN with PBKDF2-HMAC-SHA256.
+     *
+     * @param pin        The PIN.
+     * @param salt       The salt.
+     * @param iterations The iteration count.
+     * @return The 256-bit AES key.
+     * @throws GeneralSecurityException If PBKDF2 is not available.
+     */
+    static byte[] deriveKey(String pin, byte[] salt, int iterations) throws GeneralSecurityException {
+        PBEKeySpec keySpec = new PBEKeySpec(pin.toCharArray(), salt, iterations, KEY_LENGTH_BITS);
+        try {
+            return SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256").generateSecret(keySpec).getEncoded();
+        } finally {
+            keySpec.clearPassword();
+        }
+    }
+
+    /**
+     * @param data The key file content.
+     * @return true if the content starts with the versioned format header.
+     */
+    private static boolean isVersioned(byte[] data) {
+        return data.length > MAGIC.length && Arrays.equals(data, 0, MAGIC.length, MAGIC, 0, MAGIC.length);
+    }
+
+    /**
+     * Decrypts a key file in the versioned format.
+     *
+     * @param data   The key file content.
+     * @param pin    The PIN.
+     * @param phases The timer of the unlock, marked after key derivation and
+     *               after decryption.
+     * @return The PKCS#8 encoded private key.
+     * @throws Exception If the format is not supported or decryption fails.
+     */
+    private static byte[] decryptVersioned(byte[] data, String pin, PhaseTimer phases) throws Exception {
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        byte[] salt;
+        byte[] iv;
+        int iterations;
+        try {
+            buffer.position(MAGIC.length);
+            int version = buffer.get();
+            byte cipherId = buffer.get();
+            byte kdfId = buffer.get();
+            if (version != FORMAT_VERSION || cipherId != CIPHER_AES_256_GCM || kdfId != KDF_PBKDF2_HMAC_SHA256) {
+                throw new Exception("Unsupported key file format (version " + version + ", cipher " + cipherId
+                        + ", KDF " + kdfId + ").");
+            }
+            iterations = buffer.getInt();
+            salt = new byte[buffer.get()];
+            buffer.get(salt);
+            iv = new byte[buffer.get()];
+            buffer.get(iv);
+        } catch (BufferUnderflowException | NegativeArraySizeException e) {
+            throw new Exception("Key file header is truncated.", e);
         }
+        if (iterations < 1) {
+            throw new Exception("Key file header is invalid.");
+        }
+        int headerLength = buffer.position();
 
-        KeyFactory keyFactory = KeyFactory.getInstance("RSA");
-        return (RSAPrivateKey) keyFactory.generatePrivate(new PKCS8EncodedKeySpec(decryptedKey));
+        byte[] key = deriveKey(pin, salt, iterations);
+        phases.mark("kdf");
+        try {
+            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            cipher.init(Cipher.DECRYPT_MODE, new SecretKeySpec(key, "AES"), new GCMParameterSpec(TAG_LENGTH_BITS, iv));
+            cipher.updateAAD(data, 0, headerLength);
+            byte[] decrypted = cipher.doFinal(data, headerLength, data.length - headerLength);
+            phases.mark("decrypt");
+            return decrypted;
+        } catch (AEADBadTagException e) {
+            throw new Exception("Failed to decrypt private key. Invalid PIN or corrupted data.", e);
+        } finally {
+            Arrays.fill(key, (byte) 0);
+        }
     }
 
     /**
-     * Generates a SHA-256 hash of the provided PIN.
+     * Generates a SHA-256 hash of the provided PIN. Only used for legacy key
+     * files.
      *
      * @param pin The PIN to hash.
      * @return The SHA-256 hash of the PIN as a byte array.
@@ -75,22 +286,7 @@ public class AESUtil {
     }
 
     /**
-     * Encrypts data using AES encryption.
-     *
-     * @param data The data to encrypt.
-     * @param key  The AES key for encryption.
-     * @return The encrypted data as a byte array.
-     * @throws Exception If an error occurs during encryption.
-     */
-    private static byte[] encryptWithAES(byte[] data, byte[] key) throws Exception {
-        SecretKeySpec secretKey = new SecretKeySpec(key, "AES");
-        Cipher cipher = Cipher.getInstance("AES");
-        cipher.init(Cipher.ENCRYPT_MODE, secretKey);
-        return cipher.doFinal(data);
-    }
-
-    /**
-     * Decrypts data using AES decryption.
+     * Decrypts a legacy key file, which was encrypted with AES in ECB mode.
      *
      * @param data The data to decrypt.
      * @param key  The AES key for decryption.
@@ -104,6 +300,16 @@ public class AESUtil {
         return cipher.doFinal(data);
     }
 
+    /**
+     * @param length The number of bytes.
+     * @return Random bytes from a secure source.
+     */
+    private static byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        RANDOM.nextBytes(bytes);
+        return bytes;
+    }
+
     /**
      * Writes byte content to a file.
      *
@@ -0,0 +1,81 @@
+package com.padesigner.crypto;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfReader;
+import com.itextpdf.kernel.pdf.StampingProperties;
+import com.itextpdf.signatures.PdfSigner;
+
+/**
+ * A PDF signer that can release its files when a signature does not
+ * complete.
+ * <p>
+ * iText closes the reader, the working file and the output only at the end
+ * of a successful signature. When hashing, signing or timestamping fails, or
+ * the signature is cancelled, the signer is dropped with all of them still
+ * open. {@link #abort()} closes them through the fields {@link PdfSigner}
+ * exposes to subclasses for that purpose and deletes the partly written
+ * output file.
+ */
+class AbortablePdfSigner extends PdfSigner {
+
+    private final File partialOutput;
+
+    /**
+     * Creates a signer.
+     *
+     * @param reader        A reader for the document to be signed.
+     * @param outputStream  The stream receiving the signed document, or null
+     *                      to write it to the file at {@code path}.
+     * @param path          The working file or directory, or null to buffer
+     *                      the output in memory.
+     * @param properties    The stamping properties.
+     * @param partialOutput The file deleted when the signature is aborted, or
+     *                      null.
+     * @throws IOException If the output cannot be created.
+     */
+    AbortablePdfSigner(PdfReader reader, OutputStream outputStream, String path, StampingProperties properties,
+            File partialOutput) throws IOException {
+        super(reader, outputStream, path, properties);
+        this.partialOutput = partialOutput;
+    }
+
+    /**
+     * Releases the reader, the working file and the output of a signature
+     * that did not complete, and deletes the partial output file. Does
+     * nothing once the signer has completed or been aborted.
+     */
+    void abort() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        PdfDocument document = getDocument();
+        if (document != null && !document.isClosed()) {
+            closeQuietly(document.getWriter());
+            closeQuietly(document.getReader());
+        }
+        closeQuietly(raf);
+        closeQuietly(originalOS);
+        if (partialOutput != null) {
+            partialOutput.delete();
+        }
+    }
+
+    /**
+     * @param closeable A resource, or null.
+     */
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException | RuntimeException ignored) {
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.padesigner.crypto;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Non-blocking front end to key unlock and document signing. Every call
+ * returns at once with a {@link CompletableFuture}; the work runs on a pool of
+ * daemon worker threads, so several documents can be signed at the same time
+ * and a user interface stays responsive while they are.
+ * <p>
+ * Progress is reported by phase and, while hashing, in bytes to a
+ * {@link SigningListener}. Cancelling a returned future with
+ * {@link CompletableFuture#cancel(boolean)} also stops the work: signing stops
+ * at the next phase or hashing step and deletes its partial output. Key
+ * derivation itself cannot be interrupted, so a cancelled unlock finishes
+ * deriving the key and then discards it. Futures derived with
+ * {@code thenApply} and similar do not propagate cancellation back; cancel the
+ * future returned here.
+ */
+public class AsyncSigner implements AutoCloseable {
+
+    private static final AsyncSigner SHARED = new AsyncSigner(Runtime.getRuntime().availableProcessors());
+
+    private final ExecutorService workers;
+
+    /**
+     * Creates a signer with its own worker threads.
+     *
+     * @param threads The number of documents signed at the same time.
+     */
+    public AsyncSigner(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Thread count must be positive.");
+        }
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "async-signer-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * @return The process-wide signer used by the user interface.
+     */
+    public static AsyncSigner getShared() {
+        return SHARED;
+    }
+
+    /**
+     * Unlocks the private key on a USB drive and prepares its signing context,
+     * which is then shared through {@link SigningContextCache}.
+     *
+     * @param usbPath  The USB drive path, ending with a separator.
+     * @param pin      The PIN protecting the key.
+     * @param listener Receives the {@link SigningPhase#UNLOCKING_KEY} phase.
+     * @return The signing context, or a future failed with the reason the key
+     *         could not be unlocked.
+     */
+    public CompletableFuture<SigningContext> unlock(String usbPath, String pin, SigningListener listener) {
+        SigningMonitor monitor = new SigningMonitor(listener);
+        return submit(monitor, () -> {
+            monitor.phase(SigningPhase.UNLOCKING_KEY);
+            SigningContext context = SigningContextCache.getShared()
+                    .get(RSAKeyManager.loadPrivateKey(usbPath, pin), usbPath);
+            monitor.checkCancelled();
+            return context;
+        });
+    }
+
+    /**
+     * Signs a document.
+     *
+     * @param pdfFilePath The path to the PDF file to be signed.
+     * @param context     The signing context to use.
+     * @param listener    Receives the phases and hashing progress.
+     * @return The path of the signed PDF file, or a future failed with the
+     *         reason the document could not be signed.
+     */
+    public CompletableFuture<String> sign(String pdfFilePath, SigningContext context, SigningListener listener) {
+        SigningMonitor monitor = new SigningMonitor(listener);
+        return submit(monitor, () -> MyPdfSigner.signPDF(pdfFilePath, context, monitor));
+    }
+
+    /**
+     * Stops the worker threads. Operations still running are interrupted.
+     */
+    @Override
+    public void close() {
+        workers.shutdownNow();
+    }
+
+    /**
+     * Runs a task on a worker thread.
+     *
+     * @param monitor The monitor cancelled together with the future.
+     * @param task    The work to do.
+     * @return The future of the task.
+     */
+    private <T> CompletableFuture<T> submit(SigningMonitor monitor, Task<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>() {
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                monitor.cancel();
+                return super.cancel(mayInterruptIfRunning);
+            }
+        };
+        workers.execute(() -> {
+            if (future.isDone()) {
+                return;
+            }
+            try {
+                future.complete(task.run());
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * A unit of work that may throw.
+     */
+    @FunctionalInterface
+    private interface Task<T> {
+        T run() throws Exception;
+    }
+}
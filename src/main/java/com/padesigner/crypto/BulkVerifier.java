@@ -0,0 +1,365 @@
+package com.padesigner.crypto;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.PublicKey;
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Verifies large numbers of signed PDF documents on a bounded worker pool.
+ * At most a fixed number of documents are queued or in progress at any time,
+ * so the engine can walk archives of any size with constant memory. Every
+ * document gets a time budget, counted from its submission; a document that
+ * exceeds it is reported as timed out and its worker is interrupted. A worker
+ * that does not return, for instance because it is blocked in I/O that
+ * cannot be interrupted, is given up and replaced, so hung documents neither
+ * stall the documents queued behind them nor hold on to in-flight slots.
+ * <p>
+ * With a {@link VerificationCache}, documents that are unchanged since an
+ * earlier run are answered from the cache without being parsed.
+ */
+public class BulkVerifier {
+
+    /**
+     * Time budget per document used when none is specified.
+     */
+    public static final Duration DEFAULT_TIMEOUT = Duration.ofMinutes(2);
+
+    /**
+     * The outcome of verifying one document.
+     */
+    public enum Status {
+        VALID, INVALID, ERROR, TIMEOUT
+    }
+
+    /**
+     * The result of verifying one document.
+     *
+     * @param document     The verified document.
+     * @param status       The outcome.
+     * @param message      The failure message, or null.
+     * @param bytes        The size of the document.
+     * @param elapsedNanos The time spent on the document.
+     * @param cached       true if the result came from the verification cache.
+     */
+    public record Result(Path document, Status status, String message, long bytes, long elapsedNanos,
+            boolean cached) {
+    }
+
+    /**
+     * Aggregated results of a bulk verification run.
+     *
+     * @param total        The number of documents processed.
+     * @param valid        The number of valid signatures.
+     * @param invalid      The number of invalid signatures.
+     * @param errors       The number of documents that could not be verified.
+     * @param timedOut     The number of documents that exceeded the time budget.
+     * @param bytes        The combined size of all documents.
+     * @param elapsedNanos The wall-clock time of the run.
+     */
+    public record Summary(int total, int valid, int invalid, int errors, int timedOut, long bytes,
+            long elapsedNanos) {
+
+        /**
+         * @return The number of documents verified per second.
+         */
+        public double documentsPerSecond() {
+            return total / seconds();
+        }
+
+        /**
+         * @return The number of megabytes verified per second.
+         */
+        public double megabytesPerSecond() {
+            return bytes / (1024.0 * 1024.0) / seconds();
+        }
+
+        /**
+         * @return The wall-clock time of the run in seconds.
+         */
+        public double seconds() {
+            return elapsedNanos / 1_000_000_000.0;
+        }
+    }
+
+    /**
+     * Task phases: waiting for a worker, running, finished, and given up
+     * after a timeout while still running.
+     */
+    private static final int QUEUED = 0;
+    private static final int RUNNING = 1;
+    private static final int DONE = 2;
+    private static final int ABANDONED = 3;
+
+    private final int threads;
+    private final Duration timeout;
+    private final VerificationCache cache;
+
+    /**
+     * Creates a verifier without a result cache.
+     *
+     * @param threads The number of worker threads.
+     * @param timeout The time budget per document.
+     */
+    public BulkVerifier(int threads, Duration timeout) {
+        this(threads, timeout, null);
+    }
+
+    /**
+     * Creates a verifier.
+     *
+     * @param threads The number of worker threads.
+     * @param timeout The time budget per document.
+     * @param cache   The cache of earlier results, or null.
+     */
+    public BulkVerifier(int threads, Duration timeout, VerificationCache cache) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Thread count must be positive.");
+        }
+        if (timeout.isNegative() || timeout.isZero()) {
+            throw new IllegalArgumentException("Timeout must be positive.");
+        }
+        this.threads = threads;
+        this.timeout = timeout;
+        this.cache = cache;
+    }
+
+    /**
+     * Verifies all given documents against a public key. Results are passed to
+     * the listener as soon as they are known, one at a time.
+     *
+     * @param documents The documents to verify.
+     * @param publicKey The expected signer public key.
+     * @param listener  Receives the result of every document.
+     * @return The aggregated results.
+     * @throws Exception If the key fingerprint cannot be computed or the calling
+     *                   thread is interrupted.
+     */
+    public Summary verifyAll(Iterable<Path> documents, PublicKey publicKey, Consumer<Result> listener)
+            throws Exception {
+        return verifyAll(documents, PublicKeyRing.of(publicKey), listener);
+    }
+
+    /**
+     * Verifies all given documents against a set of trusted keys. Results are
+     * passed to the listener as soon as they are known, one at a time.
+     *
+     * @param documents The documents to verify.
+     * @param keyRing   The trusted keys.
+     * @param listener  Receives the result of every document.
+     * @return The aggregated results.
+     * @throws Exception If the keyring fingerprint cannot be computed or the
+     *                   calling thread is interrupted.
+     */
+    public Summary verifyAll(Iterable<Path> documents, PublicKeyRing keyRing, Consumer<Result> listener)
+            throws Exception {
+        String keyFingerprint = cache != null ? keyRing.getFingerprint() : null;
+        int maxInFlight = threads * 2;
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        Tally tally = new Tally(listener);
+        ThreadPoolExecutor workers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.NANOSECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "bulk-verifier-worker");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "bulk-verifier-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        long started = System.nanoTime();
+        try {
+            for (Path document : documents) {
+                inFlight.acquire();
+                submit(document, keyRing, keyFingerprint, workers, watchdog, inFlight, tally);
+            }
+            inFlight.acquire(maxInFlight);
+        } finally {
+            workers.shutdownNow();
+            watchdog.shutdownNow();
+        }
+        return tally.toSummary(System.nanoTime() - started);
+    }
+
+    /**
+     * Schedules the verification of one document together with its timeout,
+     * which runs from the moment the document is submitted. Whichever
+     * finishes first, the worker or the watchdog, reports the result.
+     * <p>
+     * The in-flight permit is released when the worker returns. If the
+     * document times out while its worker is still running, the worker is
+     * given up instead: the watchdog releases the permit and adds a thread to
+     * the pool in its place, and the worker leaves the pool once it returns.
+     *
+     * @param document       The document to verify.
+     * @param keyRing        The trusted keys.
+     * @param keyFingerprint The fingerprint of the keyring, used as cache key.
+     * @param workers        The worker pool.
+     * @param watchdog       The scheduler enforcing the time budget.
+     * @param inFlight       The permit held for this document.
+     * @param tally          Collects the result.
+     */
+    private void submit(Path document, PublicKeyRing keyRing, String keyFingerprint, ThreadPoolExecutor workers,
+            ScheduledExecutorService watchdog, Semaphore inFlight, Tally tally) {
+        AtomicBoolean reported = new AtomicBoolean();
+        AtomicBoolean cached = new AtomicBoolean();
+        AtomicInteger phase = new AtomicInteger(QUEUED);
+        FutureTask<Boolean> task = new FutureTask<>(() -> verify(document, keyRing, keyFingerprint, cached));
+
+        long submitted = System.nanoTime();
+        ScheduledFuture<?> deadline = watchdog.schedule(() -> {
+            if (reported.compareAndSet(false, true)) {
+                task.cancel(true);
+                tally.add(new Result(document, Status.TIMEOUT, "Timed out after " + timeout.toMillis() + " ms",
+                        size(document), System.nanoTime() - submitted, false));
+                if (phase.compareAndSet(RUNNING, ABANDONED)) {
+                    resizePool(workers, 1);
+                    inFlight.release();
+                }
+            }
+        }, timeout.toNanos(), TimeUnit.NANOSECONDS);
+
+        workers.execute(() -> {
+            long started = System.nanoTime();
+            phase.set(RUNNING);
+            task.run();
+            deadline.cancel(false);
+            if (reported.compareAndSet(false, true)) {
+                tally.add(toResult(document, task, System.nanoTime() - started, cached.get()));
+            }
+            if (phase.compareAndSet(RUNNING, DONE)) {
+                inFlight.release();
+            } else {
+                resizePool(workers, -1);
+            }
+        });
+    }
+
+    /**
+     * Adds threads to or removes threads from the worker pool. Surplus
+     * threads leave the pool as soon as they are idle.
+     *
+     * @param workers The worker pool.
+     * @param delta   The number of threads to add, negative to remove.
+     */
+    private static void resizePool(ThreadPoolExecutor workers, int delta) {
+        synchronized (workers) {
+            if (delta > 0) {
+                workers.setMaximumPoolSize(workers.getMaximumPoolSize() + delta);
+                workers.setCorePoolSize(workers.getCorePoolSize() + delta);
+            } else {
+                workers.setCorePoolSize(workers.getCorePoolSize() + delta);
+                workers.setMaximumPoolSize(workers.getMaximumPoolSize() + delta);
+            }
+        }
+    }
+
+    /**
+     * Verifies one document, consulting the cache first if there is one.
+     *
+     * @param document       The document to verify.
+     * @param keyRing        The trusted keys.
+     * @param keyFingerprint The fingerprint of the keyring.
+     * @param cached         Set if the result comes from the cache.
+     * @return true if the document is valid.
+     * @throws Exception If the document cannot be verified.
+     */
+    private boolean verify(Path document, PublicKeyRing keyRing, String keyFingerprint, AtomicBoolean cached)
+            throws Exception {
+        if (cache == null) {
+            return SignatureVerifier.verifySignature(document.toString(), keyRing);
+        }
+        Boolean cachedResult = cache.lookup(document, keyFingerprint);
+        if (cachedResult != null) {
+            cached.set(true);
+            return cachedResult;
+        }
+        VerificationCache.FileState before = VerificationCache.FileState.of(document);
+        boolean valid = SignatureVerifier.verifySignature(document.toString(), keyRing);
+        cache.store(document, keyFingerprint, before, valid);
+        return valid;
+    }
+
+    /**
+     * Converts a completed verification task to a result.
+     *
+     * @param document     The verified document.
+     * @param task         The completed task.
+     * @param elapsedNanos The time spent on the document.
+     * @param cached       Whether the result came from the cache.
+     * @return The result.
+     */
+    private static Result toResult(Path document, FutureTask<Boolean> task, long elapsedNanos, boolean cached) {
+        long bytes = size(document);
+        try {
+            return new Result(document, task.get() ? Status.VALID : Status.INVALID, null, bytes, elapsedNanos,
+                    cached);
+        } catch (ExecutionException e) {
+            return new Result(document, Status.ERROR, String.valueOf(e.getCause().getMessage()), bytes,
+                    elapsedNanos, false);
+        } catch (CancellationException | InterruptedException e) {
+            return new Result(document, Status.ERROR, "Interrupted", bytes, elapsedNanos, false);
+        }
+    }
+
+    /**
+     * @param document A document.
+     * @return The size of the document, or 0 if it cannot be determined.
+     */
+    private static long size(Path document) {
+        try {
+            return Files.size(document);
+        } catch (Exception e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Thread-safe counters over all results of a run.
+     */
+    private static final class Tally {
+        private final Consumer<Result> listener;
+        private final AtomicInteger[] counts = new AtomicInteger[Status.values().length];
+        private final AtomicLong bytes = new AtomicLong();
+
+        Tally(Consumer<Result> listener) {
+            this.listener = listener;
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = new AtomicInteger();
+            }
+        }
+
+        void add(Result result) {
+            counts[result.status().ordinal()].incrementAndGet();
+            bytes.addAndGet(result.bytes());
+            synchronized (listener) {
+                listener.accept(result);
+            }
+        }
+
+        Summary toSummary(long elapsedNanos) {
+            int valid = counts[Status.VALID.ordinal()].get();
+            int invalid = counts[Status.INVALID.ordinal()].get();
+            int errors = counts[Status.ERROR.ordinal()].get();
+            int timedOut = counts[Status.TIMEOUT.ordinal()].get();
+            return new Summary(valid + invalid + errors + timedOut, valid, invalid, errors, timedOut, bytes.get(),
+                    elapsedNanos);
+        }
+    }
+}
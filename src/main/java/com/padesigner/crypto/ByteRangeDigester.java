@@ -0,0 +1,286 @@
+package com.padesigner.crypto;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Computes the digest of the byte ranges covered by PDF signatures directly
+ * from the file or an in-memory document, without going through the PDF
+ * object model.
+ * <p>
+ * Several signatures of one document are hashed in a single sequential read.
+ * Signatures whose ranges have covered exactly the same bytes so far share one
+ * running digest; it is cloned only at the point where their ranges diverge,
+ * i.e. at the signature hole of an earlier revision. The bulk of a document
+ * therefore goes through the hash function once, however many signatures it
+ * carries.
+ */
+public class ByteRangeDigester {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Hashes the given byte ranges of a file.
+     *
+     * @param pdfFilePath   The path to the PDF file.
+     * @param byteRange     The signature /ByteRange as offset/length pairs.
+     * @param messageDigest The digest to update; it is reset by this call.
+     * @return The digest of the covered bytes.
+     * @throws IOException If the file cannot be read or the ranges exceed it.
+     */
+    public static byte[] digest(String pdfFilePath, long[] byteRange, MessageDigest messageDigest)
+            throws IOException {
+        try {
+            return digestAll(pdfFilePath, List.of(byteRange), List.of(messageDigest)).get(0);
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Hashes the byte ranges of several signatures in one pass over the file.
+     *
+     * @param pdfFilePath    The path to the PDF file.
+     * @param byteRanges     The /ByteRange of every signature.
+     * @param messageDigests One digest per signature; they are reset by this
+     *                       call. Signatures that use the same algorithm may
+     *                       share the hashing of common bytes.
+     * @return The digest of the covered bytes of every signature, in input
+     *         order.
+     * @throws IOException                If the file cannot be read or a range
+     *                                    exceeds it.
+     * @throws CloneNotSupportedException If a digest has to be split but cannot
+     *                                    be cloned.
+     */
+    public static List<byte[]> digestAll(String pdfFilePath, List<long[]> byteRanges,
+            List<MessageDigest> messageDigests) throws IOException, CloneNotSupportedException {
+        try (FileChannel channel = FileChannel.open(Paths.get(pdfFilePath), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            return digestAll(byteRanges, messageDigests,
+                    (position, length, active) -> read(channel, buffer, position, length, active));
+        }
+    }
+
+    /**
+     * Hashes the byte ranges of several signatures of a document held in
+     * memory, in one pass and without copying the document.
+     *
+     * @param document       The PDF document, from its position to its limit;
+     *                       the buffer itself is not modified.
+     * @param byteRanges     The /ByteRange of every signature.
+     * @param messageDigests One digest per signature; they are reset by this
+     *                       call.
+     * @return The digest of the covered bytes of every signature, in input
+     *         order.
+     * @throws IOException                If a range exceeds the document.
+     * @throws CloneNotSupportedException If a digest has to be split but cannot
+     *                                    be cloned.
+     */
+    public static List<byte[]> digestAll(ByteBuffer document, List<long[]> byteRanges,
+            List<MessageDigest> messageDigests) throws IOException, CloneNotSupportedException {
+        ByteBuffer content = document.slice();
+        return digestAll(byteRanges, messageDigests, (position, length, active) -> {
+            if (position + length > content.limit()) {
+                throw new EOFException("Signature byte range exceeds the document.");
+            }
+            for (Group group : active) {
+                group.messageDigest.update(content.slice((int) position, (int) length));
+            }
+        });
+    }
+
+    /**
+     * Hashes the byte ranges of several signatures in one pass over a
+     * document.
+     *
+     * @param byteRanges     The /ByteRange of every signature.
+     * @param messageDigests One digest per signature.
+     * @param segments       Feeds a segment of the document to the digests.
+     * @return The digest of the covered bytes of every signature, in input
+     *         order.
+     * @throws IOException                If a segment cannot be read.
+     * @throws CloneNotSupportedException If a digest has to be split but cannot
+     *                                    be cloned.
+     */
+    private static List<byte[]> digestAll(List<long[]> byteRanges, List<MessageDigest> messageDigests,
+            SegmentReader segments) throws IOException, CloneNotSupportedException {
+        if (byteRanges.size() != messageDigests.size()) {
+            throw new IllegalArgumentException("Each byte range needs its own digest.");
+        }
+        TreeSet<Long> boundaries = new TreeSet<>();
+        for (long[] byteRange : byteRanges) {
+            validate(byteRange);
+            for (int i = 0; i < byteRange.length; i += 2) {
+                boundaries.add(byteRange[i]);
+                boundaries.add(byteRange[i] + byteRange[i + 1]);
+            }
+        }
+
+        List<Group> groups = createGroups(messageDigests);
+        List<Group> active = new ArrayList<>();
+        Long start = boundaries.pollFirst();
+        for (Long end = boundaries.pollFirst(); end != null; start = end, end = boundaries.pollFirst()) {
+            active.clear();
+            for (Group group : new ArrayList<>(groups)) {
+                Group excluded = group.split(byteRanges, start);
+                if (excluded != null) {
+                    groups.add(excluded);
+                }
+                if (!group.members.isEmpty() && covers(byteRanges.get(group.members.get(0)), start)) {
+                    active.add(group);
+                }
+            }
+            if (!active.isEmpty()) {
+                segments.read(start, end - start, active);
+            }
+        }
+
+        byte[][] digests = new byte[byteRanges.size()][];
+        for (Group group : groups) {
+            if (!group.members.isEmpty()) {
+                byte[] digest = group.messageDigest.digest();
+                for (int member : group.members) {
+                    digests[member] = digest;
+                }
+            }
+        }
+        return List.of(digests);
+    }
+
+    /**
+     * Creates one group per distinct digest algorithm.
+     *
+     * @param messageDigests The digests of all signatures.
+     * @return The initial groups.
+     */
+    private static List<Group> createGroups(List<MessageDigest> messageDigests) {
+        List<Group> groups = new ArrayList<>();
+        for (int i = 0; i < messageDigests.size(); i++) {
+            MessageDigest messageDigest = messageDigests.get(i);
+            Group group = null;
+            for (Group candidate : groups) {
+                if (candidate.messageDigest.getAlgorithm().equals(messageDigest.getAlgorithm())) {
+                    group = candidate;
+                    break;
+                }
+            }
+            if (group == null) {
+                messageDigest.reset();
+                group = new Group(messageDigest, new ArrayList<>());
+                groups.add(group);
+            }
+            group.members.add(i);
+        }
+        return groups;
+    }
+
+    /**
+     * Reads a segment of the file and feeds it to every active digest.
+     *
+     * @param channel  The file channel.
+     * @param buffer   The read buffer.
+     * @param position The segment offset.
+     * @param length   The segment length.
+     * @param active   The groups that cover the segment.
+     * @throws IOException If the segment cannot be read.
+     */
+    private static void read(FileChannel channel, ByteBuffer buffer, long position, long length,
+            List<Group> active) throws IOException {
+        long remaining = length;
+        while (remaining > 0) {
+            buffer.clear().limit((int) Math.min(BUFFER_SIZE, remaining));
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new EOFException("Signature byte range exceeds the file.");
+            }
+            for (Group group : active) {
+                group.messageDigest.update(buffer.array(), 0, read);
+            }
+            position += read;
+            remaining -= read;
+        }
+    }
+
+    /**
+     * @param byteRange A signature byte range.
+     * @param position  A file offset.
+     * @return true if the byte at the offset is covered by the range.
+     */
+    private static boolean covers(long[] byteRange, long position) {
+        for (int i = 0; i < byteRange.length; i += 2) {
+            if (position >= byteRange[i] && position < byteRange[i] + byteRange[i + 1]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks that a byte range consists of non-negative offset/length pairs.
+     *
+     * @param byteRange The byte range to check.
+     */
+    private static void validate(long[] byteRange) {
+        if (byteRange.length == 0 || byteRange.length % 2 != 0) {
+            throw new IllegalArgumentException("Invalid signature byte range.");
+        }
+        for (long value : byteRange) {
+            if (value < 0) {
+                throw new IllegalArgumentException("Invalid signature byte range.");
+            }
+        }
+    }
+
+    /**
+     * Reads a segment of the document into the digests covering it.
+     */
+    @FunctionalInterface
+    private interface SegmentReader {
+        void read(long position, long length, List<Group> active) throws IOException;
+    }
+
+    /**
+     * Signatures that have covered the same bytes so far and therefore share a
+     * running digest.
+     */
+    private static final class Group {
+        private final MessageDigest messageDigest;
+        private final List<Integer> members;
+
+        Group(MessageDigest messageDigest, List<Integer> members) {
+            this.messageDigest = messageDigest;
+            this.members = members;
+        }
+
+        /**
+         * Moves the members that do not cover the given offset into a new group
+         * with a copy of the current digest state.
+         *
+         * @param byteRanges The byte ranges of all signatures.
+         * @param position   The start of the next segment.
+         * @return The new group, or null if the members do not diverge.
+         * @throws CloneNotSupportedException If the digest cannot be cloned.
+         */
+        Group split(List<long[]> byteRanges, long position) throws CloneNotSupportedException {
+            List<Integer> excluded = new ArrayList<>();
+            for (int member : members) {
+                if (!covers(byteRanges.get(member), position)) {
+                    excluded.add(member);
+                }
+            }
+            if (excluded.isEmpty() || excluded.size() == members.size()) {
+                return null;
+            }
+            members.removeAll(excluded);
+            return new Group((MessageDigest) messageDigest.clone(), excluded);
+        }
+    }
+}
@@ -0,0 +1,388 @@
+package com.padesigner.crypto;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+
+import org.bouncycastle.asn1.ASN1EncodableVector;
+import org.bouncycastle.asn1.ASN1ObjectIdentifier;
+import org.bouncycastle.asn1.ASN1Primitive;
+import org.bouncycastle.asn1.DEROctetString;
+import org.bouncycastle.asn1.DERSequence;
+import org.bouncycastle.asn1.DERSet;
+import org.bouncycastle.asn1.DERTaggedObject;
+import org.bouncycastle.asn1.cms.Attribute;
+import org.bouncycastle.asn1.cms.AttributeTable;
+import org.bouncycastle.asn1.cms.CMSAttributes;
+import org.bouncycastle.asn1.ess.ESSCertIDv2;
+import org.bouncycastle.asn1.ess.SigningCertificateV2;
+import org.bouncycastle.asn1.ocsp.OCSPObjectIdentifiers;
+import org.bouncycastle.asn1.ocsp.OCSPResponse;
+import org.bouncycastle.asn1.ocsp.OCSPResponseStatus;
+import org.bouncycastle.asn1.ocsp.ResponseBytes;
+import org.bouncycastle.asn1.pkcs.PKCSObjectIdentifiers;
+import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
+import org.bouncycastle.cert.X509CRLHolder;
+import org.bouncycastle.cert.jcajce.JcaCertStore;
+import org.bouncycastle.cms.CMSAbsentContent;
+import org.bouncycastle.cms.CMSAttributeTableGenerator;
+import org.bouncycastle.cms.CMSSignedData;
+import org.bouncycastle.cms.CMSSignedDataGenerator;
+import org.bouncycastle.cms.DefaultSignedAttributeTableGenerator;
+import org.bouncycastle.cms.SignerInformation;
+import org.bouncycastle.cms.SignerInformationStore;
+import org.bouncycastle.cms.jcajce.JcaSignerInfoGeneratorBuilder;
+import org.bouncycastle.operator.ContentSigner;
+import org.bouncycastle.operator.DigestCalculator;
+import org.bouncycastle.operator.DigestCalculatorProvider;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+
+import com.itextpdf.kernel.pdf.PdfDictionary;
+import com.itextpdf.kernel.pdf.PdfName;
+import com.itextpdf.signatures.DigestAlgorithms;
+import com.itextpdf.signatures.IExternalDigest;
+import com.itextpdf.signatures.IExternalSignatureContainer;
+import com.itextpdf.signatures.ITSAClient;
+import com.padesigner.jfr.SignatureValueEvent;
+import com.padesigner.metrics.PhaseTimer;
+
+/**
+ * Builds detached CAdES signature containers with Bouncy Castle.
+ * iText produces the containers for RSA and ECDSA keys itself but has no
+ * support for EdDSA, so documents signed with Ed25519 keys get their container
+ * from this class instead. The result is an ordinary ETSI.CAdES.detached
+ * signature: signed attributes hold the content type, the message digest and
+ * the ESS signing certificate; like iText, no signing time attribute is added
+ * because PAdES takes the time from the signature dictionary. When the signing
+ * context has a timestamp client, the container built for a document carries
+ * a signature timestamp as an unsigned attribute, as iText adds for other keys.
+ * With revocation clients, the CRLs and OCSP responses for the certificate
+ * chain are embedded the way iText embeds them: in the Adobe revocation
+ * information attribute, with the CRLs also in the SignedData.
+ */
+public class CmsSignatureBuilder {
+
+    /**
+     * The adbe-revocationInfoArchival signed attribute.
+     */
+    private static final ASN1ObjectIdentifier ADBE_REVOCATION = new ASN1ObjectIdentifier("1.2.840.113583.1.1.8");
+
+    /**
+     * Creates the CMS signature container for a ByteRange digest.
+     *
+     * @param digest  The digest of the signed byte ranges, computed with the
+     *                digest algorithm chosen for the context.
+     * @param context The signing context holding the key and certificate.
+     * @return The encoded CMS container.
+     * @throws Exception If the container cannot be built.
+     */
+    public static byte[] sign(byte[] digest, SigningContext context) throws Exception {
+        Certificate[] certificateChain = context.getCertificateChain();
+        X509Certificate certificate = (X509Certificate) certificateChain[0];
+
+        ContentSigner contentSigner = new JcaContentSignerBuilder(context.getProviders().signatureAlgorithm())
+                .setProvider(context.getProviders().signatureProvider())
+                .build(context.getPrivateKey());
+        List<byte[]> crls = new ArrayList<>();
+        List<byte[]> ocspResponses = new ArrayList<>();
+        collectRevocationData(context, crls, ocspResponses);
+
+        CMSSignedDataGenerator generator = new CMSSignedDataGenerator();
+        generator.addSignerInfoGenerator(new JcaSignerInfoGeneratorBuilder(new PrecomputedDigestProvider(digest))
+                .setSignedAttributeGenerator(new PadesAttributeGenerator(certificate,
+                        revocationAttribute(crls, ocspResponses)))
+                .build(contentSigner, certificate));
+        generator.addCertificates(new JcaCertStore(Arrays.asList(certificateChain)));
+        for (byte[] crl : crls) {
+            generator.addCRL(new X509CRLHolder(crl));
+        }
+
+        return generator.generate(new CMSAbsentContent(), false).getEncoded();
+    }
+
+    /**
+     * Estimates the space the container for a context needs in the document:
+     * the signature itself, the timestamp token and the revocation data, which
+     * is fetched here once so the later fetch while signing hits the cache.
+     *
+     * @param context The signing context.
+     * @return The number of bytes to reserve.
+     */
+    static int estimateSize(SigningContext context) {
+        int size = DeferredSigner.DEFAULT_SIGNATURE_SIZE;
+        if (context.getTsaClient() != null) {
+            size += context.getTsaClient().getTokenSizeEstimate();
+        }
+        List<byte[]> crls = new ArrayList<>();
+        List<byte[]> ocspResponses = new ArrayList<>();
+        collectRevocationData(context, crls, ocspResponses);
+        for (byte[] crl : crls) {
+            size += 2 * crl.length;
+        }
+        for (byte[] ocspResponse : ocspResponses) {
+            size += ocspResponse.length + 32;
+        }
+        return size;
+    }
+
+    /**
+     * Obtains the revocation data for the certificate chain from the
+     * context's revocation clients: a CRL for every certificate that names a
+     * distribution point and an OCSP response for every certificate whose
+     * issuer is in the chain.
+     *
+     * @param context       The signing context.
+     * @param crls          Receives the encoded CRLs.
+     * @param ocspResponses Receives the encoded basic OCSP responses.
+     */
+    private static void collectRevocationData(SigningContext context, List<byte[]> crls, List<byte[]> ocspResponses) {
+        Certificate[] chain = context.getCertificateChain();
+        for (int i = 0; i < chain.length; i++) {
+            X509Certificate certificate = (X509Certificate) chain[i];
+            if (context.getCrlClient() != null) {
+                Collection<byte[]> encoded = context.getCrlClient().getEncoded(certificate, null);
+                if (encoded != null) {
+                    crls.addAll(encoded);
+                }
+            }
+            if (context.getOcspClient() != null && i + 1 < chain.length) {
+                byte[] encoded = context.getOcspClient().getEncoded(certificate, (X509Certificate) chain[i + 1], null);
+                if (encoded != null) {
+                    ocspResponses.add(encoded);
+                }
+            }
+        }
+    }
+
+    /**
+     * Builds the adbe-revocationInfoArchival attribute value.
+     *
+     * @param crls          The encoded CRLs.
+     * @param ocspResponses The encoded basic OCSP responses.
+     * @return The attribute value, or null if there is no revocation data.
+     * @throws IOException If the data cannot be parsed.
+     */
+    private static DERSequence revocationAttribute(List<byte[]> crls, List<byte[]> ocspResponses) throws IOException {
+        if (crls.isEmpty() && ocspResponses.isEmpty()) {
+            return null;
+        }
+        ASN1EncodableVector revocationInfo = new ASN1EncodableVector();
+        if (!crls.isEmpty()) {
+            ASN1EncodableVector encodedCrls = new ASN1EncodableVector();
+            for (byte[] crl : crls) {
+                encodedCrls.add(ASN1Primitive.fromByteArray(crl));
+            }
+            revocationInfo.add(new DERTaggedObject(true, 0, new DERSequence(encodedCrls)));
+        }
+        if (!ocspResponses.isEmpty()) {
+            ASN1EncodableVector encodedResponses = new ASN1EncodableVector();
+            for (byte[] ocspResponse : ocspResponses) {
+                encodedResponses.add(new OCSPResponse(new OCSPResponseStatus(OCSPResponseStatus.SUCCESSFUL),
+                        new ResponseBytes(OCSPObjectIdentifiers.id_pkix_ocsp_basic, new DEROctetString(ocspResponse))));
+            }
+            revocationInfo.add(new DERTaggedObject(true, 1, new DERSequence(encodedResponses)));
+        }
+        return new DERSequence(revocationInfo);
+    }
+
+    /**
+     * Adds an RFC 3161 signature timestamp to a CMS container: the token is
+     * requested for the hash of the signature value and stored as the
+     * id-aa-signatureTimeStampToken unsigned attribute of the signer.
+     *
+     * @param container The encoded CMS container.
+     * @param tsaClient The timestamp client.
+     * @return The encoded container with the timestamp.
+     * @throws Exception If the container cannot be read or no timestamp is
+     *                   obtained.
+     */
+    static byte[] addTimestamp(byte[] container, ITSAClient tsaClient) throws Exception {
+        CMSSignedData signedData = new CMSSignedData(container);
+        SignerInformation signer = signedData.getSignerInfos().iterator().next();
+        byte[] token = tsaClient.getTimeStampToken(tsaClient.getMessageDigest().digest(signer.getSignature()));
+
+        Attribute timestamp = new Attribute(PKCSObjectIdentifiers.id_aa_signatureTimeStampToken,
+                new DERSet(ASN1Primitive.fromByteArray(token)));
+        AttributeTable unsignedAttributes = signer.getUnsignedAttributes() != null
+                ? signer.getUnsignedAttributes().add(timestamp.getAttrType(), timestamp.getAttrValues().getObjectAt(0))
+                : new AttributeTable(timestamp);
+        signer = SignerInformation.replaceUnsignedAttributes(signer, unsignedAttributes);
+        return CMSSignedData.replaceSigners(signedData, new SignerInformationStore(signer)).getEncoded();
+    }
+
+    /**
+     * Creates an iText signature container that hashes the document, signs it
+     * with {@link #sign} and timestamps the signature if the context has a
+     * timestamp client. It is used with
+     * {@link com.itextpdf.signatures.PdfSigner#signExternalContainer}.
+     *
+     * @param context The signing context holding the key and certificate.
+     * @return The signature container.
+     */
+    public static IExternalSignatureContainer createContainer(SigningContext context) {
+        return new DetachedContainer(context, null, null);
+    }
+
+    /**
+     * Creates a signature container like {@link #createContainer(SigningContext)}
+     * that adds the time spent hashing and signing to a phase timer, emits
+     * Flight Recorder events for both and reports progress to a monitor.
+     *
+     * @param context The signing context holding the key and certificate.
+     * @param phases  The timer of the current signing operation.
+     * @param monitor The progress monitor of the operation, or null.
+     * @return The signature container.
+     */
+    static IExternalSignatureContainer createContainer(SigningContext context, PhaseTimer phases,
+            SigningMonitor monitor) {
+        return new DetachedContainer(context, phases, monitor);
+    }
+
+    /**
+     * A signature container producing ETSI.CAdES.detached signatures.
+     */
+    private static final class DetachedContainer implements IExternalSignatureContainer {
+        private final SigningContext context;
+        private final PhaseTimer phases;
+        private final SigningMonitor monitor;
+
+        DetachedContainer(SigningContext context, PhaseTimer phases, SigningMonitor monitor) {
+            this.context = context;
+            this.phases = phases;
+            this.monitor = monitor;
+        }
+
+        @Override
+        public byte[] sign(InputStream data) throws GeneralSecurityException {
+            try {
+                IExternalDigest digests = phases != null
+                        ? InstrumentedSigning.digest(context.getDigest(), phases, monitor)
+                        : context.getDigest();
+                MessageDigest messageDigest = digests.getMessageDigest(context.getProviders().digestAlgorithm());
+                byte[] digest = DigestAlgorithms.digest(data, messageDigest);
+                ITSAClient tsaClient = context.getTsaClient();
+                if (phases == null) {
+                    byte[] container = CmsSignatureBuilder.sign(digest, context);
+                    return tsaClient != null ? addTimestamp(container, tsaClient) : container;
+                }
+
+                if (monitor != null) {
+                    monitor.phase(SigningPhase.SIGNING);
+                }
+                SignatureValueEvent event = new SignatureValueEvent();
+                event.setAlgorithm(context.getProviders().signatureAlgorithm());
+                long start = System.nanoTime();
+                boolean signed = false;
+                byte[] container;
+                try {
+                    container = CmsSignatureBuilder.sign(digest, context);
+                    signed = true;
+                } catch (Exception e) {
+                    event.setFailure(e);
+                    throw e;
+                } finally {
+                    phases.addNested(InstrumentedSigning.SIGNATURE, System.nanoTime() - start);
+                    event.finish(signed);
+                }
+                if (tsaClient != null) {
+                    container = addTimestamp(container, InstrumentedSigning.timestamp(tsaClient, phases, monitor));
+                }
+                if (monitor != null) {
+                    monitor.phase(SigningPhase.WRITING);
+                }
+                return container;
+            } catch (IOException e) {
+                throw new GeneralSecurityException("Error hashing document: " + e.getMessage(), e);
+            } catch (GeneralSecurityException | CancellationException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new GeneralSecurityException("Error creating signature: " + e.getMessage(), e);
+            }
+        }
+
+        @Override
+        public void modifySigningDictionary(PdfDictionary signDic) {
+            signDic.put(PdfName.Filter, PdfName.Adobe_PPKLite);
+            signDic.put(PdfName.SubFilter, PdfName.ETSI_CAdES_DETACHED);
+        }
+    }
+
+    /**
+     * Hands Bouncy Castle a digest that has already been computed, so the
+     * document does not have to be passed through the generator.
+     */
+    private static final class PrecomputedDigestProvider implements DigestCalculatorProvider {
+        private final byte[] digest;
+
+        PrecomputedDigestProvider(byte[] digest) {
+            this.digest = digest;
+        }
+
+        @Override
+        public DigestCalculator get(AlgorithmIdentifier digestAlgorithmIdentifier) {
+            return new DigestCalculator() {
+                @Override
+                public AlgorithmIdentifier getAlgorithmIdentifier() {
+                    return digestAlgorithmIdentifier;
+                }
+
+                @Override
+                public OutputStream getOutputStream() {
+                    return OutputStream.nullOutputStream();
+                }
+
+                @Override
+                public byte[] getDigest() {
+                    return digest.clone();
+                }
+            };
+        }
+    }
+
+    /**
+     * The default signed attributes without the signing time, plus the ESS
+     * signing certificate attribute required by PAdES and the revocation
+     * data, if any.
+     */
+    private static final class PadesAttributeGenerator implements CMSAttributeTableGenerator {
+        private final X509Certificate certificate;
+        private final DERSequence revocationInfo;
+        private final CMSAttributeTableGenerator defaults = new DefaultSignedAttributeTableGenerator();
+
+        PadesAttributeGenerator(X509Certificate certificate, DERSequence revocationInfo) {
+            this.certificate = certificate;
+            this.revocationInfo = revocationInfo;
+        }
+
+        @Override
+        @SuppressWarnings({ "rawtypes", "unchecked" })
+        public AttributeTable getAttributes(Map parameters) {
+            try {
+                Hashtable<ASN1ObjectIdentifier, Attribute> attributes = defaults.getAttributes(parameters)
+                        .toHashtable();
+                attributes.remove(CMSAttributes.signingTime);
+                byte[] certificateHash = MessageDigest.getInstance("SHA-256").digest(certificate.getEncoded());
+                SigningCertificateV2 signingCertificate = new SigningCertificateV2(new ESSCertIDv2(certificateHash));
+                attributes.put(PKCSObjectIdentifiers.id_aa_signingCertificateV2, new Attribute(
+                        PKCSObjectIdentifiers.id_aa_signingCertificateV2, new DERSet(signingCertificate)));
+                if (revocationInfo != null) {
+                    attributes.put(ADBE_REVOCATION, new Attribute(ADBE_REVOCATION, new DERSet(revocationInfo)));
+                }
+                return new AttributeTable(attributes);
+            } catch (Exception e) {
+                throw new IllegalStateException("Error creating signed attributes: " + e.getMessage(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,458 @@
+package com.padesigner.crypto;
+
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.security.Provider;
+import java.security.Security;
+import java.security.Signature;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+
+import com.itextpdf.signatures.DigestAlgorithms;
+
+/**
+ * Chooses the JCA providers and the document digest used for signing and
+ * verification. Hashing the signed byte ranges dominates the cost of both for
+ * all but the smallest documents, and providers differ widely in speed: the
+ * JDK's SUN provider uses the SHA instructions of modern x86 and ARM cores,
+ * while Bouncy Castle hashes in plain Java, and on 64-bit cores without SHA-256
+ * instructions SHA-512 is faster than SHA-256.
+ * <p>
+ * Every installed provider offering an algorithm is measured on this machine
+ * on first use, and the fastest one is taken. For signing, the digest is the
+ * fastest of those the key algorithm allows (see
+ * {@link KeyAlgorithm#getDigestAlgorithms()}), and the signature provider is
+ * the fastest one that accepts the key. Each probe runs in short windows
+ * until three consecutive windows agree within 5%, so that compilation and
+ * collection pauses have settled, and is rated by the mean of those windows.
+ * An alternative is only taken over the default, the first digest of the key
+ * algorithm or the first provider in preference order, if it is at least 25%
+ * faster, so measurements that differ by noise alone lead to the same choice
+ * in every process. Results are kept for the life of the process.
+ * <p>
+ * The choices can be fixed with the {@code padesigner.digest},
+ * {@code padesigner.digestProvider} and {@code padesigner.signatureProvider}
+ * system properties; a value of {@code auto} or no value at all selects by
+ * measurement.
+ */
+public class CryptoProviders {
+
+    /**
+     * System property fixing the document digest used for signing, e.g.
+     * "SHA-512". It must be allowed for the signing key.
+     */
+    public static final String DIGEST_PROPERTY = "padesigner.digest";
+
+    /**
+     * System property fixing the provider of message digests, e.g. "SUN".
+     */
+    public static final String DIGEST_PROVIDER_PROPERTY = "padesigner.digestProvider";
+
+    /**
+     * System property fixing the provider of signatures, e.g. "BC".
+     */
+    public static final String SIGNATURE_PROVIDER_PROPERTY = "padesigner.signatureProvider";
+
+    /**
+     * The property value that selects by measurement.
+     */
+    public static final String AUTO = "auto";
+
+    private static final byte[] DIGEST_PROBE = new byte[16 * 1024];
+    private static final Duration DIGEST_WINDOW = Duration.ofMillis(10);
+    private static final Duration DIGEST_PROBE_LIMIT = Duration.ofMillis(200);
+    private static final byte[] SIGNATURE_PROBE = new byte[32];
+    private static final Duration SIGNATURE_WINDOW = Duration.ofMillis(20);
+    private static final Duration SIGNATURE_PROBE_LIMIT = Duration.ofMillis(400);
+
+    /**
+     * The number of consecutive windows whose rates must agree.
+     */
+    private static final int STABLE_WINDOWS = 3;
+
+    /**
+     * How far apart the rates of stable windows may be.
+     */
+    private static final double STABILITY_TOLERANCE = 0.05;
+
+    /**
+     * How much faster than the default an alternative must be to replace it.
+     * Measurements of one provider vary by more than the stability tolerance
+     * between processes, especially on machines with few cores where the
+     * compiler competes with the probe.
+     */
+    private static final double REQUIRED_SPEEDUP = 0.25;
+
+    private static final Map<String, List<Measurement>> digestMeasurements = new ConcurrentHashMap<>();
+    private static final Map<String, Selection> selections = new ConcurrentHashMap<>();
+
+    /**
+     * The measured speed of one algorithm in one provider.
+     *
+     * @param algorithm The JCA algorithm, e.g. "SHA-256".
+     * @param provider  The provider name.
+     * @param rate      The speed, in {@code unit}.
+     * @param unit      "MB/s" for digests, "signatures/s" for signatures.
+     */
+    public record Measurement(String algorithm, String provider, double rate, String unit) {
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%s from %s: %.1f %s", algorithm, provider, rate, unit);
+        }
+    }
+
+    /**
+     * The algorithms and providers chosen for signing with one type of key.
+     *
+     * @param keyAlgorithm       The key algorithm.
+     * @param digestAlgorithm    The document digest, e.g. "SHA-256".
+     * @param digestProvider     The provider hashing the document.
+     * @param signatureAlgorithm The JCA signature algorithm, e.g.
+     *                           "SHA256withRSA".
+     * @param signatureProvider  The provider computing the signature.
+     * @param measurements       The measurements the choice was based on; empty
+     *                           for choices fixed by system properties.
+     */
+    public record Selection(KeyAlgorithm keyAlgorithm, String digestAlgorithm, String digestProvider,
+            String signatureAlgorithm, String signatureProvider, List<Measurement> measurements) {
+
+        @Override
+        public String toString() {
+            return digestAlgorithm + " from " + digestProvider + ", " + signatureAlgorithm + " from "
+                    + signatureProvider;
+        }
+    }
+
+    /**
+     * One operation of a probe.
+     */
+    @FunctionalInterface
+    private interface Probe {
+        /**
+         * @throws GeneralSecurityException If the operation fails.
+         */
+        void run() throws GeneralSecurityException;
+    }
+
+    /**
+     * Returns the selection for signing with a private key. The providers are
+     * measured with the key itself on first use for each key algorithm and
+     * key implementation, so keys a provider cannot use are never chosen for
+     * it.
+     *
+     * @param privateKey The signing key.
+     * @return The selection.
+     * @throws GeneralSecurityException If no provider can sign with the key or
+     *                                  a configured choice is not available.
+     */
+    public static Selection select(PrivateKey privateKey) throws GeneralSecurityException {
+        KeyAlgorithm keyAlgorithm = KeyAlgorithm.of(privateKey);
+        String key = keyAlgorithm.name() + " " + privateKey.getClass().getName();
+        Selection selection = selections.get(key);
+        if (selection == null) {
+            synchronized (CryptoProviders.class) {
+                selection = selections.get(key);
+                if (selection == null) {
+                    selection = choose(keyAlgorithm, privateKey);
+                    selections.put(key, selection);
+                }
+            }
+        }
+        return selection;
+    }
+
+    /**
+     * Measures the providers for a key algorithm with a freshly generated key,
+     * for reporting before any key is available, e.g. when keys are
+     * provisioned.
+     *
+     * @param keyAlgorithm The key algorithm.
+     * @return The selection.
+     * @throws GeneralSecurityException If no provider can sign with the key or
+     *                                  a configured choice is not available.
+     */
+    public static Selection select(KeyAlgorithm keyAlgorithm) throws GeneralSecurityException {
+        KeyPair keyPair = keyAlgorithm.generateKeyPair();
+        return select(keyPair.getPrivate());
+    }
+
+    /**
+     * Creates a message digest from the fastest provider for its algorithm, or
+     * from the configured digest provider.
+     *
+     * @param digestAlgorithm The digest algorithm, by JCA or iText name or by
+     *                        OID.
+     * @return A new message digest.
+     * @throws GeneralSecurityException If the algorithm is not available.
+     */
+    public static MessageDigest createMessageDigest(String digestAlgorithm) throws GeneralSecurityException {
+        String algorithm = toJcaName(digestAlgorithm);
+        return MessageDigest.getInstance(algorithm, getDigestProvider(algorithm));
+    }
+
+    /**
+     * Returns the provider of message digests for an algorithm. When more
+     * than one provider offers it, all of them are measured on first use.
+     *
+     * @param digestAlgorithm The digest algorithm, by JCA or iText name or by
+     *                        OID.
+     * @return The provider name.
+     * @throws GeneralSecurityException If the algorithm is not available.
+     */
+    public static String getDigestProvider(String digestAlgorithm) throws GeneralSecurityException {
+        String configured = property(DIGEST_PROVIDER_PROPERTY);
+        if (configured != null) {
+            return configured;
+        }
+        String algorithm = toJcaName(digestAlgorithm);
+        List<String> providers = providers("MessageDigest", algorithm);
+        return providers.size() == 1 ? providers.get(0) : preferred(measureDigests(algorithm)).provider();
+    }
+
+    /**
+     * Returns the provider used to check CMS signatures during verification:
+     * the configured signature provider, or Bouncy Castle. Verification checks
+     * one signature per document, so it is not worth measuring.
+     *
+     * @return The provider name.
+     */
+    public static String getVerificationProvider() {
+        String configured = property(SIGNATURE_PROVIDER_PROPERTY);
+        return configured != null ? configured : BouncyCastleProvider.PROVIDER_NAME;
+    }
+
+    /**
+     * Chooses the digest and providers for a key.
+     *
+     * @param keyAlgorithm The key algorithm.
+     * @param privateKey   The key the signature providers are measured with.
+     * @return The selection.
+     * @throws GeneralSecurityException If no provider can sign with the key or
+     *                                  a configured choice is not available.
+     */
+    private static Selection choose(KeyAlgorithm keyAlgorithm, PrivateKey privateKey)
+            throws GeneralSecurityException {
+        List<String> digestAlgorithms = keyAlgorithm.getDigestAlgorithms();
+        String configuredDigest = property(DIGEST_PROPERTY);
+        if (configuredDigest != null) {
+            String digest = toJcaName(configuredDigest);
+            if (!digestAlgorithms.contains(digest)) {
+                throw new NoSuchAlgorithmException(configuredDigest + " is not allowed with " + keyAlgorithm
+                        + " keys; use one of " + digestAlgorithms + ".");
+            }
+            digestAlgorithms = List.of(digest);
+        }
+
+        List<Measurement> measurements = new ArrayList<>();
+        String digestAlgorithm = digestAlgorithms.get(0);
+        String digestProvider = getDigestProvider(digestAlgorithm);
+        if (digestAlgorithms.size() > 1) {
+            List<Measurement> candidates = new ArrayList<>();
+            for (String algorithm : digestAlgorithms) {
+                String provider = getDigestProvider(algorithm);
+                for (Measurement measurement : measureDigests(algorithm)) {
+                    measurements.add(measurement);
+                    if (measurement.provider().equals(provider)) {
+                        candidates.add(measurement);
+                    }
+                }
+            }
+            Measurement chosen = preferred(candidates);
+            digestAlgorithm = chosen.algorithm();
+            digestProvider = chosen.provider();
+        } else if (property(DIGEST_PROVIDER_PROPERTY) == null) {
+            measurements.addAll(measureDigests(digestAlgorithm));
+        }
+
+        String signatureAlgorithm = keyAlgorithm.getSignatureAlgorithm(digestAlgorithm);
+        String configuredProvider = property(SIGNATURE_PROVIDER_PROPERTY);
+        List<String> candidates = configuredProvider != null ? List.of(configuredProvider)
+                : providers("Signature", signatureAlgorithm);
+        List<Measurement> signatures = new ArrayList<>();
+        GeneralSecurityException failure = null;
+        for (String provider : candidates) {
+            try {
+                signatures.add(measureSignature(signatureAlgorithm, provider, privateKey));
+            } catch (GeneralSecurityException e) {
+                failure = e;
+            }
+        }
+        if (signatures.isEmpty()) {
+            throw failure != null ? failure
+                    : new NoSuchAlgorithmException("No provider offers " + signatureAlgorithm + ".");
+        }
+        MessageDigest.getInstance(digestAlgorithm, digestProvider);
+        if (configuredProvider == null) {
+            measurements.addAll(signatures);
+        }
+        return new Selection(keyAlgorithm, digestAlgorithm, digestProvider, signatureAlgorithm,
+                preferred(signatures).provider(), List.copyOf(measurements));
+    }
+
+    /**
+     * Picks the measurement to use: the first one, unless a later one is
+     * faster by more than {@link #REQUIRED_SPEEDUP}.
+     *
+     * @param measurements The measurements, default first.
+     * @return The chosen measurement.
+     */
+    private static Measurement preferred(List<Measurement> measurements) {
+        Measurement chosen = measurements.get(0);
+        for (Measurement measurement : measurements) {
+            if (measurement.rate() > chosen.rate() * (1 + REQUIRED_SPEEDUP)) {
+                chosen = measurement;
+            }
+        }
+        return chosen;
+    }
+
+    /**
+     * Measures every provider of a digest algorithm, once per process.
+     *
+     * @param algorithm The JCA digest name.
+     * @return The measurements, in provider preference order.
+     * @throws GeneralSecurityException If no provider offers the algorithm.
+     */
+    private static List<Measurement> measureDigests(String algorithm) throws GeneralSecurityException {
+        List<Measurement> measurements = digestMeasurements.get(algorithm);
+        if (measurements == null) {
+            synchronized (digestMeasurements) {
+                measurements = digestMeasurements.get(algorithm);
+                if (measurements == null) {
+                    measurements = new ArrayList<>();
+                    for (String provider : providers("MessageDigest", algorithm)) {
+                        measurements.add(measureDigest(algorithm, provider));
+                    }
+                    measurements = List.copyOf(measurements);
+                    digestMeasurements.put(algorithm, measurements);
+                }
+            }
+        }
+        return measurements;
+    }
+
+    /**
+     * Measures how fast a provider hashes a probe buffer.
+     *
+     * @param algorithm The JCA digest name.
+     * @param provider  The provider name.
+     * @return The measurement.
+     * @throws GeneralSecurityException If the provider does not offer the
+     *                                  algorithm.
+     */
+    private static Measurement measureDigest(String algorithm, String provider) throws GeneralSecurityException {
+        MessageDigest messageDigest = MessageDigest.getInstance(algorithm, provider);
+        double updatesPerSecond = measureRate(() -> messageDigest.update(DIGEST_PROBE), DIGEST_WINDOW,
+                DIGEST_PROBE_LIMIT);
+        return new Measurement(algorithm, provider, updatesPerSecond * DIGEST_PROBE.length / 1_000_000.0, "MB/s");
+    }
+
+    /**
+     * Measures how fast a provider signs a probe message with the key.
+     *
+     * @param algorithm  The JCA signature algorithm.
+     * @param provider   The provider name.
+     * @param privateKey The signing key.
+     * @return The measurement.
+     * @throws GeneralSecurityException If the provider cannot sign with the
+     *                                  key.
+     */
+    private static Measurement measureSignature(String algorithm, String provider, PrivateKey privateKey)
+            throws GeneralSecurityException {
+        Signature signature = Signature.getInstance(algorithm, provider);
+        signature.initSign(privateKey);
+        double signaturesPerSecond = measureRate(() -> {
+            signature.update(SIGNATURE_PROBE);
+            signature.sign();
+        }, SIGNATURE_WINDOW, SIGNATURE_PROBE_LIMIT);
+        return new Measurement(algorithm, provider, signaturesPerSecond, "signatures/s");
+    }
+
+    /**
+     * Runs a probe in consecutive windows until the rates of the last
+     * {@link #STABLE_WINDOWS} windows agree within {@link #STABILITY_TOLERANCE}, or until
+     * the time limit is reached. The first run is not timed.
+     *
+     * @param probe  The operation to measure.
+     * @param window The minimum length of a window.
+     * @param limit  The time after which the last windows are taken as they
+     *               are.
+     * @return The mean rate of the last windows, in operations per second.
+     * @throws GeneralSecurityException If the operation fails.
+     */
+    private static double measureRate(Probe probe, Duration window, Duration limit) throws GeneralSecurityException {
+        probe.run();
+        double[] rates = new double[STABLE_WINDOWS];
+        long started = System.nanoTime();
+        for (int windows = 1;; windows++) {
+            long start = System.nanoTime();
+            long operations = 0;
+            long elapsed;
+            do {
+                probe.run();
+                operations++;
+                elapsed = System.nanoTime() - start;
+            } while (elapsed < window.toNanos());
+            rates[(windows - 1) % STABLE_WINDOWS] = operations * 1_000_000_000.0 / elapsed;
+
+            int measured = Math.min(windows, STABLE_WINDOWS);
+            double slowest = Double.MAX_VALUE;
+            double fastest = 0;
+            double total = 0;
+            for (int i = 0; i < measured; i++) {
+                slowest = Math.min(slowest, rates[i]);
+                fastest = Math.max(fastest, rates[i]);
+                total += rates[i];
+            }
+            if (measured == STABLE_WINDOWS && fastest <= slowest * (1 + STABILITY_TOLERANCE)
+                    || System.nanoTime() - started >= limit.toNanos()) {
+                return total / measured;
+            }
+        }
+    }
+
+    /**
+     * @param type      The service type, e.g. "Signature".
+     * @param algorithm The algorithm.
+     * @return The names of the installed providers offering the algorithm, in
+     *         preference order.
+     * @throws NoSuchAlgorithmException If no provider offers it.
+     */
+    private static List<String> providers(String type, String algorithm) throws NoSuchAlgorithmException {
+        Provider[] providers = Security.getProviders(type + "." + algorithm);
+        if (providers == null) {
+            throw new NoSuchAlgorithmException("No provider offers " + algorithm + ".");
+        }
+        return Arrays.stream(providers).map(Provider::getName).collect(Collectors.toList());
+    }
+
+    /**
+     * @param digestAlgorithm A digest algorithm by JCA or iText name or by OID.
+     * @return The JCA name, e.g. "SHA-256".
+     */
+    static String toJcaName(String digestAlgorithm) {
+        String oid = DigestAlgorithms.getAllowedDigest(digestAlgorithm);
+        return DigestAlgorithms.normalizeDigestName(DigestAlgorithms.getDigest(oid != null ? oid : digestAlgorithm));
+    }
+
+    /**
+     * @param name A system property.
+     * @return Its value, or null if it is unset or {@link #AUTO}.
+     */
+    private static String property(String name) {
+        String value = System.getProperty(name);
+        return value == null || value.isBlank() || AUTO.equalsIgnoreCase(value.trim()) ? null : value.trim();
+    }
+}
@@ -0,0 +1,254 @@
+package com.padesigner.crypto;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.GeneralSecurityException;
+import java.security.cert.Certificate;
+
+import com.itextpdf.kernel.pdf.PdfDictionary;
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfName;
+import com.itextpdf.kernel.pdf.PdfReader;
+import com.itextpdf.signatures.DigestAlgorithms;
+import com.itextpdf.signatures.ExternalBlankSignatureContainer;
+import com.itextpdf.signatures.IExternalSignatureContainer;
+import com.itextpdf.signatures.PdfPKCS7;
+import com.itextpdf.signatures.PdfSigner;
+
+/**
+ * Two-phase (deferred) signing of PDF documents.
+ * Signing is split into three independent steps so that PDF processing and the
+ * private key operation can run in different places:
+ * <ol>
+ * <li>{@link #prepare} reserves an empty signature field in the document and
+ * returns the digest of its ByteRange;</li>
+ * <li>{@link #signDigest} (or {@link #getAuthenticatedAttributes} followed by
+ * {@link #createSignatureContainer} when the raw signature is produced
+ * elsewhere) turns that digest into a CMS signature container;</li>
+ * <li>{@link #embed} writes the container into the prepared document.</li>
+ * </ol>
+ * Only the digest travels to the key holder, so many small digests can be
+ * signed quickly without touching the documents themselves.
+ */
+public class DeferredSigner {
+
+    /**
+     * Space reserved for the signature container, in bytes.
+     */
+    public static final int DEFAULT_SIGNATURE_SIZE = 8192;
+
+    /**
+     * Digest algorithm used when none is specified.
+     */
+    public static final String DEFAULT_DIGEST_ALGORITHM = DigestAlgorithms.SHA256;
+
+    /**
+     * The result of preparing a document for deferred signing.
+     *
+     * @param fieldName       The name of the reserved signature field.
+     * @param digest          The digest of the signed byte ranges.
+     * @param digestAlgorithm The algorithm used to compute the digest.
+     */
+    public record PreparedSignature(String fieldName, byte[] digest, String digestAlgorithm) {
+    }
+
+    /**
+     * Prepares a document for deferred signing using the default digest
+     * algorithm.
+     *
+     * @param pdfFilePath  The path to the source PDF file.
+     * @param preparedPath The path where the prepared PDF will be written.
+     * @return The reserved field name and the ByteRange digest.
+     * @throws Exception If the document cannot be read, written or hashed.
+     */
+    public static PreparedSignature prepare(String pdfFilePath, String preparedPath) throws Exception {
+        return prepare(pdfFilePath, preparedPath, DEFAULT_DIGEST_ALGORITHM);
+    }
+
+    /**
+     * Prepares a document for deferred signing.
+     * The prepared copy contains a signature field whose /Contents is reserved
+     * but empty; the digest of everything outside that hole is returned.
+     *
+     * @param pdfFilePath     The path to the source PDF file.
+     * @param preparedPath    The path where the prepared PDF will be written.
+     * @param digestAlgorithm The digest algorithm, e.g. "SHA256".
+     * @return The reserved field name and the ByteRange digest.
+     * @throws Exception If the document cannot be read, written or hashed.
+     */
+    public static PreparedSignature prepare(String pdfFilePath, String preparedPath, String digestAlgorithm)
+            throws Exception {
+        return prepare(pdfFilePath, preparedPath, digestAlgorithm, PdfName.Adobe_PPKLite,
+                PdfName.ETSI_CAdES_DETACHED);
+    }
+
+    /**
+     * Prepares a document for deferred signing with a custom signature handler.
+     * The /Filter and /SubFilter tell verifiers how the embedded container has
+     * to be interpreted. The field is added as an incremental update, so
+     * signatures already in the document stay valid.
+     *
+     * @param pdfFilePath     The path to the source PDF file.
+     * @param preparedPath    The path where the prepared PDF will be written.
+     * @param digestAlgorithm The digest algorithm, e.g. "SHA256".
+     * @param filter          The /Filter of the signature dictionary.
+     * @param subFilter       The /SubFilter of the signature dictionary.
+     * @return The reserved field name and the ByteRange digest.
+     * @throws Exception If the document cannot be read, written or hashed.
+     */
+    public static PreparedSignature prepare(String pdfFilePath, String preparedPath, String digestAlgorithm,
+            PdfName filter, PdfName subFilter) throws Exception {
+        AbortablePdfSigner signer = MyPdfSigner.openSigner(pdfFilePath, preparedPath);
+        try {
+            String fieldName = signer.getFieldName();
+
+            DigestCapturingContainer container = new DigestCapturingContainer(digestAlgorithm, filter, subFilter);
+            signer.signExternalContainer(container, DEFAULT_SIGNATURE_SIZE);
+
+            return new PreparedSignature(fieldName, container.digest, digestAlgorithm);
+        } catch (Exception e) {
+            signer.abort();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the CMS authenticated attributes for a ByteRange digest. These are
+     * the bytes the private key has to sign when the raw signature is produced
+     * outside of this application. Only RSA and ECDSA signatures can be
+     * assembled this way.
+     *
+     * @param prepared         The prepared signature.
+     * @param certificateChain The signer certificate chain.
+     * @return The DER encoded authenticated attributes.
+     * @throws Exception If the attributes cannot be built.
+     */
+    public static byte[] getAuthenticatedAttributes(PreparedSignature prepared, Certificate[] certificateChain)
+            throws Exception {
+        PdfPKCS7 pkcs7 = createPkcs7(prepared, certificateChain);
+        return pkcs7.getAuthenticatedAttributeBytes(prepared.digest(), PdfSigner.CryptoStandard.CADES, null, null);
+    }
+
+    /**
+     * Builds a CMS signature container from a raw signature over the
+     * authenticated attributes returned by {@link #getAuthenticatedAttributes}.
+     *
+     * @param prepared            The prepared signature.
+     * @param certificateChain    The signer certificate chain.
+     * @param rawSignature        The signature over the authenticated attributes.
+     * @param encryptionAlgorithm The signature algorithm, e.g. "RSA".
+     * @return The encoded CMS container.
+     * @throws Exception If the container cannot be built.
+     */
+    public static byte[] createSignatureContainer(PreparedSignature prepared, Certificate[] certificateChain,
+            byte[] rawSignature, String encryptionAlgorithm) throws Exception {
+        PdfPKCS7 pkcs7 = createPkcs7(prepared, certificateChain);
+        pkcs7.setExternalDigest(rawSignature, null, encryptionAlgorithm);
+        return pkcs7.getEncodedPKCS7(prepared.digest(), PdfSigner.CryptoStandard.CADES, null, null, null);
+    }
+
+    /**
+     * Signs a prepared digest with the key of the given signing context and
+     * returns the CMS signature container. The document must have been prepared
+     * with the digest algorithm chosen for the context, see
+     * {@link SigningContext#getProviders()}.
+     *
+     * @param prepared The prepared signature.
+     * @param context  The signing context holding the key and certificate.
+     * @return The encoded CMS container.
+     * @throws Exception If signing fails.
+     */
+    public static byte[] signDigest(PreparedSignature prepared, SigningContext context) throws Exception {
+        Certificate[] certificateChain = context.getCertificateChain();
+        if (!DigestAlgorithms.getDigest(DigestAlgorithms.getAllowedDigest(prepared.digestAlgorithm()))
+                .equals(context.getSignature().getHashAlgorithm())) {
+            throw new Exception("Digest algorithm " + prepared.digestAlgorithm()
+                    + " does not match the signing context.");
+        }
+        if (!context.getKeyAlgorithm().isSupportedByIText()) {
+            return CmsSignatureBuilder.sign(prepared.digest(), context);
+        }
+        byte[] attributes = getAuthenticatedAttributes(prepared, certificateChain);
+        byte[] rawSignature = context.getSignature().sign(attributes);
+        return createSignatureContainer(prepared, certificateChain, rawSignature,
+                context.getSignature().getEncryptionAlgorithm());
+    }
+
+    /**
+     * Embeds a signature container into a prepared document.
+     *
+     * @param preparedPath       The path to the prepared PDF file.
+     * @param outputPath         The path where the signed PDF will be written.
+     * @param fieldName          The name of the reserved signature field.
+     * @param signatureContainer The encoded CMS container.
+     * @throws Exception If the container does not fit or the files cannot be
+     *                   accessed.
+     */
+    public static void embed(String preparedPath, String outputPath, String fieldName, byte[] signatureContainer)
+            throws Exception {
+        try (PdfReader reader = PdfReaderFactory.openReader(preparedPath);
+                PdfDocument document = new PdfDocument(reader);
+                OutputStream outputStream = new FileOutputStream(outputPath)) {
+            PdfSigner.signDeferred(document, fieldName, outputStream, new PrecomputedContainer(signatureContainer));
+        }
+    }
+
+    /**
+     * Creates a PKCS#7 helper for the given prepared signature.
+     *
+     * @param prepared         The prepared signature.
+     * @param certificateChain The signer certificate chain.
+     * @return A PdfPKCS7 instance without a private key.
+     * @throws GeneralSecurityException If the digest algorithm is unknown.
+     */
+    private static PdfPKCS7 createPkcs7(PreparedSignature prepared, Certificate[] certificateChain)
+            throws GeneralSecurityException {
+        return new PdfPKCS7(null, certificateChain, prepared.digestAlgorithm(), null,
+                CryptoProviders::createMessageDigest, false);
+    }
+
+    /**
+     * A blank container that records the digest of the data it is asked to sign.
+     */
+    private static final class DigestCapturingContainer extends ExternalBlankSignatureContainer {
+        private final String digestAlgorithm;
+        private byte[] digest;
+
+        DigestCapturingContainer(String digestAlgorithm, PdfName filter, PdfName subFilter) {
+            super(filter, subFilter);
+            this.digestAlgorithm = digestAlgorithm;
+        }
+
+        @Override
+        public byte[] sign(InputStream data) throws GeneralSecurityException {
+            try {
+                digest = DigestAlgorithms.digest(data, CryptoProviders.createMessageDigest(digestAlgorithm));
+            } catch (IOException e) {
+                throw new GeneralSecurityException("Error hashing document: " + e.getMessage(), e);
+            }
+            return new byte[0];
+        }
+    }
+
+    /**
+     * A container that returns a signature produced beforehand.
+     */
+    private static final class PrecomputedContainer implements IExternalSignatureContainer {
+        private final byte[] signatureContainer;
+
+        PrecomputedContainer(byte[] signatureContainer) {
+            this.signatureContainer = signatureContainer;
+        }
+
+        @Override
+        public byte[] sign(InputStream data) {
+            return signatureContainer;
+        }
+
+        @Override
+        public void modifySigningDictionary(PdfDictionary signDic) {
+        }
+    }
+}
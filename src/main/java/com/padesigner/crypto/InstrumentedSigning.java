@@ -0,0 +1,214 @@
+package com.padesigner.crypto;
+
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+
+import com.itextpdf.signatures.IExternalDigest;
+import com.itextpdf.signatures.IExternalSignature;
+import com.itextpdf.signatures.ITSAClient;
+import com.padesigner.jfr.DigestEvent;
+import com.padesigner.jfr.SignatureValueEvent;
+import com.padesigner.jfr.TimestampEvent;
+import com.padesigner.metrics.PhaseTimer;
+
+/**
+ * Decorators for the iText digest, signature and timestamp objects that add
+ * the time spent hashing, signing and timestamping to a {@link PhaseTimer} and
+ * emit the matching Flight Recorder events, and report progress to a
+ * {@link SigningMonitor}. iText hashes, signs and timestamps in the middle of
+ * writing the signed document, so these nested phases cannot be observed from
+ * the outside.
+ */
+final class InstrumentedSigning {
+
+    /**
+     * The phase of hashing the signed byte ranges.
+     */
+    static final String HASH = "hash";
+
+    /**
+     * The phase of computing the signature value.
+     */
+    static final String SIGNATURE = "signature";
+
+    /**
+     * The phase of obtaining a timestamp token for the signature value.
+     */
+    static final String TIMESTAMP = "timestamp";
+
+    private InstrumentedSigning() {
+    }
+
+    /**
+     * @param digest  The digest provider to time.
+     * @param phases  The timer of the current operation.
+     * @param monitor The progress monitor of the operation, or null.
+     * @return A digest provider whose digests add their time to the
+     *         {@value #HASH} phase and report hashed bytes to the monitor.
+     */
+    static IExternalDigest digest(IExternalDigest digest, PhaseTimer phases, SigningMonitor monitor) {
+        return hashAlgorithm -> new TimedMessageDigest(digest.getMessageDigest(hashAlgorithm), phases, monitor);
+    }
+
+    /**
+     * @param signature The signature to time.
+     * @param phases    The timer of the current operation.
+     * @param monitor   The progress monitor of the operation, or null.
+     * @return A signature that adds its time to the {@value #SIGNATURE} phase
+     *         and reports the signing and writing phases to the monitor.
+     */
+    static IExternalSignature signature(IExternalSignature signature, PhaseTimer phases, SigningMonitor monitor) {
+        return new IExternalSignature() {
+            @Override
+            public String getHashAlgorithm() {
+                return signature.getHashAlgorithm();
+            }
+
+            @Override
+            public String getEncryptionAlgorithm() {
+                return signature.getEncryptionAlgorithm();
+            }
+
+            @Override
+            public byte[] sign(byte[] message) throws GeneralSecurityException {
+                if (monitor != null) {
+                    monitor.phase(SigningPhase.SIGNING);
+                }
+                SignatureValueEvent event = new SignatureValueEvent();
+                event.setAlgorithm(signature.getHashAlgorithm() + "with" + signature.getEncryptionAlgorithm());
+                long start = System.nanoTime();
+                boolean signed = false;
+                try {
+                    byte[] signatureValue = signature.sign(message);
+                    signed = true;
+                    return signatureValue;
+                } catch (GeneralSecurityException | RuntimeException e) {
+                    event.setFailure(e);
+                    throw e;
+                } finally {
+                    phases.addNested(SIGNATURE, System.nanoTime() - start);
+                    event.finish(signed);
+                    if (signed && monitor != null) {
+                        monitor.phase(SigningPhase.WRITING);
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * @param tsaClient The timestamp client to time.
+     * @param phases    The timer of the current operation.
+     * @param monitor   The progress monitor of the operation, or null.
+     * @return A timestamp client that adds its time to the {@value #TIMESTAMP}
+     *         phase and does not send a request once the monitor is cancelled.
+     */
+    static ITSAClient timestamp(ITSAClient tsaClient, PhaseTimer phases, SigningMonitor monitor) {
+        return new ITSAClient() {
+            @Override
+            public int getTokenSizeEstimate() {
+                return tsaClient.getTokenSizeEstimate();
+            }
+
+            @Override
+            public MessageDigest getMessageDigest() throws GeneralSecurityException {
+                return tsaClient.getMessageDigest();
+            }
+
+            @Override
+            public byte[] getTimeStampToken(byte[] imprint) throws Exception {
+                if (monitor != null) {
+                    monitor.checkCancelled();
+                }
+                TimestampEvent event = new TimestampEvent();
+                long start = System.nanoTime();
+                boolean received = false;
+                try {
+                    byte[] token = tsaClient.getTimeStampToken(imprint);
+                    event.setTokenSize(token.length);
+                    received = true;
+                    return token;
+                } catch (Exception e) {
+                    event.setFailure(e);
+                    throw e;
+                } finally {
+                    phases.addNested(TIMESTAMP, System.nanoTime() - start);
+                    event.finish(received);
+                }
+            }
+        };
+    }
+
+    /**
+     * A message digest that delegates to another one and times every call.
+     * A {@link DigestEvent} spans from the first update to the digest.
+     */
+    private static final class TimedMessageDigest extends MessageDigest {
+        private final MessageDigest delegate;
+        private final PhaseTimer phases;
+        private final SigningMonitor monitor;
+        private DigestEvent event;
+        private long size;
+
+        TimedMessageDigest(MessageDigest delegate, PhaseTimer phases, SigningMonitor monitor) {
+            super(delegate.getAlgorithm());
+            this.delegate = delegate;
+            this.phases = phases;
+            this.monitor = monitor;
+        }
+
+        @Override
+        protected void engineUpdate(byte input) {
+            startEvent();
+            delegate.update(input);
+            size++;
+        }
+
+        @Override
+        protected void engineUpdate(byte[] input, int offset, int len) {
+            startEvent();
+            long start = System.nanoTime();
+            delegate.update(input, offset, len);
+            phases.addNested(HASH, System.nanoTime() - start);
+            size += len;
+            if (monitor != null) {
+                monitor.hashed(len);
+            }
+        }
+
+        @Override
+        protected byte[] engineDigest() {
+            startEvent();
+            long start = System.nanoTime();
+            byte[] digest = delegate.digest();
+            phases.addNested(HASH, System.nanoTime() - start);
+            event.setSize(size);
+            event.finish(true);
+            event = null;
+            size = 0;
+            return digest;
+        }
+
+        @Override
+        protected int engineGetDigestLength() {
+            return delegate.getDigestLength();
+        }
+
+        @Override
+        protected void engineReset() {
+            delegate.reset();
+            event = null;
+            size = 0;
+        }
+
+        /**
+         * Starts the digest event on the first call after creation or reset.
+         */
+        private void startEvent() {
+            if (event == null) {
+                event = new DigestEvent();
+                event.setAlgorithm(delegate.getAlgorithm());
+            }
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.padesigner.crypto;
+
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+
+/**
+ * Chooses the PBKDF2 iteration count used to protect private keys.
+ * The cost of the key derivation is measured on the current machine and scaled
+ * so that unlocking a key takes a target time, instead of depending on a fixed
+ * count that is far too cheap on one host and painfully slow on another. The
+ * chosen count is stored in the key file header, see {@link AESUtil}.
+ */
+public class KdfCalibrator {
+
+    /**
+     * The unlock time aimed for when no other target is given.
+     */
+    public static final Duration DEFAULT_TARGET = Duration.ofMillis(250);
+
+    /**
+     * The lowest iteration count ever chosen, whatever the target.
+     */
+    public static final int MIN_ITERATIONS = 100_000;
+
+    /**
+     * The highest iteration count ever chosen, whatever the target.
+     */
+    public static final int MAX_ITERATIONS = 10_000_000;
+
+    private static final int PROBE_ITERATIONS = 20_000;
+    private static final int PROBE_ROUNDS = 5;
+    private static final int ROUNDING = 1_000;
+    private static final byte[] PROBE_SALT = new byte[16];
+    private static final String PROBE_PIN = "calibration";
+
+    private static volatile int defaultIterations;
+
+    /**
+     * Returns the iteration count for {@link #DEFAULT_TARGET}. The machine is
+     * measured on first use only.
+     *
+     * @return The iteration count.
+     * @throws GeneralSecurityException If PBKDF2 is not available.
+     */
+    public static int getDefaultIterations() throws GeneralSecurityException {
+        int iterations = defaultIterations;
+        if (iterations == 0) {
+            synchronized (KdfCalibrator.class) {
+                iterations = defaultIterations;
+                if (iterations == 0) {
+                    iterations = calibrate(DEFAULT_TARGET);
+                    defaultIterations = iterations;
+                }
+            }
+        }
+        return iterations;
+    }
+
+    /**
+     * Measures the key derivation on this machine and returns the iteration
+     * count that makes it take about the target time. The fastest of several
+     * probe runs is used, so a busy machine does not inflate the cost; the
+     * result is rounded and kept within {@link #MIN_ITERATIONS} and
+     * {@link #MAX_ITERATIONS}.
+     *
+     * @param target The unlock time to aim for.
+     * @return The iteration count.
+     * @throws GeneralSecurityException If PBKDF2 is not available.
+     */
+    public static int calibrate(Duration target) throws GeneralSecurityException {
+        if (target.isNegative() || target.isZero()) {
+            throw new IllegalArgumentException("Target unlock time must be positive.");
+        }
+        AESUtil.deriveKey(PROBE_PIN, PROBE_SALT, PROBE_ITERATIONS);
+        long fastest = Long.MAX_VALUE;
+        for (int i = 0; i < PROBE_ROUNDS; i++) {
+            fastest = Math.min(fastest, measure(PROBE_ITERATIONS).toNanos());
+        }
+        double nanosPerIteration = (double) Math.max(1, fastest) / PROBE_ITERATIONS;
+        long iterations = Math.round(target.toNanos() / nanosPerIteration / ROUNDING) * ROUNDING;
+        return (int) Math.max(MIN_ITERATIONS, Math.min(MAX_ITERATIONS, iterations));
+    }
+
+    /**
+     * Measures one key derivation with the given iteration count, which is
+     * what unlocking a key file with that count costs.
+     *
+     * @param iterations The iteration count.
+     * @return The time taken.
+     * @throws GeneralSecurityException If PBKDF2 is not available.
+     */
+    public static Duration measure(int iterations) throws GeneralSecurityException {
+        long started = System.nanoTime();
+        AESUtil.deriveKey(PROBE_PIN, PROBE_SALT, iterations);
+        return Duration.ofNanos(System.nanoTime() - started);
+    }
+}
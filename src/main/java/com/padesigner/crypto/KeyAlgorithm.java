@@ -0,0 +1,287 @@
+package com.padesigner.crypto;
+
+import java.security.AlgorithmParameters;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.Signature;
+import java.security.interfaces.ECKey;
+import java.security.interfaces.RSAKey;
+import java.security.spec.AlgorithmParameterSpec;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.ECParameterSpec;
+import java.security.spec.RSAKeyGenParameterSpec;
+import java.util.List;
+
+import com.itextpdf.signatures.DigestAlgorithms;
+import com.itextpdf.signatures.IExternalSignature;
+import com.itextpdf.signatures.PrivateKeySignature;
+
+/**
+ * The key types supported for signing, with the algorithms that go with them.
+ * Elliptic curve keys sign one to two orders of magnitude faster than
+ * RSA-4096, which makes them the better choice for high-volume signing.
+ * <p>
+ * RSA and ECDSA signatures are produced by iText; iText does not support
+ * EdDSA, so Ed25519 signature containers are built with Bouncy Castle (see
+ * {@link CmsSignatureBuilder}).
+ */
+public enum KeyAlgorithm {
+
+    /**
+     * RSA with a 4096-bit modulus, signed with SHA-256, SHA-384 or SHA-512.
+     */
+    RSA_4096("rsa", "RSA", new RSAKeyGenParameterSpec(4096, RSAKeyGenParameterSpec.F4), "RSA",
+            DigestAlgorithms.SHA256, DigestAlgorithms.SHA384, DigestAlgorithms.SHA512),
+
+    /**
+     * ECDSA on the NIST P-256 curve, signed with SHA-256, SHA-384 or SHA-512.
+     */
+    EC_P256("p256", "EC", new ECGenParameterSpec("secp256r1"), "ECDSA", DigestAlgorithms.SHA256,
+            DigestAlgorithms.SHA384, DigestAlgorithms.SHA512),
+
+    /**
+     * ECDSA on the NIST P-384 curve, signed with SHA-384 or SHA-512.
+     */
+    EC_P384("p384", "EC", new ECGenParameterSpec("secp384r1"), "ECDSA", DigestAlgorithms.SHA384,
+            DigestAlgorithms.SHA512),
+
+    /**
+     * Ed25519. Signed attributes are hashed with SHA-512 as required for CMS
+     * (RFC 8419).
+     */
+    ED25519("ed25519", "Ed25519", null, null, DigestAlgorithms.SHA512);
+
+    private final String name;
+    private final String keyType;
+    private final AlgorithmParameterSpec parameters;
+    private final String encryptionAlgorithm;
+    private final List<String> digestAlgorithms;
+
+    KeyAlgorithm(String name, String keyType, AlgorithmParameterSpec parameters, String encryptionAlgorithm,
+            String... digestAlgorithms) {
+        this.name = name;
+        this.keyType = keyType;
+        this.parameters = parameters;
+        this.encryptionAlgorithm = encryptionAlgorithm;
+        this.digestAlgorithms = List.of(digestAlgorithms);
+    }
+
+    /**
+     * @return The short name used on the command line, e.g. "p256".
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return The JCA key algorithm, e.g. "EC".
+     */
+    public String getKeyType() {
+        return keyType;
+    }
+
+    /**
+     * @return The default document digest, e.g. "SHA-256".
+     */
+    public String getDigestAlgorithm() {
+        return digestAlgorithms.get(0);
+    }
+
+    /**
+     * Returns the document digests allowed with this key type: those at least
+     * as strong as the key, so the digest does not weaken the signature. The
+     * default comes first; {@link CryptoProviders} picks the fastest.
+     *
+     * @return The JCA names of the digests, e.g. "SHA-256".
+     */
+    public List<String> getDigestAlgorithms() {
+        return digestAlgorithms;
+    }
+
+    /**
+     * @return The JCA signature algorithm with the default digest, e.g.
+     *         "SHA256withECDSA".
+     */
+    public String getSignatureAlgorithm() {
+        return getSignatureAlgorithm(getDigestAlgorithm());
+    }
+
+    /**
+     * @param digestAlgorithm One of the allowed document digests.
+     * @return The JCA signature algorithm with that digest, e.g.
+     *         "SHA512withECDSA".
+     */
+    public String getSignatureAlgorithm(String digestAlgorithm) {
+        requireAllowed(digestAlgorithm);
+        if (encryptionAlgorithm == null) {
+            return keyType;
+        }
+        return DigestAlgorithms.getDigest(DigestAlgorithms.getAllowedDigest(digestAlgorithm)) + "with"
+                + encryptionAlgorithm;
+    }
+
+    /**
+     * @return true if iText can produce signatures with this algorithm itself.
+     */
+    public boolean isSupportedByIText() {
+        return this != ED25519;
+    }
+
+    /**
+     * Generates a new key pair.
+     *
+     * @return The key pair.
+     * @throws GeneralSecurityException If the algorithm is not available.
+     */
+    public KeyPair generateKeyPair() throws GeneralSecurityException {
+        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance(keyType);
+        if (parameters != null) {
+            keyPairGenerator.initialize(parameters);
+        }
+        return keyPairGenerator.generateKeyPair();
+    }
+
+    /**
+     * Creates the iText signature implementation for a private key of this
+     * type.
+     *
+     * @param privateKey      The private key.
+     * @param digestAlgorithm One of the allowed document digests.
+     * @param provider        The JCA provider computing the signature.
+     * @return An external signature that signs with the key.
+     */
+    public IExternalSignature createSignature(PrivateKey privateKey, String digestAlgorithm, String provider) {
+        requireAllowed(digestAlgorithm);
+        if (isSupportedByIText()) {
+            return new PrivateKeySignature(privateKey, digestAlgorithm, provider);
+        }
+        return new PureSignature(privateKey, this, provider);
+    }
+
+    /**
+     * @param digestAlgorithm A document digest.
+     * @throws IllegalArgumentException If the digest is not allowed with this
+     *                                  key type.
+     */
+    private void requireAllowed(String digestAlgorithm) {
+        if (!digestAlgorithms.contains(digestAlgorithm)) {
+            throw new IllegalArgumentException(digestAlgorithm + " is not allowed with " + this + " keys.");
+        }
+    }
+
+    /**
+     * Looks up an algorithm by its command line name.
+     *
+     * @param name The name, e.g. "ed25519".
+     * @return The algorithm.
+     */
+    public static KeyAlgorithm fromName(String name) {
+        for (KeyAlgorithm algorithm : values()) {
+            if (algorithm.name.equalsIgnoreCase(name)) {
+                return algorithm;
+            }
+        }
+        throw new IllegalArgumentException("Unknown key algorithm: " + name);
+    }
+
+    /**
+     * Determines the algorithm of an existing key.
+     *
+     * @param key A public or private key.
+     * @return The algorithm.
+     * @throws IllegalArgumentException If the key type or size is not
+     *                                  supported.
+     */
+    public static KeyAlgorithm of(Key key) {
+        if (key instanceof RSAKey rsaKey) {
+            int modulusSize = rsaKey.getModulus().bitLength();
+            if (modulusSize == 4096) {
+                return RSA_4096;
+            }
+            throw new IllegalArgumentException("Unsupported RSA key size: " + modulusSize);
+        }
+        if (key instanceof ECKey ecKey) {
+            for (KeyAlgorithm algorithm : values()) {
+                if (algorithm.parameters instanceof ECGenParameterSpec curve
+                        && isCurve(ecKey.getParams(), curve.getName())) {
+                    return algorithm;
+                }
+            }
+            throw new IllegalArgumentException("Unsupported elliptic curve with a "
+                    + ecKey.getParams().getCurve().getField().getFieldSize() + "-bit field.");
+        }
+        if ("Ed25519".equalsIgnoreCase(key.getAlgorithm()) || "EdDSA".equalsIgnoreCase(key.getAlgorithm())) {
+            return ED25519;
+        }
+        throw new IllegalArgumentException("Unsupported key algorithm: " + key.getAlgorithm());
+    }
+
+    /**
+     * Compares the domain parameters of a key with a named curve. Curves of
+     * the same size, such as secp256k1 or brainpoolP256r1 next to P-256,
+     * differ in their coefficients, base point and order.
+     *
+     * @param params The domain parameters of a key.
+     * @param name   The standard name of the curve, e.g. "secp256r1".
+     * @return true if the parameters define the named curve.
+     */
+    private static boolean isCurve(ECParameterSpec params, String name) {
+        ECParameterSpec curve;
+        try {
+            AlgorithmParameters parameters = AlgorithmParameters.getInstance("EC");
+            parameters.init(new ECGenParameterSpec(name));
+            curve = parameters.getParameterSpec(ECParameterSpec.class);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Elliptic curve " + name + " is not available.", e);
+        }
+        return curve.getCurve().equals(params.getCurve()) && curve.getGenerator().equals(params.getGenerator())
+                && curve.getOrder().equals(params.getOrder()) && curve.getCofactor() == params.getCofactor();
+    }
+
+    @Override
+    public String toString() {
+        return switch (this) {
+            case RSA_4096 -> "RSA 4096";
+            case EC_P256 -> "ECDSA P-256";
+            case EC_P384 -> "ECDSA P-384";
+            case ED25519 -> "Ed25519";
+        };
+    }
+
+    /**
+     * An external signature for algorithms that sign the message itself rather
+     * than a separately computed hash, such as Ed25519.
+     */
+    private static final class PureSignature implements IExternalSignature {
+        private final PrivateKey privateKey;
+        private final KeyAlgorithm algorithm;
+        private final String provider;
+
+        PureSignature(PrivateKey privateKey, KeyAlgorithm algorithm, String provider) {
+            this.privateKey = privateKey;
+            this.algorithm = algorithm;
+            this.provider = provider;
+        }
+
+        @Override
+        public String getHashAlgorithm() {
+            return DigestAlgorithms.getDigest(DigestAlgorithms.getAllowedDigest(algorithm.getDigestAlgorithm()));
+        }
+
+        @Override
+        public String getEncryptionAlgorithm() {
+            return algorithm.keyType;
+        }
+
+        @Override
+        public byte[] sign(byte[] message) throws GeneralSecurityException {
+            Signature signature = Signature.getInstance(algorithm.getSignatureAlgorithm(), provider);
+            signature.initSign(privateKey);
+            signature.update(message);
+            return signature.sign();
+        }
+    }
+}
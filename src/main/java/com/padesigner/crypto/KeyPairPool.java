@@ -0,0 +1,155 @@
+package com.padesigner.crypto;
+
+import java.security.KeyPair;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A bounded supply of pre-generated key pairs of one {@link KeyAlgorithm}.
+ * Generating a 4096-bit RSA key takes seconds, so background threads keep a few
+ * key pairs ready; taking one normally returns immediately, and the slot is
+ * refilled in the background as soon as it is taken. The generator threads
+ * block while the pool is full.
+ * <p>
+ * Pre-generated private keys only ever live in memory; a pool that is closed
+ * discards the key pairs it still holds.
+ */
+public class KeyPairPool implements AutoCloseable {
+
+    /**
+     * The number of key pairs kept ready by the shared pool.
+     */
+    public static final int DEFAULT_CAPACITY = 2;
+
+    private static final long POLL_INTERVAL_MILLIS = 100;
+
+    private static final Map<KeyAlgorithm, KeyPairPool> SHARED = new EnumMap<>(KeyAlgorithm.class);
+
+    private final KeyAlgorithm keyAlgorithm;
+    private final BlockingQueue<KeyPair> keyPairs;
+    private final ExecutorService generators;
+    private volatile Exception failure;
+
+    /**
+     * Creates a pool of RSA key pairs and starts filling it.
+     *
+     * @param capacity         The maximum number of key pairs kept ready.
+     * @param generatorThreads The number of background generator threads.
+     */
+    public KeyPairPool(int capacity, int generatorThreads) {
+        this(KeyAlgorithm.RSA_4096, capacity, generatorThreads);
+    }
+
+    /**
+     * Creates a pool and starts filling it.
+     *
+     * @param keyAlgorithm     The type of the generated key pairs.
+     * @param capacity         The maximum number of key pairs kept ready.
+     * @param generatorThreads The number of background generator threads.
+     */
+    public KeyPairPool(KeyAlgorithm keyAlgorithm, int capacity, int generatorThreads) {
+        if (capacity < 1 || generatorThreads < 1) {
+            throw new IllegalArgumentException("Capacity and thread count must be positive.");
+        }
+        this.keyAlgorithm = keyAlgorithm;
+        this.keyPairs = new ArrayBlockingQueue<>(capacity);
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.generators = Executors.newFixedThreadPool(generatorThreads, runnable -> {
+            Thread thread = new Thread(runnable, "key-pair-generator-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        for (int i = 0; i < generatorThreads; i++) {
+            generators.execute(this::generate);
+        }
+    }
+
+    /**
+     * Returns the RSA pool shared within this process, starting it on first use.
+     * Calling this early, e.g. when a key generation dialog opens, lets the
+     * first key pair be ready by the time it is needed.
+     *
+     * @return The shared pool.
+     */
+    public static KeyPairPool getShared() {
+        return getShared(KeyAlgorithm.RSA_4096);
+    }
+
+    /**
+     * Returns the pool of the given key type shared within this process,
+     * starting it on first use.
+     *
+     * @param keyAlgorithm The type of the key pairs.
+     * @return The shared pool.
+     */
+    public static synchronized KeyPairPool getShared(KeyAlgorithm keyAlgorithm) {
+        return SHARED.computeIfAbsent(keyAlgorithm, algorithm -> new KeyPairPool(algorithm, DEFAULT_CAPACITY, 1));
+    }
+
+    /**
+     * @return The type of the key pairs in this pool.
+     */
+    public KeyAlgorithm getKeyAlgorithm() {
+        return keyAlgorithm;
+    }
+
+    /**
+     * Takes a key pair, waiting for one to be generated if the pool is empty.
+     *
+     * @return A new key pair that is handed out only once.
+     * @throws Exception If key generation fails or the calling thread is
+     *                   interrupted.
+     */
+    public KeyPair take() throws Exception {
+        while (true) {
+            KeyPair keyPair = keyPairs.poll(POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+            if (keyPair != null) {
+                return keyPair;
+            }
+            if (failure != null) {
+                throw new Exception("Key generation failed: " + failure.getMessage(), failure);
+            }
+            if (generators.isShutdown()) {
+                throw new IllegalStateException("Key pair pool is closed.");
+            }
+        }
+    }
+
+    /**
+     * @return The number of key pairs ready to be taken.
+     */
+    public int available() {
+        return keyPairs.size();
+    }
+
+    /**
+     * Stops the generator threads and discards the key pairs still held.
+     */
+    @Override
+    public void close() {
+        generators.shutdownNow();
+        keyPairs.clear();
+    }
+
+    /**
+     * Generator loop: produces key pairs until the pool is closed.
+     */
+    private void generate() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                keyPairs.put(RSAKeyManager.generateKeyPair(keyAlgorithm));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            failure = e;
+        }
+    }
+}
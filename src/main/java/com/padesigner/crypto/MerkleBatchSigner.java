@@ -0,0 +1,132 @@
+package com.padesigner.crypto;
+
+import java.io.File;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Signs a batch of PDF documents with a single private key operation.
+ * Every document is prepared with an empty signature field and its ByteRange
+ * digest becomes a leaf of a {@link MerkleTree}. Only the tree root is signed;
+ * each document then receives a {@link MerkleSignature} container holding its
+ * inclusion proof, the root signature and the signer certificate.
+ * <p>
+ * These signatures use a private /SubFilter and are checked by
+ * {@link MerkleSignature#verify(String, com.itextpdf.signatures.PdfSignature, java.security.PublicKey)}
+ * rather than by generic PAdES validators.
+ */
+public class MerkleBatchSigner {
+
+    /**
+     * The outcome of signing one document of a batch.
+     *
+     * @param pdfFilePath The source document.
+     * @param outputPath  The signed document, or null on failure.
+     * @param error       The failure, or null on success.
+     */
+    public record Result(String pdfFilePath, String outputPath, Exception error) {
+    }
+
+    /**
+     * Signs the given documents as one batch. Documents that cannot be prepared
+     * are reported as failed and left out of the tree; the others are signed.
+     *
+     * @param pdfFilePaths The documents to sign.
+     * @param context      The signing context holding the key and certificate.
+     * @param executor     The executor used to prepare and finish documents.
+     * @return One result per document, in input order.
+     * @throws Exception If the root cannot be signed.
+     */
+    public static List<Result> signBatch(List<String> pdfFilePaths, SigningContext context, ExecutorService executor)
+            throws Exception {
+        String digestAlgorithm = CryptoProviders.toJcaName(context.getSignature().getHashAlgorithm());
+
+        List<Callable<DeferredSigner.PreparedSignature>> preparations = new ArrayList<>();
+        for (String pdfFilePath : pdfFilePaths) {
+            preparations.add(() -> DeferredSigner.prepare(pdfFilePath, getPreparedPath(pdfFilePath),
+                    digestAlgorithm, MerkleSignature.FILTER, MerkleSignature.SUB_FILTER));
+        }
+        List<Future<DeferredSigner.PreparedSignature>> prepared = executor.invokeAll(preparations);
+
+        Result[] results = new Result[pdfFilePaths.size()];
+        List<Integer> leafDocuments = new ArrayList<>();
+        List<byte[]> leafDigests = new ArrayList<>();
+        for (int i = 0; i < prepared.size(); i++) {
+            try {
+                leafDigests.add(prepared.get(i).get().digest());
+                leafDocuments.add(i);
+            } catch (ExecutionException e) {
+                String pdfFilePath = pdfFilePaths.get(i);
+                new File(getPreparedPath(pdfFilePath)).delete();
+                results[i] = new Result(pdfFilePath, null, asException(e.getCause()));
+            }
+        }
+        if (leafDigests.isEmpty()) {
+            return List.of(results);
+        }
+
+        MerkleTree tree = new MerkleTree(leafDigests, digestAlgorithm);
+        byte[] rootSignature = context.getSignature().sign(tree.getRoot());
+        String signatureAlgorithm = context.getProviders().signatureAlgorithm();
+        X509Certificate certificate = (X509Certificate) context.getCertificateChain()[0];
+
+        List<Callable<Result>> completions = new ArrayList<>();
+        for (int leaf = 0; leaf < leafDocuments.size(); leaf++) {
+            int leafIndex = leaf;
+            int document = leafDocuments.get(leaf);
+            String pdfFilePath = pdfFilePaths.get(document);
+            String fieldName = prepared.get(document).get().fieldName();
+            MerkleSignature signature = new MerkleSignature(digestAlgorithm, leafIndex, tree.getLeafCount(),
+                    tree.getProof(leafIndex), signatureAlgorithm, rootSignature, certificate);
+            completions.add(() -> embed(pdfFilePath, fieldName, signature));
+        }
+        List<Future<Result>> completed = executor.invokeAll(completions);
+        for (int leaf = 0; leaf < completed.size(); leaf++) {
+            results[leafDocuments.get(leaf)] = completed.get(leaf).get();
+        }
+        return List.of(results);
+    }
+
+    /**
+     * Embeds a Merkle container into a prepared document and removes the
+     * prepared copy.
+     *
+     * @param pdfFilePath The source document.
+     * @param fieldName   The reserved signature field.
+     * @param signature   The container for this document.
+     * @return The result for this document.
+     */
+    private static Result embed(String pdfFilePath, String fieldName, MerkleSignature signature) {
+        String preparedPath = getPreparedPath(pdfFilePath);
+        String outputPath = MyPdfSigner.generateOutputPath(pdfFilePath);
+        try {
+            DeferredSigner.embed(preparedPath, outputPath, fieldName, signature.encode());
+            return new Result(pdfFilePath, outputPath, null);
+        } catch (Exception e) {
+            return new Result(pdfFilePath, null, e);
+        } finally {
+            new File(preparedPath).delete();
+        }
+    }
+
+    /**
+     * @param pdfFilePath The source document.
+     * @return The path of the intermediate prepared document.
+     */
+    private static String getPreparedPath(String pdfFilePath) {
+        return MyPdfSigner.generateOutputPath(pdfFilePath) + ".prepared";
+    }
+
+    /**
+     * @param cause A task failure.
+     * @return The failure as an Exception.
+     */
+    private static Exception asException(Throwable cause) {
+        return cause instanceof Exception ? (Exception) cause : new Exception(cause);
+    }
+}
@@ -0,0 +1,245 @@
+package com.padesigner.crypto;
+
+import java.io.ByteArrayInputStream;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.bouncycastle.asn1.ASN1Boolean;
+import org.bouncycastle.asn1.ASN1EncodableVector;
+import org.bouncycastle.asn1.ASN1InputStream;
+import org.bouncycastle.asn1.ASN1Integer;
+import org.bouncycastle.asn1.ASN1OctetString;
+import org.bouncycastle.asn1.ASN1Sequence;
+import org.bouncycastle.asn1.ASN1UTF8String;
+import org.bouncycastle.asn1.DEROctetString;
+import org.bouncycastle.asn1.DERSequence;
+import org.bouncycastle.asn1.DERUTF8String;
+
+import com.itextpdf.kernel.pdf.PdfName;
+import com.itextpdf.signatures.PdfSignature;
+
+/**
+ * The signature container embedded into each document of a Merkle batch.
+ * It carries the document's inclusion proof, the single signature over the
+ * tree root and the signer certificate, encoded as a DER sequence:
+ *
+ * <pre>
+ * MerkleSignature ::= SEQUENCE {
+ *     version            INTEGER (1),
+ *     digestAlgorithm    UTF8String,
+ *     leafIndex          INTEGER,
+ *     leafCount          INTEGER,
+ *     proof              SEQUENCE OF SEQUENCE { siblingOnLeft BOOLEAN, sibling OCTET STRING },
+ *     signatureAlgorithm UTF8String,
+ *     rootSignature      OCTET STRING,
+ *     certificate        OCTET STRING }
+ * </pre>
+ */
+public class MerkleSignature {
+
+    /**
+     * The /Filter of Merkle batch signature dictionaries.
+     */
+    public static final PdfName FILTER = new PdfName("PAdESigner");
+
+    /**
+     * The /SubFilter identifying Merkle batch signatures.
+     */
+    public static final PdfName SUB_FILTER = new PdfName("PAdESigner.MerkleBatch");
+
+    private static final int VERSION = 1;
+
+    private static final Set<String> ALLOWED_DIGEST_ALGORITHMS = Set.of("SHA-256", "SHA-384", "SHA-512");
+
+    private final String digestAlgorithm;
+    private final int leafIndex;
+    private final int leafCount;
+    private final List<MerkleTree.ProofStep> proof;
+    private final String signatureAlgorithm;
+    private final byte[] rootSignature;
+    private final X509Certificate certificate;
+
+    /**
+     * Creates a container for one document of a batch.
+     *
+     * @param digestAlgorithm    The JCA name of the document and tree hash.
+     * @param leafIndex          The index of the document in the batch.
+     * @param leafCount          The number of documents in the batch.
+     * @param proof              The inclusion proof of the document.
+     * @param signatureAlgorithm The JCA name of the root signature algorithm.
+     * @param rootSignature      The signature over the tree root.
+     * @param certificate        The signer certificate.
+     */
+    public MerkleSignature(String digestAlgorithm, int leafIndex, int leafCount, List<MerkleTree.ProofStep> proof,
+            String signatureAlgorithm, byte[] rootSignature, X509Certificate certificate) {
+        this.digestAlgorithm = digestAlgorithm;
+        this.leafIndex = leafIndex;
+        this.leafCount = leafCount;
+        this.proof = List.copyOf(proof);
+        this.signatureAlgorithm = signatureAlgorithm;
+        this.rootSignature = rootSignature.clone();
+        this.certificate = certificate;
+    }
+
+    /**
+     * @return The JCA name of the document and tree hash.
+     */
+    public String getDigestAlgorithm() {
+        return digestAlgorithm;
+    }
+
+    /**
+     * @return The index of the document in its batch.
+     */
+    public int getLeafIndex() {
+        return leafIndex;
+    }
+
+    /**
+     * @return The number of documents in the batch.
+     */
+    public int getLeafCount() {
+        return leafCount;
+    }
+
+    /**
+     * @return The signer certificate.
+     */
+    public X509Certificate getCertificate() {
+        return certificate;
+    }
+
+    /**
+     * Verifies a Merkle batch signature of a PDF file.
+     * The signed byte ranges are hashed straight from the file and checked
+     * against the inclusion proof and root signature in the container.
+     *
+     * @param pdfFilePath The path to the signed PDF file.
+     * @param dictionary  The signature dictionary of the Merkle signature.
+     * @param publicKey   The expected signer public key.
+     * @return true if the signature is valid and made by the given key.
+     * @throws Exception If the container cannot be decoded or the file cannot be
+     *                   read.
+     */
+    public static boolean verify(String pdfFilePath, PdfSignature dictionary, PublicKey publicKey) throws Exception {
+        MerkleSignature container = decode(dictionary.getContents().getValueBytes());
+        byte[] digest = ByteRangeDigester.digest(pdfFilePath, dictionary.getByteRange().toLongArray(),
+                CryptoProviders.createMessageDigest(container.getDigestAlgorithm()));
+        return container.verify(digest, publicKey);
+    }
+
+    /**
+     * Checks that the document digest is part of the signed batch and that the
+     * root signature was made by the given public key. The root signature
+     * algorithm must be the one the key type uses with the container's digest.
+     *
+     * @param documentDigest The digest of the document's signed byte ranges.
+     * @param publicKey      The expected signer public key.
+     * @return true if the proof and the root signature are valid.
+     * @throws Exception If the container names another signature algorithm,
+     *                   the algorithms are unavailable or the signature cannot
+     *                   be processed.
+     */
+    public boolean verify(byte[] documentDigest, PublicKey publicKey) throws Exception {
+        if (!certificate.getPublicKey().equals(publicKey)) {
+            return false;
+        }
+        KeyAlgorithm keyAlgorithm = KeyAlgorithm.of(publicKey);
+        if (!keyAlgorithm.getDigestAlgorithms().contains(digestAlgorithm)) {
+            throw new Exception(digestAlgorithm + " is not allowed with " + keyAlgorithm + " keys.");
+        }
+        String expectedAlgorithm = keyAlgorithm.getSignatureAlgorithm(digestAlgorithm);
+        if (!expectedAlgorithm.equals(signatureAlgorithm)) {
+            throw new Exception("Unexpected Merkle signature algorithm " + signatureAlgorithm + " for a "
+                    + keyAlgorithm + " key, expected " + expectedAlgorithm);
+        }
+        byte[] root = MerkleTree.computeRoot(documentDigest, proof, digestAlgorithm);
+        Signature signature = Signature.getInstance(expectedAlgorithm, CryptoProviders.getVerificationProvider());
+        signature.initVerify(publicKey);
+        signature.update(root);
+        return signature.verify(rootSignature);
+    }
+
+    /**
+     * Encodes this container as DER.
+     *
+     * @return The encoded container.
+     * @throws Exception If the certificate cannot be encoded.
+     */
+    public byte[] encode() throws Exception {
+        ASN1EncodableVector steps = new ASN1EncodableVector();
+        for (MerkleTree.ProofStep step : proof) {
+            ASN1EncodableVector encodedStep = new ASN1EncodableVector();
+            encodedStep.add(ASN1Boolean.getInstance(step.siblingOnLeft()));
+            encodedStep.add(new DEROctetString(step.sibling()));
+            steps.add(new DERSequence(encodedStep));
+        }
+
+        ASN1EncodableVector container = new ASN1EncodableVector();
+        container.add(new ASN1Integer(VERSION));
+        container.add(new DERUTF8String(digestAlgorithm));
+        container.add(new ASN1Integer(leafIndex));
+        container.add(new ASN1Integer(leafCount));
+        container.add(new DERSequence(steps));
+        container.add(new DERUTF8String(signatureAlgorithm));
+        container.add(new DEROctetString(rootSignature));
+        container.add(new DEROctetString(certificate.getEncoded()));
+        return new DERSequence(container).getEncoded();
+    }
+
+    /**
+     * Decodes a container read from a signature's /Contents. Trailing zero
+     * padding after the DER sequence is ignored.
+     *
+     * @param contents The signature contents.
+     * @return The decoded container.
+     * @throws Exception If the contents are not a supported Merkle container.
+     */
+    public static MerkleSignature decode(byte[] contents) throws Exception {
+        ASN1Sequence container;
+        try (ASN1InputStream input = new ASN1InputStream(contents)) {
+            container = ASN1Sequence.getInstance(input.readObject());
+        }
+        int version = ASN1Integer.getInstance(container.getObjectAt(0)).intValueExact();
+        if (version != VERSION) {
+            throw new Exception("Unsupported Merkle signature version: " + version);
+        }
+
+        String digestAlgorithm = ASN1UTF8String.getInstance(container.getObjectAt(1)).getString();
+        if (!ALLOWED_DIGEST_ALGORITHMS.contains(digestAlgorithm)) {
+            throw new Exception("Unsupported Merkle digest algorithm: " + digestAlgorithm);
+        }
+
+        List<MerkleTree.ProofStep> proof = new ArrayList<>();
+        for (Object encoded : ASN1Sequence.getInstance(container.getObjectAt(4))) {
+            ASN1Sequence step = ASN1Sequence.getInstance(encoded);
+            proof.add(new MerkleTree.ProofStep(
+                    ASN1OctetString.getInstance(step.getObjectAt(1)).getOctets(),
+                    ASN1Boolean.getInstance(step.getObjectAt(0)).isTrue()));
+        }
+
+        int leafIndex = ASN1Integer.getInstance(container.getObjectAt(2)).intValueExact();
+        int leafCount = ASN1Integer.getInstance(container.getObjectAt(3)).intValueExact();
+        if (!MerkleTree.fitsTree(leafIndex, leafCount, proof)) {
+            throw new Exception("Merkle proof does not match leaf " + leafIndex + " of " + leafCount);
+        }
+
+        byte[] certificateBytes = ASN1OctetString.getInstance(container.getObjectAt(7)).getOctets();
+        X509Certificate certificate = (X509Certificate) CertificateFactory.getInstance("X.509")
+                .generateCertificate(new ByteArrayInputStream(certificateBytes));
+
+        return new MerkleSignature(
+                digestAlgorithm,
+                leafIndex,
+                leafCount,
+                proof,
+                ASN1UTF8String.getInstance(container.getObjectAt(5)).getString(),
+                ASN1OctetString.getInstance(container.getObjectAt(6)).getOctets(),
+                certificate);
+    }
+}
@@ -0,0 +1,178 @@
+package com.padesigner.crypto;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A binary hash tree over document digests, used to cover many documents with
+ * a single signature.
+ * Leaves are hashed as H(0x00 || digest) and inner nodes as
+ * H(0x01 || left || right), so a leaf can never be confused with a node. When a
+ * level has an odd number of nodes the last one is promoted unchanged.
+ */
+public class MerkleTree {
+
+    private static final byte LEAF_PREFIX = 0x00;
+    private static final byte NODE_PREFIX = 0x01;
+
+    private final String digestAlgorithm;
+    private final List<byte[][]> levels = new ArrayList<>();
+
+    /**
+     * One step of an inclusion proof.
+     *
+     * @param sibling       The hash of the sibling node.
+     * @param siblingOnLeft true if the sibling is the left child.
+     */
+    public record ProofStep(byte[] sibling, boolean siblingOnLeft) {
+    }
+
+    /**
+     * Builds a tree over the given document digests.
+     *
+     * @param leafDigests     The document digests, in leaf order.
+     * @param digestAlgorithm The JCA name of the hash used for the tree.
+     * @throws NoSuchAlgorithmException If the digest algorithm is not available.
+     */
+    public MerkleTree(List<byte[]> leafDigests, String digestAlgorithm) throws NoSuchAlgorithmException {
+        if (leafDigests.isEmpty()) {
+            throw new IllegalArgumentException("A Merkle tree needs at least one leaf.");
+        }
+        this.digestAlgorithm = digestAlgorithm;
+        MessageDigest messageDigest = MessageDigest.getInstance(digestAlgorithm);
+
+        byte[][] level = new byte[leafDigests.size()][];
+        for (int i = 0; i < level.length; i++) {
+            level[i] = hashLeaf(messageDigest, leafDigests.get(i));
+        }
+        levels.add(level);
+
+        while (level.length > 1) {
+            byte[][] parent = new byte[(level.length + 1) / 2][];
+            for (int i = 0; i < parent.length; i++) {
+                int left = 2 * i;
+                parent[i] = left + 1 < level.length ? hashNode(messageDigest, level[left], level[left + 1])
+                        : level[left];
+            }
+            levels.add(parent);
+            level = parent;
+        }
+    }
+
+    /**
+     * @return The JCA name of the hash used for the tree.
+     */
+    public String getDigestAlgorithm() {
+        return digestAlgorithm;
+    }
+
+    /**
+     * @return The number of leaves.
+     */
+    public int getLeafCount() {
+        return levels.get(0).length;
+    }
+
+    /**
+     * @return The root hash of the tree.
+     */
+    public byte[] getRoot() {
+        return levels.get(levels.size() - 1)[0].clone();
+    }
+
+    /**
+     * Returns the inclusion proof for the leaf at the given index.
+     *
+     * @param index The leaf index.
+     * @return The sibling hashes from the leaf up to the root.
+     */
+    public List<ProofStep> getProof(int index) {
+        if (index < 0 || index >= getLeafCount()) {
+            throw new IndexOutOfBoundsException("Leaf index out of range: " + index);
+        }
+        List<ProofStep> proof = new ArrayList<>();
+        for (int depth = 0; depth < levels.size() - 1; depth++) {
+            byte[][] level = levels.get(depth);
+            int sibling = index ^ 1;
+            if (sibling < level.length) {
+                proof.add(new ProofStep(level[sibling].clone(), sibling < index));
+            }
+            index /= 2;
+        }
+        return proof;
+    }
+
+    /**
+     * Checks that a proof has the steps the proof of a leaf has in a tree of
+     * the given size: one per level where the leaf's node has a sibling, with
+     * the sibling on the side given by the leaf index.
+     *
+     * @param leafIndex The claimed leaf index.
+     * @param leafCount The claimed number of leaves.
+     * @param proof     The inclusion proof.
+     * @return true if the proof fits the index and size.
+     */
+    public static boolean fitsTree(int leafIndex, int leafCount, List<ProofStep> proof) {
+        if (leafIndex < 0 || leafIndex >= leafCount) {
+            return false;
+        }
+        int step = 0;
+        for (int index = leafIndex, size = leafCount; size > 1; index /= 2, size = (size + 1) / 2) {
+            int sibling = index ^ 1;
+            if (sibling < size) {
+                if (step == proof.size() || proof.get(step++).siblingOnLeft() != sibling < index) {
+                    return false;
+                }
+            }
+        }
+        return step == proof.size();
+    }
+
+    /**
+     * Recomputes the root hash from a document digest and its inclusion proof.
+     *
+     * @param leafDigest      The document digest.
+     * @param proof           The inclusion proof.
+     * @param digestAlgorithm The JCA name of the hash used for the tree.
+     * @return The root hash implied by the proof.
+     * @throws NoSuchAlgorithmException If the digest algorithm is not available.
+     */
+    public static byte[] computeRoot(byte[] leafDigest, List<ProofStep> proof, String digestAlgorithm)
+            throws NoSuchAlgorithmException {
+        MessageDigest messageDigest = MessageDigest.getInstance(digestAlgorithm);
+        byte[] node = hashLeaf(messageDigest, leafDigest);
+        for (ProofStep step : proof) {
+            node = step.siblingOnLeft() ? hashNode(messageDigest, step.sibling(), node)
+                    : hashNode(messageDigest, node, step.sibling());
+        }
+        return node;
+    }
+
+    /**
+     * Hashes a leaf with its domain separation prefix.
+     *
+     * @param messageDigest The digest to use.
+     * @param digest        The document digest.
+     * @return The leaf hash.
+     */
+    private static byte[] hashLeaf(MessageDigest messageDigest, byte[] digest) {
+        messageDigest.update(LEAF_PREFIX);
+        return messageDigest.digest(digest);
+    }
+
+    /**
+     * Hashes two child nodes with the inner node prefix.
+     *
+     * @param messageDigest The digest to use.
+     * @param left          The left child.
+     * @param right         The right child.
+     * @return The parent hash.
+     */
+    private static byte[] hashNode(MessageDigest messageDigest, byte[] left, byte[] right) {
+        messageDigest.update(NODE_PREFIX);
+        messageDigest.update(left);
+        return messageDigest.digest(right);
+    }
+}
@@ -1,165 +1,403 @@
 package com.padesigner.crypto;
 
-import java.io.FileOutputStream;
-import java.math.BigInteger;
-import java.security.KeyPair;
-import java.security.PublicKey;
-import java.security.cert.Certificate;
-import java.security.cert.X509Certificate;
-import java.security.interfaces.RSAPrivateKey;
-import java.security.spec.RSAPublicKeySpec;
-import java.util.Calendar;
-import java.util.Date;
-
-import javax.security.auth.x500.X500Principal;
+import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.PrivateKey;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.regex.Pattern;
+
 import javax.swing.JLabel;
 import javax.swing.JOptionPane;
 
-import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
-import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
-import org.bouncycastle.operator.ContentSigner;
-import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
-
+import com.itextpdf.kernel.exceptions.KernelExceptionMessageConstant;
+import com.itextpdf.kernel.exceptions.PdfException;
 import com.itextpdf.kernel.pdf.PdfReader;
 import com.itextpdf.kernel.pdf.StampingProperties;
-import com.itextpdf.signatures.IExternalDigest;
-import com.itextpdf.signatures.IExternalSignature;
-import com.itextpdf.text.pdf.security.DigestAlgorithms;
-
+import com.itextpdf.signatures.ITSAClient;
 import com.itextpdf.signatures.PdfSigner;
-import com.itextpdf.signatures.PrivateKeySignature;
-
-import java.security.KeyFactory;
-import com.itextpdf.signatures.BouncyCastleDigest;
+import com.padesigner.jfr.DocumentSignEvent;
+import com.padesigner.metrics.PhaseTimer;
 
 /**
  * Utility class for signing PDF documents using the PAdES standard.
- * It handles the creation of self-signed certificates and applying digital
- * signatures
- * to PDF files using iText.
+ * It applies digital signatures to PDF files using iText, taking the key
+ * material from a {@link SigningContext}.
+ * <p>
+ * Signatures are appended to the document as incremental updates, so
+ * signatures already in the document stay valid. Signing one file into
+ * another copies the original bytes into the output file instead of
+ * rewriting the document.
+ * <p>
+ * Documents can also be signed from memory or a stream to any output stream,
+ * without touching the local disk. iText has to patch the signature into the
+ * finished document, so the output is buffered in memory before it is written
+ * out; inputs read from a stream are bounded by
+ * {@link PdfReaderFactory#getMaxInMemoryDocumentSize()}.
  */
 public class MyPdfSigner {
 
     /**
-     * Signs the specified PDF file using the provided RSA private key.
+     * The message of the exception iText throws when a repaired document is
+     * opened in append mode.
+     */
+    private static final String REPAIRED_DOCUMENT =
+            KernelExceptionMessageConstant.APPEND_MODE_REQUIRES_A_DOCUMENT_WITHOUT_ERRORS_EVEN_IF_RECOVERY_IS_POSSIBLE;
+
+    /**
+     * A trailing ".pdf" extension in any case.
+     */
+    private static final Pattern PDF_EXTENSION = Pattern.compile("\\.pdf$", Pattern.CASE_INSENSITIVE);
+
+    /**
+     * Signs the specified PDF file using the provided signing context.
      * 
      * @param pdfFilePath The path to the PDF file to be signed.
-     * @param privateKey  The RSA private key used for signing.
+     * @param context     The signing context holding the key and certificate.
      * @param statusLabel A JLabel to display status messages.
      * @throws Exception If an error occurs during the signing process.
      */
-    static public void signPDF(String pdfFilePath, RSAPrivateKey privateKey, JLabel statusLabel) throws Exception {
-        String outputPath = generateOutputPath(pdfFilePath);
-        PdfSigner signer = initializePdfSigner(pdfFilePath, outputPath);
+    static public void signPDF(String pdfFilePath, SigningContext context, JLabel statusLabel) throws Exception {
+        String outputPath = signPDF(pdfFilePath, context);
+        showSuccessMessage(statusLabel, outputPath);
+    }
 
-        IExternalDigest digest = new BouncyCastleDigest();
-        IExternalSignature signature = new PrivateKeySignature(privateKey, DigestAlgorithms.SHA256, "BC");
+    /**
+     * Signs the specified PDF file using the provided private key without any
+     * user interaction.
+     * This variant does not touch Swing and may be called from any thread, which
+     * makes it suitable for headless and batch signing.
+     *
+     * @param pdfFilePath The path to the PDF file to be signed.
+     * @param privateKey  The private key used for signing.
+     * @return The path of the signed PDF file.
+     * @throws Exception If an error occurs during the signing process.
+     */
+    static public String signPDF(String pdfFilePath, PrivateKey privateKey) throws Exception {
+        return signPDF(pdfFilePath, SigningContextCache.getShared().get(privateKey));
+    }
 
-        Certificate[] certificateChain = generateSelfSignedCertificateChain(privateKey);
+    /**
+     * Signs the specified PDF file using a prepared signing context.
+     * The context carries the key, certificate chain and signature objects, so
+     * nothing key-related is rebuilt per document. Keys iText cannot sign with
+     * (Ed25519) get their container from {@link CmsSignatureBuilder}. If the
+     * context has a timestamp client, the signature is timestamped (PAdES-T);
+     * with revocation clients, revocation data for the certificate chain is
+     * embedded for long-term validation.
+     * <p>
+     * The phases are timed into the {@code padesigner_sign_*_seconds} metrics:
+     * opening the document, hashing the byte ranges, computing the signature,
+     * obtaining the timestamp if any and writing the output. A
+     * {@link DocumentSignEvent} is emitted for Flight Recorder.
+     *
+     * @param pdfFilePath The path to the PDF file to be signed.
+     * @param context     The signing context to use.
+     * @return The path of the signed PDF file.
+     * @throws Exception If an error occurs during the signing process.
+     */
+    static public String signPDF(String pdfFilePath, SigningContext context) throws Exception {
+        return signPDF(pdfFilePath, context, (SigningMonitor) null);
+    }
 
-        signer.signDetached(digest, signature, certificateChain, null, null, null, 0, PdfSigner.CryptoStandard.CADES);
+    /**
+     * Signs the specified PDF file, reporting progress to a monitor and
+     * stopping when the monitor is cancelled. The partly written output of a
+     * failed or cancelled signature is deleted.
+     *
+     * @param pdfFilePath The path to the PDF file to be signed.
+     * @param context     The signing context to use.
+     * @param monitor     The progress monitor, or null.
+     * @return The path of the signed PDF file.
+     * @throws Exception If an error occurs during the signing process, or a
+     *                   {@link java.util.concurrent.CancellationException} if
+     *                   the monitor was cancelled.
+     */
+    static String signPDF(String pdfFilePath, SigningContext context, SigningMonitor monitor) throws Exception {
+        String outputPath = generateOutputPath(pdfFilePath);
+        signPDF(PdfDocumentSource.of(pdfFilePath), context, monitor, fileSigners(pdfFilePath, outputPath));
+        return outputPath;
+    }
 
-        showSuccessMessage(statusLabel, outputPath);
+    /**
+     * Signs a PDF document held in memory and writes the signed document to a
+     * stream, which is flushed but not closed.
+     *
+     * @param document The PDF document to be signed.
+     * @param out      The stream receiving the signed document.
+     * @param context  The signing context to use.
+     * @throws Exception If an error occurs during the signing process.
+     */
+    static public void signPDF(byte[] document, OutputStream out, SigningContext context) throws Exception {
+        signPDF(ByteBuffer.wrap(document), out, context);
     }
 
     /**
-     * Generates the output path for the signed PDF file by appending "_signed" to
-     * the original filename.
-     * 
-     * @param pdfFilePath The path to the original PDF file.
-     * @return A string representing the output file path.
+     * Signs a PDF document held in a buffer and writes the signed document to
+     * a stream, which is flushed but not closed. The document is read in place
+     * from the buffer position to its limit, which are left unchanged, so
+     * direct and memory-mapped buffers are not copied to the heap.
+     *
+     * @param document The PDF document to be signed.
+     * @param out      The stream receiving the signed document.
+     * @param context  The signing context to use.
+     * @throws Exception If an error occurs during the signing process.
      */
-    static private String generateOutputPath(String pdfFilePath) {
-        return pdfFilePath.replace(".pdf", "_signed.pdf");
+    static public void signPDF(ByteBuffer document, OutputStream out, SigningContext context) throws Exception {
+        signPDF(PdfDocumentSource.of(document), context, null,
+                (reader, append) -> new AbortablePdfSigner(reader, new UnclosedOutputStream(out), null,
+                        stampingProperties(append), null));
     }
 
     /**
-     * Initializes a PdfSigner object for the given input and output PDF file paths.
-     * 
-     * @param pdfFilePath The path to the source PDF file.
-     * @param outputPath  The path where the signed PDF will be saved.
-     * @return An initialized PdfSigner object.
-     * @throws Exception If an error occurs while reading the PDF or creating the
-     *                   output stream.
+     * Signs a PDF document read from a stream and writes the signed document
+     * to another stream. The input is read to its end and buffered in memory,
+     * up to the limit of {@link PdfReaderFactory#getMaxInMemoryDocumentSize()}.
+     * Neither stream is closed.
+     *
+     * @param in      The stream holding the PDF document to be signed.
+     * @param out     The stream receiving the signed document.
+     * @param context The signing context to use.
+     * @throws Exception If an error occurs during the signing process or the
+     *                   document is too large.
      */
-    static private PdfSigner initializePdfSigner(String pdfFilePath, String outputPath) throws Exception {
-        PdfReader reader = new PdfReader(pdfFilePath);
-        return new PdfSigner(reader, new FileOutputStream(outputPath), new StampingProperties());
+    static public void signPDF(InputStream in, OutputStream out, SigningContext context) throws Exception {
+        signPDF(PdfReaderFactory.readDocument(in), out, context);
     }
 
     /**
-     * Displays a success message dialog and updates the status label.
-     * 
-     * @param statusLabel The JLabel to display status messages on.
-     * @param outputPath  The path to the signed PDF file.
+     * Signs a document, timing the phases and emitting the Flight Recorder
+     * event. When the signature fails or is cancelled, the signer is aborted
+     * so that its files are released and a partial output file is deleted.
+     *
+     * @param source  The PDF document to be signed.
+     * @param context The signing context to use.
+     * @param monitor The progress monitor, or null.
+     * @param signers Creates the signer writing the output.
+     * @throws Exception If an error occurs during the signing process.
      */
-    static private void showSuccessMessage(JLabel statusLabel, String outputPath) {
-        JOptionPane.showMessageDialog(statusLabel.getParent(), "Document signed successfully. Output: " + outputPath);
-        statusLabel.setText("Status: Document signed successfully.");
+    static private void signPDF(PdfDocumentSource source, SigningContext context, SigningMonitor monitor,
+            SignerFactory signers) throws Exception {
+        PhaseTimer phases = PhaseTimer.start("sign");
+        DocumentSignEvent event = new DocumentSignEvent(source.getPath());
+        event.setAlgorithm(context.getKeyAlgorithm().toString());
+        boolean signed = false;
+        AbortablePdfSigner signer = null;
+        try {
+            if (monitor != null) {
+                monitor.setTotalBytes(source.length());
+                monitor.phase(SigningPhase.OPENING);
+            }
+            signer = openSigner(source, signers);
+            phases.mark("open");
+            if (event.isEnabled()) {
+                event.setDocument(source.length(), signer.getDocument().getNumberOfPages());
+            }
+
+            ITSAClient tsaClient = context.getTsaClient();
+            if (context.getKeyAlgorithm().isSupportedByIText()) {
+                signer.signDetached(InstrumentedSigning.digest(context.getDigest(), phases, monitor),
+                        InstrumentedSigning.signature(context.getSignature(), phases, monitor),
+                        context.getCertificateChain(),
+                        context.getCrlClient() != null ? List.of(context.getCrlClient()) : null,
+                        context.getOcspClient(),
+                        tsaClient != null ? InstrumentedSigning.timestamp(tsaClient, phases, monitor) : null, 0,
+                        PdfSigner.CryptoStandard.CADES);
+            } else {
+                signer.signExternalContainer(CmsSignatureBuilder.createContainer(context, phases, monitor),
+                        CmsSignatureBuilder.estimateSize(context));
+            }
+            phases.mark("write");
+            if (monitor != null) {
+                monitor.phase(SigningPhase.COMPLETED);
+            }
+            signed = true;
+        } catch (Exception e) {
+            // iText wraps exceptions thrown while hashing, cancellation included.
+            Exception failure = monitor != null && monitor.isCancelled()
+                    ? new CancellationException("Signing was cancelled.") : e;
+            event.setFailure(failure);
+            throw failure;
+        } finally {
+            if (!signed && signer != null) {
+                signer.abort();
+            }
+            phases.finish(signed);
+            event.finish(signed);
+        }
+    }
+
+    /**
+     * Opens the signer of a document in append mode, so the signature is
+     * added as an incremental update and existing signatures stay valid.
+     * iText refuses append mode for documents it had to repair while reading;
+     * those are rewritten in full instead, which is safe because such a
+     * document cannot carry a valid signature anyway.
+     *
+     * @param source  The PDF document to be signed.
+     * @param signers Creates the signer writing the output.
+     * @return The signer.
+     * @throws Exception If the document cannot be opened.
+     */
+    static private AbortablePdfSigner openSigner(PdfDocumentSource source, SignerFactory signers)
+            throws Exception {
+        try {
+            return createSigner(source, signers, true);
+        } catch (PdfException e) {
+            if (!REPAIRED_DOCUMENT.equals(e.getMessage())) {
+                throw e;
+            }
+            return createSigner(source, signers, false);
+        }
     }
 
     /**
-     * Generates a self-signed certificate chain based on the provided private key.
-     * The public key is derived from the private key.
-     * The certificate is valid for one year from the time of creation.
-     * This method creates a self-signed X.509 certificate using Bouncy Castle APIs.
-     * It uses the SHA-256 with RSA encryption algorithm for signing.
-     * The certificate is created with a common name (CN) of "Self-Signed
-     * Certificate".
+     * Opens a reader for a document and creates its signer, closing the
+     * reader if the signer cannot be created.
      *
-     * @param privateKey The RSA private key used to sign the certificate.
-     * @return An array containing a single self-signed X.509 certificate.
-     * @throws Exception If an error occurs during key generation or certificate
-     *                   creation.
+     * @param source  The PDF document to be signed.
+     * @param signers Creates the signer writing the output.
+     * @param append  Whether to sign in append mode.
+     * @return The signer.
+     * @throws Exception If the document cannot be opened.
      */
-    static private Certificate[] generateSelfSignedCertificateChain(RSAPrivateKey privateKey) throws Exception {
-        PublicKey publicKey = generatePublicKeyFromPrivateKey(privateKey);
-        KeyPair keyPair = new KeyPair(publicKey, privateKey);
+    static private AbortablePdfSigner createSigner(PdfDocumentSource source, SignerFactory signers, boolean append)
+            throws Exception {
+        PdfReader reader = source.openReader();
+        try {
+            return signers.create(reader, append);
+        } catch (Exception e) {
+            reader.close();
+            throw e;
+        }
+    }
 
-        X500Principal subject = new X500Principal("CN=Self-Signed Certificate");
-        BigInteger serialNumber = BigInteger.valueOf(System.currentTimeMillis());
-        Date notBefore = new Date();
-        Date notAfter = calculateExpiryDate();
+    /**
+     * Opens the signer of a PDF file writing to another file, in append mode
+     * unless the document had to be repaired. A caller that does not complete
+     * the signature must {@link AbortablePdfSigner#abort() abort} it.
+     *
+     * @param pdfFilePath The path to the PDF file to be signed.
+     * @param outputPath  The path of the signed output.
+     * @return The signer.
+     * @throws Exception If the document cannot be opened or the output cannot
+     *                   be written.
+     */
+    static AbortablePdfSigner openSigner(String pdfFilePath, String outputPath) throws Exception {
+        return openSigner(PdfDocumentSource.of(pdfFilePath), fileSigners(pdfFilePath, outputPath));
+    }
 
-        ContentSigner contentSigner = new JcaContentSignerBuilder("SHA256WithRSAEncryption")
-                .setProvider("BC")
-                .build(privateKey);
-        JcaX509v3CertificateBuilder certBuilder = new JcaX509v3CertificateBuilder(
-                subject, serialNumber, notBefore, notAfter, subject, keyPair.getPublic());
+    /**
+     * Creates signers writing a PDF file to another file. The signer is given
+     * no output stream, so iText uses the output file as its working file: the
+     * document, or in append mode the original bytes followed by the new
+     * revision, is written into it and the signature is patched in place,
+     * with no temporary file and no final copy. The output file is deleted if
+     * the signature is aborted.
+     *
+     * @param pdfFilePath The path to the PDF file to be signed.
+     * @param outputPath  The path of the signed output.
+     * @return The signer factory.
+     * @throws IOException If the output is the document itself.
+     */
+    static private SignerFactory fileSigners(String pdfFilePath, String outputPath) throws IOException {
+        requireSeparateOutput(pdfFilePath, outputPath);
+        return (reader, append) -> new AbortablePdfSigner(reader, null, outputPath, stampingProperties(append),
+                new File(outputPath));
+    }
 
-        X509Certificate certificate = new JcaX509CertificateConverter()
-                .setProvider("BC")
-                .getCertificate(certBuilder.build(contentSigner));
+    /**
+     * Makes sure the output of a signature is not the document being signed.
+     * Opening the output truncates it while the reader still maps the
+     * document, which would destroy the original.
+     *
+     * @param pdfFilePath The path to the PDF file to be signed.
+     * @param outputPath  The path of the signed output.
+     * @throws IOException If both paths name the same file.
+     */
+    static private void requireSeparateOutput(String pdfFilePath, String outputPath) throws IOException {
+        Path document = Paths.get(pdfFilePath).toAbsolutePath().normalize();
+        Path output = Paths.get(outputPath).toAbsolutePath().normalize();
+        if (document.equals(output) || (Files.exists(output) && Files.isSameFile(document, output))) {
+            throw new IOException("The signed output would overwrite the document: " + pdfFilePath);
+        }
+    }
 
-        return new Certificate[] { certificate };
+    /**
+     * @param append Whether the signature is added as an incremental update.
+     * @return The stamping properties of a signer.
+     */
+    static private StampingProperties stampingProperties(boolean append) {
+        StampingProperties properties = new StampingProperties();
+        return append ? properties.useAppendMode() : properties;
     }
 
     /**
-     * Generates an RSA public key from a given RSA private key.
-     * It uses the modulus from the private key and a standard public exponent
-     * (65537).
+     * Generates the output path for the signed PDF file by appending "_signed" to
+     * the original filename. A trailing ".pdf" extension, in any case, is
+     * replaced; other names keep their extension and get ".pdf" added, so the
+     * output never has the name of the original.
      * 
-     * @param privateKey The RSA private key.
-     * @return The corresponding RSA public key.
-     * @throws Exception If an error occurs during public key spec generation or key
-     *                   factory instantiation.
+     * @param pdfFilePath The path to the original PDF file.
+     * @return A string representing the output file path.
      */
-    static private PublicKey generatePublicKeyFromPrivateKey(RSAPrivateKey privateKey) throws Exception {
-        BigInteger modulus = privateKey.getModulus();
-        BigInteger publicExponent = BigInteger.valueOf(65537);
-        RSAPublicKeySpec publicKeySpec = new RSAPublicKeySpec(modulus, publicExponent);
-        KeyFactory keyFactory = KeyFactory.getInstance("RSA");
-        return keyFactory.generatePublic(publicKeySpec);
+    static String generateOutputPath(String pdfFilePath) {
+        return PDF_EXTENSION.matcher(pdfFilePath).replaceFirst("") + "_signed.pdf";
     }
 
     /**
-     * Calculates an expiry date that is one year from the current date.
+     * Displays a success message dialog and updates the status label.
      * 
-     * @return A Date object representing the expiry date.
+     * @param statusLabel The JLabel to display status messages on.
+     * @param outputPath  The path to the signed PDF file.
+     */
+    static private void showSuccessMessage(JLabel statusLabel, String outputPath) {
+        JOptionPane.showMessageDialog(statusLabel.getParent(), "Document signed successfully. Output: " + outputPath);
+        statusLabel.setText("Status: Document signed successfully.");
+    }
+
+    /**
+     * Creates the signer of a document, which owns the output.
+     */
+    @FunctionalInterface
+    private interface SignerFactory {
+        /**
+         * @param reader A reader for the document to be signed.
+         * @param append Whether to sign in append mode.
+         * @return The signer.
+         * @throws IOException If the output cannot be opened.
+         */
+        AbortablePdfSigner create(PdfReader reader, boolean append) throws IOException;
+    }
+
+    /**
+     * Passes a caller's stream to the signer, which closes its output when it
+     * is done, while keeping the caller's stream open.
      */
-    static private Date calculateExpiryDate() {
-        Calendar calendar = Calendar.getInstance();
-        calendar.add(Calendar.YEAR, 1);
-        return calendar.getTime();
+    private static final class UnclosedOutputStream extends FilterOutputStream {
+
+        /**
+         * @param out The caller's stream.
+         */
+        UnclosedOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
     }
 }
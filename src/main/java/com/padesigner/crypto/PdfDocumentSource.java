@@ -0,0 +1,106 @@
+package com.padesigner.crypto;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.List;
+
+import com.itextpdf.kernel.pdf.PdfReader;
+
+/**
+ * A PDF document to sign or verify, either a file or bytes held in memory.
+ * It gives the signer and the verifier one way to open, measure and hash a
+ * document whatever its origin.
+ */
+abstract class PdfDocumentSource {
+
+    /**
+     * @param pdfFilePath The path to the PDF file.
+     * @return A source reading the file.
+     */
+    static PdfDocumentSource of(String pdfFilePath) {
+        return new PdfDocumentSource() {
+            @Override
+            String getPath() {
+                return pdfFilePath;
+            }
+
+            @Override
+            long length() {
+                return new File(pdfFilePath).length();
+            }
+
+            @Override
+            PdfReader openReader() throws IOException {
+                return PdfReaderFactory.openReader(pdfFilePath);
+            }
+
+            @Override
+            List<byte[]> digestAll(List<long[]> byteRanges, List<MessageDigest> messageDigests)
+                    throws IOException, CloneNotSupportedException {
+                return ByteRangeDigester.digestAll(pdfFilePath, byteRanges, messageDigests);
+            }
+        };
+    }
+
+    /**
+     * @param document The PDF document, from its position to its limit. It is
+     *                 read in place and must not change while in use.
+     * @return A source reading the buffer.
+     */
+    static PdfDocumentSource of(ByteBuffer document) {
+        ByteBuffer content = document.slice();
+        return new PdfDocumentSource() {
+            @Override
+            String getPath() {
+                return null;
+            }
+
+            @Override
+            long length() {
+                return content.limit();
+            }
+
+            @Override
+            PdfReader openReader() throws IOException {
+                return PdfReaderFactory.openReader(content);
+            }
+
+            @Override
+            List<byte[]> digestAll(List<long[]> byteRanges, List<MessageDigest> messageDigests)
+                    throws IOException, CloneNotSupportedException {
+                return ByteRangeDigester.digestAll(content, byteRanges, messageDigests);
+            }
+        };
+    }
+
+    /**
+     * @return The path of the file, or null for an in-memory document.
+     */
+    abstract String getPath();
+
+    /**
+     * @return The size of the document in bytes.
+     */
+    abstract long length();
+
+    /**
+     * @return A new reader for the document.
+     * @throws IOException If the document cannot be opened.
+     */
+    abstract PdfReader openReader() throws IOException;
+
+    /**
+     * Hashes the byte ranges of several signatures, see
+     * {@link ByteRangeDigester}.
+     *
+     * @param byteRanges     The /ByteRange of every signature.
+     * @param messageDigests One digest per signature.
+     * @return The digest of the covered bytes of every signature.
+     * @throws IOException                If the document cannot be read.
+     * @throws CloneNotSupportedException If a digest cannot be cloned.
+     */
+    abstract List<byte[]> digestAll(List<long[]> byteRanges, List<MessageDigest> messageDigests)
+            throws IOException, CloneNotSupportedException;
+}
@@ -0,0 +1,172 @@
+package com.padesigner.crypto;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import com.itextpdf.io.source.IRandomAccessSource;
+import com.itextpdf.io.source.RASInputStream;
+import com.itextpdf.io.source.RandomAccessSourceFactory;
+import com.itextpdf.kernel.pdf.PdfReader;
+import com.itextpdf.kernel.pdf.ReaderProperties;
+
+/**
+ * Opens PDF readers, switching to a large-document mode for big files.
+ * In large-document mode the source is read through a paged memory-mapped
+ * window that the reader owns and the reader runs in memory saving mode.
+ * Signers of files always write straight into the output file rather than
+ * buffering the whole document on the heap. The mode is picked
+ * automatically from the file size; the threshold can be changed with the
+ * {@code padesigner.largeDocumentThreshold} system property (in bytes).
+ * <p>
+ * Documents passed as streams are read into memory, up to a limit set with
+ * the {@code padesigner.maxInMemoryDocument} system property (in bytes), and
+ * in-memory documents are read in place without being copied.
+ */
+public class PdfReaderFactory {
+
+    /**
+     * Default file size from which large-document mode is used.
+     */
+    public static final long DEFAULT_LARGE_DOCUMENT_THRESHOLD = 64L * 1024 * 1024;
+
+    /**
+     * System property overriding the large-document threshold, in bytes.
+     */
+    public static final String THRESHOLD_PROPERTY = "padesigner.largeDocumentThreshold";
+
+    /**
+     * Default size limit of documents read from a stream.
+     */
+    public static final long DEFAULT_MAX_IN_MEMORY_DOCUMENT = 256L * 1024 * 1024;
+
+    /**
+     * System property overriding the size limit of documents read from a
+     * stream, in bytes.
+     */
+    public static final String MAX_IN_MEMORY_PROPERTY = "padesigner.maxInMemoryDocument";
+
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * @return The file size in bytes from which large-document mode is used.
+     */
+    public static long getLargeDocumentThreshold() {
+        return Long.getLong(THRESHOLD_PROPERTY, DEFAULT_LARGE_DOCUMENT_THRESHOLD);
+    }
+
+    /**
+     * Checks whether a file should be processed in large-document mode.
+     *
+     * @param file The PDF file.
+     * @return true if the file is at least as big as the threshold.
+     */
+    public static boolean isLargeDocument(File file) {
+        return file.length() >= getLargeDocumentThreshold();
+    }
+
+    /**
+     * Opens a reader for the given PDF file, using large-document mode when the
+     * file size reaches the threshold.
+     *
+     * @param pdfFilePath The path to the PDF file.
+     * @return A reader for the file.
+     * @throws IOException If the file cannot be opened.
+     */
+    public static PdfReader openReader(String pdfFilePath) throws IOException {
+        if (!isLargeDocument(new File(pdfFilePath))) {
+            return new PdfReader(pdfFilePath);
+        }
+        IRandomAccessSource source = new RandomAccessSourceFactory()
+                .setForceRead(false)
+                .setUsePlainRandomAccess(false)
+                .createBestSource(pdfFilePath);
+        // Passing the source through a RASInputStream hands its ownership to the
+        // reader, so the mapped file is released when the reader is closed.
+        return new PdfReader(new RASInputStream(source), new ReaderProperties()).setMemorySavingMode(true);
+    }
+
+    /**
+     * @return The largest document in bytes that is read from a stream.
+     */
+    public static long getMaxInMemoryDocumentSize() {
+        return Math.min(Long.getLong(MAX_IN_MEMORY_PROPERTY, DEFAULT_MAX_IN_MEMORY_DOCUMENT), Integer.MAX_VALUE - 8);
+    }
+
+    /**
+     * Reads a document from a stream into memory. The stream is read to its
+     * end but not closed.
+     *
+     * @param in The stream holding the PDF document.
+     * @return The document, from position 0 to its limit.
+     * @throws IOException If the stream cannot be read or the document exceeds
+     *                     the in-memory limit.
+     */
+    public static ByteBuffer readDocument(InputStream in) throws IOException {
+        long limit = getMaxInMemoryDocumentSize();
+        ByteArrayOutputStream document = new ByteArrayOutputStream(READ_BUFFER_SIZE);
+        byte[] buffer = new byte[READ_BUFFER_SIZE];
+        for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+            if (document.size() + (long) read > limit) {
+                throw new IOException("Document exceeds the in-memory limit of " + limit + " bytes.");
+            }
+            document.write(buffer, 0, read);
+        }
+        return ByteBuffer.wrap(document.toByteArray());
+    }
+
+    /**
+     * Opens a reader for a PDF document held in memory. The document is read
+     * in place, so the buffer content must not change while the reader is
+     * open; its position and limit are not modified.
+     *
+     * @param document The PDF document, from its position to its limit.
+     * @return A reader for the document.
+     * @throws IOException If the document cannot be parsed.
+     */
+    public static PdfReader openReader(ByteBuffer document) throws IOException {
+        return new PdfReader(new RASInputStream(new ByteBufferSource(document.slice())), new ReaderProperties());
+    }
+
+    /**
+     * A random access source over a byte buffer that, unlike the iText
+     * one, leaves the buffer alone when it is closed, so heap and direct
+     * buffers owned by the caller stay usable.
+     */
+    private static final class ByteBufferSource implements IRandomAccessSource {
+        private final ByteBuffer buffer;
+
+        /**
+         * @param buffer The document, from index 0 to the limit.
+         */
+        ByteBufferSource(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int get(long position) {
+            return position < buffer.limit() ? buffer.get((int) position) & 0xff : -1;
+        }
+
+        @Override
+        public int get(long position, byte[] bytes, int off, int len) {
+            if (position >= buffer.limit()) {
+                return -1;
+            }
+            int count = (int) Math.min(len, buffer.limit() - position);
+            buffer.get((int) position, bytes, off, count);
+            return count;
+        }
+
+        @Override
+        public long length() {
+            return buffer.limit();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
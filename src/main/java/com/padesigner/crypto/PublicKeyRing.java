@@ -0,0 +1,176 @@
+package com.padesigner.crypto;
+
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.PublicKey;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.bouncycastle.asn1.x509.SubjectPublicKeyInfo;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.openssl.PEMParser;
+import org.bouncycastle.openssl.jcajce.JcaPEMKeyConverter;
+
+/**
+ * A set of trusted public keys indexed by the SHA-256 fingerprint of their
+ * SubjectPublicKeyInfo. The verifier looks up the key of the certificate
+ * embedded in each signature, so documents from many different signers can be
+ * checked without choosing a key per document.
+ * <p>
+ * A keyring is usually loaded once from a directory of PEM files containing
+ * public keys or certificates; lookups afterwards are hash map accesses.
+ */
+public class PublicKeyRing {
+
+    /**
+     * A trusted key.
+     *
+     * @param name        The name of the key, usually the file it was loaded
+     *                    from.
+     * @param publicKey   The public key.
+     * @param fingerprint The fingerprint of the key.
+     */
+    public record Entry(String name, PublicKey publicKey, String fingerprint) {
+    }
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a keyring holding a single key.
+     *
+     * @param publicKey The key.
+     * @return The keyring.
+     * @throws Exception If the fingerprint cannot be computed.
+     */
+    public static PublicKeyRing of(PublicKey publicKey) throws Exception {
+        PublicKeyRing keyRing = new PublicKeyRing();
+        keyRing.add("public key", publicKey);
+        return keyRing;
+    }
+
+    /**
+     * Loads every PEM file below a directory. Each file may contain public keys
+     * ("PUBLIC KEY") and certificates ("CERTIFICATE"); other blocks are skipped.
+     *
+     * @param directory The directory to load.
+     * @return The keyring.
+     * @throws Exception If the directory or a key cannot be read.
+     */
+    public static PublicKeyRing load(Path directory) throws Exception {
+        if (!Files.isDirectory(directory)) {
+            throw new IllegalArgumentException("Key directory not found: " + directory);
+        }
+        List<Path> files;
+        try (Stream<Path> paths = Files.walk(directory)) {
+            files = paths.filter(Files::isRegularFile)
+                    .filter(path -> path.toString().endsWith(".pem"))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+
+        PublicKeyRing keyRing = new PublicKeyRing();
+        for (Path file : files) {
+            String name = directory.relativize(file).toString();
+            for (PublicKey publicKey : readPem(file)) {
+                keyRing.add(name, publicKey);
+            }
+        }
+        return keyRing;
+    }
+
+    /**
+     * Adds a key. A key that is already present keeps its first name.
+     *
+     * @param name      The name of the key.
+     * @param publicKey The key.
+     * @throws Exception If the fingerprint cannot be computed.
+     */
+    public void add(String name, PublicKey publicKey) throws Exception {
+        String fingerprint = RSAKeyManager.getFingerprint(publicKey);
+        entries.putIfAbsent(fingerprint, new Entry(name, publicKey, fingerprint));
+    }
+
+    /**
+     * Finds the trusted key with the given encoding.
+     *
+     * @param subjectPublicKeyInfo The DER encoded public key, e.g. from a signer
+     *                             certificate.
+     * @return The matching entry, or null if the key is not trusted.
+     * @throws Exception If the fingerprint cannot be computed.
+     */
+    public Entry find(byte[] subjectPublicKeyInfo) throws Exception {
+        return entries.get(RSAKeyManager.getFingerprint(subjectPublicKeyInfo));
+    }
+
+    /**
+     * Finds a trusted key.
+     *
+     * @param publicKey The key to look up.
+     * @return The matching entry, or null if the key is not trusted.
+     * @throws Exception If the fingerprint cannot be computed.
+     */
+    public Entry find(PublicKey publicKey) throws Exception {
+        return find(publicKey.getEncoded());
+    }
+
+    /**
+     * @return The number of keys.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns a fingerprint of the whole keyring. For a single key it is the
+     * fingerprint of that key; otherwise it is the SHA-256 digest of the sorted
+     * key fingerprints, so it changes whenever a key is added.
+     *
+     * @return The lowercase hex fingerprint.
+     * @throws Exception If SHA-256 is not available.
+     */
+    public String getFingerprint() throws Exception {
+        List<String> fingerprints = new ArrayList<>(entries.keySet());
+        if (fingerprints.size() == 1) {
+            return fingerprints.get(0);
+        }
+        fingerprints.sort(null);
+        MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+        for (String fingerprint : fingerprints) {
+            messageDigest.update(fingerprint.getBytes(StandardCharsets.US_ASCII));
+        }
+        return HexFormat.of().formatHex(messageDigest.digest());
+    }
+
+    /**
+     * Reads the public keys contained in a PEM file.
+     *
+     * @param file The PEM file.
+     * @return The public keys and certificate keys in the file.
+     * @throws Exception If the file cannot be parsed.
+     */
+    private static List<PublicKey> readPem(Path file) throws Exception {
+        JcaPEMKeyConverter converter = new JcaPEMKeyConverter();
+        List<PublicKey> publicKeys = new ArrayList<>();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.US_ASCII);
+                PEMParser parser = new PEMParser(reader)) {
+            for (Object object = parser.readObject(); object != null; object = parser.readObject()) {
+                if (object instanceof SubjectPublicKeyInfo publicKeyInfo) {
+                    publicKeys.add(converter.getPublicKey(publicKeyInfo));
+                } else if (object instanceof X509CertificateHolder certificate) {
+                    publicKeys.add(converter.getPublicKey(certificate.getSubjectPublicKeyInfo()));
+                }
+            }
+        } catch (Exception e) {
+            throw new Exception("Error reading key file " + file + ": " + e.getMessage(), e);
+        }
+        return publicKeys;
+    }
+}
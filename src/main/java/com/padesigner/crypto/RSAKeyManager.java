@@ -1,25 +1,66 @@
 package com.padesigner.crypto;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
-import java.security.KeyFactory;
+import java.math.BigInteger;
 import java.security.KeyPair;
-import java.security.KeyPairGenerator;
+import java.security.MessageDigest;
+import java.security.PrivateKey;
 import java.security.PublicKey;
-import java.security.interfaces.RSAPrivateKey;
-import java.security.spec.X509EncodedKeySpec;
+import java.security.SecureRandom;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
 import java.util.Base64;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.HexFormat;
 import java.io.IOException;
 
+import javax.security.auth.x500.X500Principal;
+
+import org.bouncycastle.asn1.x509.SubjectPublicKeyInfo;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.openssl.jcajce.JcaPEMKeyConverter;
+import org.bouncycastle.operator.ContentSigner;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+
+import com.padesigner.jfr.CertificateBuildEvent;
+import com.padesigner.metrics.Metrics;
+
 /**
- * Manages RSA key pairs, including generation, saving, and loading.
+ * Manages signing key pairs, including generation, saving, and loading.
+ * Besides the original RSA keys, every {@link KeyAlgorithm} is supported.
  * It handles saving public keys in PEM format and loading encrypted private
  * keys
- * from a specified location (simulating a USB drive) using AES decryption.
+ * from a specified location (simulating a USB drive) using AES decryption
+ * (see {@link AESUtil} for the key file format).
+ * The signer certificate is issued once at key generation time and stored
+ * next to the encrypted private key.
  */
 public class RSAKeyManager {
 
+    /**
+     * Name of the encrypted private key file on the USB drive.
+     */
+    public static final String PRIVATE_KEY_FILE = "private_key.enc";
+
+    /**
+     * Name of the PEM encoded signer certificate on the USB drive.
+     */
+    public static final String CERTIFICATE_FILE = "certificate.pem";
+
+    /**
+     * Name of the PEM encoded public key in the public key directory.
+     */
+    public static final String PUBLIC_KEY_FILE = "public_key.pem";
+
+    private static final int CERTIFICATE_VALIDITY_YEARS = 5;
+
+    private static final SecureRandom SERIAL_RANDOM = new SecureRandom();
+
     /**
      * Generates a new RSA key pair with a key size of 4096 bits.
      *
@@ -27,9 +68,18 @@ public class RSAKeyManager {
      * @throws Exception If an error occurs during key pair generation.
      */
     public static KeyPair generateRSAKeyPair() throws Exception {
-        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("RSA");
-        keyPairGenerator.initialize(4096);
-        return keyPairGenerator.generateKeyPair();
+        return generateKeyPair(KeyAlgorithm.RSA_4096);
+    }
+
+    /**
+     * Generates a new key pair of the given type.
+     *
+     * @param keyAlgorithm The type of key to generate.
+     * @return A newly generated KeyPair.
+     * @throws Exception If an error occurs during key pair generation.
+     */
+    public static KeyPair generateKeyPair(KeyAlgorithm keyAlgorithm) throws Exception {
+        return keyAlgorithm.generateKeyPair();
     }
 
     /**
@@ -61,27 +111,187 @@ public class RSAKeyManager {
     }
 
     /**
-     * Loads and decrypts an RSA private key from a file located at the specified
+     * Computes the fingerprint of a public key: the hex encoded SHA-256 digest of
+     * its SubjectPublicKeyInfo encoding.
+     *
+     * @param publicKey The public key.
+     * @return The lowercase hex fingerprint.
+     * @throws Exception If SHA-256 is not available.
+     */
+    public static String getFingerprint(PublicKey publicKey) throws Exception {
+        return getFingerprint(publicKey.getEncoded());
+    }
+
+    /**
+     * Computes the fingerprint of a DER encoded SubjectPublicKeyInfo.
+     *
+     * @param subjectPublicKeyInfo The encoded public key.
+     * @return The lowercase hex fingerprint.
+     * @throws Exception If SHA-256 is not available.
+     */
+    public static String getFingerprint(byte[] subjectPublicKeyInfo) throws Exception {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(subjectPublicKeyInfo));
+    }
+
+    /**
+     * Loads and decrypts a private key from a file located at the specified
      * USB path.
      * The private key file is expected to be named "private_key.enc" and encrypted
      * using AES.
      *
      * @param usbPath The path to the USB drive directory.
      * @param pin     The PIN used to decrypt the private key.
-     * @return The decrypted RSA private key.
+     * @return The decrypted private key.
      * @throws Exception If the USB path is invalid, the encrypted key file is not
      *                   found,
      *                   or an error occurs during decryption (e.g., incorrect PIN).
      */
-    public static RSAPrivateKey loadPrivateKey(String usbPath, String pin) throws Exception {
+    public static PrivateKey loadPrivateKey(String usbPath, String pin) throws Exception {
         validateUSBPath(usbPath);
-        File encryptedKeyFile = new File(usbPath + "private_key.enc");
+        File encryptedKeyFile = new File(usbPath + PRIVATE_KEY_FILE);
         if (!encryptedKeyFile.exists()) {
             throw new Exception("Private key not found on USB.");
         }
         return AESUtil.decryptPrivateKey(encryptedKeyFile, pin);
     }
 
+    /**
+     * Saves a freshly generated key pair: the public key in PEM format to the
+     * public key directory, and the encrypted private key together with a newly
+     * issued self-signed certificate to the USB drive.
+     *
+     * @param keyPair      The key pair to save.
+     * @param pin          The PIN used for encrypting the private key.
+     * @param publicKeyDir The directory for the public key, ending with a
+     *                     separator.
+     * @param usbPath      The USB drive path, ending with a separator.
+     * @throws Exception If the certificate cannot be issued or a file cannot be
+     *                   written.
+     */
+    public static void saveKeys(KeyPair keyPair, String pin, String publicKeyDir, String usbPath) throws Exception {
+        saveKeys(keyPair, pin, publicKeyDir, usbPath, KdfCalibrator.getDefaultIterations());
+    }
+
+    /**
+     * Saves a freshly generated key pair like
+     * {@link #saveKeys(KeyPair, String, String, String)}, protecting the private
+     * key with the given PBKDF2 iteration count.
+     *
+     * @param keyPair      The key pair to save.
+     * @param pin          The PIN used for encrypting the private key.
+     * @param publicKeyDir The directory for the public key, ending with a
+     *                     separator.
+     * @param usbPath      The USB drive path, ending with a separator.
+     * @param iterations   The PBKDF2 iteration count, see {@link KdfCalibrator}.
+     * @throws Exception If the certificate cannot be issued or a file cannot be
+     *                   written.
+     */
+    public static void saveKeys(KeyPair keyPair, String pin, String publicKeyDir, String usbPath, int iterations)
+            throws Exception {
+        X509Certificate certificate = generateSelfSignedCertificate(keyPair);
+
+        savePublicKey(keyPair.getPublic(), new File(publicKeyDir + PUBLIC_KEY_FILE));
+        AESUtil.encryptAndSavePrivateKey(keyPair.getPrivate(), pin, new File(usbPath + PRIVATE_KEY_FILE), iterations);
+        saveCertificate(certificate, new File(usbPath + CERTIFICATE_FILE));
+    }
+
+    /**
+     * Issues a self-signed X.509 certificate for the given key pair.
+     * The certificate is created with a common name (CN) of "Self-Signed
+     * Certificate", a random 64-bit serial number and a validity of five years.
+     * It is signed with the signature algorithm of the key type, e.g. SHA-256
+     * with RSA encryption, using Bouncy Castle APIs.
+     *
+     * @param keyPair The key pair to certify.
+     * @return The self-signed certificate.
+     * @throws Exception If an error occurs during certificate creation.
+     */
+    public static X509Certificate generateSelfSignedCertificate(KeyPair keyPair) throws Exception {
+        long start = System.nanoTime();
+        CertificateBuildEvent event = new CertificateBuildEvent();
+        boolean built = false;
+        try {
+            X500Principal subject = new X500Principal("CN=Self-Signed Certificate");
+            BigInteger serialNumber = new BigInteger(64, SERIAL_RANDOM);
+            Date notBefore = new Date();
+            Date notAfter = calculateExpiryDate();
+
+            String signatureAlgorithm = KeyAlgorithm.of(keyPair.getPrivate()).getSignatureAlgorithm();
+            event.setAlgorithm(signatureAlgorithm);
+            ContentSigner contentSigner = new JcaContentSignerBuilder(signatureAlgorithm)
+                    .setProvider("BC")
+                    .build(keyPair.getPrivate());
+            JcaX509v3CertificateBuilder certBuilder = new JcaX509v3CertificateBuilder(
+                    subject, serialNumber, notBefore, notAfter, subject, keyPair.getPublic());
+
+            X509Certificate certificate = new JcaX509CertificateConverter()
+                    .setProvider("BC")
+                    .getCertificate(certBuilder.build(contentSigner));
+            Metrics.getRegistry().timer("padesigner_certificate_generation_seconds",
+                    "Time spent issuing self-signed certificates.").recordSince(start);
+            built = true;
+            return certificate;
+        } catch (Exception e) {
+            event.setFailure(e);
+            throw e;
+        } finally {
+            event.finish(built);
+        }
+    }
+
+    /**
+     * Saves a certificate to a file in PEM format.
+     *
+     * @param certificate The certificate to save.
+     * @param file        The file where the certificate will be saved.
+     * @throws Exception If an error occurs during encoding or file writing.
+     */
+    public static void saveCertificate(X509Certificate certificate, File file) throws Exception {
+        String pem = "-----BEGIN CERTIFICATE-----\n" +
+                Base64.getMimeEncoder(64, "\n".getBytes()).encodeToString(certificate.getEncoded()) +
+                "\n-----END CERTIFICATE-----\n";
+        writeFile(file, pem);
+    }
+
+    /**
+     * Loads the signer certificate stored next to the encrypted private key.
+     * Keys generated before certificates were persisted have no certificate
+     * file; null is returned for them.
+     *
+     * @param usbPath The path to the USB drive directory.
+     * @return The stored certificate, or null if there is none.
+     * @throws Exception If the certificate file exists but cannot be parsed.
+     */
+    public static X509Certificate loadCertificate(String usbPath) throws Exception {
+        X509Certificate[] chain = loadCertificateChain(usbPath);
+        return chain != null ? chain[0] : null;
+    }
+
+    /**
+     * Loads the certificate chain stored next to the encrypted private key.
+     * The certificate file holds the signer certificate first, optionally
+     * followed by its issuer certificates, as needed for revocation data when
+     * the signer certificate is issued by a certificate authority.
+     *
+     * @param usbPath The path to the USB drive directory.
+     * @return The stored chain, or null if there is no certificate file.
+     * @throws Exception If the certificate file exists but cannot be parsed.
+     */
+    public static X509Certificate[] loadCertificateChain(String usbPath) throws Exception {
+        File certificateFile = new File(usbPath + CERTIFICATE_FILE);
+        if (!certificateFile.exists()) {
+            return null;
+        }
+        String pem = readFile(certificateFile);
+        CertificateFactory certificateFactory = CertificateFactory.getInstance("X.509");
+        X509Certificate[] chain = certificateFactory.generateCertificates(new ByteArrayInputStream(pem.getBytes()))
+                .toArray(new X509Certificate[0]);
+        if (chain.length == 0) {
+            throw new Exception("Certificate file contains no certificate.");
+        }
+        return chain;
+    }
+
     /**
      * Converts a PublicKey object into a PEM formatted string.
      *
@@ -113,9 +323,7 @@ public class RSAKeyManager {
         }
 
         byte[] decoded = Base64.getDecoder().decode(publicKeyPEM);
-        X509EncodedKeySpec spec = new X509EncodedKeySpec(decoded);
-        KeyFactory keyFactory = KeyFactory.getInstance("RSA");
-        return keyFactory.generatePublic(spec);
+        return new JcaPEMKeyConverter().getPublicKey(SubjectPublicKeyInfo.getInstance(decoded));
     }
 
     /**
@@ -149,6 +357,17 @@ public class RSAKeyManager {
         }
     }
 
+    /**
+     * Calculates the certificate expiry date relative to the current date.
+     *
+     * @return A Date object representing the expiry date.
+     */
+    private static Date calculateExpiryDate() {
+        Calendar calendar = Calendar.getInstance();
+        calendar.add(Calendar.YEAR, CERTIFICATE_VALIDITY_YEARS);
+        return calendar.getTime();
+    }
+
     /**
      * Validates if the provided path is a valid, existing directory.
      *
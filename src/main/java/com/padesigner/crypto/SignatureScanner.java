@@ -0,0 +1,655 @@
+package com.padesigner.crypto;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import com.itextpdf.kernel.pdf.PdfName;
+
+/**
+ * Finds the signature dictionaries of a PDF file by scanning its bytes,
+ * without building the PDF object model.
+ * <p>
+ * The newest signature is found by searching backwards from the end of the
+ * file, which only reads its last revision. A single sequential pass then
+ * hashes the byte ranges of that signature and looks for the dictionaries of
+ * older ones.
+ * <p>
+ * The scan only accepts structures it can read without doubt. The
+ * /ByteRange of a signature must be a plain array of four numbers, its gap
+ * must hold exactly the hex string of /Contents, and its dictionary must have
+ * exactly one /SubFilter and no name written with # escapes. A /ByteRange
+ * token that does not meet these conditions makes the document ambiguous. So
+ * does an object stream, which could hide a signature dictionary from the
+ * scan, a name anywhere in the file that spells one of the searched keys with
+ * # escapes, and a number of /FT /Sig field entries different from the number
+ * of signatures found. In all these cases the methods return null and the
+ * caller falls back to the full parser. The scan finds signature dictionaries
+ * whether or not a form field refers to them, so it can be stricter than the
+ * parser but never more lenient.
+ * <p>
+ * A scanner is not thread safe.
+ */
+final class SignatureScanner implements AutoCloseable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int WINDOW_SIZE = 4096;
+    private static final int MAX_CONTENTS_SIZE = 16 * 1024 * 1024;
+
+    private static final byte[] BYTE_RANGE = ascii("/ByteRange");
+    private static final byte[] OBJECT_STREAM = ascii("/ObjStm");
+    private static final byte[] FIELD_TYPE = ascii("/FT");
+    private static final byte[] SIGNATURE_FIELD = ascii("/Sig");
+    private static final byte[] CONTENTS = ascii("/Contents");
+    private static final byte[] SUB_FILTER = ascii("/SubFilter");
+    private static final byte[] OBJ = ascii("obj");
+    private static final byte[] ENDOBJ = ascii("endobj");
+
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class,
+            ByteOrder.LITTLE_ENDIAN);
+    private static final long SLASHES = 0x2F2F2F2F2F2F2F2FL;
+    private static final long LOW_BITS = 0x0101010101010101L;
+    private static final long HIGH_BITS = 0x8080808080808080L;
+
+    /**
+     * The keys that must not be hidden behind # escapes, without their
+     * slashes.
+     */
+    private static final Set<String> SEARCHED_KEYS = Set.of("ByteRange", "ObjStm", "Contents", "SubFilter", "FT",
+            "Sig");
+
+    /**
+     * The bytes an escaped searched key can start with, which rules out most
+     * names at their first byte.
+     */
+    private static final String KEY_INITIALS = "#" + SEARCHED_KEYS.stream().map(key -> key.substring(0, 1))
+            .distinct().collect(Collectors.joining());
+
+    /**
+     * The longest name that can spell a searched key with escapes, where each
+     * character takes at most three bytes.
+     */
+    private static final int MAX_ESCAPED_KEY = 3 * "SubFilter".length() + 1;
+
+    /**
+     * Bytes kept between sequential reads so that a token at the end of one
+     * read, and whatever is checked after it, are seen whole in the next.
+     */
+    private static final int OVERLAP = 64;
+
+    private final FileChannel channel;
+    private final long size;
+
+    /**
+     * A signature found in the file.
+     *
+     * @param position  The position of its /ByteRange token.
+     * @param byteRange The signed byte ranges.
+     * @param contents  The decoded signature container, with its padding.
+     * @param subFilter The signature format.
+     */
+    record Signature(long position, long[] byteRange, byte[] contents, PdfName subFilter) {
+
+        /**
+         * @param fileSize The size of the file.
+         * @return true if no bytes follow the signed ranges.
+         */
+        boolean coversWholeDocument(long fileSize) {
+            return byteRange[2] + byteRange[3] == fileSize;
+        }
+    }
+
+    /**
+     * @param channel The open file.
+     * @throws IOException If the file size cannot be read.
+     */
+    private SignatureScanner(FileChannel channel) throws IOException {
+        this.channel = channel;
+        this.size = channel.size();
+    }
+
+    /**
+     * Opens a file for scanning.
+     *
+     * @param pdfFilePath The path to the PDF file.
+     * @return A scanner, which must be closed.
+     * @throws IOException If the file cannot be opened.
+     */
+    static SignatureScanner open(String pdfFilePath) throws IOException {
+        FileChannel channel = FileChannel.open(Paths.get(pdfFilePath), StandardOpenOption.READ);
+        try {
+            return new SignatureScanner(channel);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return The size of the file in bytes.
+     */
+    long size() {
+        return size;
+    }
+
+    /**
+     * Finds the newest signature, whose /ByteRange is the last one in the
+     * file.
+     *
+     * @return The signature, or null if the file has none or its dictionary
+     *         cannot be read without the parser.
+     * @throws IOException If the file cannot be read.
+     */
+    Signature findNewest() throws IOException {
+        for (long end = size; end > 0;) {
+            long start = Math.max(0, end - BUFFER_SIZE);
+            byte[] chunk = read(start, (int) (Math.min(size, end + OVERLAP) - start));
+            int i = lastToken(chunk, (int) (end - start), start + chunk.length == size);
+            if (i >= 0) {
+                return parse(start + i);
+            }
+            end = start;
+        }
+        return null;
+    }
+
+    /**
+     * Reads the whole file once, hashing the byte ranges of the newest
+     * signature and collecting the older signatures.
+     *
+     * @param newest        The newest signature.
+     * @param messageDigest The digest receiving the signed bytes of the newest
+     *                      signature.
+     * @return The older signatures, oldest first, or null if the file is
+     *         ambiguous.
+     * @throws IOException If the file cannot be read.
+     */
+    List<Signature> scan(Signature newest, MessageDigest messageDigest) throws IOException {
+        long[] byteRange = newest.byteRange();
+        List<Long> tokens = new ArrayList<>();
+        int signatureFields = 0;
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        byte[] bytes = buffer.array();
+        long hashed = 0;
+        for (long scanned = 0; scanned < size;) {
+            long start = scanned;
+            buffer.clear();
+            while (buffer.hasRemaining() && channel.read(buffer, start + buffer.position()) > 0) {
+            }
+            long end = start + buffer.position();
+            boolean last = end == size;
+            if (!last && buffer.hasRemaining()) {
+                throw new IOException("File changed while it was being verified.");
+            }
+            buffer.flip();
+
+            for (int i = 0; i < byteRange.length; i += 2) {
+                long from = Math.max(Math.max(hashed, start), byteRange[i]);
+                long to = Math.min(end, byteRange[i] + byteRange[i + 1]);
+                if (from < to) {
+                    messageDigest.update(bytes, (int) (from - start), (int) (to - from));
+                }
+            }
+            hashed = Math.max(hashed, end);
+
+            int limit = last ? buffer.limit() : buffer.limit() - OVERLAP;
+            int fields = findTokens(bytes, buffer.limit(), limit, last, start, tokens);
+            if (fields < 0) {
+                return null;
+            }
+            signatureFields += fields;
+            scanned = start + limit;
+        }
+
+        if (signatureFields != tokens.size() || !tokens.remove((Long) newest.position())) {
+            return null;
+        }
+        List<Signature> older = new ArrayList<>(tokens.size());
+        Set<Long> gaps = new HashSet<>();
+        gaps.add(byteRange[1]);
+        for (long position : tokens) {
+            Signature signature = parse(position);
+            if (signature == null || !gaps.add(signature.byteRange()[1])) {
+                return null;
+            }
+            older.add(signature);
+        }
+        return older;
+    }
+
+    /**
+     * Finds the last /ByteRange token of one read.
+     *
+     * @param chunk The bytes read.
+     * @param limit The index after the last position the token may start at.
+     * @param last  Whether the bytes end at the end of the file.
+     * @return The index of the token, or -1.
+     */
+    private static int lastToken(byte[] chunk, int limit, boolean last) {
+        for (int i = limit - 1; i >= 0; i--) {
+            while (i >= Long.BYTES && !mayHoldSlash(chunk, i - Long.BYTES + 1)) {
+                i -= Long.BYTES;
+            }
+            if (chunk[i] == '/' && isToken(chunk, i, BYTE_RANGE, last)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Collects the /ByteRange tokens of one read and counts its signature
+     * field entries. Kept apart from the read loop so that the JIT compiles
+     * this hot loop on its own.
+     *
+     * @param bytes  The bytes read.
+     * @param length The number of bytes read.
+     * @param limit  The index after the last position a token may start at.
+     * @param last   Whether the bytes end at the end of the file.
+     * @param start  The file position of the first byte.
+     * @param tokens Receives the file positions of the tokens.
+     * @return The number of /FT /Sig entries, or -1 if the bytes hold an
+     *         object stream or an escaped key.
+     */
+    private static int findTokens(byte[] bytes, int length, int limit, boolean last, long start,
+            List<Long> tokens) {
+        int signatureFields = 0;
+        for (int i = 0; i < limit; i++) {
+            while (i + Long.BYTES <= limit && !mayHoldSlash(bytes, i)) {
+                i += Long.BYTES;
+            }
+            if (i >= limit || bytes[i] != '/') {
+                continue;
+            }
+            if (isToken(bytes, length, i, BYTE_RANGE, last)) {
+                tokens.add(start + i);
+            } else if (isToken(bytes, length, i, FIELD_TYPE, last)) {
+                int value = skipWhitespace(bytes, length, i + FIELD_TYPE.length);
+                if (value < length && isToken(bytes, length, value, SIGNATURE_FIELD, last)) {
+                    signatureFields++;
+                }
+            } else if (isToken(bytes, length, i, OBJECT_STREAM, last) || isEscapedKey(bytes, length, i)) {
+                return -1;
+            }
+        }
+        return signatureFields;
+    }
+
+    /**
+     * Checks whether a name spells one of the searched keys with # escapes,
+     * which the parser would decode but the scan would miss.
+     *
+     * @param bytes  The bytes.
+     * @param length The number of valid bytes.
+     * @param i      The position of the name's slash.
+     * @return true if the name is an escaped searched key.
+     */
+    private static boolean isEscapedKey(byte[] bytes, int length, int i) {
+        if (i + 1 >= length || KEY_INITIALS.indexOf(bytes[i + 1]) < 0) {
+            return false;
+        }
+        int end = i + 1;
+        boolean escaped = false;
+        while (end < length && end - i <= MAX_ESCAPED_KEY && !isDelimiter(bytes[end])) {
+            escaped |= bytes[end] == '#';
+            end++;
+        }
+        if (!escaped || end - i > MAX_ESCAPED_KEY) {
+            return false;
+        }
+        StringBuilder name = new StringBuilder(end - i);
+        for (int k = i + 1; k < end; k++) {
+            int high = k + 2 < end ? Character.digit(bytes[k + 1], 16) : -1;
+            int low = k + 2 < end ? Character.digit(bytes[k + 2], 16) : -1;
+            if (bytes[k] == '#' && high >= 0 && low >= 0) {
+                name.append((char) (high << 4 | low));
+                k += 2;
+            } else {
+                name.append((char) (bytes[k] & 0xFF));
+            }
+        }
+        return SEARCHED_KEYS.contains(name.toString());
+    }
+
+    /**
+     * Closes the file.
+     *
+     * @throws IOException If the file cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Reads the signature dictionary around a /ByteRange token.
+     *
+     * @param position The position of the token.
+     * @return The signature, or null if the dictionary is not a plain
+     *         signature dictionary.
+     * @throws IOException If the file cannot be read.
+     */
+    private Signature parse(long position) throws IOException {
+        long[] byteRange = parseByteRange(read(position + BYTE_RANGE.length, 128));
+        if (byteRange == null || byteRange[0] != 0 || byteRange[1] <= 0 || byteRange[2] < byteRange[1] + 2
+                || byteRange[2] + byteRange[3] > size || byteRange[2] - byteRange[1] > MAX_CONTENTS_SIZE) {
+            return null;
+        }
+        byte[] contents = decodeHex(read(byteRange[1], (int) (byteRange[2] - byteRange[1])));
+        if (contents == null || !endsWithKey(read(Math.max(0, byteRange[1] - 64),
+                (int) Math.min(64, byteRange[1])), CONTENTS)) {
+            return null;
+        }
+
+        // The dictionary runs from its "obj" keyword to "endobj", around the
+        // /Contents string; the /ByteRange token must be part of it.
+        long headStart = Math.max(0, Math.min(position, byteRange[1]) - WINDOW_SIZE);
+        byte[] head = read(headStart, (int) (byteRange[1] - headStart));
+        int dictionaryStart = lastObjKeyword(head);
+        long tailStart = byteRange[2];
+        byte[] tail = read(tailStart, (int) (Math.max(position, tailStart) - tailStart + WINDOW_SIZE));
+        int dictionaryEnd = indexOf(tail, ENDOBJ, 0);
+        if (dictionaryStart < 0 || dictionaryEnd < 0 || !(position >= headStart + dictionaryStart
+                && position < byteRange[1] || position >= tailStart && position < tailStart + dictionaryEnd)) {
+            return null;
+        }
+
+        PdfName subFilter = null;
+        for (byte[] part : List.of(slice(head, dictionaryStart, head.length), slice(tail, 0, dictionaryEnd))) {
+            if (hasEscapedName(part)) {
+                return null;
+            }
+            for (int i = indexOf(part, SUB_FILTER, 0); i >= 0; i = indexOf(part, SUB_FILTER, i + 1)) {
+                if (subFilter != null || !isToken(part, i, SUB_FILTER, false)) {
+                    return null;
+                }
+                subFilter = parseName(part, i + SUB_FILTER.length);
+                if (subFilter == null) {
+                    return null;
+                }
+            }
+        }
+        return subFilter != null ? new Signature(position, byteRange, contents, subFilter) : null;
+    }
+
+    /**
+     * @param text Part of a dictionary.
+     * @return true if a name in it is written with # escapes.
+     */
+    private static boolean hasEscapedName(byte[] text) {
+        boolean inName = false;
+        for (byte b : text) {
+            if (b == '/') {
+                inName = true;
+            } else if (isDelimiter(b)) {
+                inName = false;
+            } else if (inName && b == '#') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Parses a byte range array of exactly four numbers.
+     *
+     * @param text The bytes following the /ByteRange key.
+     * @return The numbers, or null if the value is anything else.
+     */
+    private static long[] parseByteRange(byte[] text) {
+        int i = skipWhitespace(text, 0);
+        if (i >= text.length || text[i++] != '[') {
+            return null;
+        }
+        long[] byteRange = new long[4];
+        for (int k = 0; k < byteRange.length; k++) {
+            i = skipWhitespace(text, i);
+            int start = i;
+            for (; i < text.length && text[i] >= '0' && text[i] <= '9'; i++) {
+                if (i - start >= 15) {
+                    return null;
+                }
+                byteRange[k] = byteRange[k] * 10 + text[i] - '0';
+            }
+            if (i == start || i < text.length && !isWhitespace(text[i]) && text[i] != ']') {
+                return null;
+            }
+        }
+        i = skipWhitespace(text, i);
+        return i < text.length && text[i] == ']' ? byteRange : null;
+    }
+
+    /**
+     * Decodes a hex string including its angle brackets.
+     *
+     * @param hex The string as written in the file.
+     * @return The decoded bytes, or null if it is not a plain hex string.
+     */
+    private static byte[] decodeHex(byte[] hex) {
+        int digits = hex.length - 2;
+        if (hex.length < 2 || hex[0] != '<' || hex[hex.length - 1] != '>' || digits % 2 != 0) {
+            return null;
+        }
+        byte[] decoded = new byte[digits / 2];
+        for (int i = 0; i < decoded.length; i++) {
+            int high = Character.digit(hex[1 + 2 * i], 16);
+            int low = Character.digit(hex[2 + 2 * i], 16);
+            if (high < 0 || low < 0) {
+                return null;
+            }
+            decoded[i] = (byte) (high << 4 | low);
+        }
+        return decoded;
+    }
+
+    /**
+     * Parses a name object.
+     *
+     * @param text  The bytes holding the name.
+     * @param start Where to start, before any whitespace.
+     * @return The name, or null if there is none or it uses escapes.
+     */
+    private static PdfName parseName(byte[] text, int start) {
+        int i = skipWhitespace(text, start);
+        if (i >= text.length || text[i] != '/') {
+            return null;
+        }
+        int end = ++i;
+        while (end < text.length && !isDelimiter(text[end])) {
+            if (text[end] == '#') {
+                return null;
+            }
+            end++;
+        }
+        return end > i ? new PdfName(new String(text, i, end - i, StandardCharsets.US_ASCII)) : null;
+    }
+
+    /**
+     * Finds where the object holding a dictionary starts.
+     *
+     * @param head The bytes before the dictionary's /Contents string.
+     * @return The index after the last "obj" keyword, or -1.
+     */
+    private static int lastObjKeyword(byte[] head) {
+        for (int i = head.length - OBJ.length; i > 0; i--) {
+            if (isWhitespace(head[i - 1]) && regionMatches(head, i, OBJ)
+                    && (i + OBJ.length == head.length || isDelimiter(head[i + OBJ.length]))) {
+                return i + OBJ.length;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param text The bytes before a value.
+     * @param key  The key expected right before it.
+     * @return true if the bytes end with the key, ignoring whitespace. A name
+     *         always starts a new token, so the key needs no delimiter before
+     *         it.
+     */
+    private static boolean endsWithKey(byte[] text, byte[] key) {
+        int end = text.length;
+        while (end > 0 && isWhitespace(text[end - 1])) {
+            end--;
+        }
+        return end >= key.length && regionMatches(text, end - key.length, key);
+    }
+
+    /**
+     * Reads part of the file.
+     *
+     * @param position Where to start.
+     * @param length   How many bytes to read at most.
+     * @return The bytes, shorter than asked at the end of the file.
+     * @throws IOException If the file cannot be read.
+     */
+    private byte[] read(long position, int length) throws IOException {
+        int available = (int) Math.max(0, Math.min(length, size - position));
+        ByteBuffer buffer = ByteBuffer.allocate(available);
+        while (buffer.hasRemaining() && channel.read(buffer, position + buffer.position()) > 0) {
+        }
+        return buffer.position() == available ? buffer.array() : slice(buffer.array(), 0, buffer.position());
+    }
+
+    /**
+     * @param text       The bytes.
+     * @param i          Where a token may start.
+     * @param token      The token.
+     * @param endOfInput Whether the bytes end at the end of the file.
+     * @return true if the token is at the position and ends at a delimiter.
+     */
+    private static boolean isToken(byte[] text, int i, byte[] token, boolean endOfInput) {
+        return isToken(text, text.length, i, token, endOfInput);
+    }
+
+    /**
+     * @param text       The bytes.
+     * @param length     The number of valid bytes.
+     * @param i          Where a token may start.
+     * @param token      The token.
+     * @param endOfInput Whether the bytes end at the end of the file.
+     * @return true if the token is at the position and ends at a delimiter.
+     */
+    private static boolean isToken(byte[] text, int length, int i, byte[] token, boolean endOfInput) {
+        int end = i + token.length;
+        if (end > length || !regionMatches(text, i, token)) {
+            return false;
+        }
+        return end < length ? isDelimiter(text[end]) : endOfInput;
+    }
+
+    /**
+     * Tests eight bytes at once for a slash, which starts every token the
+     * scanner looks for. Most of a PDF is stream data without slashes, so
+     * this skips it a word at a time.
+     *
+     * @param bytes The bytes.
+     * @param i     The first of the eight bytes.
+     * @return false if none of the bytes is a slash; true if one may be.
+     */
+    private static boolean mayHoldSlash(byte[] bytes, int i) {
+        long word = (long) LONGS.get(bytes, i) ^ SLASHES;
+        return ((word - LOW_BITS) & ~word & HIGH_BITS) != 0;
+    }
+
+    /**
+     * @param text  The bytes to search.
+     * @param token The bytes to find.
+     * @param from  Where to start.
+     * @return The index of the first occurrence, or -1.
+     */
+    private static int indexOf(byte[] text, byte[] token, int from) {
+        for (int i = from; i + token.length <= text.length; i++) {
+            if (regionMatches(text, i, token)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param text  The bytes.
+     * @param i     The position.
+     * @param token The expected bytes.
+     * @return true if the bytes at the position equal the token.
+     */
+    private static boolean regionMatches(byte[] text, int i, byte[] token) {
+        for (int k = 0; k < token.length; k++) {
+            if (text[i + k] != token[k]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param text The bytes.
+     * @param i    Where to start.
+     * @return The index of the first byte that is not whitespace.
+     */
+    private static int skipWhitespace(byte[] text, int i) {
+        return skipWhitespace(text, text.length, i);
+    }
+
+    /**
+     * @param text   The bytes.
+     * @param length The number of valid bytes.
+     * @param i      Where to start.
+     * @return The index of the first byte that is not whitespace.
+     */
+    private static int skipWhitespace(byte[] text, int length, int i) {
+        while (i < length && isWhitespace(text[i])) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * @param b A byte.
+     * @return true if it is PDF whitespace.
+     */
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t' || b == '\f' || b == 0;
+    }
+
+    /**
+     * @param b A byte.
+     * @return true if it is whitespace or a delimiter, which ends a PDF
+     *         token.
+     */
+    private static boolean isDelimiter(byte b) {
+        return isWhitespace(b) || "()<>[]{}/%".indexOf(b) >= 0;
+    }
+
+    /**
+     * @param text  The bytes.
+     * @param start The first index.
+     * @param end   The index after the last.
+     * @return A copy of the range.
+     */
+    private static byte[] slice(byte[] text, int start, int end) {
+        byte[] slice = new byte[end - start];
+        System.arraycopy(text, start, slice, 0, slice.length);
+        return slice;
+    }
+
+    /**
+     * @param text ASCII text.
+     * @return Its bytes.
+     */
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,679 @@
+package com.padesigner.crypto;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.PublicKey;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
+import org.bouncycastle.asn1.x9.X9ObjectIdentifiers;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cms.CMSException;
+import org.bouncycastle.cms.CMSSignatureAlgorithmNameGenerator;
+import org.bouncycastle.cms.CMSSignedData;
+import org.bouncycastle.cms.DefaultCMSSignatureAlgorithmNameGenerator;
+import org.bouncycastle.cms.SignerId;
+import org.bouncycastle.cms.SignerInformation;
+import org.bouncycastle.cms.SignerInformationVerifier;
+import org.bouncycastle.operator.DefaultAlgorithmNameFinder;
+import org.bouncycastle.operator.DefaultSignatureAlgorithmIdentifierFinder;
+import org.bouncycastle.operator.jcajce.JcaContentVerifierProviderBuilder;
+import org.bouncycastle.operator.jcajce.JcaDigestCalculatorProviderBuilder;
+import org.bouncycastle.util.Store;
+
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfName;
+import com.itextpdf.signatures.PdfPKCS7;
+import com.itextpdf.signatures.PdfSignature;
+import com.itextpdf.signatures.SignatureUtil;
+import com.padesigner.jfr.DigestEvent;
+import com.padesigner.jfr.VerifyEvent;
+import com.padesigner.metrics.Metrics;
+import com.padesigner.metrics.PhaseTimer;
+
+/**
+ * Verifies signatures of PDF documents against a known public key.
+ * All files opened during verification are closed before returning, so the
+ * verifier can be called repeatedly and from several threads.
+ * <p>
+ * Every signature of a document is checked. The signed byte ranges of all
+ * signatures are hashed together by {@link ByteRangeDigester}, so a document
+ * with many incremental revisions is read about once rather than once per
+ * signature.
+ * <p>
+ * Documents can be given as files or held in memory; in-memory documents
+ * are verified in place, without being written to disk.
+ * <p>
+ * Signers are matched against a {@link PublicKeyRing} by the key in their
+ * embedded certificate, so one call can check documents signed by any of the
+ * trusted keys.
+ * <p>
+ * Verification is timed per phase into the {@code padesigner_verify_*_seconds}
+ * metrics and emits a {@link VerifyEvent} for Flight Recorder.
+ */
+public class SignatureVerifier {
+
+    private static final String SIGNATURE_PHASE = "signature";
+
+    /**
+     * Maps CMS signer infos to JCA signature names. iText writes the key
+     * algorithm (id-ecPublicKey) rather than ecdsa-with-SHAxxx as the signature
+     * algorithm of ECDSA signatures, which Bouncy Castle does not resolve by
+     * itself.
+     */
+    private static final CMSSignatureAlgorithmNameGenerator SIGNATURE_NAMES =
+            new DefaultCMSSignatureAlgorithmNameGenerator() {
+                @Override
+                public String getSignatureName(AlgorithmIdentifier digestAlg, AlgorithmIdentifier encryptionAlg) {
+                    if (X9ObjectIdentifiers.id_ecPublicKey.equals(encryptionAlg.getAlgorithm())) {
+                        return new DefaultAlgorithmNameFinder().getAlgorithmName(digestAlg).replace("-", "")
+                                + "withECDSA";
+                    }
+                    return super.getSignatureName(digestAlg, encryptionAlg);
+                }
+            };
+
+    /**
+     * The result of checking one signature of a document.
+     *
+     * @param name                The signature field name.
+     * @param revision            The document revision the signature belongs to.
+     * @param intact              true if the signed bytes are unchanged and the
+     *                            signature value is correct.
+     * @param signedByKey         true if the signer certificate holds a
+     *                            trusted public key.
+     * @param signer              The name of the matching trusted key, or null.
+     * @param coversWholeDocument true if no bytes were appended after this
+     *                            signature.
+     * @param message             The reason the signature could not be checked,
+     *                            or null.
+     */
+    public record SignatureReport(String name, int revision, boolean intact, boolean signedByKey, String signer,
+            boolean coversWholeDocument, String message) {
+
+        /**
+         * @return true if the signature is intact and made with a trusted key.
+         */
+        public boolean isValid() {
+            return intact && signedByKey;
+        }
+    }
+
+    /**
+     * Verifies the signatures of the PDF file using the provided public key.
+     * The document is valid if every signature is intact and the newest one
+     * covers the whole file and was made with the given key.
+     *
+     * @param pdfFilePath The path to the signed PDF file.
+     * @param publicKey   The public key used for verification.
+     * @return true if the signatures are valid, false otherwise.
+     * @throws Exception If the document has no signature or cannot be read.
+     */
+    public static boolean verifySignature(String pdfFilePath, PublicKey publicKey) throws Exception {
+        return verifySignature(pdfFilePath, PublicKeyRing.of(publicKey));
+    }
+
+    /**
+     * Verifies the signatures of the PDF file against a set of trusted keys.
+     * The document is valid if every signature is intact and the newest one
+     * covers the whole file and was made with a trusted key.
+     * <p>
+     * The signatures are located with {@link SignatureScanner}, which reads the
+     * file without parsing it, so checking large documents is limited by I/O.
+     * Documents the scanner cannot read without doubt are parsed instead.
+     *
+     * @param pdfFilePath The path to the signed PDF file.
+     * @param keyRing     The trusted keys.
+     * @return true if the signatures are valid, false otherwise.
+     * @throws Exception If the document has no signature or cannot be read.
+     */
+    public static boolean verifySignature(String pdfFilePath, PublicKeyRing keyRing) throws Exception {
+        return isValid(verifyAllSignatures(PdfDocumentSource.of(pdfFilePath), keyRing, true));
+    }
+
+    /**
+     * Verifies the signatures of a PDF document held in memory against a set
+     * of trusted keys.
+     *
+     * @param document The signed PDF document.
+     * @param keyRing  The trusted keys.
+     * @return true if the signatures are valid, false otherwise.
+     * @throws Exception If the document has no signature or cannot be read.
+     */
+    public static boolean verifySignature(byte[] document, PublicKeyRing keyRing) throws Exception {
+        return verifySignature(ByteBuffer.wrap(document), keyRing);
+    }
+
+    /**
+     * Verifies the signatures of a PDF document held in a buffer against a set
+     * of trusted keys. The document is read in place from the buffer position
+     * to its limit, which are left unchanged.
+     *
+     * @param document The signed PDF document.
+     * @param keyRing  The trusted keys.
+     * @return true if the signatures are valid, false otherwise.
+     * @throws Exception If the document has no signature or cannot be read.
+     */
+    public static boolean verifySignature(ByteBuffer document, PublicKeyRing keyRing) throws Exception {
+        return isValid(verifyAllSignatures(document, keyRing));
+    }
+
+    /**
+     * Verifies the signatures of a PDF document read from a stream against a
+     * set of trusted keys. The document is buffered in memory, up to the limit
+     * of {@link PdfReaderFactory#getMaxInMemoryDocumentSize()}; the stream is
+     * not closed.
+     *
+     * @param in      The stream holding the signed PDF document.
+     * @param keyRing The trusted keys.
+     * @return true if the signatures are valid, false otherwise.
+     * @throws Exception If the document has no signature, cannot be read or is
+     *                   too large.
+     */
+    public static boolean verifySignature(InputStream in, PublicKeyRing keyRing) throws Exception {
+        return verifySignature(PdfReaderFactory.readDocument(in), keyRing);
+    }
+
+    /**
+     * Decides whether a document is valid from the reports of its signatures:
+     * every signature must be intact, and the newest one must cover the whole
+     * file and be made with the expected key. The newest signature vouches
+     * for everything the document shows; an older trusted signature only
+     * vouches for its own revision, which later updates signed with any other
+     * key could change.
+     *
+     * @param reports The reports of all signatures of a document, from the
+     *                oldest revision to the newest.
+     * @return true if the document is valid.
+     */
+    public static boolean isValid(List<SignatureReport> reports) {
+        if (reports.isEmpty()) {
+            return false;
+        }
+        SignatureReport newest = reports.get(reports.size() - 1);
+        if (!newest.coversWholeDocument() || !newest.signedByKey()) {
+            return false;
+        }
+        for (SignatureReport report : reports) {
+            if (!report.intact()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks every signature of the PDF file.
+     *
+     * @param pdfFilePath The path to the signed PDF file.
+     * @param publicKey   The expected signer public key.
+     * @return One report per signature, from the oldest revision to the newest.
+     * @throws Exception If the document has no signature or cannot be read.
+     */
+    public static List<SignatureReport> verifyAllSignatures(String pdfFilePath, PublicKey publicKey)
+            throws Exception {
+        return verifyAllSignatures(pdfFilePath, PublicKeyRing.of(publicKey));
+    }
+
+    /**
+     * Checks every signature of the PDF file against a set of trusted keys.
+     *
+     * @param pdfFilePath The path to the signed PDF file.
+     * @param keyRing     The trusted keys.
+     * @return One report per signature, from the oldest revision to the newest.
+     * @throws Exception If the document has no signature or cannot be read.
+     */
+    public static List<SignatureReport> verifyAllSignatures(String pdfFilePath, PublicKeyRing keyRing)
+            throws Exception {
+        return verifyAllSignatures(PdfDocumentSource.of(pdfFilePath), keyRing, false);
+    }
+
+    /**
+     * Checks every signature of a PDF document held in a buffer against a set
+     * of trusted keys. The document is read in place from the buffer position
+     * to its limit, which are left unchanged.
+     *
+     * @param document The signed PDF document.
+     * @param keyRing  The trusted keys.
+     * @return One report per signature, from the oldest revision to the newest.
+     * @throws Exception If the document has no signature or cannot be read.
+     */
+    public static List<SignatureReport> verifyAllSignatures(ByteBuffer document, PublicKeyRing keyRing)
+            throws Exception {
+        return verifyAllSignatures(PdfDocumentSource.of(document), keyRing, false);
+    }
+
+    /**
+     * Checks every signature of a document, timing the verification and
+     * emitting its Flight Recorder event.
+     *
+     * @param source  The signed PDF document.
+     * @param keyRing The trusted keys.
+     * @param scan    Whether to try {@link SignatureScanner} before the parser,
+     *                in which case the reports may carry no field names.
+     * @return One report per signature, from the oldest revision to the newest.
+     * @throws Exception If the document has no signature or cannot be read.
+     */
+    private static List<SignatureReport> verifyAllSignatures(PdfDocumentSource source, PublicKeyRing keyRing,
+            boolean scan) throws Exception {
+        PhaseTimer phases = PhaseTimer.start("verify");
+        VerifyEvent event = new VerifyEvent(source.getPath());
+        boolean verified = false;
+        try {
+            List<SignatureReport> reports = null;
+            if (scan && source.getPath() != null) {
+                reports = verifyScanned(source, keyRing, phases, event);
+                if (reports != null) {
+                    Metrics.getRegistry().counter("padesigner_verify_scanned_total",
+                            "Documents verified by scanning the file without parsing it.").increment();
+                } else {
+                    Metrics.getRegistry().counter("padesigner_verify_scan_fallbacks_total",
+                            "Documents the scanner left to the parser.").increment();
+                }
+            }
+            if (reports == null) {
+                reports = verifyAllSignatures(source, keyRing, phases, event);
+            }
+            event.setValid(isValid(reports));
+            verified = true;
+            return reports;
+        } catch (Exception e) {
+            event.setFailure(e);
+            throw e;
+        } finally {
+            phases.finish(verified);
+            event.finish(verified);
+        }
+    }
+
+    /**
+     * Checks every signature of a document, timing the phases: parsing the
+     * document and signature containers, hashing the signed byte ranges and
+     * checking the signature values, and describing the document in the
+     * Flight Recorder event.
+     *
+     * @param source  The signed PDF document.
+     * @param keyRing The trusted keys.
+     * @param phases  The timer of this verification.
+     * @param event   The Flight Recorder event of this verification.
+     * @return One report per signature, from the oldest revision to the newest.
+     * @throws Exception If the document has no signature or cannot be read.
+     */
+    private static List<SignatureReport> verifyAllSignatures(PdfDocumentSource source, PublicKeyRing keyRing,
+            PhaseTimer phases, VerifyEvent event) throws Exception {
+        try (PdfDocument pdfDoc = new PdfDocument(source.openReader())) {
+            SignatureUtil signUtil = new SignatureUtil(pdfDoc);
+
+            List<String> signatureNames = signUtil.getSignatureNames();
+            if (signatureNames.isEmpty()) {
+                throw new Exception("No signatures found in the PDF.");
+            }
+            if (event.isEnabled()) {
+                event.setDocument(source.length(), pdfDoc.getNumberOfPages(), signatureNames.size());
+            }
+
+            SignatureReport[] reports = new SignatureReport[signatureNames.size()];
+            List<PendingSignature> pending = new ArrayList<>();
+            for (int i = 0; i < reports.length; i++) {
+                String name = signatureNames.get(i);
+                int revision = signUtil.getRevision(name);
+                boolean coversWholeDocument = signUtil.signatureCoversWholeDocument(name);
+                PdfSignature signature = signUtil.getSignature(name);
+                try {
+                    PendingSignature candidate = PendingSignature.of(i, name, signature, revision,
+                            coversWholeDocument);
+                    if (candidate != null) {
+                        pending.add(candidate);
+                    } else {
+                        long start = System.nanoTime();
+                        reports[i] = verifyWithPdfPkcs7(signUtil, name, revision, coversWholeDocument, keyRing);
+                        phases.addNested(SIGNATURE_PHASE, System.nanoTime() - start);
+                    }
+                } catch (Exception e) {
+                    reports[i] = new SignatureReport(name, revision, false, false, null, coversWholeDocument,
+                            e.getMessage());
+                }
+            }
+
+            phases.mark("parse");
+
+            if (!pending.isEmpty()) {
+                List<long[]> byteRanges = new ArrayList<>(pending.size());
+                List<MessageDigest> messageDigests = new ArrayList<>(pending.size());
+                for (PendingSignature signature : pending) {
+                    byteRanges.add(signature.byteRange);
+                    messageDigests.add(signature.createMessageDigest());
+                }
+                List<byte[]> digests = digestAll(source, byteRanges, messageDigests);
+                phases.mark("hash");
+                for (int i = 0; i < pending.size(); i++) {
+                    PendingSignature signature = pending.get(i);
+                    reports[signature.index] = signature.verify(digests.get(i), keyRing);
+                }
+                phases.mark(SIGNATURE_PHASE);
+            }
+            return List.of(reports);
+        }
+    }
+
+    /**
+     * Checks every signature of a file found by {@link SignatureScanner},
+     * without parsing the document. The newest signature is hashed while the
+     * file is scanned, older ones in a second pass. The reports carry no
+     * field names, since those are only found through the form.
+     *
+     * @param source  The signed PDF file.
+     * @param keyRing The trusted keys.
+     * @param phases  The timer of this verification.
+     * @param event   The Flight Recorder event of this verification.
+     * @return One report per signature, from the oldest revision to the newest,
+     *         or null if the file has to be parsed.
+     * @throws Exception If the file cannot be read.
+     */
+    private static List<SignatureReport> verifyScanned(PdfDocumentSource source, PublicKeyRing keyRing,
+            PhaseTimer phases, VerifyEvent event) throws Exception {
+        try (SignatureScanner scanner = SignatureScanner.open(source.getPath())) {
+            SignatureScanner.Signature newest = scanner.findNewest();
+            PendingSignature last;
+            try {
+                last = newest != null ? PendingSignature.of(newest, 0, scanner.size()) : null;
+            } catch (Exception e) {
+                // The parser reports why the container cannot be read.
+                return null;
+            }
+            if (last == null) {
+                return null;
+            }
+            MessageDigest lastDigest = last.createMessageDigest();
+            List<SignatureScanner.Signature> older = scanner.scan(newest, lastDigest);
+            if (older == null) {
+                return null;
+            }
+            phases.mark("scan");
+
+            SignatureReport[] reports = new SignatureReport[older.size() + 1];
+            List<PendingSignature> pending = new ArrayList<>(older.size());
+            for (int i = 0; i < older.size(); i++) {
+                SignatureScanner.Signature signature = older.get(i);
+                try {
+                    PendingSignature candidate = PendingSignature.of(signature, i, scanner.size());
+                    if (candidate == null) {
+                        return null;
+                    }
+                    pending.add(candidate);
+                } catch (Exception e) {
+                    reports[i] = new SignatureReport(null, i + 1, false, false, null,
+                            signature.coversWholeDocument(scanner.size()), e.getMessage());
+                }
+            }
+            if (!pending.isEmpty()) {
+                List<long[]> byteRanges = new ArrayList<>(pending.size());
+                List<MessageDigest> messageDigests = new ArrayList<>(pending.size());
+                for (PendingSignature signature : pending) {
+                    byteRanges.add(signature.byteRange);
+                    messageDigests.add(signature.createMessageDigest());
+                }
+                List<byte[]> digests = digestAll(source, byteRanges, messageDigests);
+                phases.mark("hash");
+                for (int i = 0; i < pending.size(); i++) {
+                    PendingSignature signature = pending.get(i);
+                    reports[signature.index] = signature.verify(digests.get(i), keyRing);
+                }
+            }
+            last = last.at(older.size());
+            reports[last.index] = last.verify(lastDigest.digest(), keyRing);
+            phases.mark(SIGNATURE_PHASE);
+
+            if (event.isEnabled()) {
+                event.setDocument(scanner.size(), 0, reports.length);
+                event.setScanned(true);
+            }
+            return List.of(reports);
+        }
+    }
+
+    /**
+     * Hashes the byte ranges of all signatures with {@link ByteRangeDigester},
+     * emitting one {@link DigestEvent} for the whole pass.
+     *
+     * @param source         The signed PDF document.
+     * @param byteRanges     The byte ranges per signature.
+     * @param messageDigests The digest per signature.
+     * @return The digests, in the order of the byte ranges.
+     * @throws Exception If the document cannot be read.
+     */
+    private static List<byte[]> digestAll(PdfDocumentSource source, List<long[]> byteRanges,
+            List<MessageDigest> messageDigests) throws Exception {
+        DigestEvent event = new DigestEvent();
+        boolean hashed = false;
+        try {
+            List<byte[]> digests = source.digestAll(byteRanges, messageDigests);
+            hashed = true;
+            return digests;
+        } catch (Exception e) {
+            event.setFailure(e);
+            throw e;
+        } finally {
+            if (event.isEnabled()) {
+                long size = 0;
+                for (long[] byteRange : byteRanges) {
+                    for (int i = 1; i < byteRange.length; i += 2) {
+                        size += byteRange[i];
+                    }
+                }
+                event.setSize(size);
+                event.setAlgorithm(messageDigests.stream().map(MessageDigest::getAlgorithm).distinct()
+                        .collect(Collectors.joining(",")));
+            }
+            event.finish(hashed);
+        }
+    }
+
+    /**
+     * Verifies a signature in a format that cannot be checked from a
+     * precomputed digest, letting iText read the signed bytes itself.
+     *
+     * @param signUtil            The signature helper of the open document.
+     * @param name                The signature field name.
+     * @param revision            The revision of the signature.
+     * @param coversWholeDocument Whether the signature covers the whole file.
+     * @param keyRing             The trusted keys.
+     * @return The report for this signature.
+     * @throws Exception If the signature cannot be read.
+     */
+    private static SignatureReport verifyWithPdfPkcs7(SignatureUtil signUtil, String name, int revision,
+            boolean coversWholeDocument, PublicKeyRing keyRing) throws Exception {
+        PdfPKCS7 pkcs7 = signUtil.readSignatureData(name);
+        PublicKeyRing.Entry signer = keyRing.find(pkcs7.getSigningCertificate().getPublicKey());
+        return new SignatureReport(name, revision, pkcs7.verifySignatureIntegrityAndAuthenticity(), signer != null,
+                signer != null ? signer.name() : null, coversWholeDocument, null);
+    }
+
+    /**
+     * A signature whose container has been decoded and that is waiting for the
+     * digest of its byte ranges.
+     */
+    private static final class PendingSignature {
+        private final int index;
+        private final String name;
+        private final int revision;
+        private final boolean coversWholeDocument;
+        private final long[] byteRange;
+        private final byte[] contents;
+        private final String digestAlgorithm;
+        private final MerkleSignature merkleSignature;
+        private final SignerInformation signerInformation;
+
+        private PendingSignature(int index, String name, long[] byteRange, byte[] contents, int revision,
+                boolean coversWholeDocument, String digestAlgorithm, MerkleSignature merkleSignature,
+                SignerInformation signerInformation) {
+            this.index = index;
+            this.name = name;
+            this.revision = revision;
+            this.coversWholeDocument = coversWholeDocument;
+            this.byteRange = byteRange;
+            this.contents = contents;
+            this.digestAlgorithm = digestAlgorithm;
+            this.merkleSignature = merkleSignature;
+            this.signerInformation = signerInformation;
+        }
+
+        /**
+         * Decodes a signature container if it can be verified from a digest.
+         *
+         * @param index               The position of the signature.
+         * @param name                The signature field name.
+         * @param signature           The signature dictionary.
+         * @param revision            The revision of the signature.
+         * @param coversWholeDocument Whether the signature covers the whole file.
+         * @return The pending signature, or null for other formats.
+         * @throws Exception If the container cannot be decoded.
+         */
+        static PendingSignature of(int index, String name, PdfSignature signature, int revision,
+                boolean coversWholeDocument) throws Exception {
+            return of(index, name, signature.getSubFilter(), signature.getByteRange().toLongArray(),
+                    signature.getContents().getValueBytes(), revision, coversWholeDocument);
+        }
+
+        /**
+         * Decodes a signature found by {@link SignatureScanner}, which has no
+         * field name.
+         *
+         * @param signature The scanned signature.
+         * @param index     The position of the signature, counting from the
+         *                  oldest.
+         * @param fileSize  The size of the file.
+         * @return The pending signature, or null for other formats.
+         * @throws Exception If the container cannot be decoded.
+         */
+        static PendingSignature of(SignatureScanner.Signature signature, int index, long fileSize)
+                throws Exception {
+            return of(index, null, signature.subFilter(), signature.byteRange(), signature.contents(), index + 1,
+                    signature.coversWholeDocument(fileSize));
+        }
+
+        /**
+         * Decodes a signature container if it can be verified from a digest.
+         *
+         * @param index               The position of the signature.
+         * @param name                The signature field name.
+         * @param subFilter           The signature format.
+         * @param byteRange           The signed byte ranges.
+         * @param contents            The signature container.
+         * @param revision            The revision of the signature.
+         * @param coversWholeDocument Whether the signature covers the whole file.
+         * @return The pending signature, or null for other formats.
+         * @throws Exception If the container cannot be decoded.
+         */
+        private static PendingSignature of(int index, String name, PdfName subFilter, long[] byteRange,
+                byte[] contents, int revision, boolean coversWholeDocument) throws Exception {
+            if (MerkleSignature.SUB_FILTER.equals(subFilter)) {
+                MerkleSignature container = MerkleSignature.decode(contents);
+                return new PendingSignature(index, name, byteRange, contents, revision, coversWholeDocument,
+                        container.getDigestAlgorithm(), container, null);
+            }
+            if (PdfName.ETSI_CAdES_DETACHED.equals(subFilter) || PdfName.Adbe_pkcs7_detached.equals(subFilter)) {
+                CMSSignedData cms = new CMSSignedData(contents);
+                Collection<SignerInformation> signers = cms.getSignerInfos().getSigners();
+                if (signers.size() != 1) {
+                    throw new Exception("Expected exactly one signer, found " + signers.size());
+                }
+                SignerInformation signer = signers.iterator().next();
+                return new PendingSignature(index, name, byteRange, contents, revision, coversWholeDocument,
+                        signer.getDigestAlgOID(), null, signer);
+            }
+            return null;
+        }
+
+        /**
+         * @param index The position of the signature, counting from the
+         *              oldest.
+         * @return This signature at another position; its revision follows
+         *         from the position.
+         */
+        PendingSignature at(int index) {
+            return new PendingSignature(index, name, byteRange, contents, index + 1, coversWholeDocument,
+                    digestAlgorithm, merkleSignature, signerInformation);
+        }
+
+        /**
+         * @return A fresh digest for the algorithm of this signature.
+         * @throws Exception If the algorithm is not available.
+         */
+        MessageDigest createMessageDigest() throws Exception {
+            return CryptoProviders.createMessageDigest(digestAlgorithm);
+        }
+
+        /**
+         * Verifies the signature against the digest of its byte ranges.
+         *
+         * @param digest  The digest of the signed bytes.
+         * @param keyRing The trusted keys.
+         * @return The report for this signature.
+         */
+        SignatureReport verify(byte[] digest, PublicKeyRing keyRing) {
+            PublicKeyRing.Entry signer = null;
+            try {
+                if (merkleSignature != null) {
+                    PublicKey certificateKey = merkleSignature.getCertificate().getPublicKey();
+                    signer = keyRing.find(certificateKey);
+                    return report(merkleSignature.verify(digest, certificateKey), signer, null);
+                }
+
+                CMSSignedData cms = new CMSSignedData(Map.of(signerInformation.getDigestAlgorithmID().getAlgorithm(),
+                        digest), contents);
+                SignerInformation signerInfo = cms.getSignerInfos().get(signerInformation.getSID());
+                X509CertificateHolder certificate = findCertificate(cms.getCertificates(), signerInfo.getSID());
+                if (certificate == null) {
+                    return report(false, null, "Signer certificate not found.");
+                }
+                signer = keyRing.find(certificate.getSubjectPublicKeyInfo().getEncoded());
+                return report(signerInfo.verify(new SignerInformationVerifier(SIGNATURE_NAMES,
+                        new DefaultSignatureAlgorithmIdentifierFinder(),
+                        new JcaContentVerifierProviderBuilder().setProvider(CryptoProviders.getVerificationProvider())
+                                .build(certificate),
+                        new JcaDigestCalculatorProviderBuilder().setProvider(CryptoProviders.getVerificationProvider())
+                                .build())), signer, null);
+            } catch (CMSException e) {
+                return report(false, signer, e.getMessage());
+            } catch (Exception e) {
+                return report(false, signer, "Error verifying signature: " + e.getMessage());
+            }
+        }
+
+        /**
+         * Finds the certificate of a signer. Bouncy Castle's {@link SignerId}
+         * is an untyped selector, so the certificates are matched one by one
+         * rather than passed to {@link Store#getMatches}.
+         *
+         * @param certificates The certificates embedded in the signature.
+         * @param signerId     The identifier of the signer.
+         * @return The signer certificate, or null if it is not embedded.
+         */
+        private static X509CertificateHolder findCertificate(Store<X509CertificateHolder> certificates,
+                SignerId signerId) {
+            for (X509CertificateHolder certificate : certificates.getMatches(null)) {
+                if (signerId.match(certificate)) {
+                    return certificate;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * @param intact  Whether the signature is intact.
+         * @param signer  The matching trusted key, or null.
+         * @param message The failure message, or null.
+         * @return The report for this signature.
+         */
+        private SignatureReport report(boolean intact, PublicKeyRing.Entry signer, String message) {
+            return new SignatureReport(name, revision, intact, signer != null, signer != null ? signer.name() : null,
+                    coversWholeDocument, message);
+        }
+    }
+}
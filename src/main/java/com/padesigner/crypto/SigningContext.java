@@ -0,0 +1,285 @@
+package com.padesigner.crypto;
+
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.SecureRandom;
+import java.security.Signature;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.security.interfaces.RSAPrivateKey;
+import java.security.interfaces.RSAPublicKey;
+import java.security.spec.RSAPublicKeySpec;
+import java.util.Arrays;
+
+import com.itextpdf.signatures.IExternalDigest;
+import com.itextpdf.signatures.ICrlClient;
+import com.itextpdf.signatures.IExternalSignature;
+import com.itextpdf.signatures.IOcspClient;
+import com.itextpdf.signatures.ITSAClient;
+import com.itextpdf.signatures.ProviderDigest;
+
+/**
+ * Holds everything needed to sign documents with one unlocked private key: the
+ * public key, the signer certificate chain and the iText digest and signature
+ * objects. The signature algorithm follows from the type of the key, see
+ * {@link KeyAlgorithm}; the document digest and the providers computing it and
+ * the signature are chosen by {@link CryptoProviders}.
+ * A context is immutable once created and may be shared between threads, so
+ * the expensive preparation is done once per key instead of once per document.
+ * A context may carry a timestamp client; documents signed with it then get an
+ * RFC 3161 signature timestamp (PAdES-T). It may also carry OCSP and CRL
+ * clients, whose revocation data for the certificate chain is embedded for
+ * long-term validation (LTV).
+ */
+public class SigningContext {
+
+    private final PrivateKey privateKey;
+    private final KeyAlgorithm keyAlgorithm;
+    private final PublicKey publicKey;
+    private final Certificate[] certificateChain;
+    private final CryptoProviders.Selection providers;
+    private final IExternalDigest digest;
+    private final IExternalSignature signature;
+    private final ITSAClient tsaClient;
+    private final IOcspClient ocspClient;
+    private final ICrlClient crlClient;
+
+    private SigningContext(PrivateKey privateKey, PublicKey publicKey, Certificate[] certificateChain)
+            throws GeneralSecurityException {
+        this.privateKey = privateKey;
+        this.keyAlgorithm = KeyAlgorithm.of(privateKey);
+        this.publicKey = publicKey;
+        this.certificateChain = certificateChain;
+        this.providers = CryptoProviders.select(privateKey);
+        this.digest = new ProviderDigest(providers.digestProvider());
+        this.signature = keyAlgorithm.createSignature(privateKey, providers.digestAlgorithm(),
+                providers.signatureProvider());
+        this.tsaClient = null;
+        this.ocspClient = null;
+        this.crlClient = null;
+    }
+
+    private SigningContext(SigningContext context, ITSAClient tsaClient, IOcspClient ocspClient,
+            ICrlClient crlClient) {
+        this.privateKey = context.privateKey;
+        this.keyAlgorithm = context.keyAlgorithm;
+        this.publicKey = context.publicKey;
+        this.certificateChain = context.certificateChain;
+        this.providers = context.providers;
+        this.digest = context.digest;
+        this.signature = context.signature;
+        this.tsaClient = tsaClient;
+        this.ocspClient = ocspClient;
+        this.crlClient = crlClient;
+    }
+
+    /**
+     * Creates a signing context for the given private key when no stored
+     * certificate is available.
+     * The public key is derived from the private key and a self-signed
+     * certificate is issued for it. This only happens for keys generated before
+     * certificates were persisted at key generation time, which were always
+     * RSA keys; for other key types the stored certificate is required.
+     *
+     * @param privateKey The private key used for signing.
+     * @return A new signing context.
+     * @throws Exception If the key is not an RSA key or the public key or
+     *                   certificate cannot be created.
+     */
+    public static SigningContext create(PrivateKey privateKey) throws Exception {
+        if (!(privateKey instanceof RSAPrivateKey)) {
+            throw new Exception("Signer certificate not found for the " + KeyAlgorithm.of(privateKey) + " key.");
+        }
+        PublicKey publicKey = generatePublicKeyFromPrivateKey((RSAPrivateKey) privateKey);
+        X509Certificate certificate = RSAKeyManager.generateSelfSignedCertificate(new KeyPair(publicKey, privateKey));
+        return new SigningContext(privateKey, publicKey, new Certificate[] { certificate });
+    }
+
+    /**
+     * Creates a signing context from a private key and its stored certificate.
+     *
+     * @param privateKey  The private key used for signing.
+     * @param certificate The signer certificate issued for the key.
+     * @return A new signing context.
+     * @throws Exception If the certificate does not belong to the key or is not
+     *                   currently valid.
+     */
+    public static SigningContext create(PrivateKey privateKey, X509Certificate certificate) throws Exception {
+        return create(privateKey, new X509Certificate[] { certificate });
+    }
+
+    /**
+     * Creates a signing context from a private key and its certificate chain.
+     *
+     * @param privateKey The private key used for signing.
+     * @param chain      The signer certificate issued for the key, followed by
+     *                   its issuer certificates.
+     * @return A new signing context.
+     * @throws Exception If the signer certificate does not belong to the key or
+     *                   is not currently valid.
+     */
+    public static SigningContext create(PrivateKey privateKey, X509Certificate[] chain) throws Exception {
+        PublicKey publicKey = chain[0].getPublicKey();
+        if (!isKeyPair(privateKey, publicKey)) {
+            throw new Exception("Stored certificate does not match the private key.");
+        }
+        try {
+            chain[0].checkValidity();
+        } catch (CertificateException e) {
+            throw new Exception("Stored certificate is not valid: " + e.getMessage(), e);
+        }
+        return new SigningContext(privateKey, publicKey, Arrays.copyOf(chain, chain.length, Certificate[].class));
+    }
+
+    /**
+     * @return The private key of this context.
+     */
+    public PrivateKey getPrivateKey() {
+        return privateKey;
+    }
+
+    /**
+     * @return The algorithm of the private key.
+     */
+    public KeyAlgorithm getKeyAlgorithm() {
+        return keyAlgorithm;
+    }
+
+    /**
+     * @return The public key matching the private key.
+     */
+    public PublicKey getPublicKey() {
+        return publicKey;
+    }
+
+    /**
+     * @return A copy of the signer certificate chain.
+     */
+    public Certificate[] getCertificateChain() {
+        return certificateChain.clone();
+    }
+
+    /**
+     * @return The document digest and the providers used while signing.
+     */
+    public CryptoProviders.Selection getProviders() {
+        return providers;
+    }
+
+    /**
+     * @return The digest implementation used while signing.
+     */
+    public IExternalDigest getDigest() {
+        return digest;
+    }
+
+    /**
+     * @return The signature implementation backed by the private key.
+     */
+    public IExternalSignature getSignature() {
+        return signature;
+    }
+
+    /**
+     * @return The client used to timestamp signatures, or null if signatures
+     *         are not timestamped.
+     */
+    public ITSAClient getTsaClient() {
+        return tsaClient;
+    }
+
+    /**
+     * Creates a context that signs with the same key and timestamps every
+     * signature. This context is not changed, so a cached context can be
+     * shared by callers with and without timestamping.
+     *
+     * @param tsaClient The timestamp client, or null to sign without
+     *                  timestamps.
+     * @return A context with the given timestamp client.
+     */
+    public SigningContext withTsaClient(ITSAClient tsaClient) {
+        return new SigningContext(this, tsaClient, ocspClient, crlClient);
+    }
+
+    /**
+     * @return The client used to obtain OCSP responses for the certificate
+     *         chain, or null if none are embedded.
+     */
+    public IOcspClient getOcspClient() {
+        return ocspClient;
+    }
+
+    /**
+     * @return The client used to obtain CRLs for the certificate chain, or
+     *         null if none are embedded.
+     */
+    public ICrlClient getCrlClient() {
+        return crlClient;
+    }
+
+    /**
+     * Creates a context that signs with the same key and embeds revocation
+     * data for the certificate chain in every signature. This context is not
+     * changed.
+     *
+     * @param ocspClient The OCSP client, or null.
+     * @param crlClient  The CRL client, or null.
+     * @return A context with the given revocation clients.
+     */
+    public SigningContext withRevocationClients(IOcspClient ocspClient, ICrlClient crlClient) {
+        return new SigningContext(this, tsaClient, ocspClient, crlClient);
+    }
+
+    /**
+     * Checks whether a public key belongs to a private key. RSA keys are
+     * compared by modulus; for other key types a test message is signed and
+     * verified.
+     *
+     * @param privateKey The private key.
+     * @param publicKey  The public key.
+     * @return true if the keys form a key pair.
+     * @throws Exception If the test signature cannot be created.
+     */
+    private static boolean isKeyPair(PrivateKey privateKey, PublicKey publicKey) throws Exception {
+        if (privateKey instanceof RSAPrivateKey rsaPrivateKey) {
+            return publicKey instanceof RSAPublicKey rsaPublicKey
+                    && rsaPublicKey.getModulus().equals(rsaPrivateKey.getModulus());
+        }
+        KeyAlgorithm keyAlgorithm = KeyAlgorithm.of(privateKey);
+        if (KeyAlgorithm.of(publicKey) != keyAlgorithm) {
+            return false;
+        }
+        byte[] challenge = new byte[32];
+        new SecureRandom().nextBytes(challenge);
+        Signature signature = Signature.getInstance(keyAlgorithm.getSignatureAlgorithm(), "BC");
+        signature.initSign(privateKey);
+        signature.update(challenge);
+        byte[] signed = signature.sign();
+        signature.initVerify(publicKey);
+        signature.update(challenge);
+        return signature.verify(signed);
+    }
+
+    /**
+     * Generates an RSA public key from a given RSA private key.
+     * It uses the modulus from the private key and a standard public exponent
+     * (65537).
+     *
+     * @param privateKey The RSA private key.
+     * @return The corresponding RSA public key.
+     * @throws Exception If an error occurs during public key spec generation or key
+     *                   factory instantiation.
+     */
+    private static PublicKey generatePublicKeyFromPrivateKey(RSAPrivateKey privateKey) throws Exception {
+        BigInteger modulus = privateKey.getModulus();
+        BigInteger publicExponent = BigInteger.valueOf(65537);
+        RSAPublicKeySpec publicKeySpec = new RSAPublicKeySpec(modulus, publicExponent);
+        KeyFactory keyFactory = KeyFactory.getInstance("RSA");
+        return keyFactory.generatePublic(publicKeySpec);
+    }
+}
@@ -0,0 +1,193 @@
+package com.padesigner.crypto;
+
+import java.nio.file.Paths;
+import java.security.PrivateKey;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Thread-safe cache of {@link SigningContext} instances keyed by private key
+ * and by the directory its certificate is loaded from, so a context with a
+ * session certificate is never handed out where the stored certificate was
+ * asked for. A context is built on first use and then shared by every document
+ * signed with the same key. Entries that have not been used for longer than
+ * the idle timeout are dropped by a background daemon thread, so an unlocked
+ * key does not stay in memory forever; they can also be invalidated
+ * explicitly. Closing a cache stops that thread.
+ */
+public class SigningContextCache implements AutoCloseable {
+
+    /**
+     * The idle timeout used by the shared cache.
+     */
+    public static final Duration DEFAULT_IDLE_TIMEOUT = Duration.ofMinutes(15);
+
+    private static final SigningContextCache SHARED = new SigningContextCache(DEFAULT_IDLE_TIMEOUT);
+
+    private final Map<EntryKey, Entry> entries = new ConcurrentHashMap<>();
+    private final long idleTimeoutNanos;
+    private final ScheduledExecutorService reaper;
+
+    /**
+     * Creates a cache whose entries expire after the given idle time.
+     *
+     * @param idleTimeout How long an unused context is kept.
+     */
+    public SigningContextCache(Duration idleTimeout) {
+        if (idleTimeout.isNegative() || idleTimeout.isZero()) {
+            throw new IllegalArgumentException("Idle timeout must be positive.");
+        }
+        this.idleTimeoutNanos = idleTimeout.toNanos();
+        this.reaper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "signing-context-reaper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1, Math.min(idleTimeout.toMillis() / 2, TimeUnit.MINUTES.toMillis(1)));
+        reaper.scheduleAtFixedRate(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Identifies a cached context.
+     *
+     * @param privateKey   The private key.
+     * @param keyDirectory The normalised directory the certificate is loaded
+     *                     from, or null for a session certificate.
+     */
+    private record EntryKey(PrivateKey privateKey, String keyDirectory) {
+    }
+
+    /**
+     * @return The process-wide cache used by {@link MyPdfSigner}. It lives as
+     *         long as the process and must not be closed.
+     */
+    public static SigningContextCache getShared() {
+        return SHARED;
+    }
+
+    /**
+     * Returns the signing context for the given key with a self-signed
+     * certificate issued for the session, creating it on first use. It is
+     * cached apart from contexts created with a stored certificate.
+     * Concurrent callers asking for the same key share a single creation.
+     *
+     * @param privateKey The private key used for signing.
+     * @return The cached signing context.
+     * @throws Exception If the context cannot be created.
+     */
+    public SigningContext get(PrivateKey privateKey) throws Exception {
+        return get(privateKey, null);
+    }
+
+    /**
+     * Returns the signing context for the given key, creating it on first use.
+     * When the context is created, the signer certificate stored next to the
+     * encrypted key is loaded once; keys without a stored certificate fall back
+     * to a self-signed certificate issued for the session.
+     * Concurrent callers asking for the same key share a single creation.
+     *
+     * @param privateKey The private key used for signing.
+     * @param usbPath    The USB drive path the key was loaded from, or null.
+     * @return The cached signing context.
+     * @throws Exception If the certificate cannot be loaded or the context cannot
+     *                   be created.
+     */
+    public SigningContext get(PrivateKey privateKey, String usbPath) throws Exception {
+        String keyDirectory = usbPath == null ? null : Paths.get(usbPath).toAbsolutePath().normalize().toString();
+        return entries.computeIfAbsent(new EntryKey(privateKey, keyDirectory), key -> new Entry(privateKey, usbPath))
+                .getContext();
+    }
+
+    /**
+     * Drops the cached contexts for the given key, if any.
+     *
+     * @param privateKey The key whose contexts should be removed.
+     */
+    public void invalidate(PrivateKey privateKey) {
+        entries.keySet().removeIf(key -> key.privateKey().equals(privateKey));
+    }
+
+    /**
+     * Drops every cached context.
+     */
+    public void invalidateAll() {
+        entries.clear();
+    }
+
+    /**
+     * @return The number of cached contexts.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Stops the background eviction thread and drops every cached context.
+     */
+    @Override
+    public void close() {
+        reaper.shutdownNow();
+        entries.clear();
+    }
+
+    /**
+     * Removes entries that have been idle for longer than the timeout.
+     */
+    private void evictIdle() {
+        long now = System.nanoTime();
+        entries.values().removeIf(entry -> now - entry.lastAccess > idleTimeoutNanos);
+    }
+
+    /**
+     * A lazily initialised cache slot for one private key.
+     */
+    private static final class Entry {
+        private final PrivateKey privateKey;
+        private final String usbPath;
+        private volatile SigningContext context;
+        private volatile long lastAccess = System.nanoTime();
+
+        Entry(PrivateKey privateKey, String usbPath) {
+            this.privateKey = privateKey;
+            this.usbPath = usbPath;
+        }
+
+        /**
+         * Returns the context, building it the first time it is requested.
+         *
+         * @return The signing context for this entry's key.
+         * @throws Exception If the context cannot be created.
+         */
+        SigningContext getContext() throws Exception {
+            lastAccess = System.nanoTime();
+            SigningContext current = context;
+            if (current == null) {
+                synchronized (this) {
+                    current = context;
+                    if (current == null) {
+                        current = createContext();
+                        context = current;
+                    }
+                }
+            }
+            return current;
+        }
+
+        /**
+         * Builds the context from the stored certificate chain if there is
+         * one.
+         *
+         * @return A new signing context.
+         * @throws Exception If the context cannot be created.
+         */
+        private SigningContext createContext() throws Exception {
+            X509Certificate[] chain = usbPath == null ? null : RSAKeyManager.loadCertificateChain(usbPath);
+            return chain == null ? SigningContext.create(privateKey) : SigningContext.create(privateKey, chain);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.padesigner.crypto;
+
+/**
+ * Receives progress of an asynchronous signing operation from
+ * {@link AsyncSigner}. Calls are made on the worker thread doing the work, so
+ * a user interface has to hand them over to its own thread, for example with
+ * {@link javax.swing.SwingUtilities#invokeLater}.
+ */
+@FunctionalInterface
+public interface SigningListener {
+
+    /**
+     * A listener that ignores all progress.
+     */
+    SigningListener NONE = (phase, bytesProcessed, totalBytes) -> {
+    };
+
+    /**
+     * Called when a phase starts and, while hashing, as bytes are processed.
+     *
+     * @param phase          The current phase.
+     * @param bytesProcessed The number of document bytes hashed so far.
+     * @param totalBytes     The size of the document in bytes, or 0 when no
+     *                       document is involved (key unlock).
+     */
+    void onProgress(SigningPhase phase, long bytesProcessed, long totalBytes);
+}
@@ -0,0 +1,97 @@
+package com.padesigner.crypto;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * Tracks one signing operation for {@link AsyncSigner}: forwards phase
+ * changes and hashing progress to a {@link SigningListener} and carries the
+ * cancellation request. Signing checks for cancellation between phases and
+ * while hashing, so a cancelled operation stops within one buffer of input.
+ */
+final class SigningMonitor {
+
+    /**
+     * Hashing progress is reported at most once per this many bytes.
+     */
+    private static final long REPORT_INTERVAL = 256 * 1024;
+
+    private final SigningListener listener;
+    private volatile boolean cancelled;
+    private long totalBytes;
+    private SigningPhase phase;
+    private long bytesProcessed;
+    private long reportedBytes;
+
+    /**
+     * @param listener The listener to notify.
+     */
+    SigningMonitor(SigningListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Requests cancellation. The operation stops at its next check.
+     */
+    void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * @return true if cancellation was requested.
+     */
+    boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @throws CancellationException If cancellation was requested.
+     */
+    void checkCancelled() {
+        if (cancelled) {
+            throw new CancellationException("Signing was cancelled.");
+        }
+    }
+
+    /**
+     * @param totalBytes The size of the document being signed.
+     */
+    void setTotalBytes(long totalBytes) {
+        this.totalBytes = totalBytes;
+    }
+
+    /**
+     * Enters a phase and reports it.
+     *
+     * @param next The phase that starts.
+     * @throws CancellationException If cancellation was requested.
+     */
+    void phase(SigningPhase next) {
+        checkCancelled();
+        phase = next;
+        listener.onProgress(next, Math.min(bytesProcessed, totalBytes), totalBytes);
+    }
+
+    /**
+     * Counts hashed bytes. The first call enters the hashing phase; later
+     * calls report progress in steps of {@value #REPORT_INTERVAL} bytes. Bytes
+     * hashed outside the hashing phase, such as the signed attributes, are
+     * not reported.
+     *
+     * @param count The number of bytes just hashed.
+     * @throws CancellationException If cancellation was requested.
+     */
+    void hashed(long count) {
+        checkCancelled();
+        if (phase == SigningPhase.OPENING) {
+            phase(SigningPhase.HASHING);
+        }
+        if (phase != SigningPhase.HASHING) {
+            return;
+        }
+        bytesProcessed += count;
+        if (bytesProcessed - reportedBytes >= REPORT_INTERVAL) {
+            reportedBytes = bytesProcessed;
+            listener.onProgress(phase, Math.min(bytesProcessed, totalBytes), totalBytes);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.padesigner.crypto;
+
+/**
+ * The phases of an asynchronous signing operation, in the order they are
+ * reported to a {@link SigningListener}.
+ */
+public enum SigningPhase {
+    /**
+     * Decrypting the private key with the PIN.
+     */
+    UNLOCKING_KEY,
+    /**
+     * Reading the document and preparing the signature field.
+     */
+    OPENING,
+    /**
+     * Hashing the signed byte ranges; progress is reported in bytes.
+     */
+    HASHING,
+    /**
+     * Computing the signature value with the private key.
+     */
+    SIGNING,
+    /**
+     * Writing the signature into the output document.
+     */
+    WRITING,
+    /**
+     * The operation has completed.
+     */
+    COMPLETED
+}
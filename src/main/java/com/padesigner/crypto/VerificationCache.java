@@ -0,0 +1,275 @@
+package com.padesigner.crypto;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * A persistent cache of verification results, so that re-verifying an
+ * unchanged document costs a single stat call instead of a PDF parse and a
+ * signature check.
+ * <p>
+ * Results are keyed by the document path and the fingerprint of the keys they
+ * were checked against, and are only reused while the file still has the
+ * same size, modification time and file key (the inode on Unix). A result is
+ * not stored if the file changed while it was being verified, or if it was
+ * modified so recently that a later change could go unnoticed within the
+ * timestamp resolution. The cache holds a bounded number of entries and
+ * evicts the least recently used one when full.
+ */
+public class VerificationCache {
+
+    /**
+     * The number of entries kept when no limit is specified.
+     */
+    public static final int DEFAULT_MAX_ENTRIES = 100_000;
+
+    /**
+     * The version of the saved file. Raised whenever the validity rules change,
+     * so results decided under older rules are discarded.
+     */
+    private static final int FORMAT_VERSION = 2;
+
+    /**
+     * Files modified less than this long before being verified are not cached,
+     * because a further change could keep the same timestamp.
+     */
+    private static final long RACY_WINDOW_MILLIS = 2_000;
+
+    private final Path storage;
+    private final LinkedHashMap<String, Entry> entries;
+    private boolean dirty;
+
+    /**
+     * The identity of a file at a point in time.
+     *
+     * @param size           The file size.
+     * @param modifiedMillis The last modification time.
+     * @param fileKey        The file key, or null if the platform has none.
+     */
+    public record FileState(long size, long modifiedMillis, String fileKey) {
+
+        /**
+         * Reads the current state of a file.
+         *
+         * @param file The file.
+         * @return Its size, modification time and file key.
+         * @throws IOException If the file cannot be accessed.
+         */
+        public static FileState of(Path file) throws IOException {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            Object fileKey = attributes.fileKey();
+            return new FileState(attributes.size(), attributes.lastModifiedTime().toMillis(),
+                    fileKey != null ? fileKey.toString() : null);
+        }
+    }
+
+    /**
+     * A cached verification result.
+     *
+     * @param state The state of the file when it was verified.
+     * @param valid The verification result.
+     */
+    private record Entry(FileState state, boolean valid) {
+    }
+
+    /**
+     * Creates a cache backed by the given file.
+     *
+     * @param storage    The file the cache is loaded from and saved to.
+     * @param maxEntries The maximum number of entries.
+     */
+    private VerificationCache(Path storage, int maxEntries) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("Cache size must be positive.");
+        }
+        this.storage = storage;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Opens a cache, loading previously saved results if the storage file
+     * exists. A storage file that cannot be parsed is ignored, so a damaged
+     * cache only costs re-verification.
+     *
+     * @param storage    The file the cache is loaded from and saved to.
+     * @param maxEntries The maximum number of entries.
+     * @return The cache.
+     * @throws IOException If the storage file exists but cannot be read.
+     */
+    public static VerificationCache open(Path storage, int maxEntries) throws IOException {
+        VerificationCache cache = new VerificationCache(storage, maxEntries);
+        if (Files.exists(storage)) {
+            try {
+                cache.load(new JSONObject(Files.readString(storage, StandardCharsets.UTF_8)));
+            } catch (JSONException e) {
+                cache.entries.clear();
+                cache.dirty = true;
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * Returns the cached result for a document if the file is unchanged.
+     * Entries for files that have changed are removed.
+     *
+     * @param document       The document.
+     * @param keyFingerprint The fingerprint of the public key or keyring, see
+     *                       {@link PublicKeyRing#getFingerprint}.
+     * @return The cached result, or null if there is none.
+     */
+    public Boolean lookup(Path document, String keyFingerprint) {
+        String key = toKey(document, keyFingerprint);
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+        }
+        if (entry == null) {
+            return null;
+        }
+        try {
+            if (entry.state().equals(FileState.of(document))) {
+                return entry.valid();
+            }
+        } catch (IOException e) {
+            // The file is gone or unreadable; drop the entry.
+        }
+        synchronized (this) {
+            entries.remove(key, entry);
+            dirty = true;
+        }
+        return null;
+    }
+
+    /**
+     * Stores a verification result.
+     *
+     * @param document       The verified document.
+     * @param keyFingerprint The fingerprint of the public key.
+     * @param before         The state of the file before verification started.
+     * @param valid          The verification result.
+     */
+    public void store(Path document, String keyFingerprint, FileState before, boolean valid) {
+        try {
+            if (!before.equals(FileState.of(document))
+                    || before.modifiedMillis() > System.currentTimeMillis() - RACY_WINDOW_MILLIS) {
+                return;
+            }
+        } catch (IOException e) {
+            return;
+        }
+        synchronized (this) {
+            entries.put(toKey(document, keyFingerprint), new Entry(before, valid));
+            dirty = true;
+        }
+    }
+
+    /**
+     * Removes all results for a document, whatever key they were checked
+     * against.
+     *
+     * @param document The document.
+     */
+    public synchronized void invalidate(Path document) {
+        String prefix = toKey(document, "");
+        for (Iterator<String> keys = entries.keySet().iterator(); keys.hasNext();) {
+            if (keys.next().startsWith(prefix)) {
+                keys.remove();
+                dirty = true;
+            }
+        }
+    }
+
+    /**
+     * Removes all results.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        dirty = true;
+    }
+
+    /**
+     * @return The number of cached results.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Writes the cache to its storage file if it has changed. The file is
+     * replaced atomically, so a crash never leaves a partially written cache.
+     *
+     * @throws IOException If the file cannot be written.
+     */
+    public synchronized void save() throws IOException {
+        if (!dirty) {
+            return;
+        }
+        JSONArray results = new JSONArray();
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            FileState state = entry.getValue().state();
+            results.put(new JSONObject()
+                    .put("key", entry.getKey())
+                    .put("size", state.size())
+                    .put("modified", state.modifiedMillis())
+                    .put("fileKey", state.fileKey() != null ? state.fileKey() : JSONObject.NULL)
+                    .put("valid", entry.getValue().valid()));
+        }
+        JSONObject json = new JSONObject().put("version", FORMAT_VERSION).put("results", results);
+
+        Path parent = storage.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temporary = Files.createTempFile(parent, storage.getFileName().toString(), ".tmp");
+        try {
+            Files.writeString(temporary, json.toString(), StandardCharsets.UTF_8);
+            Files.move(temporary, storage, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+        dirty = false;
+    }
+
+    /**
+     * Loads saved results, oldest first so that the access order is kept.
+     *
+     * @param json The saved cache.
+     */
+    private void load(JSONObject json) {
+        if (json.optInt("version") != FORMAT_VERSION) {
+            dirty = true;
+            return;
+        }
+        JSONArray results = json.getJSONArray("results");
+        for (int i = 0; i < results.length(); i++) {
+            JSONObject result = results.getJSONObject(i);
+            FileState state = new FileState(result.getLong("size"), result.getLong("modified"),
+                    result.isNull("fileKey") ? null : result.getString("fileKey"));
+            entries.put(result.getString("key"), new Entry(state, result.getBoolean("valid")));
+        }
+    }
+
+    /**
+     * @param document       The document.
+     * @param keyFingerprint The fingerprint of the public key.
+     * @return The cache key.
+     */
+    private static String toKey(Path document, String keyFingerprint) {
+        return document.toAbsolutePath().normalize() + "\n" + keyFingerprint;
+    }
+}
@@ -0,0 +1,251 @@
+package com.padesigner.daemon;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.padesigner.metrics.Metrics;
+import com.padesigner.metrics.PrometheusExporter;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Serves a {@link SigningService} over HTTP on the loopback interface.
+ * <p>
+ * Requests:
+ *
+ * <pre>
+ * POST /sign     body: absolute path of the document
+ * POST /verify   body: absolute path of the document
+ * GET  /health
+ * GET  /metrics
+ * </pre>
+ *
+ * Every response except {@code /metrics} is a JSON object; the status code is
+ * the one chosen by the service (200, 400, 403, 404, 500, 503 or 504), or 401
+ * or 403 when the request is refused, see below.
+ * {@code /metrics} answers in the Prometheus text format, see
+ * {@link PrometheusExporter}. The server only binds to the
+ * loopback address, so it cannot be reached from other machines.
+ * <p>
+ * Every request must carry the header {@code Authorization: Bearer <token>}.
+ * A new random token is created at each start and written to a file only the
+ * owner can read, so other local users cannot use the daemon. Browsers cannot
+ * add the header to a cross-origin request without a CORS preflight, which
+ * the server never grants; requests whose {@code Origin} or {@code Host} is
+ * not a loopback name are rejected as well, against DNS rebinding.
+ */
+public class HttpFrontend implements AutoCloseable {
+
+    private static final int MAX_REQUEST_BYTES = 4096;
+    private static final int TOKEN_BYTES = 32;
+    private static final Set<String> LOOPBACK_HOSTS = Set.of("127.0.0.1", "localhost", "[::1]");
+
+    private final HttpServer server;
+    private final ExecutorService handlers;
+    private final byte[] token;
+
+    /**
+     * Starts the HTTP server.
+     *
+     * @param service   The service handling the requests.
+     * @param port      The loopback port, or 0 to choose a free one.
+     * @param tokenFile The file the access token is written to. It is
+     *                  replaced, and readable by its owner only.
+     * @throws IOException If the port cannot be bound or the token cannot be
+     *                     written.
+     */
+    public HttpFrontend(SigningService service, int port, Path tokenFile) throws IOException {
+        this.token = writeToken(tokenFile);
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.handlers = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "signing-daemon-http-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.createContext("/sign", authorized(exchange -> handle(exchange, service,
+                SigningService.Operation.SIGN)));
+        server.createContext("/verify", authorized(exchange -> handle(exchange, service,
+                SigningService.Operation.VERIFY)));
+        server.createContext("/health", authorized(exchange -> {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                send(exchange, SigningService.Response.error(405, "Use GET."));
+            } else {
+                send(exchange, service.health());
+            }
+        }));
+        server.createContext("/metrics", authorized(exchange -> {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                send(exchange, SigningService.Response.error(405, "Use GET."));
+                return;
+            }
+            byte[] body = PrometheusExporter.format(Metrics.getRegistry()).getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", PrometheusExporter.CONTENT_TYPE);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream responseBody = exchange.getResponseBody()) {
+                responseBody.write(body);
+            }
+        }));
+        server.setExecutor(handlers);
+        server.start();
+    }
+
+    /**
+     * @return The port the server listens on.
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Stops the server.
+     */
+    @Override
+    public void close() {
+        server.stop(0);
+        handlers.shutdownNow();
+    }
+
+    /**
+     * Creates a random access token and writes it to a file that only the
+     * owner can read. The file is written under a temporary name created with
+     * those permissions and then moved into place, so the token is never
+     * readable by others.
+     *
+     * @param tokenFile The token file.
+     * @return The token, as it appears in the file and the header.
+     * @throws IOException If the file cannot be written.
+     */
+    private static byte[] writeToken(Path tokenFile) throws IOException {
+        byte[] random = new byte[TOKEN_BYTES];
+        new SecureRandom().nextBytes(random);
+        byte[] token = HexFormat.of().formatHex(random).getBytes(StandardCharsets.US_ASCII);
+        Path directory = tokenFile.toAbsolutePath().getParent();
+        Path temporary;
+        try {
+            temporary = Files.createTempFile(directory, ".token", null,
+                    PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        } catch (UnsupportedOperationException e) {
+            // Not a POSIX file system; access is governed by the directory.
+            temporary = Files.createTempFile(directory, ".token", null);
+        }
+        try {
+            Files.write(temporary, token);
+            Files.move(temporary, tokenFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+        return token;
+    }
+
+    /**
+     * Wraps a handler so that it only runs for requests carrying the access
+     * token and coming from a loopback origin.
+     *
+     * @param handler The handler.
+     * @return The checking handler.
+     */
+    private HttpHandler authorized(HttpHandler handler) {
+        return exchange -> {
+            if (!isLoopback(exchange.getRequestHeaders().getFirst("Host"), false)
+                    || !isLoopback(exchange.getRequestHeaders().getFirst("Origin"), true)) {
+                send(exchange, SigningService.Response.error(403, "Only local requests are accepted."));
+                return;
+            }
+            String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+            byte[] presented = authorization != null && authorization.startsWith("Bearer ")
+                    ? authorization.substring(7).trim().getBytes(StandardCharsets.US_ASCII) : new byte[0];
+            if (!MessageDigest.isEqual(token, presented)) {
+                exchange.getResponseHeaders().set("WWW-Authenticate", "Bearer");
+                send(exchange, SigningService.Response.error(401, "Missing or wrong access token."));
+                return;
+            }
+            handler.handle(exchange);
+        };
+    }
+
+    /**
+     * @param value  A Host header ("host:port") or an Origin header (a URI).
+     * @param origin Whether the value is an Origin header, which may be
+     *               absent.
+     * @return true if the value names a loopback host.
+     */
+    private static boolean isLoopback(String value, boolean origin) {
+        if (value == null) {
+            return origin;
+        }
+        String host;
+        if (origin) {
+            try {
+                URI uri = new URI(value);
+                host = uri.getHost();
+            } catch (URISyntaxException e) {
+                return false;
+            }
+        } else {
+            int port = value.lastIndexOf(':');
+            host = port > value.lastIndexOf(']') ? value.substring(0, port) : value;
+        }
+        return host != null && LOOPBACK_HOSTS.contains(host.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Handles a sign or verify request.
+     *
+     * @param exchange  The HTTP exchange.
+     * @param service   The service handling the request.
+     * @param operation The requested operation.
+     * @throws IOException If the response cannot be written.
+     */
+    private static void handle(HttpExchange exchange, SigningService service, SigningService.Operation operation)
+            throws IOException {
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            send(exchange, SigningService.Response.error(405, "Use POST with the document path as body."));
+            return;
+        }
+        byte[] body;
+        try (InputStream requestBody = exchange.getRequestBody()) {
+            body = requestBody.readNBytes(MAX_REQUEST_BYTES + 1);
+        }
+        if (body.length > MAX_REQUEST_BYTES) {
+            send(exchange, SigningService.Response.error(413, "Request body is too large."));
+            return;
+        }
+        send(exchange, service.handle(operation, new String(body, StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Writes a response.
+     *
+     * @param exchange The HTTP exchange.
+     * @param response The response to send.
+     * @throws IOException If the response cannot be written.
+     */
+    private static void send(HttpExchange exchange, SigningService.Response response) throws IOException {
+        byte[] body = (response.body().toString() + "\n").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(response.status(), body.length);
+        try (OutputStream responseBody = exchange.getResponseBody()) {
+            responseBody.write(body);
+        }
+    }
+}
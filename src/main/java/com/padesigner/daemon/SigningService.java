@@ -0,0 +1,285 @@
+package com.padesigner.daemon;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import com.padesigner.crypto.MyPdfSigner;
+import com.padesigner.crypto.PublicKeyRing;
+import com.padesigner.crypto.SignatureVerifier;
+import com.padesigner.crypto.SigningContext;
+
+/**
+ * The request handling behind the signing daemon. It holds one unlocked
+ * {@link SigningContext} for its whole lifetime and runs sign and verify
+ * requests on a fixed number of worker threads. Requests wait in a bounded
+ * queue; when the queue is full a request is rejected at once with status 503
+ * instead of piling up, so callers can back off.
+ * <p>
+ * Results are returned as a {@link Response} with an HTTP style status code
+ * and a JSON body, which the HTTP and Unix socket front ends pass on as they
+ * are. The service does not touch Swing and is safe to call from any thread.
+ */
+public class SigningService implements AutoCloseable {
+
+    /**
+     * The number of requests that may wait for a worker when none is given.
+     */
+    public static final int DEFAULT_QUEUE_CAPACITY = 64;
+
+    /**
+     * How long a request may take, including the time spent queued, when no
+     * other limit is given.
+     */
+    public static final Duration DEFAULT_REQUEST_TIMEOUT = Duration.ofMinutes(2);
+
+    /**
+     * The operations offered by the service.
+     */
+    public enum Operation {
+        /**
+         * Sign a document; the output is written next to it.
+         */
+        SIGN,
+
+        /**
+         * Verify every signature of a document.
+         */
+        VERIFY;
+
+        /**
+         * Parses an operation name, ignoring case.
+         *
+         * @param name The name, e.g. "sign".
+         * @return The operation.
+         */
+        public static Operation parse(String name) {
+            try {
+                return valueOf(name.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown operation: " + name);
+            }
+        }
+    }
+
+    /**
+     * The outcome of a request.
+     *
+     * @param status The HTTP style status code.
+     * @param body   The JSON body.
+     */
+    public record Response(int status, JSONObject body) {
+
+        /**
+         * Creates an error response.
+         *
+         * @param status  The status code.
+         * @param message The error message.
+         * @return The response.
+         */
+        static Response error(int status, String message) {
+            return new Response(status, new JSONObject().put("error", message));
+        }
+    }
+
+    private final SigningContext context;
+    private final PublicKeyRing keyRing;
+    private final Path root;
+    private final Duration requestTimeout;
+    private final ThreadPoolExecutor workers;
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    /**
+     * Creates the service and starts its workers.
+     *
+     * @param context        The signing context used for every sign request.
+     * @param keyRing        The trusted keys used for verify requests.
+     * @param root           The directory documents must be located in, or null
+     *                       to allow any document.
+     * @param threads        The number of worker threads.
+     * @param queueCapacity  The number of requests that may wait for a worker.
+     * @param requestTimeout How long a request may take in total.
+     * @throws IOException If the root directory cannot be resolved.
+     */
+    public SigningService(SigningContext context, PublicKeyRing keyRing, Path root, int threads, int queueCapacity,
+            Duration requestTimeout) throws IOException {
+        if (threads < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("Thread count and queue capacity must be positive.");
+        }
+        if (requestTimeout.isNegative() || requestTimeout.isZero()) {
+            throw new IllegalArgumentException("Request timeout must be positive.");
+        }
+        this.context = context;
+        this.keyRing = keyRing;
+        this.root = root == null ? null : root.toRealPath();
+        this.requestTimeout = requestTimeout;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "signing-worker-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        workers.prestartAllCoreThreads();
+    }
+
+    /**
+     * Handles one request and waits for its result.
+     *
+     * @param operation The requested operation.
+     * @param document  The absolute path of the document.
+     * @return The response.
+     */
+    public Response handle(Operation operation, String document) {
+        Path path;
+        try {
+            path = resolve(document);
+        } catch (IllegalArgumentException e) {
+            return Response.error(400, e.getMessage());
+        } catch (SecurityException e) {
+            return Response.error(403, e.getMessage());
+        } catch (IOException e) {
+            return Response.error(404, "Document not found: " + document);
+        }
+
+        long started = System.nanoTime();
+        Future<JSONObject> future;
+        try {
+            future = workers.submit(task(operation, path));
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            return Response.error(503, "Too many pending requests, try again later.");
+        }
+
+        try {
+            JSONObject body = future.get(requestTimeout.toMillis(), TimeUnit.MILLISECONDS);
+            completed.incrementAndGet();
+            return new Response(200, body.put("millis", (System.nanoTime() - started) / 1_000_000));
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            failed.incrementAndGet();
+            return Response.error(504, "Request timed out after " + requestTimeout.toSeconds() + " s.");
+        } catch (ExecutionException e) {
+            failed.incrementAndGet();
+            Throwable cause = e.getCause();
+            return Response.error(500, cause.getMessage() != null ? cause.getMessage() : cause.toString());
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            return Response.error(503, "Service is shutting down.");
+        }
+    }
+
+    /**
+     * @return The current load and request counters.
+     */
+    public Response health() {
+        return new Response(200, new JSONObject()
+                .put("threads", workers.getMaximumPoolSize())
+                .put("active", workers.getActiveCount())
+                .put("queued", workers.getQueue().size())
+                .put("queueCapacity", workers.getQueue().size() + workers.getQueue().remainingCapacity())
+                .put("completed", completed.get())
+                .put("failed", failed.get())
+                .put("rejected", rejected.get())
+                .put("keyAlgorithm", context.getKeyAlgorithm().toString()));
+    }
+
+    /**
+     * Stops accepting requests and waits briefly for running ones to finish.
+     */
+    @Override
+    public void close() {
+        workers.shutdown();
+        try {
+            if (!workers.awaitTermination(10, TimeUnit.SECONDS)) {
+                workers.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            workers.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Creates the work for a request.
+     *
+     * @param operation The requested operation.
+     * @param path      The document.
+     * @return The task producing the response body.
+     */
+    private Callable<JSONObject> task(Operation operation, Path path) {
+        String document = path.toString();
+        return switch (operation) {
+            case SIGN -> () -> new JSONObject()
+                    .put("document", document)
+                    .put("output", MyPdfSigner.signPDF(document, context));
+            case VERIFY -> () -> {
+                List<SignatureVerifier.SignatureReport> reports = SignatureVerifier.verifyAllSignatures(document,
+                        keyRing);
+                JSONArray signatures = new JSONArray();
+                for (SignatureVerifier.SignatureReport report : reports) {
+                    signatures.put(new JSONObject()
+                            .put("name", report.name())
+                            .put("revision", report.revision())
+                            .put("intact", report.intact())
+                            .put("signedByKey", report.signedByKey())
+                            .put("signer", report.signer() != null ? report.signer() : JSONObject.NULL)
+                            .put("coversWholeDocument", report.coversWholeDocument())
+                            .put("message", report.message() != null ? report.message() : JSONObject.NULL));
+                }
+                return new JSONObject()
+                        .put("document", document)
+                        .put("valid", SignatureVerifier.isValid(reports))
+                        .put("signatures", signatures);
+            };
+        };
+    }
+
+    /**
+     * Checks a requested document path.
+     *
+     * @param document The requested path.
+     * @return The real path of the document.
+     * @throws IOException If the document does not exist.
+     */
+    private Path resolve(String document) throws IOException {
+        if (document == null || document.isBlank()) {
+            throw new IllegalArgumentException("Document path not specified.");
+        }
+        Path path = Paths.get(document.trim());
+        if (!path.isAbsolute()) {
+            throw new IllegalArgumentException("Document path must be absolute: " + document);
+        }
+        if (!path.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".pdf")) {
+            throw new IllegalArgumentException("Not a PDF document: " + document);
+        }
+        Path realPath = path.toRealPath();
+        if (root != null && !realPath.startsWith(root)) {
+            throw new SecurityException("Document is outside of " + root + ": " + document);
+        }
+        if (!Files.isRegularFile(realPath)) {
+            throw new IOException("Not a file: " + document);
+        }
+        return realPath;
+    }
+}
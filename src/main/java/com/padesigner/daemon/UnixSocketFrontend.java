@@ -0,0 +1,211 @@
+package com.padesigner.daemon;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Serves a {@link SigningService} over a Unix domain socket. This avoids the
+ * TCP and HTTP overhead for pipelines on the same host, and access can be
+ * restricted with file permissions: the socket is created readable and
+ * writable by its owner only. This is the listener the daemon uses by
+ * default.
+ * <p>
+ * The protocol is line based. A client may send any number of requests on one
+ * connection, each answered by one line of JSON carrying the status code in
+ * its {@code "code"} field:
+ *
+ * <pre>
+ * sign /absolute/path/document.pdf
+ * verify /absolute/path/document.pdf
+ * health
+ * </pre>
+ */
+public class UnixSocketFrontend implements AutoCloseable {
+
+    private final Path socketPath;
+    private final ServerSocketChannel serverChannel;
+    private final ExecutorService connections;
+    private final Thread acceptor;
+
+    /**
+     * Binds the socket and starts accepting connections. A stale socket file
+     * left behind by a previous run is replaced; a socket another daemon still
+     * listens on is not.
+     *
+     * @param service    The service handling the requests.
+     * @param socketPath The path of the socket file.
+     * @throws IOException If the socket cannot be bound.
+     */
+    public UnixSocketFrontend(SigningService service, Path socketPath) throws IOException {
+        this.socketPath = socketPath;
+        UnixDomainSocketAddress address = UnixDomainSocketAddress.of(socketPath);
+        if (Files.exists(socketPath)) {
+            if (isListening(address)) {
+                throw new IOException("Another daemon is listening on " + socketPath);
+            }
+            Files.delete(socketPath);
+        }
+        this.serverChannel = bindPrivately(socketPath);
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.connections = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "signing-daemon-socket-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.acceptor = new Thread(() -> accept(service), "signing-daemon-socket-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * Binds a socket that only its owner can connect to. The socket is bound
+     * inside a new directory only the owner can enter, restricted to its
+     * owner and then moved into place, so it is never reachable with the
+     * permissions of the umask.
+     *
+     * @param socketPath The path of the socket file.
+     * @return The bound server channel.
+     * @throws IOException If the socket cannot be bound.
+     */
+    private static ServerSocketChannel bindPrivately(Path socketPath) throws IOException {
+        Path directory;
+        try {
+            directory = Files.createTempDirectory(socketPath.toAbsolutePath().getParent(), ".socket",
+                    PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+        } catch (UnsupportedOperationException e) {
+            // Not a POSIX file system; access is governed by the directory.
+            directory = Files.createTempDirectory(socketPath.toAbsolutePath().getParent(), ".socket");
+        }
+        Path boundPath = directory.resolve(socketPath.getFileName());
+        ServerSocketChannel channel = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        try {
+            channel.bind(UnixDomainSocketAddress.of(boundPath));
+            try {
+                Files.setPosixFilePermissions(boundPath, PosixFilePermissions.fromString("rw-------"));
+            } catch (UnsupportedOperationException e) {
+                // Not a POSIX file system; access is governed by the directory.
+            }
+            Files.move(boundPath, socketPath, StandardCopyOption.ATOMIC_MOVE);
+            return channel;
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        } finally {
+            Files.deleteIfExists(boundPath);
+            Files.delete(directory);
+        }
+    }
+
+    /**
+     * @return The path of the socket file.
+     */
+    public Path getSocketPath() {
+        return socketPath;
+    }
+
+    /**
+     * Stops accepting connections and removes the socket file.
+     *
+     * @throws IOException If the socket cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        serverChannel.close();
+        connections.shutdownNow();
+        Files.deleteIfExists(socketPath);
+    }
+
+    /**
+     * Acceptor loop: hands every connection to a handler thread until the
+     * socket is closed.
+     *
+     * @param service The service handling the requests.
+     */
+    private void accept(SigningService service) {
+        while (serverChannel.isOpen()) {
+            try {
+                SocketChannel client = serverChannel.accept();
+                connections.execute(() -> serve(client, service));
+            } catch (IOException e) {
+                if (serverChannel.isOpen()) {
+                    System.err.println("Error accepting connection: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Answers the requests of one connection until the client closes it.
+     *
+     * @param client  The client connection.
+     * @param service The service handling the requests.
+     */
+    private static void serve(SocketChannel client, SigningService service) {
+        try (client;
+                BufferedReader reader = new BufferedReader(
+                        new InputStreamReader(Channels.newInputStream(client), StandardCharsets.UTF_8));
+                Writer writer = new OutputStreamWriter(Channels.newOutputStream(client), StandardCharsets.UTF_8)) {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                SigningService.Response response = handle(line.trim(), service);
+                writer.write(response.body().put("code", response.status()).toString());
+                writer.write('\n');
+                writer.flush();
+            }
+        } catch (IOException e) {
+            // The client went away; nothing left to answer.
+        }
+    }
+
+    /**
+     * @param address The socket address.
+     * @return true if a server accepts connections on the address.
+     */
+    private static boolean isListening(UnixDomainSocketAddress address) {
+        try {
+            SocketChannel.open(address).close();
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Parses and handles one request line.
+     *
+     * @param line    The request line.
+     * @param service The service handling the request.
+     * @return The response.
+     */
+    private static SigningService.Response handle(String line, SigningService service) {
+        if (line.equalsIgnoreCase("health")) {
+            return service.health();
+        }
+        int separator = line.indexOf(' ');
+        if (separator < 0) {
+            return SigningService.Response.error(400, "Expected '<sign|verify> <path>' or 'health'.");
+        }
+        try {
+            SigningService.Operation operation = SigningService.Operation.parse(line.substring(0, separator));
+            return service.handle(operation, line.substring(separator + 1));
+        } catch (IllegalArgumentException e) {
+            return SigningService.Response.error(400, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.padesigner.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Issuing a self-signed certificate for a key pair.
+ */
+@Name("com.padesigner.CertificateBuild")
+@Label("Certificate Build")
+@Description("Issuing of a self-signed certificate")
+public class CertificateBuildEvent extends OperationEvent {
+}
@@ -0,0 +1,29 @@
+package com.padesigner.jfr;
+
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Hashing document data: the signed byte ranges, and while signing also the
+ * signed attributes.
+ */
+@Name("com.padesigner.Digest")
+@Label("Digest")
+@Description("Hashing of document data with a message digest")
+@StackTrace(false)
+public class DigestEvent extends OperationEvent {
+
+    @Label("Size")
+    @DataAmount
+    private long size;
+
+    /**
+     * @param size The number of bytes hashed.
+     */
+    public void setSize(long size) {
+        this.size = size;
+    }
+}
@@ -0,0 +1,43 @@
+package com.padesigner.jfr;
+
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Signing one document, from opening the input to closing the signed output.
+ */
+@Name("com.padesigner.DocumentSign")
+@Label("Document Sign")
+@Description("Signing of one PDF document")
+public class DocumentSignEvent extends OperationEvent {
+
+    @Label("Path")
+    private String path;
+
+    @Label("File Size")
+    @DataAmount
+    private long fileSize;
+
+    @Label("Page Count")
+    private int pageCount;
+
+    /**
+     * Starts the event.
+     *
+     * @param path The document being signed.
+     */
+    public DocumentSignEvent(String path) {
+        this.path = path;
+    }
+
+    /**
+     * @param fileSize  The size of the input document in bytes.
+     * @param pageCount The number of pages.
+     */
+    public void setDocument(long fileSize, int pageCount) {
+        this.fileSize = fileSize;
+        this.pageCount = pageCount;
+    }
+}
@@ -0,0 +1,45 @@
+package com.padesigner.jfr;
+
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Decrypting a private key file with the PIN. Its duration is dominated by the
+ * PBKDF2 iteration count.
+ */
+@Name("com.padesigner.KeyUnlock")
+@Label("Key Unlock")
+@Description("Decryption of a private key file")
+public class KeyUnlockEvent extends OperationEvent {
+
+    @Label("Path")
+    private String path;
+
+    @Label("File Size")
+    @DataAmount
+    private long fileSize;
+
+    @Label("KDF Iterations")
+    @Description("PBKDF2 iteration count, 0 for a legacy key file")
+    private int iterations;
+
+    /**
+     * Starts the event.
+     *
+     * @param path The key file.
+     */
+    public KeyUnlockEvent(String path) {
+        this.path = path;
+    }
+
+    /**
+     * @param fileSize   The size of the key file in bytes.
+     * @param iterations The PBKDF2 iteration count, or 0 for a legacy file.
+     */
+    public void setKeyFile(long fileSize, int iterations) {
+        this.fileSize = fileSize;
+        this.iterations = iterations;
+    }
+}
@@ -0,0 +1,75 @@
+package com.padesigner.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+
+/**
+ * Base class of the Flight Recorder events of PAdESigner. Every event is a
+ * duration event that records the algorithm involved and whether the
+ * operation succeeded.
+ * <p>
+ * An event is started when it is created and committed by
+ * {@link #finish(boolean)}. While no recording is running, creating and
+ * finishing an event costs next to nothing; fields that are expensive to
+ * collect should only be filled in when {@link #isEnabled()} returns true.
+ */
+@Category("PAdESigner")
+public abstract class OperationEvent extends Event {
+
+    /**
+     * The outcome of an operation that completed.
+     */
+    public static final String SUCCESS = "success";
+
+    /**
+     * The outcome of an operation that threw an exception.
+     */
+    public static final String FAILURE = "failure";
+
+    @Label("Algorithm")
+    protected String algorithm;
+
+    @Label("Outcome")
+    protected String outcome;
+
+    @Label("Error")
+    protected String error;
+
+    /**
+     * Starts the event.
+     */
+    protected OperationEvent() {
+        begin();
+    }
+
+    /**
+     * @param algorithm The key, signature or digest algorithm involved.
+     */
+    public void setAlgorithm(String algorithm) {
+        this.algorithm = algorithm;
+    }
+
+    /**
+     * Records why the operation failed.
+     *
+     * @param failure The exception the operation failed with.
+     */
+    public void setFailure(Throwable failure) {
+        this.error = failure.getMessage();
+    }
+
+    /**
+     * Ends the event and commits it if it is enabled and exceeds its
+     * threshold.
+     *
+     * @param succeeded Whether the operation completed.
+     */
+    public void finish(boolean succeeded) {
+        end();
+        if (shouldCommit()) {
+            outcome = succeeded ? SUCCESS : FAILURE;
+            commit();
+        }
+    }
+}
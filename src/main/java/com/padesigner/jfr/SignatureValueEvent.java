@@ -0,0 +1,16 @@
+package com.padesigner.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The private key operation computing a signature value.
+ */
+@Name("com.padesigner.SignatureValue")
+@Label("Signature Value")
+@Description("Private key operation computing a signature value")
+@StackTrace(false)
+public class SignatureValueEvent extends OperationEvent {
+}
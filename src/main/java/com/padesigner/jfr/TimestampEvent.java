@@ -0,0 +1,29 @@
+package com.padesigner.jfr;
+
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Obtaining an RFC 3161 timestamp token for a signature value from a
+ * timestamp authority.
+ */
+@Name("com.padesigner.Timestamp")
+@Label("Signature Timestamp")
+@Description("Timestamp token requested for a signature value")
+@StackTrace(false)
+public class TimestampEvent extends OperationEvent {
+
+    @Label("Token Size")
+    @DataAmount
+    private long tokenSize;
+
+    /**
+     * @param tokenSize The size of the encoded token in bytes.
+     */
+    public void setTokenSize(long tokenSize) {
+        this.tokenSize = tokenSize;
+    }
+}
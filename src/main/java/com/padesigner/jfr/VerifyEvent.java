@@ -0,0 +1,71 @@
+package com.padesigner.jfr;
+
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Verifying all signatures of one document.
+ */
+@Name("com.padesigner.Verify")
+@Label("Verify")
+@Description("Verification of the signatures of one PDF document")
+public class VerifyEvent extends OperationEvent {
+
+    @Label("Path")
+    private String path;
+
+    @Label("File Size")
+    @DataAmount
+    private long fileSize;
+
+    @Label("Page Count")
+    @Description("The number of pages, or 0 if the document was checked without being parsed")
+    private int pageCount;
+
+    @Label("Signature Count")
+    private int signatureCount;
+
+    @Label("Valid")
+    @Description("Whether every signature is intact and one was made with a trusted key")
+    private boolean valid;
+
+    @Label("Scanned")
+    @Description("Whether the signatures were found by scanning the file instead of parsing the document")
+    private boolean scanned;
+
+    /**
+     * Starts the event.
+     *
+     * @param path The document being verified.
+     */
+    public VerifyEvent(String path) {
+        this.path = path;
+    }
+
+    /**
+     * @param fileSize       The size of the document in bytes.
+     * @param pageCount      The number of pages.
+     * @param signatureCount The number of signatures.
+     */
+    public void setDocument(long fileSize, int pageCount, int signatureCount) {
+        this.fileSize = fileSize;
+        this.pageCount = pageCount;
+        this.signatureCount = signatureCount;
+    }
+
+    /**
+     * @param valid Whether the document verified as valid.
+     */
+    public void setValid(boolean valid) {
+        this.valid = valid;
+    }
+
+    /**
+     * @param scanned Whether the signatures were found by scanning the file.
+     */
+    public void setScanned(boolean scanned) {
+        this.scanned = scanned;
+    }
+}
@@ -0,0 +1,47 @@
+package com.padesigner.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A monotonically increasing count, such as the number of signed documents.
+ * Increments from many threads do not contend with each other.
+ */
+public class Counter implements Metric {
+
+    private final String name;
+    private final String help;
+    private final LongAdder count = new LongAdder();
+
+    /**
+     * @param name The metric name.
+     * @param help A description of what is counted.
+     */
+    public Counter(String name, String help) {
+        this.name = name;
+        this.help = help;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String getHelp() {
+        return help;
+    }
+
+    /**
+     * Adds one to the count.
+     */
+    public void increment() {
+        count.increment();
+    }
+
+    /**
+     * @return The current count.
+     */
+    public long get() {
+        return count.sum();
+    }
+}
@@ -0,0 +1,56 @@
+package com.padesigner.metrics;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Function;
+
+/**
+ * The in-memory registry used unless another one is installed. Lookups of
+ * existing metrics do not lock.
+ */
+public class DefaultMetricsRegistry implements MetricsRegistry {
+
+    private final ConcurrentNavigableMap<String, Metric> metrics = new ConcurrentSkipListMap<>();
+
+    @Override
+    public Counter counter(String name, String help) {
+        return get(name, Counter.class, key -> new Counter(key, help));
+    }
+
+    @Override
+    public Timer timer(String name, String help) {
+        return get(name, Timer.class, key -> new Timer(key, help));
+    }
+
+    @Override
+    public Histogram histogram(String name, String help, double[] upperBounds) {
+        return get(name, Histogram.class, key -> new Histogram(key, help, upperBounds));
+    }
+
+    @Override
+    public Collection<Metric> getMetrics() {
+        return Collections.unmodifiableCollection(metrics.values());
+    }
+
+    /**
+     * Returns the metric with the given name, creating it if needed.
+     *
+     * @param name    The metric name.
+     * @param type    The expected type.
+     * @param factory Creates the metric.
+     * @return The metric.
+     */
+    private <T extends Metric> T get(String name, Class<T> type, Function<String, T> factory) {
+        Metric metric = metrics.get(name);
+        if (metric == null) {
+            metric = metrics.computeIfAbsent(name, factory);
+        }
+        if (metric.getClass() != type) {
+            throw new IllegalArgumentException("Metric " + name + " is a " + metric.getClass().getSimpleName()
+                    + ", not a " + type.getSimpleName());
+        }
+        return type.cast(metric);
+    }
+}
@@ -0,0 +1,145 @@
+package com.padesigner.metrics;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts observed values in fixed buckets, in the layout of a Prometheus
+ * histogram. Recording is lock free and costs one bucket search, so it can be
+ * done on every operation. Quantiles are estimated from the buckets, which is
+ * accurate to the bucket width.
+ */
+public class Histogram implements Metric {
+
+    private final String name;
+    private final String help;
+    private final double[] upperBounds;
+    private final LongAdder[] buckets;
+    private final LongAdder count = new LongAdder();
+    private final DoubleAdder sum = new DoubleAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, Double.doubleToLongBits(0));
+
+    /**
+     * @param name        The metric name.
+     * @param help        A description of what is measured.
+     * @param upperBounds The inclusive upper bounds of the buckets, in
+     *                    ascending order. A final bucket for larger values is
+     *                    added implicitly.
+     */
+    public Histogram(String name, String help, double[] upperBounds) {
+        for (int i = 1; i < upperBounds.length; i++) {
+            if (upperBounds[i] <= upperBounds[i - 1]) {
+                throw new IllegalArgumentException("Bucket bounds must be ascending.");
+            }
+        }
+        this.name = name;
+        this.help = help;
+        this.upperBounds = upperBounds.clone();
+        this.buckets = new LongAdder[upperBounds.length + 1];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String getHelp() {
+        return help;
+    }
+
+    /**
+     * Records one observed value. Negative values are counted as 0.
+     *
+     * @param value The value.
+     */
+    public void record(double value) {
+        double observed = Math.max(value, 0);
+        int index = Arrays.binarySearch(upperBounds, observed);
+        buckets[index >= 0 ? index : -index - 1].increment();
+        count.increment();
+        sum.add(observed);
+        // Non-negative doubles order like their bit patterns.
+        max.accumulate(Double.doubleToLongBits(observed));
+    }
+
+    /**
+     * @return The bucket upper bounds, without the implicit last bucket.
+     */
+    public double[] getUpperBounds() {
+        return upperBounds.clone();
+    }
+
+    /**
+     * @return The number of values per bucket; the last entry counts the
+     *         values above the highest bound.
+     */
+    public long[] getBucketCounts() {
+        long[] counts = new long[buckets.length];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = buckets[i].sum();
+        }
+        return counts;
+    }
+
+    /**
+     * @return The number of recorded values.
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * @return The sum of the recorded values.
+     */
+    public double getSum() {
+        return sum.sum();
+    }
+
+    /**
+     * @return The largest recorded value, or 0 if none was recorded.
+     */
+    public double getMax() {
+        return Double.longBitsToDouble(max.get());
+    }
+
+    /**
+     * Estimates a quantile by linear interpolation inside the bucket that
+     * holds it. Values above the highest bound are estimated by the maximum.
+     *
+     * @param quantile The quantile, between 0 and 1 (0.5 for the median).
+     * @return The estimated value, or 0 if nothing was recorded.
+     */
+    public double getQuantile(double quantile) {
+        if (quantile < 0 || quantile > 1) {
+            throw new IllegalArgumentException("Quantile must be between 0 and 1.");
+        }
+        long[] counts = getBucketCounts();
+        long total = 0;
+        for (long bucketCount : counts) {
+            total += bucketCount;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        double rank = quantile * total;
+        long cumulative = 0;
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0 && cumulative + counts[i] >= rank) {
+                if (i == upperBounds.length) {
+                    return getMax();
+                }
+                double lower = i == 0 ? 0 : upperBounds[i - 1];
+                double upper = Math.min(upperBounds[i], getMax());
+                return lower + (upper - lower) * Math.max(rank - cumulative, 0) / counts[i];
+            }
+            cumulative += counts[i];
+        }
+        return getMax();
+    }
+}
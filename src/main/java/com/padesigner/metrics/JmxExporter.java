@@ -0,0 +1,141 @@
+package com.padesigner.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Publishes a registry as one read-only MBean named
+ * {@value #OBJECT_NAME}, for JConsole, VisualVM or a JMX agent. Counters
+ * appear as one attribute each; timers and histograms as
+ * {@code <name>_count}, {@code _mean}, {@code _p50}, {@code _p99} and
+ * {@code _max}. Attributes are computed when read, so metrics created after
+ * registration appear as well.
+ */
+public class JmxExporter implements DynamicMBean, AutoCloseable {
+
+    /**
+     * The object name of the MBean.
+     */
+    public static final String OBJECT_NAME = "com.padesigner:type=Metrics";
+
+    private static final String[] HISTOGRAM_SUFFIXES = { "_count", "_mean", "_p50", "_p99", "_max" };
+
+    private final MetricsRegistry registry;
+    private final ObjectName objectName;
+
+    private JmxExporter(MetricsRegistry registry, ObjectName objectName) {
+        this.registry = registry;
+        this.objectName = objectName;
+    }
+
+    /**
+     * Registers the MBean with the platform MBean server.
+     *
+     * @param registry The registry to publish.
+     * @return The registered exporter.
+     * @throws JMException If the MBean cannot be registered, for example
+     *                     because it already is.
+     */
+    public static JmxExporter register(MetricsRegistry registry) throws JMException {
+        JmxExporter exporter = new JmxExporter(registry, new ObjectName(OBJECT_NAME));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(exporter, exporter.objectName);
+        return exporter;
+    }
+
+    /**
+     * Unregisters the MBean.
+     *
+     * @throws JMException If the MBean cannot be unregistered.
+     */
+    @Override
+    public void close() throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        if (server.isRegistered(objectName)) {
+            server.unregisterMBean(objectName);
+        }
+    }
+
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+        for (Metric metric : registry.getMetrics()) {
+            if (metric instanceof Counter counter && attribute.equals(metric.getName())) {
+                return counter.get();
+            }
+            if (metric instanceof Histogram histogram && attribute.startsWith(metric.getName())) {
+                switch (attribute.substring(metric.getName().length())) {
+                    case "_count":
+                        return histogram.getCount();
+                    case "_mean":
+                        long count = histogram.getCount();
+                        return count > 0 ? histogram.getSum() / count : 0.0;
+                    case "_p50":
+                        return histogram.getQuantile(0.5);
+                    case "_p99":
+                        return histogram.getQuantile(0.99);
+                    case "_max":
+                        return histogram.getMax();
+                    default:
+                        break;
+                }
+            }
+        }
+        throw new AttributeNotFoundException(attribute);
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] attributes) {
+        AttributeList list = new AttributeList();
+        for (String attribute : attributes) {
+            try {
+                list.add(new Attribute(attribute, getAttribute(attribute)));
+            } catch (AttributeNotFoundException e) {
+                // Metrics are never removed, but a client may ask for a misspelt name.
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        List<MBeanAttributeInfo> attributes = new ArrayList<>();
+        for (Metric metric : registry.getMetrics()) {
+            if (metric instanceof Counter) {
+                attributes.add(new MBeanAttributeInfo(metric.getName(), "long", metric.getHelp(), true, false,
+                        false));
+            } else if (metric instanceof Histogram) {
+                for (String suffix : HISTOGRAM_SUFFIXES) {
+                    attributes.add(new MBeanAttributeInfo(metric.getName() + suffix,
+                            suffix.equals("_count") ? "long" : "double", metric.getHelp(), true, false, false));
+                }
+            }
+        }
+        return new MBeanInfo(getClass().getName(), "PAdESigner metrics",
+                attributes.toArray(new MBeanAttributeInfo[0]), null, null, null);
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("Metrics are read-only.");
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) {
+        throw new UnsupportedOperationException("Metrics have no operations.");
+    }
+}
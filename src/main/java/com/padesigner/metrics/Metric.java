@@ -0,0 +1,19 @@
+package com.padesigner.metrics;
+
+/**
+ * A named measurement kept by a {@link MetricsRegistry}. Names follow the
+ * Prometheus conventions: lower case words separated by underscores, counters
+ * ending in {@code _total} and timers in {@code _seconds}.
+ */
+public interface Metric {
+
+    /**
+     * @return The metric name.
+     */
+    String getName();
+
+    /**
+     * @return A one-line description of what is measured.
+     */
+    String getHelp();
+}
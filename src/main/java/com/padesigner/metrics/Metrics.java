@@ -0,0 +1,98 @@
+package com.padesigner.metrics;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Access to the metrics registry of the application and start-up of the
+ * exporters.
+ * <p>
+ * Metrics are always collected in memory. They are exported when the
+ * following environment variables are set:
+ * <ul>
+ * <li>{@code PADESIGNER_METRICS_PORT}: serve the Prometheus text format on
+ * {@code http://127.0.0.1:<port>/metrics}, see {@link PrometheusExporter}.</li>
+ * <li>{@code PADESIGNER_METRICS_FILE}: write the Prometheus text format to a
+ * file every few seconds and at exit, for a node exporter text file
+ * collector or for reading by hand.</li>
+ * <li>{@code PADESIGNER_METRICS_JMX=true}: register the metrics as an MBean,
+ * see {@link JmxExporter}.</li>
+ * </ul>
+ */
+public class Metrics {
+
+    /**
+     * How often the metrics file is rewritten.
+     */
+    public static final Duration FILE_INTERVAL = Duration.ofSeconds(10);
+
+    private static final String PORT_ENVIRONMENT_VARIABLE = "PADESIGNER_METRICS_PORT";
+    private static final String FILE_ENVIRONMENT_VARIABLE = "PADESIGNER_METRICS_FILE";
+    private static final String JMX_ENVIRONMENT_VARIABLE = "PADESIGNER_METRICS_JMX";
+
+    private static volatile MetricsRegistry registry = new DefaultMetricsRegistry();
+
+    private Metrics() {
+    }
+
+    /**
+     * @return The registry instrumented code records into.
+     */
+    public static MetricsRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * Replaces the registry. Metrics recorded so far stay in the old one.
+     *
+     * @param metricsRegistry The new registry.
+     */
+    public static void setRegistry(MetricsRegistry metricsRegistry) {
+        if (metricsRegistry == null) {
+            throw new IllegalArgumentException("Registry must not be null.");
+        }
+        registry = metricsRegistry;
+    }
+
+    /**
+     * Starts the exporters configured by environment variables and stops them
+     * when the JVM exits. Failing exporters are reported and skipped, so
+     * metrics never prevent signing.
+     */
+    public static void exportFromEnvironment() {
+        List<AutoCloseable> exporters = new ArrayList<>();
+        String port = System.getenv(PORT_ENVIRONMENT_VARIABLE);
+        String file = System.getenv(FILE_ENVIRONMENT_VARIABLE);
+        try {
+            if (port != null && !port.isBlank()) {
+                PrometheusExporter exporter = PrometheusExporter.serve(registry, Integer.parseInt(port.trim()));
+                exporters.add(exporter);
+                System.err.println("Metrics on http://127.0.0.1:" + exporter.getPort() + "/metrics");
+            }
+            if (file != null && !file.isBlank()) {
+                exporters.add(PrometheusExporter.writeFile(registry, Path.of(file), FILE_INTERVAL));
+            }
+            if (Boolean.parseBoolean(System.getenv(JMX_ENVIRONMENT_VARIABLE))) {
+                exporters.add(JmxExporter.register(registry));
+            }
+        } catch (IOException | NumberFormatException e) {
+            System.err.println("Could not start metrics export: " + e.getMessage());
+        } catch (Exception e) {
+            System.err.println("Could not register metrics MBean: " + e.getMessage());
+        }
+        if (!exporters.isEmpty()) {
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                for (AutoCloseable exporter : exporters) {
+                    try {
+                        exporter.close();
+                    } catch (Exception e) {
+                        System.err.println("Error stopping metrics export: " + e.getMessage());
+                    }
+                }
+            }, "metrics-shutdown"));
+        }
+    }
+}
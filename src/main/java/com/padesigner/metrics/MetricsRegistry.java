@@ -0,0 +1,48 @@
+package com.padesigner.metrics;
+
+import java.util.Collection;
+
+/**
+ * Creates and keeps the metrics of the application. Instrumented code asks the
+ * registry for a metric by name every time it records, so a registry can be
+ * replaced at run time with {@link Metrics#setRegistry(MetricsRegistry)}, for
+ * example by one bridging to another metrics library.
+ * <p>
+ * Implementations must be thread safe and return the same metric for the
+ * same name.
+ */
+public interface MetricsRegistry {
+
+    /**
+     * @param name The metric name.
+     * @param help A description, used when the counter is created.
+     * @return The counter with this name.
+     * @throws IllegalArgumentException If the name is used by another type of
+     *                                  metric.
+     */
+    Counter counter(String name, String help);
+
+    /**
+     * @param name The metric name.
+     * @param help A description, used when the timer is created.
+     * @return The timer with this name.
+     * @throws IllegalArgumentException If the name is used by another type of
+     *                                  metric.
+     */
+    Timer timer(String name, String help);
+
+    /**
+     * @param name        The metric name.
+     * @param help        A description, used when the histogram is created.
+     * @param upperBounds The bucket bounds, used when the histogram is created.
+     * @return The histogram with this name.
+     * @throws IllegalArgumentException If the name is used by another type of
+     *                                  metric.
+     */
+    Histogram histogram(String name, String help, double[] upperBounds);
+
+    /**
+     * @return All metrics, ordered by name.
+     */
+    Collection<Metric> getMetrics();
+}
@@ -0,0 +1,98 @@
+package com.padesigner.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Times the phases of one operation, such as signing one document, into
+ * timers named {@code padesigner_<operation>_<phase>_seconds}.
+ * <p>
+ * Sequential phases are recorded with {@link #mark(String)}, which measures
+ * the time since the previous mark. Phases that run interleaved inside another
+ * step (hashing and signing happen inside iText while it writes the document)
+ * are accumulated with {@link #addNested(String, long)}; the next mark records
+ * them and subtracts their time from its own phase. {@link #finish(boolean)}
+ * records the total and counts the operation.
+ * <p>
+ * A phase timer belongs to one operation on one thread and is not thread
+ * safe.
+ */
+public class PhaseTimer {
+
+    private final String operation;
+    private final long startNanos;
+    private final Map<String, Long> nestedNanos = new LinkedHashMap<>(4);
+    private long markNanos;
+    private long nestedTotalNanos;
+
+    private PhaseTimer(String operation) {
+        this.operation = operation;
+        this.startNanos = System.nanoTime();
+        this.markNanos = startNanos;
+    }
+
+    /**
+     * Starts timing an operation.
+     *
+     * @param operation The operation name, such as {@code sign}.
+     * @return A new phase timer.
+     */
+    public static PhaseTimer start(String operation) {
+        return new PhaseTimer(operation);
+    }
+
+    /**
+     * Ends a phase: records the time since the previous mark, less the nested
+     * phases accumulated meanwhile, and records the nested phases.
+     *
+     * @param phase The phase that just ended.
+     */
+    public void mark(String phase) {
+        long now = System.nanoTime();
+        for (Map.Entry<String, Long> nested : nestedNanos.entrySet()) {
+            timer(nested.getKey()).recordNanos(nested.getValue());
+        }
+        timer(phase).recordNanos(now - markNanos - nestedTotalNanos);
+        nestedNanos.clear();
+        nestedTotalNanos = 0;
+        markNanos = now;
+    }
+
+    /**
+     * Adds time spent in a phase nested inside the current one. Repeated calls
+     * for the same phase add up to one recorded duration.
+     *
+     * @param phase The nested phase.
+     * @param nanos The time spent, in nanoseconds.
+     */
+    public void addNested(String phase, long nanos) {
+        nestedNanos.merge(phase, nanos, Long::sum);
+        nestedTotalNanos += nanos;
+    }
+
+    /**
+     * Ends the operation: records its total time and counts it, and a failure
+     * if it did not succeed.
+     *
+     * @param succeeded Whether the operation completed.
+     */
+    public void finish(boolean succeeded) {
+        timer("total").recordSince(startNanos);
+        String prefix = "padesigner_" + operation;
+        Metrics.getRegistry().counter(prefix + "_operations_total", "Number of " + operation + " operations.")
+                .increment();
+        if (!succeeded) {
+            Metrics.getRegistry().counter(prefix + "_failures_total", "Number of failed " + operation
+                    + " operations.").increment();
+        }
+    }
+
+    /**
+     * @param phase The phase name.
+     * @return The timer of the phase.
+     */
+    private Timer timer(String phase) {
+        return Metrics.getRegistry().timer("padesigner_" + operation + "_" + phase + "_seconds",
+                "Time spent in the " + phase + " phase of " + operation + " operations.");
+    }
+}
@@ -0,0 +1,199 @@
+package com.padesigner.metrics;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Exports a registry in the Prometheus text exposition format, either over
+ * HTTP on the loopback interface or to a file that is rewritten periodically.
+ * Timers and histograms are exported as Prometheus histograms, so quantiles
+ * such as p50 and p99 per phase can be computed with
+ * {@code histogram_quantile}.
+ */
+public class PrometheusExporter implements AutoCloseable {
+
+    /**
+     * The content type of the text format.
+     */
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final HttpServer server;
+    private final ScheduledExecutorService scheduler;
+    private final Runnable finalWrite;
+
+    private PrometheusExporter(HttpServer server, ScheduledExecutorService scheduler, Runnable finalWrite) {
+        this.server = server;
+        this.scheduler = scheduler;
+        this.finalWrite = finalWrite;
+    }
+
+    /**
+     * Serves the metrics on {@code http://127.0.0.1:<port>/metrics}. The server
+     * only binds to the loopback address.
+     *
+     * @param registry The registry to export.
+     * @param port     The port, or 0 to choose a free one.
+     * @return The running exporter.
+     * @throws IOException If the port cannot be bound.
+     */
+    public static PrometheusExporter serve(MetricsRegistry registry, int port) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/metrics", exchange -> {
+            byte[] body = format(registry).getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream responseBody = exchange.getResponseBody()) {
+                responseBody.write(body);
+            }
+        });
+        server.start();
+        return new PrometheusExporter(server, null, null);
+    }
+
+    /**
+     * Writes the metrics to a file now, then at every interval and once more
+     * when the exporter is closed. The file is replaced atomically, so readers
+     * never see a partial file.
+     *
+     * @param registry The registry to export.
+     * @param file     The file to write.
+     * @param interval The time between writes.
+     * @return The running exporter.
+     * @throws IOException If the file cannot be written.
+     */
+    public static PrometheusExporter writeFile(MetricsRegistry registry, Path file, Duration interval)
+            throws IOException {
+        write(registry, file);
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-file-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Runnable writeNow = () -> {
+            try {
+                write(registry, file);
+            } catch (IOException e) {
+                System.err.println("Error writing metrics to " + file + ": " + e.getMessage());
+            }
+        };
+        scheduler.scheduleWithFixedDelay(writeNow, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+        return new PrometheusExporter(null, scheduler, writeNow);
+    }
+
+    /**
+     * @return The HTTP port, or -1 for a file exporter.
+     */
+    public int getPort() {
+        return server != null ? server.getAddress().getPort() : -1;
+    }
+
+    /**
+     * Stops the server or writes the file a last time.
+     */
+    @Override
+    public void close() {
+        if (server != null) {
+            server.stop(0);
+        }
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            finalWrite.run();
+        }
+    }
+
+    /**
+     * @param registry The registry to export.
+     * @return The metrics in the text format.
+     */
+    public static String format(MetricsRegistry registry) {
+        StringWriter writer = new StringWriter();
+        try {
+            write(registry, writer);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return writer.toString();
+    }
+
+    /**
+     * Writes the metrics in the text format.
+     *
+     * @param registry The registry to export.
+     * @param writer   The destination.
+     * @throws IOException If writing fails.
+     */
+    public static void write(MetricsRegistry registry, Writer writer) throws IOException {
+        for (Metric metric : registry.getMetrics()) {
+            writer.write("# HELP " + metric.getName() + " " + escapeHelp(metric.getHelp()) + "\n");
+            if (metric instanceof Counter counter) {
+                writer.write("# TYPE " + metric.getName() + " counter\n");
+                writer.write(metric.getName() + " " + counter.get() + "\n");
+            } else if (metric instanceof Histogram histogram) {
+                writeHistogram(histogram, writer);
+            }
+        }
+    }
+
+    /**
+     * Writes a histogram as cumulative buckets, sum and count.
+     *
+     * @param histogram The histogram.
+     * @param writer    The destination.
+     * @throws IOException If writing fails.
+     */
+    private static void writeHistogram(Histogram histogram, Writer writer) throws IOException {
+        String name = histogram.getName();
+        writer.write("# TYPE " + name + " histogram\n");
+        double[] upperBounds = histogram.getUpperBounds();
+        long[] counts = histogram.getBucketCounts();
+        long cumulative = 0;
+        for (int i = 0; i < counts.length; i++) {
+            cumulative += counts[i];
+            String bound = i < upperBounds.length ? Double.toString(upperBounds[i]) : "+Inf";
+            writer.write(name + "_bucket{le=\"" + bound + "\"} " + cumulative + "\n");
+        }
+        writer.write(name + "_sum " + histogram.getSum() + "\n");
+        // The count is taken from the buckets so that it matches the +Inf bucket.
+        writer.write(name + "_count " + cumulative + "\n");
+    }
+
+    /**
+     * Writes the metrics to a file through a temporary file.
+     *
+     * @param registry The registry to export.
+     * @param file     The file to replace.
+     * @throws IOException If writing fails.
+     */
+    private static void write(MetricsRegistry registry, Path file) throws IOException {
+        Path directory = file.toAbsolutePath().getParent();
+        Path temporary = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try {
+            Files.writeString(temporary, format(registry));
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * @param help The help text.
+     * @return The text with backslashes and line breaks escaped.
+     */
+    private static String escapeHelp(String help) {
+        return help.replace("\\", "\\\\").replace("\n", "\\n");
+    }
+}
@@ -0,0 +1,41 @@
+package com.padesigner.metrics;
+
+/**
+ * A histogram of durations in seconds with buckets from half a millisecond to
+ * a minute, which covers everything from hashing a small document to
+ * unlocking a key with a high PBKDF2 cost.
+ */
+public class Timer extends Histogram {
+
+    /**
+     * The bucket upper bounds in seconds.
+     */
+    public static final double[] BUCKETS = { 0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5,
+            1, 2.5, 5, 10, 30, 60 };
+
+    /**
+     * @param name The metric name.
+     * @param help A description of what is timed.
+     */
+    public Timer(String name, String help) {
+        super(name, help, BUCKETS);
+    }
+
+    /**
+     * Records a duration.
+     *
+     * @param nanos The duration in nanoseconds.
+     */
+    public void recordNanos(long nanos) {
+        record(nanos / 1e9);
+    }
+
+    /**
+     * Records the time elapsed since a start time.
+     *
+     * @param startNanos A value of {@link System#nanoTime()}.
+     */
+    public void recordSince(long startNanos) {
+        recordNanos(System.nanoTime() - startNanos);
+    }
+}
@@ -0,0 +1,105 @@
+package com.padesigner.revocation;
+
+import java.io.ByteArrayInputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509CRL;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+
+import com.itextpdf.signatures.CertificateUtil;
+import com.itextpdf.signatures.ICrlClient;
+
+/**
+ * A CRL client for embedding revocation data in signatures, backed by a
+ * {@link RevocationCache}. CRLs are cached per distribution point until their
+ * nextUpdate time, so all certificates of one issuer, and all documents signed
+ * with them, share a single download.
+ * <p>
+ * A downloaded CRL must be issued by the issuer of the certificate it was
+ * requested for. Its signature is not checked here because the issuer
+ * certificate is not available to a CRL client; verifiers check it when they
+ * validate the embedded data. Like the iText clients, this client returns
+ * null when no CRL can be obtained.
+ */
+public class CachingCrlClient implements ICrlClient {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    private final RevocationCache cache;
+    private final HttpClient httpClient;
+
+    /**
+     * Creates a client using the shared cache.
+     */
+    public CachingCrlClient() {
+        this(RevocationCache.getShared());
+    }
+
+    /**
+     * Creates a client.
+     *
+     * @param cache The cache holding the CRLs.
+     */
+    public CachingCrlClient(RevocationCache cache) {
+        this.cache = cache;
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(TIMEOUT)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+    }
+
+    /**
+     * Returns the CRL covering a certificate.
+     *
+     * @param checkCert The certificate to check.
+     * @param url       The CRL URL, or null to take it from the certificate's
+     *                  CRL distribution points.
+     * @return The encoded CRL, or null if the certificate has no distribution
+     *         point or the CRL cannot be obtained.
+     */
+    @Override
+    public Collection<byte[]> getEncoded(X509Certificate checkCert, String url) {
+        String crlUrl = url != null ? url : checkCert != null ? CertificateUtil.getCRLURL(checkCert) : null;
+        if (crlUrl == null) {
+            return null;
+        }
+        try {
+            byte[] encoded = cache.get("crl " + crlUrl, () -> fetch(checkCert, crlUrl)).encoded();
+            return encoded != null ? List.of(encoded) : null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * Downloads a CRL.
+     *
+     * @param checkCert The certificate the CRL is requested for, or null.
+     * @param crlUrl    The CRL URL.
+     * @return The CRL.
+     * @throws Exception If the download fails or the CRL is not valid.
+     */
+    private RevocationCache.Data fetch(X509Certificate checkCert, String crlUrl) throws Exception {
+        HttpResponse<byte[]> response = httpClient.send(HttpRequest.newBuilder(URI.create(crlUrl))
+                .timeout(TIMEOUT)
+                .GET()
+                .build(), HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() != 200) {
+            throw new Exception("CRL distribution point returned HTTP " + response.statusCode() + ".");
+        }
+        X509CRL crl = (X509CRL) CertificateFactory.getInstance("X.509")
+                .generateCRL(new ByteArrayInputStream(response.body()));
+        if (checkCert != null && !crl.getIssuerX500Principal().equals(checkCert.getIssuerX500Principal())) {
+            throw new Exception("CRL at " + crlUrl + " is not issued by " + checkCert.getIssuerX500Principal() + ".");
+        }
+        return new RevocationCache.Data(crl.getEncoded(),
+                crl.getNextUpdate() != null ? crl.getNextUpdate().toInstant() : null);
+    }
+}
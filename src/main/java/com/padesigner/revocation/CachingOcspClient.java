@@ -0,0 +1,213 @@
+package com.padesigner.revocation;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.security.SecureRandom;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Date;
+
+import org.bouncycastle.asn1.DEROctetString;
+import org.bouncycastle.asn1.ocsp.OCSPObjectIdentifiers;
+import org.bouncycastle.asn1.x509.ExtendedKeyUsage;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.Extensions;
+import org.bouncycastle.asn1.x509.KeyPurposeId;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateHolder;
+import org.bouncycastle.cert.ocsp.BasicOCSPResp;
+import org.bouncycastle.cert.ocsp.CertificateID;
+import org.bouncycastle.cert.ocsp.CertificateStatus;
+import org.bouncycastle.cert.ocsp.OCSPReq;
+import org.bouncycastle.cert.ocsp.OCSPReqBuilder;
+import org.bouncycastle.cert.ocsp.OCSPResp;
+import org.bouncycastle.cert.ocsp.SingleResp;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.operator.ContentVerifierProvider;
+import org.bouncycastle.operator.jcajce.JcaContentVerifierProviderBuilder;
+import org.bouncycastle.operator.jcajce.JcaDigestCalculatorProviderBuilder;
+import org.bouncycastle.util.encoders.Hex;
+
+import com.itextpdf.signatures.CertificateUtil;
+import com.itextpdf.signatures.IOcspClient;
+
+/**
+ * An OCSP client for embedding revocation data in signatures, backed by a
+ * {@link RevocationCache}. Responses are cached per certificate and responder
+ * until their nextUpdate time, so all documents signed with one certificate
+ * share a single OCSP request.
+ * <p>
+ * A response is only used if it is signed by the certificate issuer or by a
+ * delegated responder the issuer authorised for OCSP signing, and if its nonce
+ * matches when the responder returns one. Like the iText clients, this client
+ * returns null when no usable response can be obtained, and the signature is
+ * then created without one; this includes certificates reported as revoked
+ * or unknown.
+ */
+public class CachingOcspClient implements IOcspClient {
+
+    private static final String REQUEST_CONTENT_TYPE = "application/ocsp-request";
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    /**
+     * How far in the future a response's thisUpdate time may lie, to allow
+     * for clock differences with the responder.
+     */
+    private static final Duration CLOCK_SKEW = Duration.ofMinutes(5);
+
+    private final RevocationCache cache;
+    private final HttpClient httpClient;
+    private final SecureRandom random = new SecureRandom();
+
+    /**
+     * Creates a client using the shared cache.
+     */
+    public CachingOcspClient() {
+        this(RevocationCache.getShared());
+    }
+
+    /**
+     * Creates a client.
+     *
+     * @param cache The cache holding the responses.
+     */
+    public CachingOcspClient(RevocationCache cache) {
+        this.cache = cache;
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(TIMEOUT)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+    }
+
+    /**
+     * Returns the OCSP response for a certificate.
+     *
+     * @param checkCert  The certificate to check.
+     * @param issuerCert The certificate of its issuer.
+     * @param url        The responder URL, or null to take it from the
+     *                   certificate's authority information access.
+     * @return The encoded basic OCSP response, or null if the certificate is
+     *         not reported as good or no response can be obtained.
+     */
+    @Override
+    public byte[] getEncoded(X509Certificate checkCert, X509Certificate issuerCert, String url) {
+        if (checkCert == null || issuerCert == null) {
+            return null;
+        }
+        String responderUrl = url != null ? url : CertificateUtil.getOCSPURL(checkCert);
+        if (responderUrl == null) {
+            return null;
+        }
+        try {
+            String key = "ocsp " + responderUrl + " " + Hex.toHexString(issuerCert.getPublicKey().getEncoded()) + " "
+                    + checkCert.getSerialNumber().toString(16);
+            return cache.get(key, () -> fetch(checkCert, issuerCert, responderUrl)).encoded();
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * Requests the status of a certificate from a responder.
+     *
+     * @param checkCert    The certificate to check.
+     * @param issuerCert   The certificate of its issuer.
+     * @param responderUrl The responder URL.
+     * @return The response, with no encoded data unless the certificate is
+     *         good.
+     * @throws Exception If the request fails or the response is not valid.
+     */
+    private RevocationCache.Data fetch(X509Certificate checkCert, X509Certificate issuerCert, String responderUrl)
+            throws Exception {
+        CertificateID id = new CertificateID(new JcaDigestCalculatorProviderBuilder().build()
+                .get(CertificateID.HASH_SHA1), new JcaX509CertificateHolder(issuerCert), checkCert.getSerialNumber());
+        byte[] nonce = new byte[16];
+        random.nextBytes(nonce);
+        OCSPReqBuilder builder = new OCSPReqBuilder();
+        builder.addRequest(id);
+        builder.setRequestExtensions(new Extensions(
+                Extension.create(OCSPObjectIdentifiers.id_pkix_ocsp_nonce, false, new DEROctetString(nonce))));
+        OCSPReq request = builder.build();
+
+        HttpResponse<byte[]> response = httpClient.send(HttpRequest.newBuilder(URI.create(responderUrl))
+                .timeout(TIMEOUT)
+                .header("Content-Type", REQUEST_CONTENT_TYPE)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(request.getEncoded()))
+                .build(), HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() != 200) {
+            throw new Exception("OCSP responder returned HTTP " + response.statusCode() + ".");
+        }
+        OCSPResp ocspResponse = new OCSPResp(response.body());
+        if (ocspResponse.getStatus() != OCSPResp.SUCCESSFUL) {
+            throw new Exception("OCSP responder returned status " + ocspResponse.getStatus() + ".");
+        }
+        BasicOCSPResp basicResponse = (BasicOCSPResp) ocspResponse.getResponseObject();
+        verifyResponder(basicResponse, issuerCert);
+
+        Extension responseNonce = basicResponse.getExtension(OCSPObjectIdentifiers.id_pkix_ocsp_nonce);
+        if (responseNonce != null && !Arrays.equals(nonce,
+                DEROctetString.getInstance(responseNonce.getParsedValue()).getOctets())) {
+            throw new Exception("OCSP response nonce does not match the request.");
+        }
+
+        for (SingleResp single : basicResponse.getResponses()) {
+            if (!single.getCertID().equals(id)) {
+                continue;
+            }
+            if (single.getThisUpdate().toInstant().isAfter(Instant.now().plus(CLOCK_SKEW))) {
+                throw new Exception("OCSP response is not yet valid.");
+            }
+            Instant nextUpdate = single.getNextUpdate() != null ? single.getNextUpdate().toInstant() : null;
+            return new RevocationCache.Data(
+                    single.getCertStatus() == CertificateStatus.GOOD ? basicResponse.getEncoded() : null, nextUpdate);
+        }
+        throw new Exception("OCSP response does not cover certificate " + checkCert.getSerialNumber() + ".");
+    }
+
+    /**
+     * Checks that a response is signed by the issuer or by a responder
+     * certificate the issuer issued for OCSP signing.
+     *
+     * @param basicResponse The response.
+     * @param issuerCert    The certificate of the issuer.
+     * @throws Exception If the response signature cannot be attributed to the
+     *                   issuer.
+     */
+    private static void verifyResponder(BasicOCSPResp basicResponse, X509Certificate issuerCert) throws Exception {
+        ContentVerifierProvider issuer = verifier(new JcaX509CertificateHolder(issuerCert));
+        if (basicResponse.isSignatureValid(issuer)) {
+            return;
+        }
+        for (X509CertificateHolder responder : basicResponse.getCerts()) {
+            if (responder.isSignatureValid(issuer) && responder.isValidOn(new Date())
+                    && isOcspSigner(responder) && basicResponse.isSignatureValid(verifier(responder))) {
+                return;
+            }
+        }
+        throw new Exception("OCSP response is not signed by the certificate issuer or a delegated responder.");
+    }
+
+    /**
+     * @param certificate A certificate.
+     * @return true if the certificate is authorised for OCSP signing.
+     */
+    private static boolean isOcspSigner(X509CertificateHolder certificate) {
+        ExtendedKeyUsage usage = ExtendedKeyUsage.fromExtensions(certificate.getExtensions());
+        return usage != null && usage.hasKeyPurposeId(KeyPurposeId.id_kp_OCSPSigning);
+    }
+
+    /**
+     * @param certificate A certificate.
+     * @return A verifier for signatures made with the certificate's key.
+     * @throws Exception If the key is not supported.
+     */
+    private static ContentVerifierProvider verifier(X509CertificateHolder certificate) throws Exception {
+        return new JcaContentVerifierProviderBuilder().setProvider(BouncyCastleProvider.PROVIDER_NAME)
+                .build(certificate);
+    }
+}
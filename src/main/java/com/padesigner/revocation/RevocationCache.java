@@ -0,0 +1,207 @@
+package com.padesigner.revocation;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+import com.padesigner.metrics.Metrics;
+
+/**
+ * A thread-safe, size-bounded cache of revocation data (OCSP responses and
+ * CRLs) shared by the revocation clients, so that signing a large batch with
+ * long-term validation data costs one fetch per responder answer instead of
+ * one per document.
+ * <p>
+ * An entry is reused until the nextUpdate time of the cached data, less a
+ * safety margin, and never for longer than the maximum age. Data without a
+ * nextUpdate time is kept for the maximum age only. When the cache is full the
+ * least recently used entry is evicted. Concurrent lookups of the same missing
+ * entry share a single fetch; failed fetches are not cached.
+ */
+public class RevocationCache {
+
+    /**
+     * The number of entries kept by the shared cache.
+     */
+    public static final int DEFAULT_MAX_ENTRIES = 1_000;
+
+    /**
+     * How long data is reused at most, whatever its nextUpdate time.
+     */
+    public static final Duration DEFAULT_MAX_AGE = Duration.ofHours(1);
+
+    /**
+     * Data is refreshed this long before its nextUpdate time, so an embedded
+     * response is not already outdated when the signature is written.
+     */
+    static final Duration REFRESH_MARGIN = Duration.ofMinutes(1);
+
+    private static final RevocationCache SHARED = new RevocationCache(DEFAULT_MAX_ENTRIES, DEFAULT_MAX_AGE);
+
+    private final LinkedHashMap<String, Entry> entries;
+    private final Map<String, CompletableFuture<Entry>> loading = new ConcurrentHashMap<>();
+    private final Duration maxAge;
+
+    /**
+     * Revocation data as fetched from a responder or distribution point.
+     *
+     * @param encoded    The encoded data, or null if there is nothing to
+     *                   embed, such as for a revoked certificate.
+     * @param nextUpdate When newer data will be available, or null if the
+     *                   source does not say.
+     */
+    public record Data(byte[] encoded, Instant nextUpdate) {
+    }
+
+    /**
+     * A cache slot.
+     *
+     * @param data    The cached data.
+     * @param expires When the data must be fetched again.
+     */
+    private record Entry(Data data, Instant expires) {
+    }
+
+    /**
+     * Fetches revocation data on a cache miss.
+     */
+    @FunctionalInterface
+    public interface Loader {
+        /**
+         * @return The fetched data.
+         * @throws Exception If the data cannot be fetched.
+         */
+        Data load() throws Exception;
+    }
+
+    /**
+     * Creates a cache.
+     *
+     * @param maxEntries The maximum number of entries.
+     * @param maxAge     How long data is reused at most.
+     */
+    public RevocationCache(int maxEntries, Duration maxAge) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("Cache size must be positive.");
+        }
+        if (maxAge.isNegative() || maxAge.isZero()) {
+            throw new IllegalArgumentException("Maximum age must be positive.");
+        }
+        this.maxAge = maxAge;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * @return The process-wide cache used by the revocation clients by
+     *         default.
+     */
+    public static RevocationCache getShared() {
+        return SHARED;
+    }
+
+    /**
+     * Returns the cached data for a key, fetching it if it is missing or
+     * expired. Concurrent callers missing the same key share one fetch.
+     *
+     * @param key    The cache key, identifying the certificate and source.
+     * @param loader Fetches the data on a miss.
+     * @return The data.
+     * @throws Exception If the data is not cached and cannot be fetched.
+     */
+    public Data get(String key, Loader loader) throws Exception {
+        Instant now = Instant.now();
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null && now.isBefore(entry.expires())) {
+                count("padesigner_revocation_cache_hits_total", "Revocation lookups answered from the cache.");
+                return entry.data();
+            }
+        }
+
+        CompletableFuture<Entry> load = new CompletableFuture<>();
+        CompletableFuture<Entry> pending = loading.putIfAbsent(key, load);
+        if (pending != null) {
+            count("padesigner_revocation_cache_hits_total", "Revocation lookups answered from the cache.");
+            return await(pending).data();
+        }
+
+        count("padesigner_revocation_cache_misses_total", "Revocation lookups that fetched data.");
+        try {
+            Data data = loader.load();
+            Entry entry = new Entry(data, expiry(data, Instant.now()));
+            synchronized (this) {
+                entries.put(key, entry);
+            }
+            load.complete(entry);
+        } catch (Exception e) {
+            count("padesigner_revocation_fetch_failures_total", "Revocation fetches that failed.");
+            load.completeExceptionally(e);
+        } finally {
+            loading.remove(key, load);
+        }
+        return await(load).data();
+    }
+
+    /**
+     * Removes all entries.
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * @return The number of cached entries, including expired ones not yet
+     *         replaced.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Determines until when fetched data is reused.
+     *
+     * @param data    The fetched data.
+     * @param fetched When it was fetched.
+     * @return The expiry time.
+     */
+    private Instant expiry(Data data, Instant fetched) {
+        Instant latest = fetched.plus(maxAge);
+        if (data.nextUpdate() == null) {
+            return latest;
+        }
+        Instant refresh = data.nextUpdate().minus(REFRESH_MARGIN);
+        return refresh.isBefore(latest) ? refresh : latest;
+    }
+
+    /**
+     * Waits for a fetch and unwraps its failure.
+     *
+     * @param load The fetch.
+     * @return The fetched entry.
+     * @throws Exception The failure of the fetch.
+     */
+    private static Entry await(CompletableFuture<Entry> load) throws Exception {
+        try {
+            return load.get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception cause ? cause : e;
+        }
+    }
+
+    /**
+     * @param name The counter name.
+     * @param help The counter description.
+     */
+    private static void count(String name, String help) {
+        Metrics.getRegistry().counter(name, help).increment();
+    }
+}
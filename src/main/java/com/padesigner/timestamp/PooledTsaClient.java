@@ -0,0 +1,258 @@
+package com.padesigner.timestamp;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.bouncycastle.asn1.ASN1ObjectIdentifier;
+import org.bouncycastle.tsp.TimeStampRequest;
+import org.bouncycastle.tsp.TimeStampRequestGenerator;
+import org.bouncycastle.tsp.TimeStampResponse;
+import org.bouncycastle.tsp.TimeStampToken;
+
+import com.itextpdf.signatures.BouncyCastleDigest;
+import com.itextpdf.signatures.DigestAlgorithms;
+import com.itextpdf.signatures.ITSAClient;
+import com.padesigner.metrics.Metrics;
+
+/**
+ * An RFC 3161 timestamp client built for signing many documents at once.
+ * <p>
+ * All requests share one {@link HttpClient}, which keeps its connections to
+ * the timestamp authority open between requests, so a batch pays for the
+ * connection setup once instead of once per document. The number of requests
+ * in flight is capped so a large worker pool does not overload the authority.
+ * Failed requests (I/O errors, HTTP 429 and 5xx) are retried with exponential
+ * backoff and jitter until the latency budget of the call is used up.
+ * <p>
+ * Every response is checked against its request, including the nonce, before
+ * the token is used. A client is thread safe and meant to be shared, for
+ * instance through {@link com.padesigner.crypto.SigningContext#withTsaClient}.
+ */
+public class PooledTsaClient implements ITSAClient {
+
+    /**
+     * Default total time allowed for one timestamp, including retries.
+     */
+    public static final Duration DEFAULT_BUDGET = Duration.ofSeconds(10);
+
+    /**
+     * Default maximum number of requests sent to the authority at once.
+     */
+    public static final int DEFAULT_MAX_CONCURRENT = 16;
+
+    /**
+     * Digest algorithm of the message imprint when none is specified.
+     */
+    public static final String DEFAULT_DIGEST_ALGORITHM = "SHA-256";
+
+    private static final String REQUEST_CONTENT_TYPE = "application/timestamp-query";
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(5);
+    private static final long INITIAL_BACKOFF_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final int DEFAULT_TOKEN_SIZE = 4096;
+
+    private final URI uri;
+    private final String digestAlgorithm;
+    private final ASN1ObjectIdentifier policy;
+    private final Duration budget;
+    private final HttpClient httpClient;
+    private final Semaphore permits;
+    private final AtomicInteger largestToken = new AtomicInteger();
+    private final SecureRandom random = new SecureRandom();
+
+    /**
+     * Creates a client with the default limits and no policy.
+     *
+     * @param url The URL of the timestamp authority.
+     */
+    public PooledTsaClient(String url) {
+        this(URI.create(url), DEFAULT_DIGEST_ALGORITHM, null, DEFAULT_MAX_CONCURRENT, DEFAULT_BUDGET);
+    }
+
+    /**
+     * Creates a client.
+     *
+     * @param uri             The URL of the timestamp authority.
+     * @param digestAlgorithm The digest algorithm of the message imprint.
+     * @param policy          The OID of the requested timestamp policy, or
+     *                        null to accept the authority's default.
+     * @param maxConcurrent   The maximum number of requests in flight.
+     * @param budget          The total time allowed for one timestamp,
+     *                        including waiting for a free slot and retries.
+     */
+    public PooledTsaClient(URI uri, String digestAlgorithm, String policy, int maxConcurrent, Duration budget) {
+        if (maxConcurrent < 1) {
+            throw new IllegalArgumentException("Concurrent request limit must be positive.");
+        }
+        if (budget.isNegative() || budget.isZero()) {
+            throw new IllegalArgumentException("Timestamp budget must be positive.");
+        }
+        this.uri = uri;
+        this.digestAlgorithm = digestAlgorithm;
+        this.policy = policy != null ? new ASN1ObjectIdentifier(policy) : null;
+        this.budget = budget;
+        this.permits = new Semaphore(maxConcurrent);
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(CONNECT_TIMEOUT)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+    }
+
+    /**
+     * Estimates the size of a token, used by iText to reserve space for the
+     * signature. It starts with a generous default and grows with the largest
+     * token received so far.
+     *
+     * @return The estimated token size in bytes.
+     */
+    @Override
+    public int getTokenSizeEstimate() {
+        return Math.max(DEFAULT_TOKEN_SIZE, largestToken.get() + largestToken.get() / 4);
+    }
+
+    /**
+     * @return A digest for the message imprint.
+     * @throws GeneralSecurityException If the digest algorithm is not
+     *                                  available.
+     */
+    @Override
+    public MessageDigest getMessageDigest() throws GeneralSecurityException {
+        return new BouncyCastleDigest().getMessageDigest(digestAlgorithm);
+    }
+
+    /**
+     * Obtains a timestamp token for a message imprint.
+     *
+     * @param imprint The digest of the timestamped data.
+     * @return The encoded timestamp token.
+     * @throws Exception If no valid token is received within the budget.
+     */
+    @Override
+    public byte[] getTimeStampToken(byte[] imprint) throws Exception {
+        long start = System.nanoTime();
+        boolean received = false;
+        try {
+            byte[] token = requestWithinBudget(imprint, start + budget.toNanos());
+            received = true;
+            return token;
+        } finally {
+            Metrics.getRegistry().timer("padesigner_timestamp_request_seconds",
+                    "Time spent obtaining timestamp tokens, including retries.").recordSince(start);
+            if (!received) {
+                Metrics.getRegistry().counter("padesigner_timestamp_failures_total",
+                        "Timestamps that could not be obtained within the budget.").increment();
+            }
+        }
+    }
+
+    /**
+     * Sends requests until a token is received, a non-retryable error occurs
+     * or the deadline passes.
+     *
+     * @param imprint  The message imprint.
+     * @param deadline The {@link System#nanoTime()} by which a token is needed.
+     * @return The encoded token.
+     * @throws Exception If no token is received in time.
+     */
+    private byte[] requestWithinBudget(byte[] imprint, long deadline) throws Exception {
+        if (!permits.tryAcquire(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+            throw new Exception("Timestamp authority busy: no request slot free within " + budget.toMillis() + " ms.");
+        }
+        try {
+            long backoff = INITIAL_BACKOFF_NANOS;
+            for (int attempt = 1;; attempt++) {
+                Exception failure;
+                try {
+                    return requestOnce(imprint, deadline - System.nanoTime());
+                } catch (RetryableException e) {
+                    failure = e;
+                }
+
+                long pause = backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+                if (System.nanoTime() + pause >= deadline) {
+                    throw new Exception("Timestamp authority did not answer within " + budget.toMillis() + " ms after "
+                            + attempt + " attempt(s): " + failure.getMessage(), failure);
+                }
+                Metrics.getRegistry().counter("padesigner_timestamp_retries_total",
+                        "Timestamp requests retried after a transient failure.").increment();
+                TimeUnit.NANOSECONDS.sleep(pause);
+                backoff *= 2;
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Sends one timestamp request and validates the response.
+     *
+     * @param imprint        The message imprint.
+     * @param remainingNanos The time left for this request.
+     * @return The encoded token.
+     * @throws RetryableException If the request failed in a way worth retrying.
+     * @throws Exception          If the authority rejected the request or the
+     *                            response is not valid.
+     */
+    private byte[] requestOnce(byte[] imprint, long remainingNanos) throws Exception {
+        TimeStampRequestGenerator generator = new TimeStampRequestGenerator();
+        generator.setCertReq(true);
+        if (policy != null) {
+            generator.setReqPolicy(policy);
+        }
+        TimeStampRequest request = generator.generate(
+                new ASN1ObjectIdentifier(DigestAlgorithms.getAllowedDigest(digestAlgorithm)), imprint,
+                new BigInteger(64, random));
+
+        HttpResponse<byte[]> response;
+        try {
+            response = httpClient.send(HttpRequest.newBuilder(uri)
+                    .timeout(Duration.ofNanos(Math.max(remainingNanos, 1)))
+                    .header("Content-Type", REQUEST_CONTENT_TYPE)
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(request.getEncoded()))
+                    .build(), HttpResponse.BodyHandlers.ofByteArray());
+        } catch (IOException e) {
+            throw new RetryableException("Error contacting timestamp authority: " + e.getMessage(), e);
+        }
+
+        int status = response.statusCode();
+        if (status == 429 || status >= 500) {
+            throw new RetryableException("Timestamp authority returned HTTP " + status + ".", null);
+        }
+        if (status != 200) {
+            throw new Exception("Timestamp authority returned HTTP " + status + ".");
+        }
+
+        TimeStampResponse timeStampResponse = new TimeStampResponse(response.body());
+        timeStampResponse.validate(request);
+        TimeStampToken token = timeStampResponse.getTimeStampToken();
+        if (token == null) {
+            throw new Exception("Timestamp authority rejected the request: " + timeStampResponse.getStatusString());
+        }
+        byte[] encoded = token.getEncoded();
+        largestToken.accumulateAndGet(encoded.length, Math::max);
+        return encoded;
+    }
+
+    /**
+     * A failure after which the request is sent again.
+     */
+    private static final class RetryableException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        RetryableException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+}
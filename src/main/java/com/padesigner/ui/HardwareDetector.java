@@ -7,7 +7,9 @@ import org.json.JSONObject;
 
 /**
  * Utility class for detecting hardware, specifically USB drive paths.
- * It uses OS-specific commands to find connected USB drives.
+ * On Linux the cached view of a {@link LinuxVolumeMonitor} is used, so the
+ * lookup is instant and spawns no process; other systems, and Linux systems
+ * without a readable mount table, use OS-specific commands.
  */
 public class HardwareDetector {
     /**
@@ -24,6 +26,8 @@ public class HardwareDetector {
         String os = System.getProperty("os.name").toLowerCase();
         if (os.contains("win")) {
             return getUsbDrivesWindows();
+        } else if (os.contains("nux") && LinuxVolumeMonitor.isSupported()) {
+            return LinuxVolumeMonitor.getShared().getUsbDrivePaths();
         } else if (os.contains("nix") || os.contains("nux") || os.contains("mac")) {
             return getUsbDrivesLinuxMac();
         } else {
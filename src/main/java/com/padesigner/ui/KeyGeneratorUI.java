@@ -1,23 +1,34 @@
 package com.padesigner.ui;
 
-import com.padesigner.crypto.AESUtil;
+import com.padesigner.crypto.KeyAlgorithm;
+import com.padesigner.crypto.KeyPairPool;
 import com.padesigner.crypto.RSAKeyManager;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
 
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.ActionListener;
 import java.io.File;
 import java.security.KeyPair;
+import java.security.Security;
 
 /**
- * KeyGeneratorUI is a Swing-based user interface for generating RSA key pairs.
- * It allows users to enter a PIN, select a directory to save the public key,
- * and choose a USB drive to save the private key.
+ * KeyGeneratorUI is a Swing-based user interface for generating key pairs.
+ * It allows users to enter a PIN, choose the key type, select a directory to
+ * save the public key, and choose a USB drive to save the private key.
  * The keys are generated using RSAKeyManager and encrypted with AESUtil.
+ * Key pairs come from the shared {@link KeyPairPool} of the selected type,
+ * which starts generating when the type is selected, and are saved on a background thread so the UI stays
+ * responsive.
  */
 public class KeyGeneratorUI extends JFrame {
 
+    static {
+        Security.addProvider(new BouncyCastleProvider());
+    }
+
     public KeyGeneratorUI() {
+        KeyPairPool.getShared();
         setupUI();
     }
 
@@ -35,14 +46,19 @@ public class KeyGeneratorUI extends JFrame {
         JTextField pinField = new JPasswordField(20);
         JTextField dirField = new JTextField(20);
         JComboBox<String> drivesComboBox = new JComboBox<>();
+        JComboBox<KeyAlgorithm> algorithmComboBox = new JComboBox<>(KeyAlgorithm.values());
+        algorithmComboBox.addActionListener(
+                e -> KeyPairPool.getShared((KeyAlgorithm) algorithmComboBox.getSelectedItem()));
 
-        JButton generateButton = createButton("Generate keys",
-                e -> handleGenerateButton(pinField, dirField, drivesComboBox));
+        JButton generateButton = new JButton("Generate keys");
+        generateButton.addActionListener(e -> handleGenerateButton(pinField, dirField, drivesComboBox,
+                (KeyAlgorithm) algorithmComboBox.getSelectedItem(), generateButton));
         JButton browseButton = createButton("Browse", e -> handleBrowseButton(dirField));
         JButton backButton = createButton("Back", e -> handleBackButton());
         JButton findUSBButton = createButton("Find USB", e -> handleFindUSBButton(drivesComboBox));
 
-        addComponents(pinField, dirField, drivesComboBox, generateButton, browseButton, backButton, findUSBButton);
+        addComponents(pinField, algorithmComboBox, dirField, drivesComboBox, generateButton, browseButton, backButton,
+                findUSBButton);
 
         setVisible(true);
         handleFindUSBButton(drivesComboBox);
@@ -64,20 +80,25 @@ public class KeyGeneratorUI extends JFrame {
     /**
      * Adds components to the UI.
      * 
-     * @param pinField       The JTextField for entering the PIN.
-     * @param dirField       The JTextField for entering the directory to save the
-     *                       public key.
-     * @param drivesComboBox The JComboBox for selecting the USB drive.
-     * @param generateButton The JButton to generate keys.
-     * @param browseButton   The JButton to browse for the directory.
-     * @param backButton     The JButton to go back to the main menu.
-     * @param findUSBButton  The JButton to find USB drives.
+     * @param pinField          The JTextField for entering the PIN.
+     * @param algorithmComboBox The JComboBox for selecting the key type.
+     * @param dirField          The JTextField for entering the directory to save
+     *                          the public key.
+     * @param drivesComboBox    The JComboBox for selecting the USB drive.
+     * @param generateButton    The JButton to generate keys.
+     * @param browseButton      The JButton to browse for the directory.
+     * @param backButton        The JButton to go back to the main menu.
+     * @param findUSBButton     The JButton to find USB drives.
      */
-    private void addComponents(JTextField pinField, JTextField dirField, JComboBox<String> drivesComboBox,
-            JButton generateButton, JButton browseButton, JButton backButton, JButton findUSBButton) {
+    private void addComponents(JTextField pinField, JComboBox<KeyAlgorithm> algorithmComboBox, JTextField dirField,
+            JComboBox<String> drivesComboBox, JButton generateButton, JButton browseButton, JButton backButton,
+            JButton findUSBButton) {
         add(new JLabel("Enter PIN:"));
         add(pinField);
         add(Box.createHorizontalStrut(800));
+        add(new JLabel("Key type:"));
+        add(algorithmComboBox);
+        add(Box.createHorizontalStrut(800));
         add(new JLabel("Save public key to:"));
         add(dirField);
         add(browseButton);
@@ -122,8 +143,12 @@ public class KeyGeneratorUI extends JFrame {
      * @param dirField       The JTextField containing the directory path for the
      *                       public key.
      * @param drivesComboBox The JComboBox containing the selected USB drive path.
+     * @param keyAlgorithm   The type of key to generate.
+     * @param generateButton The JButton that started the generation; disabled
+     *                       until the keys are saved.
      */
-    private void handleGenerateButton(JTextField pinField, JTextField dirField, JComboBox<String> drivesComboBox) {
+    private void handleGenerateButton(JTextField pinField, JTextField dirField, JComboBox<String> drivesComboBox,
+            KeyAlgorithm keyAlgorithm, JButton generateButton) {
         String pin = pinField.getText();
         String dir = dirField.getText();
         String usbPath = (String) drivesComboBox.getSelectedItem();
@@ -132,15 +157,31 @@ public class KeyGeneratorUI extends JFrame {
             return;
         }
 
-        try {
-            KeyPair keyPair = RSAKeyManager.generateRSAKeyPair();
-            saveKeys(keyPair, pin, dir, usbPath);
-            JOptionPane.showMessageDialog(this, "Keys generated successfully");
-            pinField.setText("");
-        } catch (Exception ex) {
-            ex.printStackTrace();
-            JOptionPane.showMessageDialog(this, "Error generating keys: " + ex.getMessage());
-        }
+        generateButton.setEnabled(false);
+        setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+        new SwingWorker<Void, Void>() {
+            @Override
+            protected Void doInBackground() throws Exception {
+                KeyPair keyPair = KeyPairPool.getShared(keyAlgorithm).take();
+                saveKeys(keyPair, pin, dir, usbPath);
+                return null;
+            }
+
+            @Override
+            protected void done() {
+                generateButton.setEnabled(true);
+                setCursor(Cursor.getDefaultCursor());
+                try {
+                    get();
+                    JOptionPane.showMessageDialog(KeyGeneratorUI.this, "Keys generated successfully");
+                    pinField.setText("");
+                } catch (Exception ex) {
+                    Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+                    cause.printStackTrace();
+                    JOptionPane.showMessageDialog(KeyGeneratorUI.this, "Error generating keys: " + cause.getMessage());
+                }
+            }
+        }.execute();
     }
 
     /**
@@ -172,9 +213,9 @@ public class KeyGeneratorUI extends JFrame {
             return false;
         }
 
-        if (confirmOverwrite(new File(usbPath + "private_key.enc"),
+        if (confirmOverwrite(new File(usbPath + RSAKeyManager.PRIVATE_KEY_FILE),
                 "Private key already exists on USB drive. Do you want to overwrite it?") &&
-                confirmOverwrite(new File(dir + "public_key.pem"),
+                confirmOverwrite(new File(dir + RSAKeyManager.PUBLIC_KEY_FILE),
                         "Public key already exists in the directory. Do you want to overwrite it?")) {
             return true;
         }
@@ -198,9 +239,10 @@ public class KeyGeneratorUI extends JFrame {
     }
 
     /**
-     * Saves the generated RSA keys to the specified directory and USB drive.
+     * Saves the generated keys to the specified directory and USB drive,
+     * together with the signer certificate issued for them.
      *
-     * @param keyPair The generated RSA key pair.
+     * @param keyPair The generated key pair.
      * @param pin     The PIN used for encrypting the private key.
      * @param dir     The directory path to save the public key.
      * @param usbPath The USB drive path to save the encrypted private key.
@@ -214,11 +256,7 @@ public class KeyGeneratorUI extends JFrame {
             usbPath += "/";
         }
 
-        File publicKeyFile = new File(dir + "public_key.pem");
-        RSAKeyManager.savePublicKey(keyPair.getPublic(), publicKeyFile);
-
-        File privateKeyFile = new File(usbPath + "private_key.enc");
-        AESUtil.encryptAndSavePrivateKey(keyPair.getPrivate(), pin, privateKeyFile);
+        RSAKeyManager.saveKeys(keyPair, pin, dir, usbPath);
     }
 
     /**
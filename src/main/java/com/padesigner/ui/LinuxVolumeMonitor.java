@@ -0,0 +1,179 @@
+package com.padesigner.ui;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps track of the mounted USB volumes on Linux without spawning processes.
+ * Mounts are read from {@code /proc/self/mountinfo} and each mounted block
+ * device is resolved through sysfs: it counts as a USB drive when its disk is
+ * marked removable in {@code /sys/block/<disk>/removable} and sits on a USB
+ * bus, the same rule the lsblk based lookup applied.
+ * <p>
+ * The current view is cached, so lookups return immediately and may be made
+ * on the event dispatch thread. A background daemon thread re-reads the mount
+ * table once per poll interval and rebuilds the view only when it changed,
+ * which picks up drives as soon as they are plugged in and mounted. procfs
+ * files do not report changes to a {@link java.nio.file.WatchService}, so the
+ * table is polled; reading it costs well under a millisecond.
+ */
+public class LinuxVolumeMonitor {
+
+    private static final Path MOUNT_INFO = Paths.get("/proc/self/mountinfo");
+    private static final Path SYS_DEV_BLOCK = Paths.get("/sys/dev/block");
+    private static final Path SYS_BLOCK = Paths.get("/sys/block");
+    private static final long POLL_INTERVAL_MILLIS = 1000;
+    private static final Pattern OCTAL_ESCAPE = Pattern.compile("\\\\([0-7]{3})");
+
+    private static LinuxVolumeMonitor shared;
+
+    private final ScheduledExecutorService poller;
+    private volatile List<String> usbDrivePaths = List.of();
+    private String mountTable;
+
+    /**
+     * Reads the current mounts and starts the background poller.
+     *
+     * @throws IOException If the mount table cannot be read.
+     */
+    private LinuxVolumeMonitor() throws IOException {
+        refresh();
+        this.poller = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "usb-volume-monitor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        poller.scheduleWithFixedDelay(this::poll, POLL_INTERVAL_MILLIS, POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return true if the mount table of this system can be read.
+     */
+    public static boolean isSupported() {
+        return Files.isReadable(MOUNT_INFO) && Files.isDirectory(SYS_DEV_BLOCK);
+    }
+
+    /**
+     * Returns the monitor shared within this process, starting it on first use.
+     *
+     * @return The shared monitor.
+     * @throws IOException If the mount table cannot be read.
+     */
+    public static synchronized LinuxVolumeMonitor getShared() throws IOException {
+        if (shared == null) {
+            shared = new LinuxVolumeMonitor();
+        }
+        return shared;
+    }
+
+    /**
+     * @return The mount points of the mounted USB drives, each ending with a
+     *         separator, as of the last poll.
+     */
+    public List<String> getUsbDrivePaths() {
+        return usbDrivePaths;
+    }
+
+    /**
+     * Re-reads the mount table immediately instead of waiting for the next
+     * poll.
+     *
+     * @return The current USB drive mount points.
+     * @throws IOException If the mount table cannot be read.
+     */
+    public synchronized List<String> refresh() throws IOException {
+        String current = Files.readString(MOUNT_INFO, StandardCharsets.UTF_8);
+        if (!current.equals(mountTable)) {
+            usbDrivePaths = List.copyOf(findUsbDrives(current));
+            mountTable = current;
+        }
+        return usbDrivePaths;
+    }
+
+    /**
+     * Poller task; keeps the last view if the mount table cannot be read.
+     */
+    private void poll() {
+        try {
+            refresh();
+        } catch (IOException | RuntimeException e) {
+            // Keep the previous view and try again on the next poll.
+        }
+    }
+
+    /**
+     * Finds the mount points of removable USB block devices in a mount table.
+     *
+     * @param mountTable The content of /proc/self/mountinfo.
+     * @return The mount points, each ending with a separator.
+     */
+    private static List<String> findUsbDrives(String mountTable) {
+        List<String> drives = new ArrayList<>();
+        for (String line : mountTable.split("\n")) {
+            // id parent major:minor root mountpoint options [optional fields] - fstype source super-options
+            String[] fields = line.split(" ");
+            if (fields.length < 5) {
+                continue;
+            }
+            if (isRemovableUsbDevice(fields[2])) {
+                String mountPoint = unescape(fields[4]);
+                drives.add(mountPoint.endsWith("/") ? mountPoint : mountPoint + "/");
+            }
+        }
+        return drives;
+    }
+
+    /**
+     * Checks whether a block device is a partition or disk of a removable USB
+     * drive.
+     *
+     * @param deviceNumber The device number as "major:minor".
+     * @return true for removable USB devices.
+     */
+    private static boolean isRemovableUsbDevice(String deviceNumber) {
+        Path device = SYS_DEV_BLOCK.resolve(deviceNumber);
+        if (!Files.exists(device)) {
+            return false;
+        }
+        try {
+            Path devicePath = device.toRealPath();
+            Path disk = Files.exists(devicePath.resolve("partition")) ? devicePath.getParent() : devicePath;
+            Path removable = SYS_BLOCK.resolve(disk.getFileName().toString()).resolve("removable");
+            return devicePath.toString().contains("/usb")
+                    && Files.isReadable(removable)
+                    && "1".equals(Files.readString(removable).trim());
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Decodes the octal escapes (e.g. "\040" for a space) used in mount points.
+     *
+     * @param path The escaped path.
+     * @return The decoded path.
+     */
+    private static String unescape(String path) {
+        if (path.indexOf('\\') < 0) {
+            return path;
+        }
+        Matcher matcher = OCTAL_ESCAPE.matcher(path);
+        StringBuilder decoded = new StringBuilder();
+        while (matcher.find()) {
+            matcher.appendReplacement(decoded,
+                    Matcher.quoteReplacement(String.valueOf((char) Integer.parseInt(matcher.group(1), 8))));
+        }
+        matcher.appendTail(decoded);
+        return decoded.toString();
+    }
+}
@@ -1,16 +1,25 @@
 package com.padesigner.ui;
 
-import com.padesigner.crypto.RSAKeyManager;
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
 
 import javax.swing.*;
 import java.awt.*;
 import java.io.File;
 import java.security.*;
-import java.security.interfaces.RSAPrivateKey;
 import java.awt.event.ActionListener;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
-import com.padesigner.crypto.MyPdfSigner;
+import com.padesigner.crypto.AsyncSigner;
+import com.padesigner.crypto.SigningContext;
+import com.padesigner.crypto.SigningListener;
+import com.padesigner.crypto.SigningPhase;
 
 /**
  * SignerUI is a Swing-based user interface for signing PDF documents using a
@@ -18,6 +27,11 @@ import com.padesigner.crypto.MyPdfSigner;
  * It allows users to select a PDF file, enter their PIN, and choose the USB
  * drive containing their private key.
  * The signed document is saved with a new name indicating it has been signed.
+ * <p>
+ * Several documents can be selected at once. The key is unlocked and the
+ * documents are signed in the background by {@link AsyncSigner}, so the window
+ * stays responsive; progress is shown while signing runs and the operation can
+ * be cancelled.
  */
 public class SignerUI extends JFrame {
 
@@ -29,6 +43,20 @@ public class SignerUI extends JFrame {
     private JTextField pinField;
     private JLabel statusLabel;
     private JComboBox<String> drivesComboBox;
+    private JProgressBar progressBar;
+    private JButton signButton;
+    private JButton cancelButton;
+
+    /**
+     * The unlock and signing operations currently running; only accessed on
+     * the event dispatch thread.
+     */
+    private final List<CompletableFuture<?>> running = new ArrayList<>();
+
+    /**
+     * Per document, the bytes hashed so far and the document size.
+     */
+    private final Map<String, long[]> progress = new LinkedHashMap<>();
 
     /**
      * Constructor for SignerUI.
@@ -54,9 +82,14 @@ public class SignerUI extends JFrame {
         pinField = new JPasswordField(20);
         statusLabel = new JLabel("Status: Waiting for input");
         drivesComboBox = new JComboBox<>();
+        progressBar = new JProgressBar(0, 100);
+        progressBar.setStringPainted(true);
+        progressBar.setVisible(false);
 
         JButton browseButton = createButton("Choose PDF File", e -> handleBrowsePdfButton());
-        JButton signButton = createButton("Sign Document", e -> handleSignButton());
+        signButton = createButton("Sign Document", e -> handleSignButton());
+        cancelButton = createButton("Cancel", e -> handleCancelButton());
+        cancelButton.setEnabled(false);
         JButton backButton = createButton("Back", e -> handleBackButton());
         JButton findUSBButton = createButton("Find USB", e -> handleFindUSBButton(drivesComboBox));
 
@@ -99,6 +132,9 @@ public class SignerUI extends JFrame {
         add(findUSBButton);
         add(Box.createHorizontalStrut(800));
         add(signButton);
+        add(cancelButton);
+        add(Box.createHorizontalStrut(800));
+        add(progressBar);
         add(Box.createHorizontalStrut(800));
         add(statusLabel);
         add(Box.createHorizontalStrut(800));
@@ -126,26 +162,34 @@ public class SignerUI extends JFrame {
     }
 
     /**
-     * Handles the action of browsing for a PDF file to sign.
+     * Handles the action of browsing for PDF files to sign. Several files may
+     * be selected; their paths are separated by the path separator.
      */
     private void handleBrowsePdfButton() {
         JFileChooser fileChooser = new JFileChooser();
-        fileChooser.setDialogTitle("Select PDF file to sign");
+        fileChooser.setDialogTitle("Select PDF files to sign");
         fileChooser.setFileFilter(new javax.swing.filechooser.FileNameExtensionFilter("PDF Files", "pdf"));
+        fileChooser.setMultiSelectionEnabled(true);
         int result = fileChooser.showOpenDialog(this);
         if (result == JFileChooser.APPROVE_OPTION) {
-            pdfFileField.setText(fileChooser.getSelectedFile().getAbsolutePath());
+            List<String> paths = new ArrayList<>();
+            for (File file : fileChooser.getSelectedFiles()) {
+                paths.add(file.getAbsolutePath());
+            }
+            pdfFileField.setText(String.join(File.pathSeparator, paths));
         }
     }
 
     /**
-     * Handles the action of signing the document.
+     * Handles the action of signing the selected documents. The inputs are
+     * checked here; unlocking the key and signing run in the background.
      */
     private void handleSignButton() {
-        String pdfFilePath = pdfFileField.getText();
+        String pdfFilePaths = pdfFileField.getText();
         String pin = pinField.getText();
+        String usbPath = (String) drivesComboBox.getSelectedItem();
 
-        if (pdfFilePath.isEmpty()) {
+        if (pdfFilePaths.isEmpty()) {
             showMessage("Please select a PDF file.");
             return;
         }
@@ -155,31 +199,152 @@ public class SignerUI extends JFrame {
             return;
         }
 
-        try {
-            RSAPrivateKey privateKey = RSAKeyManager.loadPrivateKey((String) drivesComboBox.getSelectedItem(), pin);
-            if (privateKey == null) {
-                showMessage("Invalid PIN or failed to load private key.");
+        if (usbPath == null) {
+            showMessage("Please select the USB drive with your private key.");
+            return;
+        }
+
+        List<String> documents = Arrays.asList(pdfFilePaths.split(File.pathSeparator));
+        for (String document : documents) {
+            if (!new File(document).exists()) {
+                showMessage("PDF file does not exist: " + document);
                 return;
             }
-            File pdfFile = new File(pdfFilePath);
-            if (!pdfFile.exists()) {
-                showMessage("PDF file does not exist.");
+            if (!document.endsWith(".pdf")) {
+                showMessage("Invalid file type. Please select a PDF file: " + document);
                 return;
             }
-            if (!pdfFilePath.endsWith(".pdf")) {
-                showMessage("Invalid file type. Please select a PDF file.");
-                return;
+        }
+
+        setRunning(true);
+        statusLabel.setText("Status: Unlocking private key...");
+        CompletableFuture<SigningContext> unlock = AsyncSigner.getShared().unlock(usbPath, pin,
+                SigningListener.NONE);
+        running.add(unlock);
+        unlock.whenComplete((context, failure) -> SwingUtilities.invokeLater(() -> {
+            running.remove(unlock);
+            if (failure != null) {
+                finishSigning(0, documents.size(), failure);
+            } else if (!cancelButton.isEnabled()) {
+                finishSigning(0, documents.size(), new CancellationException());
+            } else {
+                signDocuments(documents, context);
             }
-            MyPdfSigner.signPDF(pdfFilePath, privateKey, statusLabel);
+        }));
+    }
+
+    /**
+     * Starts signing every document at once and reports the outcome when all
+     * of them have finished.
+     *
+     * @param documents The paths of the documents to sign.
+     * @param context   The signing context of the unlocked key.
+     */
+    private void signDocuments(List<String> documents, SigningContext context) {
+        progress.clear();
+        List<CompletableFuture<String>> signatures = new ArrayList<>();
+        for (String document : documents) {
+            progress.put(document, new long[] { 0, Math.max(1, new File(document).length()) });
+            CompletableFuture<String> signature = AsyncSigner.getShared().sign(document, context,
+                    (phase, bytesProcessed, totalBytes) -> SwingUtilities.invokeLater(
+                            () -> updateProgress(document, phase, bytesProcessed, totalBytes)));
+            signatures.add(signature);
+            running.add(signature);
+        }
+        statusLabel.setText("Status: Signing " + documents.size() + " document(s)...");
+
+        CompletableFuture.allOf(signatures.toArray(new CompletableFuture<?>[0]))
+                .whenComplete((ignored, failure) -> SwingUtilities.invokeLater(() -> {
+                    running.removeAll(signatures);
+                    int signed = 0;
+                    Throwable firstFailure = null;
+                    for (CompletableFuture<String> signature : signatures) {
+                        if (signature.isCompletedExceptionally()) {
+                            if (firstFailure == null) {
+                                firstFailure = signature.handle((path, error) -> error).join();
+                            }
+                        } else {
+                            signed++;
+                        }
+                    }
+                    finishSigning(signed, documents.size(), firstFailure);
+                }));
+    }
+
+    /**
+     * Shows the progress of one document and of the whole batch.
+     *
+     * @param document       The document the progress belongs to.
+     * @param phase          The current phase of the document.
+     * @param bytesProcessed The bytes of the document hashed so far.
+     * @param totalBytes     The size of the document.
+     */
+    private void updateProgress(String document, SigningPhase phase, long bytesProcessed, long totalBytes) {
+        long[] documentProgress = progress.get(document);
+        if (documentProgress == null || running.isEmpty()) {
+            return;
+        }
+        documentProgress[0] = phase == SigningPhase.COMPLETED || phase == SigningPhase.SIGNING
+                || phase == SigningPhase.WRITING ? documentProgress[1] : Math.min(bytesProcessed, documentProgress[1]);
+        long processed = 0;
+        long total = 0;
+        for (long[] entry : progress.values()) {
+            processed += entry[0];
+            total += entry[1];
+        }
+        progressBar.setValue((int) (processed * 100 / total));
+        statusLabel.setText("Status: " + new File(document).getName() + ": "
+                + phase.name().toLowerCase().replace('_', ' '));
+    }
+
+    /**
+     * Reports the outcome of a signing run and re-enables the inputs.
+     *
+     * @param signed  The number of documents signed.
+     * @param total   The number of documents requested.
+     * @param failure The first failure, or null if every document was signed.
+     */
+    private void finishSigning(int signed, int total, Throwable failure) {
+        setRunning(false);
+        Throwable cause = failure instanceof CompletionException && failure.getCause() != null ? failure.getCause()
+                : failure;
+        if (cause == null) {
             statusLabel.setText("Status: Document signed successfully.");
+            showMessage(total == 1 ? "Document signed successfully."
+                    : "All " + total + " documents signed successfully.");
+        } else if (cause instanceof CancellationException) {
+            statusLabel.setText("Status: Signing cancelled (" + signed + " of " + total + " signed).");
+        } else {
+            cause.printStackTrace();
+            statusLabel.setText("Status: Error signing document (" + signed + " of " + total + " signed).");
+            showMessage("Error signing document: " + cause.getMessage());
+        }
+    }
 
-        } catch (Exception ex) {
-            ex.printStackTrace();
-            showMessage("Error signing document: " + ex.getMessage());
-            statusLabel.setText("Status: Error signing document.");
+    /**
+     * Cancels the running unlock or signing operations.
+     */
+    private void handleCancelButton() {
+        cancelButton.setEnabled(false);
+        statusLabel.setText("Status: Cancelling...");
+        for (CompletableFuture<?> future : new ArrayList<>(running)) {
+            future.cancel(true);
         }
     }
 
+    /**
+     * Switches the window between the idle and the signing state.
+     *
+     * @param signing Whether an operation is running.
+     */
+    private void setRunning(boolean signing) {
+        signButton.setEnabled(!signing);
+        cancelButton.setEnabled(signing);
+        progressBar.setValue(0);
+        progressBar.setVisible(signing);
+        setCursor(signing ? Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR) : Cursor.getDefaultCursor());
+    }
+
     /**
      * Handles the action of going back to the main menu.
      */
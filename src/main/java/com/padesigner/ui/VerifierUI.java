@@ -1,22 +1,20 @@
 package com.padesigner.ui;
 
-import com.itextpdf.kernel.pdf.PdfDocument;
-import com.itextpdf.kernel.pdf.PdfReader;
-import com.itextpdf.signatures.PdfPKCS7;
-import com.itextpdf.signatures.SignatureUtil;
+import com.padesigner.crypto.PublicKeyRing;
 import com.padesigner.crypto.RSAKeyManager;
+import com.padesigner.crypto.SignatureVerifier;
 
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.ActionListener;
 import java.io.File;
-import java.security.PublicKey;
 import java.util.List;
 
 /**
  * VerifierUI is a Swing-based user interface for verifying digital signatures
  * on PDF documents. It allows users to select a signed PDF file and a public
- * key file, and then verifies the signature using the selected public key.
+ * key file (or a directory of trusted keys), and then verifies the signature
+ * using the selected keys.
  */
 public class VerifierUI extends JFrame {
 
@@ -80,7 +78,7 @@ public class VerifierUI extends JFrame {
         add(pdfFileField);
         add(browsePdfButton);
         add(Box.createHorizontalStrut(800));
-        add(new JLabel("Select public key file:"));
+        add(new JLabel("Select public key file or key directory:"));
         add(publicKeyFileField);
         add(browseKeyButton);
         add(Box.createHorizontalStrut(800));
@@ -107,12 +105,13 @@ public class VerifierUI extends JFrame {
 
     /**
      * Handles the action of browsing for a public key file.
-     * Opens a file chooser dialog to select a public key file and updates the text
-     * field.
+     * Opens a file chooser dialog to select a public key file, or a directory of
+     * trusted keys, and updates the text field.
      */
     private void handleBrowseKeyButton() {
         JFileChooser fileChooser = new JFileChooser();
         fileChooser.setDialogTitle("Select Public Key File");
+        fileChooser.setFileSelectionMode(JFileChooser.FILES_AND_DIRECTORIES);
         fileChooser.setFileFilter(new javax.swing.filechooser.FileNameExtensionFilter("Public Key Files", "pem"));
         int result = fileChooser.showOpenDialog(this);
         if (result == JFileChooser.APPROVE_OPTION) {
@@ -153,15 +152,18 @@ public class VerifierUI extends JFrame {
                 return;
             }
 
-            PublicKey publicKey = RSAKeyManager.loadPublicKey(publicKeyFile);
-            boolean isValid = verifySignature(pdfFilePath, publicKey);
+            PublicKeyRing keyRing = publicKeyFile.isDirectory() ? PublicKeyRing.load(publicKeyFile.toPath())
+                    : PublicKeyRing.of(RSAKeyManager.loadPublicKey(publicKeyFile));
+            List<SignatureVerifier.SignatureReport> reports = SignatureVerifier.verifyAllSignatures(pdfFilePath,
+                    keyRing);
+            boolean isValid = SignatureVerifier.isValid(reports);
 
             if (isValid) {
                 statusLabel.setText("Status: Signature is valid.");
-                showMessage("Signature is valid.");
+                showMessage("Signature is valid.\n" + describe(reports));
             } else {
                 statusLabel.setText("Status: Signature is invalid.");
-                showMessage("Signature is invalid.");
+                showMessage("Signature is invalid.\n" + describe(reports));
             }
 
         } catch (Exception ex) {
@@ -172,28 +174,31 @@ public class VerifierUI extends JFrame {
     }
 
     /**
-     * Verifies the signature of the PDF file using the provided public key.
+     * Describes every signature of a document, one line per signature.
      *
-     * @param pdfFilePath The path to the signed PDF file.
-     * @param publicKey   The public key used for verification.
-     * @return true if the signature is valid, false otherwise.
-     * @throws Exception If an error occurs during verification.
+     * @param reports The reports of all signatures.
+     * @return A human readable summary.
      */
-    private boolean verifySignature(String pdfFilePath, PublicKey publicKey) throws Exception {
-        PdfReader reader = new PdfReader(pdfFilePath);
-        PdfDocument pdfDoc = new PdfDocument(reader);
-        SignatureUtil signUtil = new SignatureUtil(pdfDoc);
-
-        List<String> signatureNames = signUtil.getSignatureNames();
-        if (signatureNames.isEmpty()) {
-            throw new Exception("No signatures found in the PDF.");
+    private String describe(List<SignatureVerifier.SignatureReport> reports) {
+        StringBuilder description = new StringBuilder();
+        for (SignatureVerifier.SignatureReport report : reports) {
+            description.append('\n').append(report.name()).append(" (revision ").append(report.revision())
+                    .append("): ");
+            if (!report.intact()) {
+                description.append("modified or corrupt");
+            } else if (!report.signedByKey()) {
+                description.append("intact, signed with an unknown key");
+            } else {
+                description.append("valid, signed with ").append(report.signer());
+            }
+            if (report.coversWholeDocument()) {
+                description.append(", covers the whole document");
+            }
+            if (report.message() != null) {
+                description.append(" - ").append(report.message());
+            }
         }
-
-        String signatureName = signatureNames.get(0); // Assuming the first signature
-        PdfPKCS7 pkcs7 = signUtil.readSignatureData(signatureName);
-
-        return pkcs7.verifySignatureIntegrityAndAuthenticity()
-                && pkcs7.getSigningCertificate().getPublicKey().equals(publicKey);
+        return description.toString();
     }
 
     /**
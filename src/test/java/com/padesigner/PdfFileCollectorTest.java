@@ -0,0 +1,41 @@
+package com.padesigner;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests the document selection of {@link PdfFileCollector}.
+ */
+class PdfFileCollectorTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void acceptsUnsignedPdfInAnyCase() {
+        assertTrue(PdfFileCollector.UNSIGNED.test(Paths.get("/docs/a.pdf")));
+        assertTrue(PdfFileCollector.UNSIGNED.test(Paths.get("/docs/A.PDF")));
+        assertFalse(PdfFileCollector.UNSIGNED.test(Paths.get("/docs/a_signed.pdf")));
+        assertFalse(PdfFileCollector.UNSIGNED.test(Paths.get("/docs/A_SIGNED.PDF")));
+        assertFalse(PdfFileCollector.UNSIGNED.test(Paths.get("/docs/notes.txt")));
+        assertTrue(PdfFileCollector.ALL.test(Paths.get("/docs/a_signed.pdf")));
+    }
+
+    @Test
+    void listsEntriesAsWritten() throws Exception {
+        Path list = directory.resolve("list.txt");
+        Files.write(list, List.of("# documents", "/docs/a.pdf", "", "  /docs/notes.txt  "));
+
+        assertEquals(List.of(Paths.get("/docs/a.pdf"), Paths.get("/docs/notes.txt")),
+                PdfFileCollector.collectFromList(list));
+    }
+}
@@ -0,0 +1,94 @@
+package com.padesigner.crypto;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.security.KeyPair;
+import java.security.Security;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests the time budget of {@link BulkVerifier} with documents whose workers
+ * cannot be interrupted.
+ */
+class BulkVerifierTest {
+
+    private static SigningContext context;
+
+    @TempDir
+    Path directory;
+
+    private final List<Path> pipes = new ArrayList<>();
+
+    @BeforeAll
+    static void createContext() throws Exception {
+        Security.addProvider(new BouncyCastleProvider());
+        KeyPair keyPair = KeyAlgorithm.EC_P256.generateKeyPair();
+        context = SigningContext.create(keyPair.getPrivate(),
+                RSAKeyManager.generateSelfSignedCertificate(keyPair));
+    }
+
+    /**
+     * Opens every pipe once so that workers still blocked on them return.
+     */
+    @AfterEach
+    void releasePipes() {
+        for (Path pipe : pipes) {
+            try (RandomAccessFile writer = new RandomAccessFile(pipe.toFile(), "rw")) {
+                writer.getFD();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    @Test
+    void completesWhenWorkersHang() throws Exception {
+        List<Path> documents = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            documents.add(createPipe(directory.resolve("hung" + i + ".pdf")));
+        }
+        String signed = MyPdfSigner.signPDF(MyPdfSignerTest.createPdf(directory.resolve("a.pdf")).toString(),
+                context);
+        documents.add(Path.of(signed));
+
+        BulkVerifier verifier = new BulkVerifier(1, Duration.ofMillis(300));
+        BulkVerifier.Summary summary = assertTimeoutPreemptively(Duration.ofSeconds(30),
+                () -> verifier.verifyAll(documents, context.getPublicKey(), result -> { }));
+
+        assertEquals(5, summary.total());
+        assertEquals(4, summary.timedOut());
+        assertEquals(1, summary.valid());
+    }
+
+    /**
+     * Creates a named pipe. Opening it for reading blocks until a writer
+     * appears, and the blocked thread cannot be interrupted.
+     *
+     * @param file The pipe to create.
+     * @return The pipe.
+     * @throws Exception If the calling thread is interrupted.
+     */
+    private Path createPipe(Path file) throws Exception {
+        int exitCode;
+        try {
+            exitCode = new ProcessBuilder("mkfifo", file.toString()).start().waitFor();
+        } catch (IOException e) {
+            exitCode = -1;
+        }
+        assumeTrue(exitCode == 0, "Named pipes are not available.");
+        pipes.add(file);
+        return file;
+    }
+}
@@ -0,0 +1,61 @@
+package com.padesigner.crypto;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.security.KeyPairGenerator;
+import java.security.PublicKey;
+import java.security.Security;
+import java.security.spec.ECGenParameterSpec;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests how {@link KeyAlgorithm#of} classifies existing keys.
+ */
+class KeyAlgorithmTest {
+
+    @BeforeAll
+    static void addProvider() {
+        Security.addProvider(new BouncyCastleProvider());
+    }
+
+    @Test
+    void recognisesNistCurvesFromEitherProvider() throws Exception {
+        assertEquals(KeyAlgorithm.EC_P256, KeyAlgorithm.of(ecKey("secp256r1", "SunEC")));
+        assertEquals(KeyAlgorithm.EC_P256, KeyAlgorithm.of(ecKey("secp256r1", "BC")));
+        assertEquals(KeyAlgorithm.EC_P384, KeyAlgorithm.of(ecKey("secp384r1", "SunEC")));
+        assertEquals(KeyAlgorithm.EC_P384, KeyAlgorithm.of(ecKey("secp384r1", "BC")));
+    }
+
+    @Test
+    void rejectsOtherCurvesOfSameSize() throws Exception {
+        for (String curve : new String[] { "secp256k1", "brainpoolP256r1", "brainpoolP384r1" }) {
+            PublicKey key = ecKey(curve, "BC");
+            assertThrows(IllegalArgumentException.class, () -> KeyAlgorithm.of(key), curve);
+        }
+    }
+
+    @Test
+    void rejectsRsaKeysOtherThan4096Bits() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        PublicKey key = generator.generateKeyPair().getPublic();
+
+        assertThrows(IllegalArgumentException.class, () -> KeyAlgorithm.of(key));
+    }
+
+    /**
+     * @param curve    The curve name.
+     * @param provider The provider generating the key.
+     * @return A new public key on the curve.
+     * @throws Exception If the curve is not available.
+     */
+    private static PublicKey ecKey(String curve, String provider) throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC", provider);
+        generator.initialize(new ECGenParameterSpec(curve));
+        return generator.generateKeyPair().getPublic();
+    }
+}
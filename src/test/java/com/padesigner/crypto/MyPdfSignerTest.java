@@ -0,0 +1,151 @@
+package com.padesigner.crypto;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.KeyPair;
+import java.security.Security;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfWriter;
+import com.padesigner.timestamp.PooledTsaClient;
+
+/**
+ * Tests the file naming and file handling of {@link MyPdfSigner}.
+ */
+class MyPdfSignerTest {
+
+    private static SigningContext context;
+
+    @TempDir
+    Path directory;
+
+    @BeforeAll
+    static void createContext() throws Exception {
+        Security.addProvider(new BouncyCastleProvider());
+        KeyPair keyPair = KeyAlgorithm.EC_P256.generateKeyPair();
+        context = SigningContext.create(keyPair.getPrivate(),
+                RSAKeyManager.generateSelfSignedCertificate(keyPair));
+    }
+
+    @Test
+    void derivesOutputNameIgnoringExtensionCase() {
+        assertEquals("/docs/a_signed.pdf", MyPdfSigner.generateOutputPath("/docs/a.pdf"));
+        assertEquals("/docs/A_signed.pdf", MyPdfSigner.generateOutputPath("/docs/A.PDF"));
+        assertEquals("/docs/b.pdf.d/c_signed.pdf", MyPdfSigner.generateOutputPath("/docs/b.pdf.d/c.Pdf"));
+        assertEquals("/docs/notes_signed.pdf", MyPdfSigner.generateOutputPath("/docs/notes"));
+    }
+
+    @Test
+    void signsUpperCaseExtensionIntoSeparateFile() throws Exception {
+        Path document = createPdf(directory.resolve("A.PDF"));
+        byte[] original = Files.readAllBytes(document);
+
+        String output = MyPdfSigner.signPDF(document.toString(), context);
+
+        assertEquals(directory.resolve("A_signed.pdf").toString(), output);
+        assertArrayEquals(original, Files.readAllBytes(document));
+        assertTrue(SignatureVerifier.verifySignature(output, context.getPublicKey()));
+    }
+
+    @Test
+    void refusesToWriteOverDocument() throws Exception {
+        Path document = createPdf(directory.resolve("a.pdf"));
+        byte[] original = Files.readAllBytes(document);
+
+        assertThrows(IOException.class, () -> MyPdfSigner.openSigner(document.toString(), document.toString()));
+
+        assertArrayEquals(original, Files.readAllBytes(document));
+    }
+
+    @Test
+    void releasesAndDeletesOutputWhenCancelled() throws Exception {
+        Path document = createPdf(directory.resolve("a.pdf"));
+        SigningMonitor[] monitor = new SigningMonitor[1];
+        monitor[0] = new SigningMonitor((phase, bytesProcessed, totalBytes) -> {
+            if (phase == SigningPhase.HASHING) {
+                monitor[0].cancel();
+            }
+        });
+
+        assertThrows(CancellationException.class,
+                () -> MyPdfSigner.signPDF(document.toString(), context, monitor[0]));
+
+        assertReleased(document, directory.resolve("a_signed.pdf"));
+    }
+
+    @Test
+    void releasesAndDeletesOutputWhenTimestampFails() throws Exception {
+        Path document = createPdf(directory.resolve("a.pdf"));
+        SigningContext timestamped = context.withTsaClient(new PooledTsaClient(URI.create("http://127.0.0.1:1/"),
+                PooledTsaClient.DEFAULT_DIGEST_ALGORITHM, null, 1, Duration.ofMillis(200)));
+
+        assertThrows(Exception.class, () -> MyPdfSigner.signPDF(document.toString(), timestamped));
+
+        assertReleased(document, directory.resolve("a_signed.pdf"));
+    }
+
+    /**
+     * Checks that an aborted signature left no output and, where the process
+     * can list its open files, no open file behind.
+     *
+     * @param document The document that was being signed.
+     * @param output   The output of the signature.
+     * @throws IOException If the open files cannot be listed.
+     */
+    private static void assertReleased(Path document, Path output) throws IOException {
+        assertFalse(Files.exists(output));
+        Path descriptors = Paths.get("/proc/self/fd");
+        if (!Files.isDirectory(descriptors)) {
+            return;
+        }
+        try (Stream<Path> links = Files.list(descriptors)) {
+            List<String> open = links.map(MyPdfSignerTest::target)
+                    .filter(target -> target.startsWith(document.toString()) || target.startsWith(output.toString()))
+                    .collect(Collectors.toList());
+            assertEquals(List.of(), open);
+        }
+    }
+
+    /**
+     * @param descriptor A link in /proc/self/fd.
+     * @return The file it refers to, or an empty string if it is gone.
+     */
+    private static String target(Path descriptor) {
+        try {
+            return Files.readSymbolicLink(descriptor).toString();
+        } catch (IOException e) {
+            return "";
+        }
+    }
+
+    /**
+     * @param file The file to write.
+     * @return The path of a one page PDF document.
+     * @throws IOException If the document cannot be written.
+     */
+    static Path createPdf(Path file) throws IOException {
+        try (PdfDocument document = new PdfDocument(new PdfWriter(file.toString()))) {
+            document.addNewPage();
+        }
+        return file;
+    }
+}
@@ -0,0 +1,109 @@
+package com.padesigner.crypto;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.KeyPair;
+import java.security.Security;
+import java.util.List;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests the validity rules of {@link SignatureVerifier} on documents signed
+ * with trusted and untrusted keys.
+ */
+class SignatureVerifierTest {
+
+    private static SigningContext trusted;
+    private static SigningContext untrusted;
+
+    @TempDir
+    Path directory;
+
+    @BeforeAll
+    static void createContexts() throws Exception {
+        Security.addProvider(new BouncyCastleProvider());
+        trusted = createContext();
+        untrusted = createContext();
+    }
+
+    @Test
+    void acceptsDocumentSignedWithTrustedKey() throws Exception {
+        String signed = MyPdfSigner.signPDF(document("a.pdf"), trusted);
+
+        assertTrue(SignatureVerifier.verifySignature(signed, trusted.getPublicKey()));
+    }
+
+    @Test
+    void rejectsUpdateSignedWithUntrustedKey() throws Exception {
+        String first = MyPdfSigner.signPDF(document("a.pdf"), trusted);
+        String second = MyPdfSigner.signPDF(rename(first, "b.pdf"), untrusted);
+
+        List<SignatureVerifier.SignatureReport> reports = SignatureVerifier.verifyAllSignatures(second,
+                trusted.getPublicKey());
+
+        assertEquals(2, reports.size());
+        assertTrue(reports.get(0).isValid());
+        assertTrue(reports.get(1).intact());
+        assertFalse(reports.get(1).signedByKey());
+        assertFalse(SignatureVerifier.isValid(reports));
+        assertFalse(SignatureVerifier.verifySignature(second, trusted.getPublicKey()));
+    }
+
+    @Test
+    void acceptsUpdateSignedWithTrustedKey() throws Exception {
+        String first = MyPdfSigner.signPDF(document("a.pdf"), untrusted);
+        String second = MyPdfSigner.signPDF(rename(first, "b.pdf"), trusted);
+
+        assertTrue(SignatureVerifier.verifySignature(second, trusted.getPublicKey()));
+    }
+
+    @Test
+    void rejectsBytesAppendedAfterNewestSignature() throws Exception {
+        String signed = MyPdfSigner.signPDF(document("a.pdf"), trusted);
+        Files.write(Path.of(signed), "\n%appended\n".getBytes(StandardCharsets.US_ASCII),
+                StandardOpenOption.APPEND);
+
+        assertFalse(SignatureVerifier.verifySignature(signed, trusted.getPublicKey()));
+    }
+
+    /**
+     * @return A signing context with a new P-256 key and its self-signed
+     *         certificate.
+     * @throws Exception If the key or certificate cannot be created.
+     */
+    private static SigningContext createContext() throws Exception {
+        KeyPair keyPair = KeyAlgorithm.EC_P256.generateKeyPair();
+        return SigningContext.create(keyPair.getPrivate(), RSAKeyManager.generateSelfSignedCertificate(keyPair));
+    }
+
+    /**
+     * @param name The file name.
+     * @return The path of a new unsigned document in the test directory.
+     * @throws Exception If the document cannot be written.
+     */
+    private String document(String name) throws Exception {
+        return MyPdfSignerTest.createPdf(directory.resolve(name)).toString();
+    }
+
+    /**
+     * Moves a signed document to an unsigned name, so it can be signed again.
+     *
+     * @param path The signed document.
+     * @param name The new file name.
+     * @return The new path.
+     * @throws Exception If the file cannot be moved.
+     */
+    private String rename(String path, String name) throws Exception {
+        return Files.move(Path.of(path), directory.resolve(name)).toString();
+    }
+}
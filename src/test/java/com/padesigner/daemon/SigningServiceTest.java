@@ -0,0 +1,90 @@
+package com.padesigner.daemon;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyPair;
+import java.security.Security;
+import java.time.Duration;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfWriter;
+import com.padesigner.crypto.KeyAlgorithm;
+import com.padesigner.crypto.PublicKeyRing;
+import com.padesigner.crypto.RSAKeyManager;
+import com.padesigner.crypto.SigningContext;
+
+/**
+ * Tests {@link SigningService} with an unlocked P-256 key and documents in a
+ * temporary root directory.
+ */
+class SigningServiceTest {
+
+    @TempDir
+    Path root;
+
+    private SigningService service;
+
+    @BeforeEach
+    void startService() throws Exception {
+        Security.addProvider(new BouncyCastleProvider());
+        KeyPair keyPair = KeyAlgorithm.EC_P256.generateKeyPair();
+        SigningContext context = SigningContext.create(keyPair.getPrivate(),
+                RSAKeyManager.generateSelfSignedCertificate(keyPair));
+        service = new SigningService(context, PublicKeyRing.of(context.getPublicKey()), root, 1,
+                SigningService.DEFAULT_QUEUE_CAPACITY, Duration.ofSeconds(30));
+    }
+
+    @AfterEach
+    void stopService() {
+        service.close();
+    }
+
+    @Test
+    void signsUpperCaseExtensionNextToDocument() throws Exception {
+        Path document = createPdf(root.resolve("X.PDF"));
+        byte[] original = Files.readAllBytes(document);
+
+        SigningService.Response response = service.handle(SigningService.Operation.SIGN, document.toString());
+
+        assertEquals(200, response.status(), response.body().toString());
+        Path output = root.toRealPath().resolve("X_signed.pdf");
+        assertEquals(output.toString(), response.body().getString("output"));
+        assertArrayEquals(original, Files.readAllBytes(document));
+
+        SigningService.Response verified = service.handle(SigningService.Operation.VERIFY, output.toString());
+        assertEquals(200, verified.status(), verified.body().toString());
+        assertTrue(verified.body().getBoolean("valid"));
+    }
+
+    @Test
+    void rejectsOtherExtensions() throws Exception {
+        Path document = createPdf(root.resolve("X.txt"));
+
+        SigningService.Response response = service.handle(SigningService.Operation.SIGN, document.toString());
+
+        assertEquals(400, response.status());
+    }
+
+    /**
+     * @param file The file to write.
+     * @return The path of a one page PDF document.
+     * @throws IOException If the document cannot be written.
+     */
+    private static Path createPdf(Path file) throws IOException {
+        try (PdfDocument document = new PdfDocument(new PdfWriter(file.toString()))) {
+            document.addNewPage();
+        }
+        return file;
+    }
+}
@@ -0,0 +1,85 @@
+package com.padesigner.revocation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.security.KeyPairGenerator;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509CRL;
+import java.security.cert.X509Certificate;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests {@link CachingCrlClient} against a {@link StubRevocationResponder}.
+ */
+class CachingCrlClientTest {
+
+    private StubRevocationResponder responder;
+    private X509Certificate certificate;
+
+    @BeforeEach
+    void startResponder() throws Exception {
+        responder = new StubRevocationResponder(0);
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(new ECGenParameterSpec("secp256r1"));
+        certificate = responder.issueCertificate(generator.generateKeyPair().getPublic(), "Signer");
+    }
+
+    @AfterEach
+    void stopResponder() {
+        responder.close();
+    }
+
+    @Test
+    void returnsCrlListingRevokedCertificate() throws Exception {
+        responder.revoke(certificate);
+
+        Collection<byte[]> crls = new CachingCrlClient(cache()).getEncoded(certificate, null);
+
+        assertNotNull(crls);
+        X509CRL crl = (X509CRL) CertificateFactory.getInstance("X.509")
+                .generateCRL(new ByteArrayInputStream(crls.iterator().next()));
+        assertTrue(crl.isRevoked(certificate));
+    }
+
+    @Test
+    void reusesCrlAcrossDocuments() {
+        CachingCrlClient client = new CachingCrlClient(cache());
+
+        for (int document = 0; document < 10; document++) {
+            assertNotNull(client.getEncoded(certificate, null));
+        }
+
+        assertEquals(1, responder.getCrlRequestCount());
+    }
+
+    @Test
+    void downloadsAgainAtNextUpdate() throws Exception {
+        // Revocation times are encoded to the second, so allow for truncation.
+        responder.setValidity(RevocationCache.REFRESH_MARGIN.plusSeconds(2));
+        CachingCrlClient client = new CachingCrlClient(cache());
+
+        client.getEncoded(certificate, null);
+        client.getEncoded(certificate, null);
+        assertEquals(1, responder.getCrlRequestCount());
+
+        TimeUnit.MILLISECONDS.sleep(2100);
+        client.getEncoded(certificate, null);
+        assertEquals(2, responder.getCrlRequestCount());
+    }
+
+    /**
+     * @return An empty cache.
+     */
+    private static RevocationCache cache() {
+        return new RevocationCache(RevocationCache.DEFAULT_MAX_ENTRIES, RevocationCache.DEFAULT_MAX_AGE);
+    }
+}
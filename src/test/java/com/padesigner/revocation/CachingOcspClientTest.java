@@ -0,0 +1,128 @@
+package com.padesigner.revocation;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.security.KeyPairGenerator;
+import java.security.cert.X509Certificate;
+import java.security.spec.ECGenParameterSpec;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.bouncycastle.asn1.ocsp.BasicOCSPResponse;
+import org.bouncycastle.cert.ocsp.BasicOCSPResp;
+import org.bouncycastle.cert.ocsp.CertificateStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests {@link CachingOcspClient} against a {@link StubRevocationResponder}.
+ */
+class CachingOcspClientTest {
+
+    private StubRevocationResponder responder;
+    private X509Certificate certificate;
+
+    @BeforeEach
+    void startResponder() throws Exception {
+        responder = new StubRevocationResponder(0);
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(new ECGenParameterSpec("secp256r1"));
+        certificate = responder.issueCertificate(generator.generateKeyPair().getPublic(), "Signer");
+    }
+
+    @AfterEach
+    void stopResponder() {
+        responder.close();
+    }
+
+    @Test
+    void returnsGoodResponse() throws Exception {
+        byte[] encoded = new CachingOcspClient(cache()).getEncoded(certificate, responder.getCaCertificate(), null);
+
+        assertNotNull(encoded);
+        BasicOCSPResp response = new BasicOCSPResp(BasicOCSPResponse.getInstance(encoded));
+        assertEquals(CertificateStatus.GOOD, response.getResponses()[0].getCertStatus());
+    }
+
+    @Test
+    void reusesResponseAcrossDocuments() {
+        CachingOcspClient client = new CachingOcspClient(cache());
+
+        byte[] first = client.getEncoded(certificate, responder.getCaCertificate(), null);
+        for (int document = 1; document < 10; document++) {
+            assertArrayEquals(first, client.getEncoded(certificate, responder.getCaCertificate(), null));
+        }
+
+        assertEquals(1, responder.getOcspRequestCount());
+    }
+
+    @Test
+    void sharesCacheBetweenClients() {
+        RevocationCache cache = cache();
+
+        new CachingOcspClient(cache).getEncoded(certificate, responder.getCaCertificate(), null);
+        new CachingOcspClient(cache).getEncoded(certificate, responder.getCaCertificate(), null);
+
+        assertEquals(1, responder.getOcspRequestCount());
+    }
+
+    @Test
+    void fetchesAgainAtNextUpdate() throws Exception {
+        // Revocation times are encoded to the second, so allow for truncation.
+        responder.setValidity(RevocationCache.REFRESH_MARGIN.plusSeconds(2));
+        CachingOcspClient client = new CachingOcspClient(cache());
+
+        client.getEncoded(certificate, responder.getCaCertificate(), null);
+        client.getEncoded(certificate, responder.getCaCertificate(), null);
+        assertEquals(1, responder.getOcspRequestCount());
+
+        TimeUnit.MILLISECONDS.sleep(2100);
+        client.getEncoded(certificate, responder.getCaCertificate(), null);
+        assertEquals(2, responder.getOcspRequestCount());
+    }
+
+    @Test
+    void fetchesConcurrentLookupsOnce() throws Exception {
+        responder.setLatency(Duration.ofMillis(300));
+        CachingOcspClient client = new CachingOcspClient(cache());
+
+        ExecutorService workers = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<byte[]>> responses = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                responses.add(workers.submit(
+                        () -> client.getEncoded(certificate, responder.getCaCertificate(), null)));
+            }
+            for (Future<byte[]> response : responses) {
+                assertNotNull(response.get());
+            }
+        } finally {
+            workers.shutdownNow();
+        }
+
+        assertEquals(1, responder.getOcspRequestCount());
+    }
+
+    @Test
+    void omitsResponseForRevokedCertificate() {
+        responder.revoke(certificate);
+
+        assertNull(new CachingOcspClient(cache()).getEncoded(certificate, responder.getCaCertificate(), null));
+    }
+
+    /**
+     * @return An empty cache.
+     */
+    private static RevocationCache cache() {
+        return new RevocationCache(RevocationCache.DEFAULT_MAX_ENTRIES, RevocationCache.DEFAULT_MAX_AGE);
+    }
+}
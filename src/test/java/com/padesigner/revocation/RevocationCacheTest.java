@@ -0,0 +1,126 @@
+package com.padesigner.revocation;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests {@link RevocationCache} with loaders counting their fetches.
+ */
+class RevocationCacheTest {
+
+    private final AtomicInteger fetches = new AtomicInteger();
+
+    @Test
+    void reusesDataUntilNextUpdate() throws Exception {
+        RevocationCache cache = new RevocationCache(10, Duration.ofHours(1));
+        Instant nextUpdate = Instant.now().plus(RevocationCache.REFRESH_MARGIN).plusMillis(500);
+
+        RevocationCache.Data first = cache.get("key", () -> load(nextUpdate));
+        RevocationCache.Data second = cache.get("key", () -> load(nextUpdate));
+        assertSame(first, second);
+        assertEquals(1, fetches.get());
+
+        TimeUnit.MILLISECONDS.sleep(700);
+        cache.get("key", () -> load(nextUpdate));
+        assertEquals(2, fetches.get());
+    }
+
+    @Test
+    void expiresAtMaximumAge() throws Exception {
+        RevocationCache cache = new RevocationCache(10, Duration.ofMillis(200));
+
+        cache.get("key", () -> load(null));
+        cache.get("key", () -> load(null));
+        assertEquals(1, fetches.get());
+
+        TimeUnit.MILLISECONDS.sleep(300);
+        cache.get("key", () -> load(null));
+        assertEquals(2, fetches.get());
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedEntry() throws Exception {
+        RevocationCache cache = new RevocationCache(2, Duration.ofHours(1));
+
+        cache.get("a", () -> load(null));
+        cache.get("b", () -> load(null));
+        cache.get("a", () -> load(null));
+        cache.get("c", () -> load(null));
+        assertEquals(2, cache.size());
+        assertEquals(3, fetches.get());
+
+        cache.get("a", () -> load(null));
+        assertEquals(3, fetches.get());
+        cache.get("b", () -> load(null));
+        assertEquals(4, fetches.get());
+    }
+
+    @Test
+    void doesNotCacheFailures() throws Exception {
+        RevocationCache cache = new RevocationCache(10, Duration.ofHours(1));
+
+        assertThrows(Exception.class, () -> cache.get("key", () -> {
+            fetches.incrementAndGet();
+            throw new Exception("Responder unavailable.");
+        }));
+        assertEquals(0, cache.size());
+
+        byte[] encoded = cache.get("key", () -> load(null)).encoded();
+        assertArrayEquals(new byte[] { 1 }, encoded);
+        assertEquals(2, fetches.get());
+    }
+
+    @Test
+    void sharesConcurrentFetchOfSameEntry() throws Exception {
+        RevocationCache cache = new RevocationCache(10, Duration.ofHours(1));
+        int callers = 8;
+        CountDownLatch started = new CountDownLatch(callers);
+
+        ExecutorService workers = Executors.newFixedThreadPool(callers);
+        try {
+            List<Future<RevocationCache.Data>> results = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                results.add(workers.submit(() -> {
+                    started.countDown();
+                    return cache.get("key", () -> {
+                        started.await();
+                        TimeUnit.MILLISECONDS.sleep(200);
+                        return load(null);
+                    });
+                }));
+            }
+            RevocationCache.Data first = results.get(0).get();
+            for (Future<RevocationCache.Data> result : results) {
+                assertSame(first, result.get());
+            }
+        } finally {
+            workers.shutdownNow();
+        }
+
+        assertEquals(1, fetches.get());
+    }
+
+    /**
+     * @param nextUpdate The nextUpdate time of the data, or null.
+     * @return Newly fetched data.
+     */
+    private RevocationCache.Data load(Instant nextUpdate) {
+        fetches.incrementAndGet();
+        return new RevocationCache.Data(new byte[] { 1 }, nextUpdate);
+    }
+}
@@ -0,0 +1,330 @@
+package com.padesigner.revocation;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PublicKey;
+import java.security.Security;
+import java.security.cert.X509Certificate;
+import java.security.spec.ECGenParameterSpec;
+import java.time.Duration;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.bouncycastle.asn1.ocsp.OCSPObjectIdentifiers;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.AccessDescription;
+import org.bouncycastle.asn1.x509.AuthorityInformationAccess;
+import org.bouncycastle.asn1.x509.BasicConstraints;
+import org.bouncycastle.asn1.x509.CRLDistPoint;
+import org.bouncycastle.asn1.x509.CRLReason;
+import org.bouncycastle.asn1.x509.DistributionPoint;
+import org.bouncycastle.asn1.x509.DistributionPointName;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.Extensions;
+import org.bouncycastle.asn1.x509.GeneralName;
+import org.bouncycastle.asn1.x509.GeneralNames;
+import org.bouncycastle.asn1.x509.KeyUsage;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cert.X509v2CRLBuilder;
+import org.bouncycastle.cert.jcajce.JcaX509CRLConverter;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateHolder;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.cert.ocsp.BasicOCSPRespBuilder;
+import org.bouncycastle.cert.ocsp.CertificateStatus;
+import org.bouncycastle.cert.ocsp.OCSPReq;
+import org.bouncycastle.cert.ocsp.OCSPResp;
+import org.bouncycastle.cert.ocsp.OCSPRespBuilder;
+import org.bouncycastle.cert.ocsp.Req;
+import org.bouncycastle.cert.ocsp.RespID;
+import org.bouncycastle.cert.ocsp.RevokedStatus;
+import org.bouncycastle.cert.ocsp.jcajce.JcaBasicOCSPRespBuilder;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.operator.ContentSigner;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.bouncycastle.operator.jcajce.JcaDigestCalculatorProviderBuilder;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A minimal certificate authority with an OCSP responder and a CRL
+ * distribution point on the loopback interface, standing in for a real CA
+ * when exercising {@link CachingOcspClient}, {@link CachingCrlClient} and
+ * LTV signing. Certificates issued with
+ * {@link #issueCertificate(PublicKey, String)} point to this responder, and
+ * revocation answers are valid for a configurable period. The CA key is
+ * thrown away when the responder stops, so its data proves nothing.
+ * <p>
+ * The number of OCSP and CRL requests received is counted, and answers can be
+ * delayed, so the effect of caching and of concurrent lookups can be observed.
+ */
+public class StubRevocationResponder implements AutoCloseable {
+
+    private static final String SIGNATURE_ALGORITHM = "SHA256withECDSA";
+
+    private final HttpServer server;
+    private final ExecutorService handlers;
+    private final KeyPair caKeyPair;
+    private final X509Certificate caCertificate;
+    private final Map<BigInteger, Date> revoked = new ConcurrentHashMap<>();
+    private final AtomicLong serialNumber = new AtomicLong(System.currentTimeMillis());
+    private final AtomicInteger ocspRequests = new AtomicInteger();
+    private final AtomicInteger crlRequests = new AtomicInteger();
+    private volatile Duration validity = Duration.ofHours(1);
+    private volatile Duration latency = Duration.ZERO;
+
+    /**
+     * Starts a responder on the given loopback port.
+     *
+     * @param port The port, or 0 to pick a free one.
+     * @throws Exception If the CA or the server cannot be created.
+     */
+    public StubRevocationResponder(int port) throws Exception {
+        if (Security.getProvider(BouncyCastleProvider.PROVIDER_NAME) == null) {
+            Security.addProvider(new BouncyCastleProvider());
+        }
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC", BouncyCastleProvider.PROVIDER_NAME);
+        generator.initialize(new ECGenParameterSpec("secp256r1"));
+        this.caKeyPair = generator.generateKeyPair();
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.handlers = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "stub-revocation-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+
+        X500Name caName = new X500Name("CN=PAdESigner Stub CA");
+        JcaX509v3CertificateBuilder builder = certificateBuilder(caName, caKeyPair.getPublic());
+        builder.addExtension(Extension.basicConstraints, true, new BasicConstraints(true));
+        builder.addExtension(Extension.keyUsage, true, new KeyUsage(KeyUsage.keyCertSign | KeyUsage.cRLSign));
+        this.caCertificate = sign(builder);
+
+        server.createContext("/ocsp", this::handleOcsp);
+        server.createContext("/crl", this::handleCrl);
+        server.setExecutor(handlers);
+        server.start();
+    }
+
+    /**
+     * Issues a signing certificate whose authority information access and CRL
+     * distribution point refer to this responder.
+     *
+     * @param publicKey  The public key to certify.
+     * @param commonName The common name of the subject.
+     * @return The certificate, valid for a day.
+     * @throws Exception If the certificate cannot be created.
+     */
+    public X509Certificate issueCertificate(PublicKey publicKey, String commonName) throws Exception {
+        JcaX509v3CertificateBuilder builder = certificateBuilder(new X500Name("CN=" + commonName), publicKey);
+        builder.addExtension(Extension.keyUsage, true,
+                new KeyUsage(KeyUsage.digitalSignature | KeyUsage.nonRepudiation));
+        builder.addExtension(Extension.authorityInfoAccess, false, new AuthorityInformationAccess(
+                new AccessDescription(AccessDescription.id_ad_ocsp,
+                        new GeneralName(GeneralName.uniformResourceIdentifier, getBaseUrl() + "ocsp"))));
+        builder.addExtension(Extension.cRLDistributionPoints, false, new CRLDistPoint(new DistributionPoint[] {
+                new DistributionPoint(new DistributionPointName(new GeneralNames(
+                        new GeneralName(GeneralName.uniformResourceIdentifier, getBaseUrl() + "crl"))), null, null) }));
+        return sign(builder);
+    }
+
+    /**
+     * @return The URL the responder paths are relative to.
+     */
+    public String getBaseUrl() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + "/";
+    }
+
+    /**
+     * @return The CA certificate, which issues the certificates and signs the
+     *         revocation data.
+     */
+    public X509Certificate getCaCertificate() {
+        return caCertificate;
+    }
+
+    /**
+     * Marks a certificate as revoked from now on.
+     *
+     * @param certificate The certificate to revoke.
+     */
+    public void revoke(X509Certificate certificate) {
+        revoked.put(certificate.getSerialNumber(), new Date());
+    }
+
+    /**
+     * Sets how long answers are valid, which becomes their nextUpdate time.
+     *
+     * @param validity The validity period of OCSP responses and CRLs.
+     */
+    public void setValidity(Duration validity) {
+        this.validity = validity;
+    }
+
+    /**
+     * Delays every answer.
+     *
+     * @param latency The delay before answering a request.
+     */
+    public void setLatency(Duration latency) {
+        this.latency = latency;
+    }
+
+    /**
+     * @return The number of OCSP requests received so far.
+     */
+    public int getOcspRequestCount() {
+        return ocspRequests.get();
+    }
+
+    /**
+     * @return The number of CRL downloads so far.
+     */
+    public int getCrlRequestCount() {
+        return crlRequests.get();
+    }
+
+    /**
+     * Stops the server.
+     */
+    @Override
+    public void close() {
+        server.stop(0);
+        handlers.shutdownNow();
+    }
+
+    /**
+     * Answers an OCSP request for certificates issued by this CA.
+     *
+     * @param exchange The HTTP exchange.
+     */
+    private void handleOcsp(HttpExchange exchange) {
+        try {
+            ocspRequests.incrementAndGet();
+            byte[] body;
+            try (InputStream in = exchange.getRequestBody()) {
+                body = in.readAllBytes();
+            }
+            delay();
+            OCSPReq request = new OCSPReq(body);
+            Date now = new Date();
+            Date nextUpdate = new Date(now.getTime() + validity.toMillis());
+            BasicOCSPRespBuilder builder = new JcaBasicOCSPRespBuilder(caKeyPair.getPublic(),
+                    new JcaDigestCalculatorProviderBuilder().build().get(RespID.HASH_SHA1));
+            for (Req single : request.getRequestList()) {
+                Date revocationTime = revoked.get(single.getCertID().getSerialNumber());
+                CertificateStatus status = revocationTime == null ? CertificateStatus.GOOD
+                        : new RevokedStatus(revocationTime, CRLReason.keyCompromise);
+                builder.addResponse(single.getCertID(), status, now, nextUpdate, null);
+            }
+            Extension nonce = request.getExtension(OCSPObjectIdentifiers.id_pkix_ocsp_nonce);
+            if (nonce != null) {
+                builder.setResponseExtensions(new Extensions(nonce));
+            }
+            byte[] encoded = new OCSPRespBuilder().build(OCSPResp.SUCCESSFUL, builder.build(contentSigner(),
+                    new X509CertificateHolder[] { new JcaX509CertificateHolder(caCertificate) }, now)).getEncoded();
+            send(exchange, "application/ocsp-response", encoded);
+        } catch (Exception e) {
+            System.err.println("Stub revocation responder failed to answer: " + e.getMessage());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Serves a freshly issued CRL.
+     *
+     * @param exchange The HTTP exchange.
+     */
+    private void handleCrl(HttpExchange exchange) {
+        try {
+            crlRequests.incrementAndGet();
+            delay();
+            Date now = new Date();
+            X509v2CRLBuilder builder = new X509v2CRLBuilder(
+                    new JcaX509CertificateHolder(caCertificate).getSubject(), now);
+            builder.setNextUpdate(new Date(now.getTime() + validity.toMillis()));
+            revoked.forEach((serial, date) -> builder.addCRLEntry(serial, date, CRLReason.keyCompromise));
+            byte[] encoded = new JcaX509CRLConverter().setProvider(BouncyCastleProvider.PROVIDER_NAME)
+                    .getCRL(builder.build(contentSigner())).getEncoded();
+            send(exchange, "application/pkix-crl", encoded);
+        } catch (Exception e) {
+            System.err.println("Stub revocation responder failed to answer: " + e.getMessage());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Waits for the configured latency.
+     *
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    private void delay() throws InterruptedException {
+        if (!latency.isZero()) {
+            TimeUnit.NANOSECONDS.sleep(latency.toNanos());
+        }
+    }
+
+    /**
+     * Sends a response body.
+     *
+     * @param exchange    The HTTP exchange.
+     * @param contentType The content type.
+     * @param body        The body.
+     * @throws Exception If the response cannot be written.
+     */
+    private static void send(HttpExchange exchange, String contentType, byte[] body) throws Exception {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * @param subject   The subject of the certificate.
+     * @param publicKey The certified key.
+     * @return A certificate builder for a certificate issued by this CA.
+     */
+    private JcaX509v3CertificateBuilder certificateBuilder(X500Name subject, PublicKey publicKey) {
+        long now = System.currentTimeMillis();
+        X500Name issuer = caCertificate != null ? X500Name.getInstance(
+                caCertificate.getSubjectX500Principal().getEncoded()) : subject;
+        return new JcaX509v3CertificateBuilder(issuer, BigInteger.valueOf(serialNumber.incrementAndGet()),
+                new Date(now - TimeUnit.HOURS.toMillis(1)), new Date(now + TimeUnit.DAYS.toMillis(1)), subject,
+                publicKey);
+    }
+
+    /**
+     * @param builder A certificate builder.
+     * @return The certificate, signed with the CA key.
+     * @throws Exception If the certificate cannot be signed.
+     */
+    private X509Certificate sign(JcaX509v3CertificateBuilder builder) throws Exception {
+        return new JcaX509CertificateConverter().setProvider(BouncyCastleProvider.PROVIDER_NAME)
+                .getCertificate(builder.build(contentSigner()));
+    }
+
+    /**
+     * @return A signer using the CA key.
+     * @throws Exception If the signer cannot be created.
+     */
+    private ContentSigner contentSigner() throws Exception {
+        return new JcaContentSignerBuilder(SIGNATURE_ALGORITHM).setProvider(BouncyCastleProvider.PROVIDER_NAME)
+                .build(caKeyPair.getPrivate());
+    }
+}
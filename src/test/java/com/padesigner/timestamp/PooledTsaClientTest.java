@@ -0,0 +1,167 @@
+package com.padesigner.timestamp;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.bouncycastle.cms.CMSSignedData;
+import org.bouncycastle.tsp.TimeStampToken;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests {@link PooledTsaClient} against a {@link StubTimestampAuthority}.
+ */
+class PooledTsaClientTest {
+
+    private StubTimestampAuthority authority;
+
+    @BeforeEach
+    void startAuthority() throws Exception {
+        authority = new StubTimestampAuthority(0);
+    }
+
+    @AfterEach
+    void stopAuthority() {
+        authority.close();
+    }
+
+    @Test
+    void returnsTokenForImprint() throws Exception {
+        byte[] imprint = imprint("document");
+
+        byte[] encoded = client(4, Duration.ofSeconds(5)).getTimeStampToken(imprint);
+
+        TimeStampToken token = new TimeStampToken(new CMSSignedData(encoded));
+        assertArrayEquals(imprint, token.getTimeStampInfo().getMessageImprintDigest());
+        assertEquals(StubTimestampAuthority.POLICY, token.getTimeStampInfo().getPolicy().getId());
+    }
+
+    @Test
+    void reusesConnectionAcrossRequests() throws Exception {
+        PooledTsaClient client = client(4, Duration.ofSeconds(5));
+
+        for (int i = 0; i < 5; i++) {
+            client.getTimeStampToken(imprint("document " + i));
+        }
+
+        assertEquals(5, authority.getRequestCount());
+        assertEquals(1, authority.getConnectionCount());
+    }
+
+    @Test
+    void capsRequestsInFlight() throws Exception {
+        PooledTsaClient client = client(2, Duration.ofSeconds(10));
+        authority.setLatency(Duration.ofMillis(100));
+
+        ExecutorService workers = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<byte[]>> tokens = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                byte[] imprint = imprint("document " + i);
+                tokens.add(workers.submit(() -> client.getTimeStampToken(imprint)));
+            }
+            for (Future<byte[]> token : tokens) {
+                token.get();
+            }
+        } finally {
+            workers.shutdownNow();
+        }
+
+        assertEquals(8, authority.getRequestCount());
+        assertEquals(2, authority.getLargestConcurrency());
+    }
+
+    @Test
+    void retriesServerErrors() throws Exception {
+        authority.failNext(2, 503);
+
+        client(4, Duration.ofSeconds(5)).getTimeStampToken(imprint("document"));
+
+        assertEquals(3, authority.getRequestCount());
+    }
+
+    @Test
+    void retriesTooManyRequests() throws Exception {
+        authority.failNext(1, 429);
+
+        client(4, Duration.ofSeconds(5)).getTimeStampToken(imprint("document"));
+
+        assertEquals(2, authority.getRequestCount());
+    }
+
+    @Test
+    void doesNotRetryClientErrors() {
+        authority.failNext(1, 400);
+
+        Exception e = assertThrows(Exception.class,
+                () -> client(4, Duration.ofSeconds(5)).getTimeStampToken(imprint("document")));
+
+        assertTrue(e.getMessage().contains("HTTP 400"), e.getMessage());
+        assertEquals(1, authority.getRequestCount());
+    }
+
+    @Test
+    void givesUpWhenBudgetIsUsed() {
+        authority.failNext(Integer.MAX_VALUE, 500);
+        Duration budget = Duration.ofMillis(600);
+        PooledTsaClient client = client(4, budget);
+
+        long start = System.nanoTime();
+        Exception e = assertThrows(Exception.class, () -> client.getTimeStampToken(imprint("document")));
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+        assertTrue(e.getMessage().contains("did not answer within"), e.getMessage());
+        assertTrue(authority.getRequestCount() > 1, "Expected retries before giving up.");
+        assertTrue(elapsed.compareTo(budget.plusMillis(500)) < 0, "Gave up after " + elapsed.toMillis() + " ms.");
+    }
+
+    @Test
+    void rejectsTokenWithWrongNonce() {
+        authority.setTampering(StubTimestampAuthority.Tampering.NONCE);
+
+        assertThrows(Exception.class, () -> client(4, Duration.ofSeconds(5)).getTimeStampToken(imprint("document")));
+
+        assertEquals(1, authority.getRequestCount());
+    }
+
+    @Test
+    void rejectsTokenForOtherImprint() {
+        authority.setTampering(StubTimestampAuthority.Tampering.IMPRINT);
+
+        assertThrows(Exception.class, () -> client(4, Duration.ofSeconds(5)).getTimeStampToken(imprint("document")));
+
+        assertEquals(1, authority.getRequestCount());
+    }
+
+    /**
+     * @param maxConcurrent The maximum number of requests in flight.
+     * @param budget        The time allowed for one timestamp.
+     * @return A client of the stub authority.
+     */
+    private PooledTsaClient client(int maxConcurrent, Duration budget) {
+        return new PooledTsaClient(URI.create(authority.getUrl()), PooledTsaClient.DEFAULT_DIGEST_ALGORITHM, null,
+                maxConcurrent, budget);
+    }
+
+    /**
+     * @param content Some content.
+     * @return The SHA-256 digest of the content.
+     * @throws Exception If SHA-256 is not available.
+     */
+    private static byte[] imprint(String content) throws Exception {
+        return MessageDigest.getInstance("SHA-256").digest(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,290 @@
+package com.padesigner.timestamp;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Security;
+import java.security.cert.X509Certificate;
+import java.security.spec.ECGenParameterSpec;
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.bouncycastle.asn1.ASN1ObjectIdentifier;
+import org.bouncycastle.asn1.oiw.OIWObjectIdentifiers;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
+import org.bouncycastle.asn1.x509.ExtendedKeyUsage;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.KeyPurposeId;
+import org.bouncycastle.cert.jcajce.JcaCertStore;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.cms.jcajce.JcaSimpleSignerInfoGeneratorBuilder;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.bouncycastle.operator.jcajce.JcaDigestCalculatorProviderBuilder;
+import org.bouncycastle.tsp.TSPAlgorithms;
+import org.bouncycastle.tsp.TimeStampRequest;
+import org.bouncycastle.tsp.TimeStampRequestGenerator;
+import org.bouncycastle.tsp.TimeStampResponse;
+import org.bouncycastle.tsp.TimeStampResponseGenerator;
+import org.bouncycastle.tsp.TimeStampTokenGenerator;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A minimal RFC 3161 timestamp authority on the loopback interface, for
+ * exercising {@link PooledTsaClient} and timestamped signing without a real
+ * authority. It issues tokens with a throwaway self-signed certificate, so
+ * its timestamps prove nothing and must never be used for real documents.
+ * <p>
+ * Latency, HTTP errors and tampered responses can be injected to observe
+ * retries and response validation; the requests, the client connections and
+ * the largest number of requests handled at once are counted.
+ */
+public class StubTimestampAuthority implements AutoCloseable {
+
+    /**
+     * The policy OID of the issued tokens.
+     */
+    public static final String POLICY = "1.3.6.1.4.1.0.1";
+
+    private static final String RESPONSE_CONTENT_TYPE = "application/timestamp-reply";
+
+    private final HttpServer server;
+    private final ExecutorService handlers;
+    private final TimeStampResponseGenerator responseGenerator;
+    private final X509Certificate certificate;
+    private final AtomicLong serialNumber = new AtomicLong();
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger failuresToInject = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger largestActive = new AtomicInteger();
+    private final Set<InetSocketAddress> connections = ConcurrentHashMap.newKeySet();
+    private volatile int failureStatus = 503;
+    private volatile Tampering tampering = Tampering.NONE;
+    private volatile Duration latency = Duration.ZERO;
+
+    /**
+     * A way of answering a request with a token that does not match it.
+     */
+    public enum Tampering {
+        /**
+         * Answer correctly.
+         */
+        NONE,
+        /**
+         * Answer with a token carrying a different nonce.
+         */
+        NONCE,
+        /**
+         * Answer with a token for a different message imprint.
+         */
+        IMPRINT
+    }
+
+    /**
+     * Starts an authority on the given loopback port.
+     *
+     * @param port The port, or 0 to pick a free one.
+     * @throws Exception If the key, certificate or server cannot be created.
+     */
+    public StubTimestampAuthority(int port) throws Exception {
+        if (Security.getProvider(BouncyCastleProvider.PROVIDER_NAME) == null) {
+            Security.addProvider(new BouncyCastleProvider());
+        }
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC", BouncyCastleProvider.PROVIDER_NAME);
+        generator.initialize(new ECGenParameterSpec("secp256r1"));
+        KeyPair keyPair = generator.generateKeyPair();
+        this.certificate = createCertificate(keyPair);
+
+        TimeStampTokenGenerator tokenGenerator = new TimeStampTokenGenerator(
+                new JcaSimpleSignerInfoGeneratorBuilder().setProvider(BouncyCastleProvider.PROVIDER_NAME)
+                        .build("SHA256withECDSA", keyPair.getPrivate(), certificate),
+                new JcaDigestCalculatorProviderBuilder().build()
+                        .get(new AlgorithmIdentifier(OIWObjectIdentifiers.idSHA1)),
+                new ASN1ObjectIdentifier(POLICY));
+        tokenGenerator.addCertificates(new JcaCertStore(List.of(certificate)));
+        this.responseGenerator = new TimeStampResponseGenerator(tokenGenerator, TSPAlgorithms.ALLOWED);
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.handlers = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "stub-tsa-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(handlers);
+        server.start();
+    }
+
+    /**
+     * @return The URL to send timestamp requests to.
+     */
+    public String getUrl() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + "/";
+    }
+
+    /**
+     * @return The certificate the tokens are signed with.
+     */
+    public X509Certificate getCertificate() {
+        return certificate;
+    }
+
+    /**
+     * @return The number of requests received so far.
+     */
+    public int getRequestCount() {
+        return requests.get();
+    }
+
+    /**
+     * @return The number of distinct client connections seen so far.
+     */
+    public int getConnectionCount() {
+        return connections.size();
+    }
+
+    /**
+     * @return The largest number of requests handled at the same time.
+     */
+    public int getLargestConcurrency() {
+        return largestActive.get();
+    }
+
+    /**
+     * Delays every response.
+     *
+     * @param latency The delay before answering a request.
+     */
+    public void setLatency(Duration latency) {
+        this.latency = latency;
+    }
+
+    /**
+     * Answers the next requests with an HTTP error.
+     *
+     * @param count  The number of requests to fail.
+     * @param status The HTTP status to answer with.
+     */
+    public void failNext(int count, int status) {
+        failureStatus = status;
+        failuresToInject.set(count);
+    }
+
+    /**
+     * Makes every following response mismatch its request.
+     *
+     * @param tampering How the responses are altered.
+     */
+    public void setTampering(Tampering tampering) {
+        this.tampering = tampering;
+    }
+
+    /**
+     * Stops the server.
+     */
+    @Override
+    public void close() {
+        server.stop(0);
+        handlers.shutdownNow();
+    }
+
+    /**
+     * Answers one timestamp request.
+     *
+     * @param exchange The HTTP exchange.
+     */
+    private void handle(HttpExchange exchange) {
+        largestActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+        try {
+            requests.incrementAndGet();
+            connections.add(exchange.getRemoteAddress());
+            byte[] body;
+            try (InputStream in = exchange.getRequestBody()) {
+                body = in.readAllBytes();
+            }
+            if (!latency.isZero()) {
+                TimeUnit.NANOSECONDS.sleep(latency.toNanos());
+            }
+            if (failuresToInject.getAndUpdate(count -> Math.max(count - 1, 0)) > 0
+                    || !"POST".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders("POST".equals(exchange.getRequestMethod()) ? failureStatus : 405, -1);
+                return;
+            }
+
+            TimeStampResponse response = responseGenerator.generate(tamper(new TimeStampRequest(body)),
+                    BigInteger.valueOf(serialNumber.incrementAndGet()), new Date());
+            byte[] encoded = response.getEncoded();
+            exchange.getResponseHeaders().set("Content-Type", RESPONSE_CONTENT_TYPE);
+            exchange.sendResponseHeaders(200, encoded.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(encoded);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            System.err.println("Stub timestamp authority failed to answer: " + e.getMessage());
+        } finally {
+            active.decrementAndGet();
+            exchange.close();
+        }
+    }
+
+    /**
+     * Alters a request according to the current {@link Tampering}, so the
+     * token issued for it no longer matches the original.
+     *
+     * @param request The received request.
+     * @return The request to issue a token for.
+     */
+    private TimeStampRequest tamper(TimeStampRequest request) {
+        if (tampering == Tampering.NONE) {
+            return request;
+        }
+        byte[] imprint = request.getMessageImprintDigest().clone();
+        BigInteger nonce = request.getNonce();
+        if (tampering == Tampering.IMPRINT) {
+            imprint[0] ^= 1;
+        } else {
+            nonce = nonce.add(BigInteger.ONE);
+        }
+        TimeStampRequestGenerator generator = new TimeStampRequestGenerator();
+        generator.setCertReq(request.getCertReq());
+        return generator.generate(request.getMessageImprintAlgOID(), imprint, nonce);
+    }
+
+    /**
+     * Issues a self-signed certificate for timestamping, valid for a day.
+     *
+     * @param keyPair The key pair of the authority.
+     * @return The certificate.
+     * @throws Exception If the certificate cannot be created.
+     */
+    private static X509Certificate createCertificate(KeyPair keyPair) throws Exception {
+        X500Name subject = new X500Name("CN=PAdESigner Stub TSA");
+        long now = System.currentTimeMillis();
+        JcaX509v3CertificateBuilder builder = new JcaX509v3CertificateBuilder(subject, BigInteger.valueOf(now),
+                new Date(now - TimeUnit.HOURS.toMillis(1)), new Date(now + TimeUnit.DAYS.toMillis(1)), subject,
+                keyPair.getPublic());
+        builder.addExtension(Extension.extendedKeyUsage, true, new ExtendedKeyUsage(KeyPurposeId.id_kp_timeStamping));
+        return new JcaX509CertificateConverter().setProvider(BouncyCastleProvider.PROVIDER_NAME)
+                .getCertificate(builder.build(new JcaContentSignerBuilder("SHA256withECDSA")
+                        .setProvider(BouncyCastleProvider.PROVIDER_NAME).build(keyPair.getPrivate())));
+    }
+}